@@ -0,0 +1,59 @@
+package org.jbomberman.benchmark;
+
+import org.jbomberman.model.BinaryLeaderboard;
+import org.jbomberman.model.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the opening of a binary leaderboard and the access to a user by rank,
+ * for leaderboards of different sizes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryLeaderboardBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int entries;
+
+    private Path file;
+    private BinaryLeaderboard leaderboard;
+    private int rank;
+
+    @Setup(Level.Trial)
+    public void createLeaderboard() throws IOException {
+        List<User> users = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            users.add(new User("player" + i, (entries - i) * 10, 1 + i % 2));
+        }
+        file = Files.createTempFile("leaderboard", ".bin");
+        BinaryLeaderboard.write(file, users);
+        leaderboard = BinaryLeaderboard.open(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLeaderboard() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public BinaryLeaderboard open() throws IOException {
+        return BinaryLeaderboard.open(file);
+    }
+
+    @Benchmark
+    public User getByRank() {
+        rank = (rank + 7919) % entries;
+        return leaderboard.get(rank);
+    }
+}
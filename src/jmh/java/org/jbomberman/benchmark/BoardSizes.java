@@ -0,0 +1,40 @@
+package org.jbomberman.benchmark;
+
+import org.jbomberman.model.EnemyBehaviour;
+import org.jbomberman.model.GameConfig;
+
+/**
+ * The maps used by the benchmarks, identified by a "width x height" parameter
+ */
+final class BoardSizes {
+
+    private BoardSizes() {
+    }
+
+    /**
+     * Creates a map of the given size with 20% of random blocks and an enemy every 100 tiles
+     * @param size the size of the map, e.g. "17x11"
+     * @return the configuration
+     */
+    static GameConfig config(String size) {
+        return config(size, EnemyBehaviour.RANDOM);
+    }
+
+    /**
+     * Creates a map like config(size), whose enemies have the given behaviour
+     * @param size the size of the map, e.g. "17x11"
+     * @param behaviour the behaviour of the enemies
+     * @return the configuration
+     */
+    static GameConfig config(String size, EnemyBehaviour behaviour) {
+        String[] dimensions = size.split("x");
+        int width = Integer.parseInt(dimensions[0]);
+        int height = Integer.parseInt(dimensions[1]);
+        return new GameConfig.Builder()
+                .setSize(width, height)
+                .setBlockDensity(0.2)
+                .setEnemies(Math.max(3, width * height / 100))
+                .setEnemyBehaviours(behaviour)
+                .build();
+    }
+}
@@ -0,0 +1,61 @@
+package org.jbomberman.benchmark;
+
+import org.jbomberman.model.BombTable;
+import org.jbomberman.model.TileGrid;
+import org.jbomberman.utils.Coordinate;
+import org.jbomberman.utils.Triad;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the resolution of a chain reaction, for different numbers of bombs on a large map.
+ * The bombs are placed on the tiles between the fixed blocks, two tiles apart, with a range of 2:
+ * only the fuse of the first one ends, and its blast reaches all the others through the chain
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChainReactionBenchmark {
+
+    private static final int SIZE = 201;
+
+    @Param({"10", "100", "1000"})
+    public int bombCount;
+
+    private BombTable bombs;
+
+    @Setup(Level.Trial)
+    public void createMap() {
+        TileGrid grid = new TileGrid(SIZE, SIZE);
+        Coordinate[] tileCoordinates = new Coordinate[SIZE * SIZE];
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                tileCoordinates[grid.index(x, y)] = new Coordinate(x, y);
+                if (x == 0 || y == 0 || x == SIZE - 1 || y == SIZE - 1 || (x % 2 == 0 && y % 2 == 0)) {
+                    grid.set(x, y, TileGrid.FIXED_BLOCK);
+                }
+            }
+        }
+        grid.computeRays();
+        bombs = new BombTable(grid, tileCoordinates);
+    }
+
+    @Setup(Level.Invocation)
+    public void placeBombs() {
+        // The bombs fill the odd rows from the top left corner, the first one explodes at tick 0
+        int perRow = (SIZE - 1) / 2;
+        for (int i = 0; i < bombCount; i++) {
+            bombs.add(1 + 2 * (i % perRow), 1 + 2 * (i / perRow), 2, i == 0 ? 0 : Long.MAX_VALUE);
+        }
+    }
+
+    @Benchmark
+    public List<Triad> detonate() {
+        return bombs.detonate(0);
+    }
+}
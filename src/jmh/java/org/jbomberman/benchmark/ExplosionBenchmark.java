@@ -0,0 +1,67 @@
+package org.jbomberman.benchmark;
+
+import org.jbomberman.model.GameConfig;
+import org.jbomberman.model.GameEngine;
+import org.jbomberman.model.GameRandom;
+import org.jbomberman.model.MainModel;
+import org.jbomberman.model.ModelSnapshot;
+import org.jbomberman.utils.Direction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the explosion of the bomb for different ranges.
+ * The bomb is released on the row 1 of an almost empty map, then the player hides
+ * in the row below, out of the blast. Before every invocation the level is restored from
+ * a snapshot, so that every one explodes the same bomb on the same map, even if the
+ * previous blasts destroyed some blocks
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExplosionBenchmark {
+
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8", "9", "10"})
+    public int bombRange;
+
+    private MainModel model;
+    private GameEngine engine;
+    private ModelSnapshot start;
+
+    @Setup(Level.Trial)
+    public void createModel() {
+        GameConfig config = new GameConfig.Builder()
+                .setSize(41, 41)
+                .setRandomBlocks(5)
+                .setCoins(0)
+                .setEnemies(0)
+                .setBombRange(bombRange)
+                .build();
+        model = new MainModel(config, new GameRandom(42));
+        model.initialize();
+        // The bomb is released in (20, 1), far from the edges
+        for (int i = 0; i < 19; i++) {
+            model.movePlayer(Direction.RIGHT);
+        }
+        engine = new GameEngine(model);
+        start = ModelSnapshot.capture(engine);
+    }
+
+    @Setup(Level.Invocation)
+    public void releaseBomb() {
+        start.restore(engine);
+        model.releaseBomb(0);
+        model.movePlayer(Direction.RIGHT);
+        model.movePlayer(Direction.DOWN);
+    }
+
+    @Benchmark
+    public MainModel explodeBomb() {
+        model.explodeBombs(0);
+        return model;
+    }
+}
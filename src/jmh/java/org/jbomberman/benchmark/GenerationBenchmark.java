@@ -0,0 +1,40 @@
+package org.jbomberman.benchmark;
+
+import org.jbomberman.model.GameRandom;
+import org.jbomberman.model.MainModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the generation of a level (background, random blocks, items and enemies)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenerationBenchmark {
+
+    @Param({"17x11", "101x101", "1001x1001"})
+    public String size;
+
+    private MainModel model;
+
+    @Setup(Level.Trial)
+    public void createModel() {
+        model = new MainModel(BoardSizes.config(size), new GameRandom(42));
+    }
+
+    @Setup(Level.Invocation)
+    public void resetModel() {
+        model.reset();
+    }
+
+    @Benchmark
+    public MainModel initialize() {
+        model.initialize();
+        return model;
+    }
+}
@@ -0,0 +1,78 @@
+package org.jbomberman.benchmark;
+
+import com.google.gson.Gson;
+import org.jbomberman.model.GameConfig;
+import org.jbomberman.model.MainModel;
+import org.jbomberman.model.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the update of the leaderboard at the end of a match, for leaderboards of different sizes.
+ * The leaderboard is read from a temporary file instead of the one of the user
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LeaderboardBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int entries;
+
+    private MainModel model;
+    private Path file;
+    private int player;
+
+    @Setup(Level.Trial)
+    public void createLeaderboard() throws IOException {
+        List<User> users = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            users.add(new User("player" + i, i * 10, 1 + i % 2));
+        }
+        file = Files.createTempFile("leaderboard", ".json");
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            new Gson().toJson(users, writer);
+        }
+        System.setProperty("jbomberman.leaderboard", file.toString());
+
+        model = new MainModel(GameConfig.DEFAULT);
+        // The leaderboard is loaded here, outside the measurement
+        model.loadLeaderboard().join();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLeaderboard() throws IOException {
+        System.clearProperty("jbomberman.leaderboard");
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public MainModel setExistingPlayer() {
+        model.setPlayer("player" + (player++ % entries));
+        return model;
+    }
+
+    /**
+     * The first page shown by the LeaderboardView after a match, right after a change of the ranking
+     */
+    @Benchmark
+    public List<User> setPlayerThenFirstPage() {
+        model.setPlayer("player" + (player++ % entries));
+        return model.getLeaderboardPage(0, 50);
+    }
+
+    @Benchmark
+    public int rankOfPlayer() {
+        return model.getLeaderboardRank("player" + (player++ % entries));
+    }
+}
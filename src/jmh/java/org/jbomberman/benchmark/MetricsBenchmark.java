@@ -0,0 +1,63 @@
+package org.jbomberman.benchmark;
+
+import org.jbomberman.metrics.GameMetrics;
+import org.jbomberman.metrics.Histogram;
+import org.jbomberman.model.GameConfig;
+import org.jbomberman.model.GameEngine;
+import org.jbomberman.model.GameRandom;
+import org.jbomberman.model.MainModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the instrumentation of the game loop: recording a value in a Histogram,
+ * and a step of the engine with and without the GameMetrics measuring its phases
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsBenchmark {
+
+    @Param({"false", "true"})
+    public boolean profiled;
+
+    private final Histogram histogram = new Histogram(10_000_000_000L);
+    private GameMetrics metrics;
+    private GameEngine engine;
+    private long value;
+
+    @Setup(Level.Iteration)
+    public void createEngine() {
+        MainModel model = new MainModel(GameConfig.DEFAULT, new GameRandom(42));
+        model.initialize();
+        engine = new GameEngine(model);
+        metrics = new GameMetrics();
+        if (profiled) {
+            engine.setProfiler(metrics);
+        }
+    }
+
+    @Benchmark
+    public Histogram record() {
+        // Durations from a few nanoseconds to a few milliseconds
+        value = value * 6364136223846793005L + 1442695040888963407L;
+        histogram.record((value >>> 42) & 0x3FFFFF);
+        return histogram;
+    }
+
+    @Benchmark
+    public GameEngine step() {
+        if (profiled) {
+            metrics.tickStarted();
+            engine.step();
+            metrics.tickEnded();
+        } else {
+            engine.step();
+        }
+        return engine;
+    }
+}
@@ -0,0 +1,53 @@
+package org.jbomberman.benchmark;
+
+import org.jbomberman.model.EnemyBehaviour;
+import org.jbomberman.model.GameRandom;
+import org.jbomberman.model.MainModel;
+import org.jbomberman.utils.Direction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the operations performed by the model at every step of the game:
+ * the movement of the player and the movement of all the enemies, that wander randomly
+ * or hunt the player through the shared DistanceField
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelTickBenchmark {
+
+    private static final Direction[] PLAYER_PATH = {Direction.RIGHT, Direction.DOWN, Direction.LEFT, Direction.UP};
+
+    @Param({"17x11", "101x101", "1001x1001"})
+    public String size;
+
+    @Param({"RANDOM", "HUNTER"})
+    public EnemyBehaviour behaviour;
+
+    private MainModel model;
+    private int step;
+
+    @Setup(Level.Iteration)
+    public void createModel() {
+        model = new MainModel(BoardSizes.config(size, behaviour), new GameRandom(42));
+        model.initialize();
+        step = 0;
+    }
+
+    @Benchmark
+    public MainModel movePlayer() {
+        model.movePlayer(PLAYER_PATH[step++ & 3]);
+        return model;
+    }
+
+    @Benchmark
+    public MainModel moveEnemies() {
+        model.moveEnemies();
+        return model;
+    }
+}
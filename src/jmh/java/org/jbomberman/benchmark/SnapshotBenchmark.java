@@ -0,0 +1,74 @@
+package org.jbomberman.benchmark;
+
+import org.jbomberman.model.GameEngine;
+import org.jbomberman.model.GameRandom;
+import org.jbomberman.model.MainModel;
+import org.jbomberman.model.ModelSnapshot;
+import org.jbomberman.model.RewindBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the snapshots of a level: taking one, encoding it as a delta from the snapshot of
+ * a second before, restoring it, and a tick of the engine followed by the capture() of a RewindBuffer,
+ * compared with the tick alone
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @Param({"17x11", "101x101"})
+    public String size;
+
+    private GameEngine engine;
+    private ModelSnapshot keyframe;
+    private ModelSnapshot snapshot;
+    private RewindBuffer rewindBuffer;
+
+    @Setup(Level.Trial)
+    public void createLevel() {
+        MainModel model = new MainModel(BoardSizes.config(size), new GameRandom(42));
+        model.initialize();
+        engine = new GameEngine(model);
+        keyframe = ModelSnapshot.capture(engine);
+        for (int i = 0; i < engine.getTickRate(); i++) {
+            engine.step();
+        }
+        snapshot = ModelSnapshot.capture(engine);
+        rewindBuffer = new RewindBuffer(10 * engine.getTickRate(), engine.getTickRate());
+    }
+
+    @Benchmark
+    public ModelSnapshot capture() {
+        return ModelSnapshot.capture(engine);
+    }
+
+    @Benchmark
+    public byte[] delta() {
+        return snapshot.delta(keyframe);
+    }
+
+    @Benchmark
+    public GameEngine restore() {
+        snapshot.restore(engine);
+        return engine;
+    }
+
+    @Benchmark
+    public GameEngine step() {
+        engine.step();
+        return engine;
+    }
+
+    @Benchmark
+    public RewindBuffer stepAndCaptureInRewindBuffer() {
+        engine.step();
+        rewindBuffer.capture(engine);
+        return rewindBuffer;
+    }
+}
@@ -3,8 +3,10 @@ module com.jbomberman.jbomberman {
     requires javafx.fxml;
     requires javafx.media;
     requires com.google.gson;
+    requires java.management;
 
     opens org.jbomberman to javafx.fxml;
     exports org.jbomberman;
     exports org.jbomberman.model;
+    exports org.jbomberman.metrics;
 }
\ No newline at end of file
@@ -1,10 +1,17 @@
 package org.jbomberman;
 
+import org.jbomberman.controller.InputQueue;
 import org.jbomberman.controller.MainController;
+import org.jbomberman.model.GameConfig;
+import org.jbomberman.model.GameEngine;
+import org.jbomberman.view.GameRenderer;
 import javafx.application.Application;
 import javafx.scene.image.Image;
 import javafx.stage.Stage;
 
+import java.util.Arrays;
+import java.util.Locale;
+
 public class JBomberMan extends Application {
 
     public static void main(String[] args) {
@@ -22,6 +29,76 @@ public class JBomberMan extends Application {
         MainController controller = MainController.getInstance();
 
         controller.setStage(stage);
+        controller.setConfig(GameConfig.fromParameters(getParameters().getNamed()));
+        // --renderer=canvas draws the map on a canvas instead of a node for every tile
+        controller.setRendererType(getRendererType());
+        // --tick-rate=120 runs the engine at 120 ticks per second
+        controller.setTickRate(getIntParameter("tick-rate", GameEngine.DEFAULT_TICK_RATE));
+        // --input-buffer=N keeps up to N actions pressed while the player is walking
+        controller.setInputBufferDepth(getIntParameter("input-buffer", InputQueue.DEFAULT_DEPTH));
         controller.initialize();
+        // --connect=host:port plays the match of a GameServer instead of a local one
+        String server = getParameters().getNamed().get("connect");
+        if (server != null) {
+            connect(controller, server);
+        }
+    }
+
+    /**
+     * Connects to the server given as host:port
+     */
+    private static void connect(MainController controller, String server) {
+        int separator = server.lastIndexOf(':');
+        int port = -1;
+        if (separator > 0) {
+            try {
+                port = Integer.parseInt(server.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                port = -1;
+            }
+        }
+        if (port < 1 || port > 65535) {
+            System.out.println("Indirizzo del server non valido: " + server + ", deve essere host:porta");
+            return;
+        }
+        controller.connect(server.substring(0, separator), port);
+    }
+
+    /**
+     * @return the renderer chosen with --renderer, NODES if it isn't given or it's unknown
+     */
+    private GameRenderer.Type getRendererType() {
+        String value = getParameters().getNamed().get("renderer");
+        if (value == null) {
+            return GameRenderer.Type.NODES;
+        }
+        try {
+            return GameRenderer.Type.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Renderer sconosciuto: " + value + ", quelli disponibili sono "
+                    + Arrays.toString(GameRenderer.Type.values()).toLowerCase(Locale.ROOT) + "; viene usato nodes");
+            return GameRenderer.Type.NODES;
+        }
+    }
+
+    /**
+     * @return the value of a numeric parameter, or the default one if it isn't given or it isn't a number
+     */
+    private int getIntParameter(String name, int defaultValue) {
+        String value = getParameters().getNamed().get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.out.println("Valore non valido per --" + name + ": " + value + "; viene usato " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public void stop() {
+        MainController.getInstance().shutdown();
     }
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+package org.jbomberman.controller;
+
+import javafx.animation.AnimationTimer;
+import org.jbomberman.model.Action;
+import org.jbomberman.model.GameEngine;
+import org.jbomberman.net.GameClient;
+import org.jbomberman.utils.Coordinate;
+import org.jbomberman.utils.UpdateInfo;
+import org.jbomberman.utils.UpdateType;
+import org.jbomberman.view.GameView;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.function.Supplier;
+
+/**
+ * The ClientLoop plays the match of a GameServer in a GameView, like the GameLoop plays a local match:
+ * at every frame it sends the actions of the player through the GameClient and publishes the updates
+ * received from the server, that the view receives as if they came from a local model. The animations
+ * of the view advance with the ticks of the server.
+ * - every level is drawn on a new GameView, since the server sends it whole when it starts
+ * - the server goes on by itself when the players win or lose, so the end of a level isn't shown
+ * - the last action pressed waits until the client predicts that the player is ready; while a direction
+ *   is held down it's sent again as soon as the player can move, and at most once per step if it's blocked
+ */
+public class ClientLoop extends AnimationTimer {
+
+    // The longest frame taken into account, like in the GameLoop
+    private static final long MAX_FRAME = 250_000_000L;
+
+    private final GameClient client;
+    private final Supplier<GameView> showLevel;
+    private final Runnable disconnected;
+    private final long tickNanos;
+
+    // The view of the current level, null until the server has sent it
+    private GameView view;
+
+    // The last action pressed and not yet sent, and the direction held down
+    private Action pressed = null;
+    private Action heldMovement = null;
+
+    // When the held direction was sent without moving the player
+    private long blockedAt = 0;
+
+    private long lastFrame = 0;
+    private long accumulator = 0;
+
+    /**
+     * @param client the client connected to the server
+     * @param showLevel creates and shows the GameView of a new level
+     * @param disconnected called when the connection has been closed, by the client or by the server
+     */
+    public ClientLoop(GameClient client, Supplier<GameView> showLevel, Runnable disconnected) {
+        this.client = client;
+        this.showLevel = showLevel;
+        this.disconnected = disconnected;
+        this.tickNanos = 1_000_000_000L / client.getTickRate();
+        client.subscribe(this::dispatch, EnumSet.allOf(UpdateType.class));
+    }
+
+    @Override
+    public void handle(long now) {
+        long frame = lastFrame == 0 ? 0 : Math.min(now - lastFrame, MAX_FRAME);
+        lastFrame = now;
+        if (view != null) {
+            accumulator += frame;
+            while (accumulator >= tickNanos) {
+                accumulator -= tickNanos;
+                view.onTick(tickNanos);
+            }
+        }
+
+        sendActions(now);
+        try {
+            client.update();
+        } catch (IOException e) {
+            System.out.println("Aggiornamento non valido dal server: " + e.getMessage());
+            client.close();
+        }
+        if (client.isClosed()) {
+            stop();
+            disconnected.run();
+            return;
+        }
+        if (view != null) {
+            view.render((double) accumulator / tickNanos);
+        }
+    }
+
+    /**
+     * @param action the action of a key that has been pressed
+     */
+    public void press(Action action) {
+        pressed = action;
+        if (action.isMovement()) {
+            heldMovement = action;
+            blockedAt = 0;
+        }
+    }
+
+    /**
+     * @param action the action of a key that has been released
+     */
+    public void release(Action action) {
+        if (heldMovement == action) {
+            heldMovement = null;
+        }
+    }
+
+    private void sendActions(long now) {
+        if (pressed != null) {
+            if (client.perform(pressed)) {
+                pressed = null;
+            }
+        } else if (heldMovement != null && now - blockedAt >= GameEngine.PLAYER_STEP) {
+            Coordinate position = client.getPredictedPosition();
+            if (client.perform(heldMovement) && position.equals(client.getPredictedPosition())) {
+                blockedAt = now;
+            }
+        }
+    }
+
+    /**
+     * Passes the updates of the server to the view; LOAD_POINTS is the first update of a whole level
+     */
+    private void dispatch(UpdateInfo updateInfo) {
+        UpdateType type = updateInfo.getUpdateType();
+        if (type == UpdateType.LOAD_POINTS) {
+            view = showLevel.get();
+            view.setLocalPlayer(client.getPlayer());
+            view.setTickDurations(tickNanos, GameEngine.toTicks(GameEngine.PLAYER_STEP, client.getTickRate()) * tickNanos);
+            accumulator = 0;
+        }
+        if (view != null && type != UpdateType.UPDATE_GAME_WIN && type != UpdateType.UPDATE_GAME_OVER) {
+            view.update(updateInfo);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.jbomberman.controller;
+
+import javafx.animation.AnimationTimer;
+import org.jbomberman.metrics.GameMetrics;
+import org.jbomberman.model.GameEngine;
+import org.jbomberman.model.RewindBuffer;
+import org.jbomberman.view.GameView;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * The GameLoop is the only timer of a match: at every frame of JavaFX it advances the engine
+ * by the whole ticks contained in the time elapsed since the previous frame (fixed timestep),
+ * performing the buffered inputs of the player as soon as he's ready and passing every tick to the
+ * RewindBuffer (that takes a keyframe once in a while), then it asks the view to draw the entities interpolated between the last two ticks.
+ * While the game is paused the time doesn't flow for the engine.
+ * The frames and the ticks are measured by the GameMetrics, and the scene graph is counted twice a second.
+ */
+public class GameLoop extends AnimationTimer {
+
+    // The longest frame taken into account, so that after a stall the engine doesn't run hundreds of ticks at once
+    private static final long MAX_FRAME = 250_000_000L;
+
+    // How often the nodes of the scene are counted and the overlay of the metrics is refreshed
+    private static final long SAMPLE_INTERVAL = 500_000_000L;
+
+    private final GameEngine engine;
+    private final GameView view;
+    private final InputQueue inputQueue;
+    private final RewindBuffer rewindBuffer;
+    private final GameMetrics metrics;
+    private final BooleanSupplier paused;
+
+    private long lastFrame = 0;
+    private long lastSample = 0;
+
+    // The time of the previous frames that isn't enough for another tick
+    private long accumulator = 0;
+
+    /**
+     * @param engine the engine of the level
+     * @param view the view to update at every tick and to render at every frame
+     * @param inputQueue the actions of the player
+     * @param rewindBuffer where the keyframes of the level are kept
+     * @param metrics where the frames and the ticks are measured
+     * @param paused tells if the game is paused, it's checked before every tick
+     */
+    public GameLoop(GameEngine engine, GameView view, InputQueue inputQueue, RewindBuffer rewindBuffer, GameMetrics metrics, BooleanSupplier paused) {
+        this.engine = engine;
+        this.view = view;
+        this.inputQueue = inputQueue;
+        this.rewindBuffer = rewindBuffer;
+        this.metrics = metrics;
+        this.paused = paused;
+    }
+
+    @Override
+    public void handle(long now) {
+        long frame = lastFrame == 0 ? 0 : Math.min(now - lastFrame, MAX_FRAME);
+        lastFrame = now;
+        if (paused.getAsBoolean()) {
+            metrics.framesStopped();
+            return;
+        }
+        metrics.frameStarted(System.nanoTime());
+
+        long tickNanos = engine.getTickNanos();
+        accumulator += frame;
+        // The view advances its animations before the tick, so the ones started by the tick begin from zero
+        while (accumulator >= tickNanos && !paused.getAsBoolean()) {
+            accumulator -= tickNanos;
+            view.onTick(tickNanos);
+            metrics.tickStarted();
+            inputQueue.apply(engine, System.nanoTime());
+            engine.step();
+            metrics.tickEnded();
+            rewindBuffer.capture(engine);
+        }
+        view.render((double) accumulator / tickNanos);
+
+        if (now - lastSample >= SAMPLE_INTERVAL) {
+            lastSample = now;
+            metrics.setSceneNodes(view.countNodes());
+            if (view.isMetricsOverlayVisible()) {
+                view.showMetrics();
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        lastFrame = 0;
+        accumulator = 0;
+        metrics.framesStopped();
+    }
+}
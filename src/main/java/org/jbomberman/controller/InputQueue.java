@@ -0,0 +1,191 @@
+package org.jbomberman.controller;
+
+import org.jbomberman.model.Action;
+import org.jbomberman.model.GameEngine;
+import org.jbomberman.model.MainModel;
+import org.jbomberman.utils.Coordinate;
+
+import java.util.Arrays;
+
+/**
+ * The InputQueue keeps the actions pressed by the player while he can't act yet (because he's
+ * still walking to the previous tile), so that they are performed as soon as the engine is ready
+ * instead of being lost.
+ * - at most depth actions are buffered, when the queue is full the oldest one is dropped
+ * - while a direction is held down the player keeps walking in that direction; the repeated
+ *   key events of the operating system are ignored, the repetition is done by the queue at the
+ *   speed of the player. When the direction is blocked it isn't tried again until the player
+ *   or the obstacles of the map move
+ * - the time between the key press and the action performed by the engine is measured
+ */
+public class InputQueue {
+
+    // The number of actions buffered when it's not specified
+    public static final int DEFAULT_DEPTH = 2;
+
+    // A circular buffer of the actions with the time they were pressed
+    private final Action[] actions;
+    private final long[] pressedAt;
+    private int head = 0;
+    private int size = 0;
+
+    // The keys held down and the last direction pressed among them
+    private final boolean[] held = new boolean[Action.values().length];
+    private Action heldMovement = null;
+
+    // The held direction that was blocked, with the position of the player and the version of the obstacles then
+    private Action blockedMovement = null;
+    private Coordinate blockedAt = null;
+    private long blockedObstacles = 0;
+
+    // The latency metrics, in nanoseconds
+    private long performed = 0;
+    private long dropped = 0;
+    private long totalLatency = 0;
+    private long maxLatency = 0;
+
+    /**
+     * @param depth the number of actions that can wait in the queue
+     */
+    public InputQueue(int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("The depth of the input queue must be at least 1: " + depth);
+        }
+        actions = new Action[depth];
+        pressedAt = new long[depth];
+    }
+
+    /**
+     * Adds the action of a key that has been pressed, ignoring the repetitions of a key held down
+     * @param action the action of the key
+     * @param now the time of the key press, in nanoseconds
+     */
+    public void press(Action action, long now) {
+        if (held[action.ordinal()]) {
+            return;
+        }
+        held[action.ordinal()] = true;
+        if (action.isMovement()) {
+            heldMovement = action;
+        }
+        if (size == actions.length) {
+            head = (head + 1) % actions.length;
+            size--;
+            dropped++;
+        }
+        int tail = (head + size) % actions.length;
+        actions[tail] = action;
+        pressedAt[tail] = now;
+        size++;
+    }
+
+    /**
+     * @param action the action of the key that has been released
+     */
+    public void release(Action action) {
+        held[action.ordinal()] = false;
+        if (heldMovement == action) {
+            heldMovement = null;
+        }
+    }
+
+    /**
+     * Performs the oldest action in the queue or, if it's empty, the direction held down,
+     * but only if the player is ready to act
+     * @param engine the engine of the level
+     * @param now the current time, in nanoseconds
+     * @return true if an action has been performed and changed something
+     */
+    public boolean apply(GameEngine engine, long now) {
+        if (!engine.isPlayerReady()) {
+            return false;
+        }
+        if (size > 0) {
+            Action action = actions[head];
+            long latency = Math.max(0, now - pressedAt[head]);
+            actions[head] = null;
+            head = (head + 1) % actions.length;
+            size--;
+            performed++;
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+            return engine.perform(action);
+        }
+        if (heldMovement != null) {
+            return performHeldMovement(engine);
+        }
+        return false;
+    }
+
+    /**
+     * Performs the direction held down, unless it was blocked and neither the player nor the obstacles have moved since then
+     */
+    private boolean performHeldMovement(GameEngine engine) {
+        MainModel model = engine.getModel();
+        long obstacles = model.getGrid().getObstacleVersion();
+        if (heldMovement == blockedMovement && obstacles == blockedObstacles && model.getPlayerPosition().equals(blockedAt)) {
+            return false;
+        }
+        if (engine.perform(heldMovement)) {
+            blockedMovement = null;
+            return true;
+        }
+        blockedMovement = heldMovement;
+        blockedAt = model.getPlayerPosition();
+        blockedObstacles = obstacles;
+        return false;
+    }
+
+    /**
+     * Forgets the buffered actions and the held keys, e.g. when the game is paused
+     * and the key releases can't be received
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            actions[(head + i) % actions.length] = null;
+        }
+        head = 0;
+        size = 0;
+        heldMovement = null;
+        blockedMovement = null;
+        Arrays.fill(held, false);
+    }
+
+    //############ InputQueue GETTERS #############//
+
+    public int getDepth() {
+        return actions.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of key presses that have been performed
+     */
+    public long getPerformed() {
+        return performed;
+    }
+
+    /**
+     * @return the number of key presses dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return the average time between a key press and its action, in milliseconds
+     */
+    public double getAverageLatency() {
+        return performed == 0 ? 0 : totalLatency / 1e6 / performed;
+    }
+
+    /**
+     * @return the longest time between a key press and its action, in milliseconds
+     */
+    public double getMaxLatency() {
+        return maxLatency / 1e6;
+    }
+}
@@ -1,23 +1,40 @@
 package org.jbomberman.controller;
 
-import javafx.animation.Animation;
-import javafx.animation.KeyFrame;
-import javafx.animation.PauseTransition;
-import javafx.animation.Timeline;
-import javafx.util.Duration;
+import org.jbomberman.metrics.GameMetrics;
+import org.jbomberman.model.Action;
+import org.jbomberman.model.GameConfig;
+import org.jbomberman.model.GameEngine;
 import org.jbomberman.model.MainModel;
+import org.jbomberman.model.ModelSnapshot;
+import org.jbomberman.model.RewindBuffer;
 import org.jbomberman.model.User;
+import org.jbomberman.net.GameClient;
+import org.jbomberman.replay.ReplayRecorder;
 import org.jbomberman.utils.BackgroundMusic;
+import org.jbomberman.utils.UpdateType;
 import org.jbomberman.view.ViewUtilities;
+import org.jbomberman.view.GameRenderer;
 import org.jbomberman.view.GameView;
 import org.jbomberman.view.MenuView;
+import javafx.application.Platform;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.stage.Stage;
 
+import javax.management.JMException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * The MainController is responsible to handle the interaction of the user
@@ -26,10 +43,16 @@ import java.util.List;
  * It is the Controller of the MVC pattern
  */
 public class MainController {
-    // These two constants determinate the size of the game
+    // These two constants determinate the size of the window
     public static final int DX=17;
     public static final int DY=12;
 
+    // The size of the map and the number of blocks, enemies and coins
+    private GameConfig config = GameConfig.DEFAULT;
+
+    // How the map is drawn by the GameView
+    private GameRenderer.Type rendererType = GameRenderer.Type.NODES;
+
     MenuView menuView;
     MainModel model;
     GameView gameView;
@@ -37,11 +60,44 @@ public class MainController {
     Stage stage;
     Scene scene;
 
-    private Timeline mobMovement;
+    // The number of ticks in a second of the engine
+    private int tickRate = GameEngine.DEFAULT_TICK_RATE;
+
+    // The number of actions of the player that can wait for the end of his movement
+    private int inputBufferDepth = InputQueue.DEFAULT_DEPTH;
+
+    // The engine that owns the timers of the current level, the loop that advances it and the inputs of the player
+    private GameEngine engine;
+    private GameLoop gameLoop;
+    private InputQueue inputQueue;
+
+    // Records the current match, from its first level; null between two matches and after a snapshot is restored
+    private ReplayRecorder recorder;
+
+    // True after a snapshot has been restored: the replay of the match can't be recorded anymore,
+    // so the match goes on with the same seed and its replay isn't saved
+    private boolean replayInvalidated = false;
+
+    // The keyframes of the last seconds of the level and the actions performed after them
+    private RewindBuffer rewindBuffer;
+
+    // The seconds of the level that can be rewound, and how many seconds a rewind goes back
+    private static final int REWIND_SECONDS = 10;
+    private static final int REWIND_STEP_SECONDS = 3;
+
+    // The connection to a GameServer and the loop that plays its match; null when the match is local
+    private GameClient client;
+    private ClientLoop clientLoop;
 
-    private boolean moving = false; // This is to avoid concurrent inputs from the player
     private boolean pause = false; // This is to pause the entire game
 
+    // The metrics of the frames and of the ticks, published through JMX, and whether they are drawn over the game
+    private final GameMetrics metrics = new GameMetrics();
+    private boolean metricsOverlay = false;
+
+    // The longest wait for the leaderboard to be saved when the application exits
+    private static final int SAVE_TIMEOUT_SECONDS = 5;
+
     private static MainController instance;
 
     private MainController() {
@@ -58,23 +114,77 @@ public class MainController {
         this.stage = stage;
     }
 
+    public void setConfig(GameConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * @return the configuration of the local match, or the one of the server while playing its match
+     */
+    public GameConfig getConfig() {
+        return client != null ? client.getConfig() : config;
+    }
+
+    public void setRendererType(GameRenderer.Type rendererType) {
+        this.rendererType = rendererType;
+    }
+
+    public GameRenderer.Type getRendererType() {
+        return rendererType;
+    }
+
+    public void setTickRate(int tickRate) {
+        this.tickRate = tickRate;
+    }
+
+    public int getTickRate() {
+        return tickRate;
+    }
+
+    public void setInputBufferDepth(int inputBufferDepth) {
+        this.inputBufferDepth = inputBufferDepth;
+    }
+
+    public GameMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the inputs of the current match, with their latency metrics
+     */
+    public InputQueue getInputQueue() {
+        return inputQueue;
+    }
+
     /**
      * This method creates the model and initialize the view of the menu adding the view as an
      * observer for the model.
      * Then it initialize the scene
      */
     public void initialize(){
-        model = new MainModel(DX, DY);
+        model = new MainModel(config);
 
         menuView = new MenuView();
         menuView.initialize();
 
+        // The menu is shown at once, the leaderboard is filled in when it has been read
+        model.loadLeaderboard().thenRunAsync(menuView::leaderboardLoaded, Platform::runLater);
+
         Parent root = menuView.getMenu();
         scene = new Scene(root, ViewUtilities.WIDTH, ViewUtilities.HEIGHT);
+        // The CSS and the layout of every pulse, after the GameLoop
+        scene.addPreLayoutPulseListener(() -> metrics.layoutStarted(System.nanoTime()));
+        scene.addPostLayoutPulseListener(() -> metrics.layoutEnded(System.nanoTime()));
         stage.setScene(scene);
         stage.show();
 
         BackgroundMusic.playMenuMusic();
+
+        try {
+            metrics.register();
+        } catch (JMException e) {
+            System.out.println("Impossibile pubblicare le metriche del gioco: " + e.getMessage());
+        }
     }
 
 
@@ -82,10 +192,13 @@ public class MainController {
 
     /**
      * This method is responsible to handle keyboard events in the game
-     * It performs different actions based on the key pressed:
-     * - movePlayer, that tells the model to try to move the player in the keyCode direction
-     * - releaseBomb and explodeBomb, that respectively release the bomb and explode the bomb
-     *    when the timer ends
+     * It translates the key pressed into an Action for the engine:
+     * - the arrows tell the model to try to move the player in that direction
+     * - the space releases the bomb, that the engine explodes when its timer ends
+     * - F5 saves the level in a file, F9 loads it again, backspace rewinds the last seconds
+     * - F3 shows or hides the metrics of the game
+     * The actions pressed while the player is still walking to the previous tile wait in the InputQueue.
+     * The match of a server can't be paused, saved or rewound: ESC leaves it
      * @param keyEvent The KeyEvent representing the key pressed by the user
      */
     public void handleGameKeyEvent(KeyEvent keyEvent) {
@@ -93,29 +206,70 @@ public class MainController {
 
         if (keyEvent.getCode() == KeyCode.TAB) {
             keyEvent.consume();
+        } else if (clientLoop != null) {
+            Action action = toAction(keyCode);
+            if (keyCode == KeyCode.ESCAPE) {
+                disconnect();
+            } else if (action != null) {
+                clientLoop.press(action);
+            }
         } else if (keyCode == KeyCode.ESCAPE){
             pauseController();
-        } else if (!pause && !moving){
-            if (keyCode == KeyCode.SPACE) {
-                if (model.releaseBomb()) {
-                    PauseTransition bombTimer = new PauseTransition(Duration.millis(1750));
-                    bombTimer.setOnFinished(actionEvent -> model.explodeBomb());
-                    bombTimer.play();
-                }
-            } else {
-                model.movePlayer(keyCode);
+        } else if (keyCode == KeyCode.F3) {
+            metricsOverlay = !metricsOverlay;
+            gameView.setMetricsOverlayVisible(metricsOverlay);
+        } else if (!pause && keyCode == KeyCode.F5) {
+            quickSave();
+        } else if (!pause && keyCode == KeyCode.F9) {
+            quickLoad();
+        } else if (!pause && keyCode == KeyCode.BACK_SPACE) {
+            rewind();
+        } else if (!pause){
+            Action action = toAction(keyCode);
+            if (action != null) {
+                long now = System.nanoTime();
+                inputQueue.press(action, now);
+                inputQueue.apply(engine, now);
             }
         }
 
     }
 
+    /**
+     * This method is responsible to handle the released keys in the game, that stop the
+     * movement of the player in their direction
+     * @param keyEvent The KeyEvent representing the key released by the user
+     */
+    public void handleGameKeyReleased(KeyEvent keyEvent) {
+        Action action = toAction(keyEvent.getCode());
+        if (action != null && clientLoop != null) {
+            clientLoop.release(action);
+        } else if (action != null && inputQueue != null) {
+            inputQueue.release(action);
+        }
+    }
+
+    /**
+     * @return the action bound to the given key, or null if the key has no action
+     */
+    private static Action toAction(KeyCode keyCode) {
+        return switch (keyCode) {
+            case UP -> Action.UP;
+            case DOWN -> Action.DOWN;
+            case LEFT -> Action.LEFT;
+            case RIGHT -> Action.RIGHT;
+            case SPACE -> Action.BOMB;
+            default -> null;
+        };
+    }
+
     /**
      * This method pause the entire game
      */
     public void pauseController() {
         pause = true;
+        inputQueue.clear();
         gameView.pauseView();
-        mobMovement.pause();
     }
 
     /**
@@ -124,30 +278,40 @@ public class MainController {
     public void resumeController() {
         pause = false;
         gameView.resumeView();
-        mobMovement.play();
-    }
-
-    public void setMoving(boolean bool) {
-        moving = bool;
     }
 
-    public void setPause(boolean pause) {
-        this.pause = pause;
+    /**
+     * This method creates the engine of the level and starts the loop that advances it
+     * with a fixed timestep. While the game is paused the time doesn't flow for the engine
+     */
+    private void startEngine(){
+        engine = new GameEngine(model, tickRate);
+        inputQueue = new InputQueue(inputBufferDepth);
+        rewindBuffer = new RewindBuffer(REWIND_SECONDS * tickRate, tickRate);
+        startLoop();
     }
 
     /**
-     * This is the timeline that controls the movement of the enemies
+     * Starts the loop that advances the engine of the level, drawing on the current GameView
      */
-    private void setTimeline(){
-        mobMovement = new Timeline(
-                new KeyFrame(Duration.seconds(1), event ->{
-                    if (!pause){
-                        model.moveEnemies();
-                    }
-                })
-        );
-        mobMovement.setCycleCount(Animation.INDEFINITE);
-        mobMovement.play();
+    private void startLoop() {
+        gameView.setTickDurations(engine.getTickNanos(), engine.toTicks(GameEngine.PLAYER_STEP) * engine.getTickNanos());
+        // The actions go to the RewindBuffer and, while the match is recorded, to the ReplayRecorder
+        engine.setActionListener((tick, player, action) -> {
+            rewindBuffer.actionPerformed(tick, player, action);
+            if (recorder != null) {
+                recorder.actionPerformed(tick, player, action);
+            }
+        });
+        engine.setProfiler(metrics);
+        gameLoop = new GameLoop(engine, gameView, inputQueue, rewindBuffer, metrics, () -> pause);
+        gameLoop.start();
+    }
+
+    private void stopEngine() {
+        if (gameLoop != null) {
+            gameLoop.stop();
+        }
     }
 
 
@@ -155,19 +319,20 @@ public class MainController {
 
     /**
      * This method is called when the user presses the Play button, initializing the model,
-     * the view of the game, and starting the timeline responsible to move the enemies
+     * the view of the game, and starting the engine responsible for the timers of the game.
+     * At the beginning of a match the model gets a new seed, and the recording of the replay starts
      */
     public void playButtonPressed() {
         if (BackgroundMusic.isMenuPlaying()) {
             BackgroundMusic.stopMenuMusic();
         }
+        if (recorder == null && !replayInvalidated) {
+            long seed = ThreadLocalRandom.current().nextLong();
+            model.setSeed(seed);
+            recorder = new ReplayRecorder(seed, config, tickRate);
+        }
         model.initialize();
-        model.deleteObservers();
-
-        gameView = new GameView();
-
-        model.addObserver(gameView);
-        model.notifyModelReady();
+        showGame();
 
         if (!BackgroundMusic.isPlaying()) {
             BackgroundMusic.playGameMusic();
@@ -176,18 +341,33 @@ public class MainController {
             BackgroundMusic.playGameMusic();
         }
 
+        pause = false;
+        startEngine();
+    }
+
+    /**
+     * Creates a new GameView, that is drawn from the notifications of the model
+     */
+    private void showGame() {
+        model.unsubscribeAll();
+
+        gameView = new GameView();
+
+        model.subscribe(gameView, EnumSet.allOf(UpdateType.class));
+        model.notifyModelReady();
+        gameView.setMetricsOverlayVisible(metricsOverlay);
+
         scene.setRoot(gameView.getGame());
         gameView.getFocus();
-
-        pause = false;
-        moving = false;
-        setTimeline();
     }
 
     /**
      * It is called when the player choose to go to the next level
      */
     public void nextLevel() {
+        if (recorder != null) {
+            recorder.nextLevel(engine.getTick());
+        }
         model.reset();
         model.nextLevel();
         playButtonPressed();
@@ -200,7 +380,7 @@ public class MainController {
         if (BackgroundMusic.isPlaying()) {
             BackgroundMusic.stopGameMusic();
         }
-        mobMovement.stop();
+        stopEngine();
         pause = true;
     }
 
@@ -211,16 +391,167 @@ public class MainController {
         if (BackgroundMusic.isPlaying()) {
             BackgroundMusic.stopGameMusic();
         }
+        stopEngine();
         model.save();
+        saveReplay();
         scene.setRoot(menuView.getMenu());
         BackgroundMusic.playMenuMusic();
 
-        model.deleteObservers();
+        model.unsubscribeAll();
 
         model.reset();
         model.resetGame();
     }
 
+    /**
+     * Writes the replay of the current match, that replaces the one of the previous match,
+     * and stops the recording. Nothing is written if the match has been restored from a snapshot
+     */
+    private void saveReplay() {
+        if (recorder != null && !replayInvalidated) {
+            try {
+                recorder.finish(engine.getTick(), model).write(Path.of(getReplayPath()));
+            } catch (IOException e) {
+                System.out.println("Impossibile salvare il replay della partita: " + e.getMessage());
+            }
+        }
+        recorder = null;
+        replayInvalidated = false;
+    }
+
+    /**
+     * @return the path of the replay of the last match, that can be changed with the jbomberman.replay property
+     */
+    private static String getReplayPath() {
+        return System.getProperty("jbomberman.replay", System.getProperty("user.home") + File.separator + "jbomberman-replay.jbr");
+    }
+
+    //############## SNAPSHOTS ###############//
+
+    /**
+     * Saves the level in a file, that replaces the previous save
+     */
+    private void quickSave() {
+        try {
+            ModelSnapshot.capture(engine).write(Path.of(getSavePath()));
+        } catch (IOException e) {
+            System.out.println("Impossibile salvare la partita: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Goes back to the level saved by quickSave(), also after the application has been restarted
+     */
+    private void quickLoad() {
+        Path path = Path.of(getSavePath());
+        if (!Files.exists(path)) {
+            System.out.println("Nessuna partita salvata da caricare");
+            return;
+        }
+        ModelSnapshot snapshot;
+        try {
+            snapshot = ModelSnapshot.read(path);
+        } catch (IOException e) {
+            System.out.println("Impossibile caricare la partita salvata: " + e.getMessage());
+            return;
+        }
+        rewindBuffer.clear();
+        restore(snapshot);
+    }
+
+    /**
+     * Goes back by REWIND_STEP_SECONDS, or to the oldest keyframe in the RewindBuffer, and draws the level
+     * on a new GameView. The ticks played again by the RewindBuffer aren't shown by the old view
+     * and aren't recorded again; the replay forgets the actions from the tick the level goes back to
+     */
+    private void rewind() {
+        stopEngine();
+        model.unsubscribeAll();
+        engine.setActionListener(null);
+        if (rewindBuffer.rewind(engine, REWIND_STEP_SECONDS * tickRate) && recorder != null) {
+            recorder.truncate(engine.getTick());
+        }
+        inputQueue.clear();
+        showGame();
+        startLoop();
+    }
+
+    /**
+     * Restores the level from a snapshot and draws it on a new GameView.
+     * The replay of the match isn't recorded anymore, since it can't start from a snapshot
+     */
+    private void restore(ModelSnapshot snapshot) {
+        stopEngine();
+        try {
+            snapshot.restore(engine);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Impossibile ripristinare la partita: " + e.getMessage());
+            gameLoop.start();
+            return;
+        }
+        recorder = null;
+        replayInvalidated = true;
+        inputQueue.clear();
+        showGame();
+        startLoop();
+    }
+
+    /**
+     * @return the path of the saved level, that can be changed with the jbomberman.save property
+     */
+    private static String getSavePath() {
+        return System.getProperty("jbomberman.save", System.getProperty("user.home") + File.separator + "jbomberman-save.jbs");
+    }
+
+    //############## SERVER MATCH ###############//
+
+    /**
+     * Plays the match of a GameServer instead of a local one: the levels sent by the server are drawn
+     * on a GameView and the keys send the actions of the player to the server, see ClientLoop
+     * @param host the host of the server
+     * @param port the port of the server
+     */
+    public void connect(String host, int port) {
+        try {
+            client = GameClient.connect(host, port);
+        } catch (IOException e) {
+            System.out.println("Impossibile connettersi al server " + host + ":" + port + ": " + e.getMessage());
+            return;
+        }
+        if (BackgroundMusic.isMenuPlaying()) {
+            BackgroundMusic.stopMenuMusic();
+        }
+        BackgroundMusic.playGameMusic();
+        clientLoop = new ClientLoop(client, this::showServerLevel, this::disconnect);
+        clientLoop.start();
+    }
+
+    /**
+     * @return a new GameView for a level of the server, already shown
+     */
+    private GameView showServerLevel() {
+        gameView = new GameView();
+        gameView.setMetricsOverlayVisible(metricsOverlay);
+        scene.setRoot(gameView.getGame());
+        gameView.getFocus();
+        return gameView;
+    }
+
+    /**
+     * Leaves the match of the server, or forgets it if the server has closed the connection, and returns to the menu
+     */
+    private void disconnect() {
+        clientLoop.stop();
+        client.close();
+        clientLoop = null;
+        client = null;
+        if (BackgroundMusic.isPlaying()) {
+            BackgroundMusic.stopGameMusic();
+        }
+        scene.setRoot(menuView.getMenu());
+        BackgroundMusic.playMenuMusic();
+    }
+
     //############## LEADERBOARD ###############//
 
     /**
@@ -231,8 +562,16 @@ public class MainController {
         model.setPlayer(player);
     }
 
-    public List<User> loadLeaderboard() {
-        return model.getLeaderboard();
+    public int getLeaderboardSize() {
+        return model.getLeaderboardSize();
+    }
+
+    public List<User> getLeaderboardPage(int offset, int limit) {
+        return model.getLeaderboardPage(offset, limit);
+    }
+
+    public int getLeaderboardRank(String name) {
+        return model.getLeaderboardRank(name);
     }
 
     public void stopMusic(){
@@ -247,6 +586,23 @@ public class MainController {
     public void gameExit() {
         stage.close();
     }
+
+    /**
+     * Waits for the last save of the leaderboard before the application exits, for a few seconds at most
+     */
+    public void shutdown() {
+        if (client != null) {
+            client.close();
+        }
+        saveReplay();
+        try {
+            model.save().get(SAVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            System.out.println("Il salvataggio della classifica non è stato completato: " + e.getMessage());
+        }
+    }
     //##################### TEST ####################//
 
     //TODO remove after test
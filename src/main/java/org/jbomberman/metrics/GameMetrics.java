@@ -0,0 +1,318 @@
+package org.jbomberman.metrics;
+
+import org.jbomberman.model.GameEngine;
+import org.jbomberman.utils.UpdateType;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The GameMetrics measure where the time of a frame goes: the ticks of the model (and the explosions and the
+ * enemies in them), the updates of the view, the pulses of JavaFX, the pauses of the garbage collector and
+ * the size of the scene graph. They are recorded by the JavaFX thread, except the pauses of the garbage
+ * collector, and read through JMX (see GameMetricsMXBean) or shown by the overlay of the GameView (F3).
+ * The time spent by the view in the updates published during a phase of the model is subtracted from the
+ * phase, so that the model and the view are measured separately.
+ */
+public class GameMetrics implements GameMetricsMXBean, GameEngine.Profiler {
+
+    public static final String OBJECT_NAME = "org.jbomberman:type=GameMetrics";
+
+    // A frame longer than this is counted as long: at 60 Hz it means that at least a frame has been dropped
+    public static final long LONG_FRAME_MILLIS = 25;
+
+    // The longest duration counted by the histograms
+    private static final long MAX_DURATION = 10_000_000_000L;
+
+    // The type of the notifications of the garbage collectors, see com.sun.management.GarbageCollectionNotificationInfo
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+    private static final UpdateType[] UPDATE_TYPES = UpdateType.values();
+
+    private final Histogram tickTime = new Histogram(MAX_DURATION);
+    private final Histogram modelTime = new Histogram(MAX_DURATION);
+    private final Map<GameEngine.Phase, Histogram> phaseTimes = new EnumMap<>(GameEngine.Phase.class);
+    private final Histogram viewTime = new Histogram(MAX_DURATION);
+    private final Histogram notificationsPerTick = new Histogram(1_000_000);
+    private final AtomicLongArray notificationsByType = new AtomicLongArray(UPDATE_TYPES.length);
+    private final Histogram frameInterval = new Histogram(MAX_DURATION);
+    private final Histogram pulseTime = new Histogram(MAX_DURATION);
+    private final Histogram layoutTime = new Histogram(MAX_DURATION);
+    private final Histogram gcPauses = new Histogram(MAX_DURATION);
+
+    private volatile long longFrames = 0;
+    private volatile int sceneNodes = 0;
+
+    // The tick being measured, used only by the JavaFX thread
+    private long tickStartedAt = 0;
+    private long viewNanosInTick = 0;
+    private int notificationsInTick = 0;
+
+    // When every phase started, minus the time of the view until then
+    private final long[] phaseStartedAt = new long[GameEngine.Phase.values().length];
+
+    // The frame being measured: when it started and when the layout of the scene started, 0 if they haven't
+    private long lastFrameAt = 0;
+    private long frameStartedAt = 0;
+    private long layoutStartedAt = 0;
+
+    public GameMetrics() {
+        for (GameEngine.Phase phase : GameEngine.Phase.values()) {
+            phaseTimes.put(phase, new Histogram(MAX_DURATION));
+        }
+    }
+
+    /**
+     * Publishes the metrics through JMX and starts receiving the pauses of the garbage collectors
+     * @throws JMException if they have already been published
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, new ObjectName(OBJECT_NAME));
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener((notification, handback) -> garbageCollected(notification),
+                        notification -> GC_NOTIFICATION.equals(notification.getType()), null);
+            }
+        }
+    }
+
+    //################# RECORDING #################//
+
+    /**
+     * Called by the GameLoop at the beginning of a frame of JavaFX
+     */
+    public void frameStarted(long now) {
+        if (lastFrameAt != 0) {
+            long interval = now - lastFrameAt;
+            frameInterval.record(interval);
+            if (interval > LONG_FRAME_MILLIS * 1_000_000) {
+                longFrames++;
+            }
+        }
+        lastFrameAt = now;
+        frameStartedAt = now;
+    }
+
+    /**
+     * Called when the game stops drawing frames, e.g. when it's paused, so that the time in between isn't a frame
+     */
+    public void framesStopped() {
+        lastFrameAt = 0;
+        frameStartedAt = 0;
+    }
+
+    /**
+     * Called before the CSS and the layout of the scene, in every pulse
+     */
+    public void layoutStarted(long now) {
+        layoutStartedAt = now;
+    }
+
+    /**
+     * Called after the layout of the scene: it ends the pulse started by frameStarted(), if there is one
+     */
+    public void layoutEnded(long now) {
+        if (frameStartedAt == 0) {
+            return;
+        }
+        if (layoutStartedAt != 0) {
+            layoutTime.record(now - layoutStartedAt);
+        }
+        pulseTime.record(now - frameStartedAt);
+        frameStartedAt = 0;
+        layoutStartedAt = 0;
+    }
+
+    public void tickStarted() {
+        tickStartedAt = System.nanoTime();
+        viewNanosInTick = 0;
+        notificationsInTick = 0;
+    }
+
+    public void tickEnded() {
+        long duration = System.nanoTime() - tickStartedAt;
+        tickTime.record(duration);
+        modelTime.record(duration - viewNanosInTick);
+        viewTime.record(viewNanosInTick);
+        notificationsPerTick.record(notificationsInTick);
+    }
+
+    /**
+     * Called by the view after every update of the model
+     * @param type the type of the update
+     * @param nanos the time the view spent on it
+     */
+    public void updateHandled(UpdateType type, long nanos) {
+        viewNanosInTick += nanos;
+        notificationsInTick++;
+        notificationsByType.incrementAndGet(type.ordinal());
+    }
+
+    @Override
+    public void phaseStarted(GameEngine.Phase phase) {
+        phaseStartedAt[phase.ordinal()] = System.nanoTime() - viewNanosInTick;
+    }
+
+    @Override
+    public void phaseEnded(GameEngine.Phase phase) {
+        phaseTimes.get(phase).record(System.nanoTime() - viewNanosInTick - phaseStartedAt[phase.ordinal()]);
+    }
+
+    public void setSceneNodes(int sceneNodes) {
+        this.sceneNodes = sceneNodes;
+    }
+
+    /**
+     * Records the duration of a pause, from the notification of a garbage collector. The concurrent
+     * cycles don't stop the game and are skipped
+     */
+    private void garbageCollected(Notification notification) {
+        if (!(notification.getUserData() instanceof CompositeData data)) {
+            return;
+        }
+        String name = String.valueOf(data.get("gcName"));
+        if (name.contains("Concurrent") || name.contains("Cycles")) {
+            return;
+        }
+        if (data.get("gcInfo") instanceof CompositeData info && info.get("duration") instanceof Long millis) {
+            gcPauses.record(millis * 1_000_000);
+        }
+    }
+
+    @Override
+    public void reset() {
+        tickTime.reset();
+        modelTime.reset();
+        phaseTimes.values().forEach(Histogram::reset);
+        viewTime.reset();
+        notificationsPerTick.reset();
+        for (int i = 0; i < notificationsByType.length(); i++) {
+            notificationsByType.set(i, 0);
+        }
+        frameInterval.reset();
+        pulseTime.reset();
+        layoutTime.reset();
+        gcPauses.reset();
+        longFrames = 0;
+    }
+
+    //################# OVERLAY #################//
+
+    /**
+     * @return the main metrics on a few lines, for the overlay of the GameView
+     */
+    public String format() {
+        StringBuilder text = new StringBuilder();
+        line(text, "tick", tickTime.summary(1e3), "us");
+        line(text, " model", modelTime.summary(1e3), "us");
+        line(text, "  explosions", phaseTimes.get(GameEngine.Phase.EXPLOSIONS).summary(1e3), "us");
+        line(text, "  enemies", phaseTimes.get(GameEngine.Phase.ENEMIES).summary(1e3), "us");
+        line(text, " view", viewTime.summary(1e3), "us");
+        line(text, "pulse", pulseTime.summary(1e3), "us");
+        line(text, " layout", layoutTime.summary(1e3), "us");
+        line(text, "frame", frameInterval.summary(1e6), "ms");
+        line(text, "gc pause", gcPauses.summary(1e6), "ms");
+        text.append(String.format("long frames %d, nodes %d, updates/tick %.2f", longFrames, sceneNodes, notificationsPerTick.getMean()));
+
+        // The three types of update most published
+        long ticks = Math.max(1, tickTime.getCount());
+        Map<String, Long> byType = getNotificationsByType();
+        byType.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0)
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(3)
+                .forEach(entry -> text.append(String.format("%n %s %.2f/tick", entry.getKey(), (double) entry.getValue() / ticks)));
+        return text.toString();
+    }
+
+    private static void line(StringBuilder text, String name, Histogram.Summary summary, String unit) {
+        text.append(String.format("%-12s avg %7.1f  p99 %7.1f  max %7.1f %s%n", name, summary.getMean(), summary.getP99(), summary.getMax(), unit));
+    }
+
+    //############ GameMetrics GETTERS #############//
+
+    @Override
+    public long getTicks() {
+        return tickTime.getCount();
+    }
+
+    @Override
+    public Histogram.Summary getTickMicros() {
+        return tickTime.summary(1e3);
+    }
+
+    @Override
+    public Histogram.Summary getModelMicros() {
+        return modelTime.summary(1e3);
+    }
+
+    @Override
+    public Histogram.Summary getExplosionsMicros() {
+        return phaseTimes.get(GameEngine.Phase.EXPLOSIONS).summary(1e3);
+    }
+
+    @Override
+    public Histogram.Summary getEnemiesMicros() {
+        return phaseTimes.get(GameEngine.Phase.ENEMIES).summary(1e3);
+    }
+
+    @Override
+    public Histogram.Summary getViewUpdateMicros() {
+        return viewTime.summary(1e3);
+    }
+
+    @Override
+    public Histogram.Summary getNotificationsPerTick() {
+        return notificationsPerTick.summary(1);
+    }
+
+    @Override
+    public Map<String, Long> getNotificationsByType() {
+        Map<String, Long> byType = new LinkedHashMap<>();
+        for (UpdateType type : UPDATE_TYPES) {
+            byType.put(type.name(), notificationsByType.get(type.ordinal()));
+        }
+        return byType;
+    }
+
+    @Override
+    public Histogram.Summary getFrameIntervalMillis() {
+        return frameInterval.summary(1e6);
+    }
+
+    @Override
+    public long getLongFrames() {
+        return longFrames;
+    }
+
+    @Override
+    public Histogram.Summary getPulseMicros() {
+        return pulseTime.summary(1e3);
+    }
+
+    @Override
+    public Histogram.Summary getLayoutMicros() {
+        return layoutTime.summary(1e3);
+    }
+
+    @Override
+    public Histogram.Summary getGcPauseMillis() {
+        return gcPauses.summary(1e6);
+    }
+
+    @Override
+    public int getSceneNodes() {
+        return sceneNodes;
+    }
+}
@@ -0,0 +1,85 @@
+package org.jbomberman.metrics;
+
+import java.util.Map;
+
+/**
+ * The metrics of the game published through JMX (e.g. in JConsole or VisualVM) under GameMetrics.OBJECT_NAME.
+ * The durations are summarized by their count, mean, percentiles and maximum since the start or the last reset()
+ */
+public interface GameMetricsMXBean {
+
+    /**
+     * @return the ticks of the engine measured
+     */
+    long getTicks();
+
+    /**
+     * @return the duration of a tick: the actions of the player and the step of the engine, with the updates of the view
+     */
+    Histogram.Summary getTickMicros();
+
+    /**
+     * @return the duration of a tick without the updates of the view, i.e. the time of the model
+     */
+    Histogram.Summary getModelMicros();
+
+    /**
+     * @return the duration of the explosions of the bombs in a tick (MainModel.explodeBombs()), without the updates of the view
+     */
+    Histogram.Summary getExplosionsMicros();
+
+    /**
+     * @return the duration of the movement of the enemies (MainModel.moveEnemies()), without the updates of the view
+     */
+    Histogram.Summary getEnemiesMicros();
+
+    /**
+     * @return the time spent by the GameView in the updates of a tick
+     */
+    Histogram.Summary getViewUpdateMicros();
+
+    /**
+     * @return the number of updates published by the model in a tick
+     */
+    Histogram.Summary getNotificationsPerTick();
+
+    /**
+     * @return the updates published by the model for every UpdateType, divided by getTicks() they are the updates per tick
+     */
+    Map<String, Long> getNotificationsByType();
+
+    /**
+     * @return the time between two frames of JavaFX, that is longer than a refresh of the screen when a frame is dropped
+     */
+    Histogram.Summary getFrameIntervalMillis();
+
+    /**
+     * @return the frames that took longer than LONG_FRAME_MILLIS
+     */
+    long getLongFrames();
+
+    /**
+     * @return the duration of the pulse of JavaFX, from the beginning of the GameLoop to the end of the layout (the rendering isn't included)
+     */
+    Histogram.Summary getPulseMicros();
+
+    /**
+     * @return the duration of the CSS and of the layout of the scene in a pulse
+     */
+    Histogram.Summary getLayoutMicros();
+
+    /**
+     * @return the duration of the pauses of the garbage collector (with a resolution of a millisecond)
+     */
+    Histogram.Summary getGcPauseMillis();
+
+    /**
+     * @return the number of nodes of the scene graph of the game, counted every second
+     */
+    int getSceneNodes();
+
+    /**
+     * Forgets all the metrics
+     */
+    void reset();
+}
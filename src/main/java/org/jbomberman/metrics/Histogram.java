@@ -0,0 +1,178 @@
+package org.jbomberman.metrics;
+
+import javax.management.openmbean.CompositeData;
+import java.util.Arrays;
+
+/**
+ * A Histogram counts values (e.g. durations in nanoseconds) in buckets of logarithmic size, like
+ * HdrHistogram: the values below 128 have a bucket each, then every power of two is split in 64
+ * buckets, so any percentile is known with an error below 1.6% of the value in a fixed amount of memory
+ * (about 16 KB for a minute in nanoseconds). Recording a value is a few instructions and never allocates.
+ * The methods are synchronized, so the values can be recorded by a thread and read by another one
+ * (e.g. by JMX).
+ */
+public class Histogram {
+
+    // The values below LINEAR have a bucket each, then every power of two has SUB_BUCKETS buckets
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR = SUB_BUCKETS * 2;
+
+    private final long highestTrackableValue;
+    private final long[] counts;
+
+    private long count = 0;
+    private long total = 0;
+    private long max = 0;
+
+    /**
+     * The summary of a Histogram at a given moment, converted in a unit (e.g. from nanoseconds to microseconds)
+     */
+    public static final class Summary {
+        private final long count;
+        private final double mean;
+        private final double p50;
+        private final double p90;
+        private final double p99;
+        private final double p999;
+        private final double max;
+
+        public Summary(long count, double mean, double p50, double p90, double p99, double p999, double max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        /**
+         * Rebuilds a summary read through JMX
+         */
+        public static Summary from(CompositeData data) {
+            return new Summary((Long) data.get("count"), (Double) data.get("mean"), (Double) data.get("p50"),
+                    (Double) data.get("p90"), (Double) data.get("p99"), (Double) data.get("p999"), (Double) data.get("max"));
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public double getP90() {
+            return p90;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+
+        public double getP999() {
+            return p999;
+        }
+
+        public double getMax() {
+            return max;
+        }
+    }
+
+    /**
+     * @param highestTrackableValue the highest value counted, the higher ones are counted as this one
+     */
+    public Histogram(long highestTrackableValue) {
+        if (highestTrackableValue < 1) {
+            throw new IllegalArgumentException("The highest trackable value must be positive: " + highestTrackableValue);
+        }
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new long[index(highestTrackableValue) + 1];
+    }
+
+    /**
+     * Counts a value; the negative ones are counted as 0
+     */
+    public synchronized void record(long value) {
+        value = Math.min(Math.max(value, 0), highestTrackableValue);
+        counts[index(value)]++;
+        count++;
+        total += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Forgets all the values
+     */
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return the highest value of the bucket that contains the given percentile of the values, 0 if there aren't any
+     */
+    public synchronized long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * @param unit the values of the histogram in a unit of the summary, e.g. 1000 from nanoseconds to microseconds
+     * @return the count, the mean, the main percentiles and the maximum
+     */
+    public synchronized Summary summary(double unit) {
+        return new Summary(count, getMean() / unit, getValueAtPercentile(50) / unit, getValueAtPercentile(90) / unit,
+                getValueAtPercentile(99) / unit, getValueAtPercentile(99.9) / unit, max / unit);
+    }
+
+    /**
+     * @return the bucket of a value: the value itself below LINEAR, then SUB_BUCKETS buckets for every power of two
+     */
+    private static int index(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index - (long) shift * SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,29 @@
+package org.jbomberman.model;
+
+import org.jbomberman.utils.Direction;
+
+/**
+ * The actions that the player can perform, independently of the input device
+ */
+public enum Action {
+    UP(Direction.UP),
+    DOWN(Direction.DOWN),
+    LEFT(Direction.LEFT),
+    RIGHT(Direction.RIGHT),
+    BOMB(null);
+
+    // The direction of the movement, null if the action is not a movement
+    private final Direction direction;
+
+    Action(Direction direction) {
+        this.direction = direction;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public boolean isMovement() {
+        return direction != null;
+    }
+}
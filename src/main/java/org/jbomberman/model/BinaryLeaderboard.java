@@ -0,0 +1,189 @@
+package org.jbomberman.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A read-only leaderboard stored in a compact binary file, that is memory mapped instead of parsed:
+ * opening it reads only the header, and a user is decoded only when it's requested by rank.
+ * The file is made of:
+ * - the header: the magic number "JBLB", the version and the number of users
+ * - the records, one for each user in ranking order, of RECORD_SIZE bytes: score, level and
+ *   the position of the name in the file
+ * - the name table, where every name is stored as an unsigned short length followed by its UTF-8 bytes
+ * All the numbers are big endian. A JSON leaderboard can be converted with the main method.
+ */
+public class BinaryLeaderboard extends AbstractList<User> {
+
+    private static final int MAGIC = 0x4A424C42;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 12;
+    public static final int RECORD_SIZE = 12;
+
+    private final ByteBuffer buffer;
+    private final int size;
+
+    private BinaryLeaderboard(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary leaderboard");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported version of the binary leaderboard: " + buffer.getInt(4));
+        }
+        size = buffer.getInt(8);
+        if (size < 0 || HEADER_SIZE + (long) size * RECORD_SIZE > buffer.capacity()) {
+            throw new IOException("The binary leaderboard is truncated");
+        }
+    }
+
+    /**
+     * Maps the file in memory, reading only its header
+     * @param path the path of the file
+     * @return the leaderboard
+     * @throws IOException if the file can't be read or it's not a binary leaderboard
+     */
+    public static BinaryLeaderboard open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The binary leaderboard is too large: " + channel.size() + " bytes");
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new BinaryLeaderboard(mapped);
+        }
+    }
+
+    /**
+     * Writes the users in a binary leaderboard, through a temporary file that then replaces the old one
+     * @param path the path of the file
+     * @param users the users, in ranking order
+     * @throws IOException if the file can't be written
+     */
+    public static void write(Path path, Collection<User> users) throws IOException {
+        byte[][] names = new byte[users.size()][];
+        long nameTableSize = 0;
+        int i = 0;
+        for (User user : users) {
+            names[i] = user.name().getBytes(StandardCharsets.UTF_8);
+            if (names[i].length > 0xFFFF) {
+                throw new IllegalArgumentException("The name is too long: " + user.name());
+            }
+            nameTableSize += 2 + names[i].length;
+            i++;
+        }
+        long nameTable = HEADER_SIZE + (long) users.size() * RECORD_SIZE;
+        if (nameTable + nameTableSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many users for a binary leaderboard: " + users.size());
+        }
+
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(users.size());
+
+                int nameOffset = (int) nameTable;
+                i = 0;
+                for (User user : users) {
+                    out.writeInt(user.score());
+                    out.writeInt(user.level());
+                    out.writeInt(nameOffset);
+                    nameOffset += 2 + names[i].length;
+                    i++;
+                }
+                for (byte[] name : names) {
+                    out.writeShort(name.length);
+                    out.write(name);
+                }
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Decodes the user at the given rank
+     * @param rank the rank of the user, starting from 0
+     * @return the user
+     */
+    @Override
+    public User get(int rank) {
+        if (rank < 0 || rank >= size) {
+            throw new IndexOutOfBoundsException(rank);
+        }
+        int record = HEADER_SIZE + rank * RECORD_SIZE;
+        return new User(getName(buffer.getInt(record + 8)), buffer.getInt(record), buffer.getInt(record + 4));
+    }
+
+    /**
+     * @param rank the rank of the user, starting from 0
+     * @return the score of the user, without decoding his name
+     */
+    public int getScore(int rank) {
+        if (rank < 0 || rank >= size) {
+            throw new IndexOutOfBoundsException(rank);
+        }
+        return buffer.getInt(HEADER_SIZE + rank * RECORD_SIZE);
+    }
+
+    private String getName(int offset) {
+        int length = Short.toUnsignedInt(buffer.getShort(offset));
+        byte[] bytes = new byte[length];
+        buffer.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param offset the rank of the first user, starting from 0
+     * @param limit the maximum number of users
+     * @return the users from offset to offset + limit, decoded when they are read
+     */
+    public List<User> page(int offset, int limit) {
+        int from = Math.min(offset, size);
+        return subList(from, (int) Math.min((long) from + limit, size));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Converts a JSON leaderboard (with its log, if there is one) in a binary leaderboard
+     * Usage: BinaryLeaderboard leaderboard.json leaderboard.bin
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: BinaryLeaderboard <leaderboard.json> <leaderboard.bin>");
+            return;
+        }
+        long start = System.nanoTime();
+        LeaderboardStore store = new LeaderboardStore(Path.of(args[0]));
+        store.load();
+        write(Path.of(args[1]), store.top(store.size()));
+        System.out.printf("%d users converted in %.1f ms%n", store.size(), (System.nanoTime() - start) / 1e6);
+    }
+}
@@ -0,0 +1,302 @@
+package org.jbomberman.model;
+
+import org.jbomberman.utils.Coordinate;
+import org.jbomberman.utils.Direction;
+import org.jbomberman.utils.Triad;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The BombTable keeps the bombs that are on the map, each one with its own range and the tick
+ * at which its fuse ends.
+ * The bombs are stored in parallel arrays, packed at the beginning: a removed bomb is replaced
+ * by the last one, and every tile of the map knows the slot of its bomb, so that adding, finding
+ * and removing a bomb take constant time.
+ * When some fuses end, detonate() resolves the chain reaction with a single breadth-first visit:
+ * a bomb reached by a blast is removed from the table and queued, so that it explodes in the
+ * same tick and it's visited only once. The blasts are merged in a single list with one Triad
+ * for every tile, that is marked with a stamp instead of being searched in the list.
+ */
+public class BombTable {
+
+    // The number of bombs the arrays can hold before growing
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final Direction[] DIRECTIONS = {Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT};
+
+    private final TileGrid grid;
+
+    // The Coordinate of every tile of the map, indexed like the grid
+    private final Coordinate[] tileCoordinates;
+
+    // The bombs: the index of their tile, their range, the tick of their explosion and the player who released them
+    private int[] tiles = new int[INITIAL_CAPACITY];
+    private int[] ranges = new int[INITIAL_CAPACITY];
+    private long[] explodeAt = new long[INITIAL_CAPACITY];
+    private int[] owners = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // The slot of the bomb on every tile of the map, -1 if there isn't one
+    private final int[] slotByTile;
+
+    // The first tick at which a bomb explodes, Long.MAX_VALUE if there are no bombs
+    private long nextExplosion = Long.MAX_VALUE;
+
+    // The bombs that explode in the current detonation, in the order they are reached
+    private int[] queueTiles = new int[INITIAL_CAPACITY];
+    private int[] queueRanges = new int[INITIAL_CAPACITY];
+
+    // The position in the blast of every tile, valid only where the stamp is the one of the current detonation
+    private final int[] blastStamps;
+    private final int[] blastPositions;
+    private int stamp = 0;
+
+    /**
+     * @param grid the grid of the map, where the BOMB flag of the tiles is kept up to date
+     * @param tileCoordinates the Coordinate of every tile of the map, indexed like the grid
+     */
+    public BombTable(TileGrid grid, Coordinate[] tileCoordinates) {
+        this.grid = grid;
+        this.tileCoordinates = tileCoordinates;
+        int tileCount = grid.getWidth() * grid.getHeight();
+        slotByTile = new int[tileCount];
+        Arrays.fill(slotByTile, -1);
+        blastStamps = new int[tileCount];
+        blastPositions = new int[tileCount];
+    }
+
+    /**
+     * Puts a bomb of the first player on a tile
+     * @param range the number of tiles reached by the blast in every direction
+     * @param explodeAt the tick at which the fuse ends
+     * @return false if there is already a bomb on the tile
+     */
+    public boolean add(int x, int y, int range, long explodeAt) {
+        return add(x, y, range, explodeAt, 0);
+    }
+
+    /**
+     * Puts a bomb on a tile
+     * @param range the number of tiles reached by the blast in every direction
+     * @param explodeAt the tick at which the fuse ends
+     * @param owner the number of the player who released the bomb
+     * @return false if there is already a bomb on the tile
+     */
+    public boolean add(int x, int y, int range, long explodeAt, int owner) {
+        int tile = grid.index(x, y);
+        if (slotByTile[tile] >= 0) {
+            return false;
+        }
+        if (size == tiles.length) {
+            int capacity = size * 2;
+            tiles = Arrays.copyOf(tiles, capacity);
+            ranges = Arrays.copyOf(ranges, capacity);
+            this.explodeAt = Arrays.copyOf(this.explodeAt, capacity);
+            owners = Arrays.copyOf(owners, capacity);
+            queueTiles = new int[capacity];
+            queueRanges = new int[capacity];
+        }
+        tiles[size] = tile;
+        ranges[size] = range;
+        this.explodeAt[size] = explodeAt;
+        owners[size] = owner;
+        slotByTile[tile] = size;
+        size++;
+        grid.set(x, y, TileGrid.BOMB);
+        nextExplosion = Math.min(nextExplosion, explodeAt);
+        return true;
+    }
+
+    /**
+     * Explodes the bombs whose fuse ends at the given tick, together with all the bombs reached by their blasts
+     * @param tick the current tick
+     * @return the tiles reached by all the blasts, one Triad for each tile (CENTER for the exploded bombs);
+     *         an empty list if no fuse ends at the given tick
+     */
+    public List<Triad> detonate(long tick) {
+        if (tick < nextExplosion) {
+            return List.of();
+        }
+        nextStamp();
+
+        // The bombs whose fuse ends start the chain; the slots are visited backwards because
+        // a removal moves the last bomb, that has already been visited, in the removed slot
+        int tail = 0;
+        for (int slot = size - 1; slot >= 0; slot--) {
+            if (explodeAt[slot] <= tick) {
+                queueTiles[tail] = tiles[slot];
+                queueRanges[tail] = ranges[slot];
+                tail++;
+                remove(slot);
+            }
+        }
+
+        List<Triad> blast = new ArrayList<>();
+        int width = grid.getWidth();
+        for (int head = 0; head < tail; head++) {
+            int tile = queueTiles[head];
+            int range = queueRanges[head];
+            int x = tile % width;
+            int y = tile / width;
+            addToBlast(blast, tile, Direction.CENTER, true);
+            for (Direction direction : DIRECTIONS) {
+                int length = Math.min(range, grid.getRay(x, y, direction));
+                for (int distance = 1; distance <= length; distance++) {
+                    int reached = grid.index(x + direction.getDx() * distance, y + direction.getDy() * distance);
+                    addToBlast(blast, reached, direction, distance == range);
+                    int slot = slotByTile[reached];
+                    if (slot >= 0) {
+                        // The bomb explodes in this tick, after the ones already queued
+                        queueTiles[tail] = reached;
+                        queueRanges[tail] = ranges[slot];
+                        tail++;
+                        remove(slot);
+                    }
+                }
+            }
+        }
+
+        nextExplosion = Long.MAX_VALUE;
+        for (int slot = 0; slot < size; slot++) {
+            nextExplosion = Math.min(nextExplosion, explodeAt[slot]);
+        }
+        return blast;
+    }
+
+    /**
+     * Adds a tile to the blast, or updates the Triad of a tile reached by more than one blast:
+     * the center of a bomb prevails over the rest, and the middle of a ray over its end
+     */
+    private void addToBlast(List<Triad> blast, int tile, Direction direction, boolean isLast) {
+        if (blastStamps[tile] != stamp) {
+            blastStamps[tile] = stamp;
+            blastPositions[tile] = blast.size();
+            blast.add(new Triad(tileCoordinates[tile], direction, isLast));
+            return;
+        }
+        Triad existing = blast.get(blastPositions[tile]);
+        if (existing.direction() == Direction.CENTER) {
+            return;
+        }
+        if (direction == Direction.CENTER || (existing.isLast() && !isLast)) {
+            blast.set(blastPositions[tile], new Triad(tileCoordinates[tile], direction, isLast));
+        }
+    }
+
+    private void nextStamp() {
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(blastStamps, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Removes the bomb in the given slot, moving the last bomb in its place
+     */
+    private void remove(int slot) {
+        int tile = tiles[slot];
+        slotByTile[tile] = -1;
+        grid.unset(tile % grid.getWidth(), tile / grid.getWidth(), TileGrid.BOMB);
+        size--;
+        if (slot < size) {
+            tiles[slot] = tiles[size];
+            ranges[slot] = ranges[size];
+            explodeAt[slot] = explodeAt[size];
+            owners[slot] = owners[size];
+            slotByTile[tiles[slot]] = slot;
+        }
+    }
+
+    /**
+     * Removes all the bombs
+     */
+    public void clear() {
+        while (size > 0) {
+            remove(size - 1);
+        }
+        nextExplosion = Long.MAX_VALUE;
+    }
+
+    //############ BombTable GETTERS #############//
+
+    /**
+     * @return the number of bombs on the map
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return true if there is a bomb in the given position
+     */
+    public boolean contains(int x, int y) {
+        return slotOf(x, y) >= 0;
+    }
+
+    /**
+     * @return the slot of the bomb in the given position, -1 if there isn't one
+     */
+    public int slotOf(int x, int y) {
+        return grid.isInside(x, y) ? slotByTile[grid.index(x, y)] : -1;
+    }
+
+    /**
+     * @param slot the slot of the bomb, from 0 to size() - 1; the slots change when a bomb explodes
+     * @return the position of the bomb
+     */
+    public Coordinate getCoordinate(int slot) {
+        return tileCoordinates[tiles[slot]];
+    }
+
+    /**
+     * @param slot the slot of the bomb, from 0 to size() - 1
+     * @return the range of the bomb
+     */
+    public int getRange(int slot) {
+        return ranges[slot];
+    }
+
+    /**
+     * @param slot the slot of the bomb, from 0 to size() - 1
+     * @return the tick at which the fuse of the bomb ends
+     */
+    public long getExplodeAt(int slot) {
+        return explodeAt[slot];
+    }
+
+    /**
+     * @param slot the slot of the bomb, from 0 to size() - 1
+     * @return the number of the player who released the bomb
+     */
+    public int getOwner(int slot) {
+        return owners[slot];
+    }
+
+    /**
+     * @param owner the number of a player
+     * @return the number of bombs of the player that are on the map
+     */
+    public int countOwnedBy(int owner) {
+        int count = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (owners[slot] == owner) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the first tick at which a bomb explodes, Long.MAX_VALUE if there are no bombs
+     */
+    public long getNextExplosion() {
+        return nextExplosion;
+    }
+}
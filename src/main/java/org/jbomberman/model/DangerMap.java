@@ -0,0 +1,151 @@
+package org.jbomberman.model;
+
+import org.jbomberman.utils.Direction;
+import org.jbomberman.utils.Triad;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The DangerMap holds, for every tile of the map, the tick at which the first blast of the bombs
+ * on the map will reach it, so that the enemies and the automated players can check in constant time
+ * if a tile is about to explode.
+ * The blasts follow the same rules of BombTable.detonate(): they propagate from the bomb for its range
+ * and stop before the first fixed block. A bomb reached by an earlier blast explodes with it, so its
+ * own blast is painted with the earlier tick too.
+ * The map is kept up to date by the model at every change of the bombs: a new bomb paints only its
+ * blast, and the bombs whose explosion it anticipates; the explosion clears only the tiles that
+ * have been hit, and repaints the blasts of the remaining bombs.
+ */
+public class DangerMap {
+
+    // The tick of the tiles that no blast will reach
+    public static final long NEVER = Long.MAX_VALUE;
+
+    private static final Direction[] DIRECTIONS = {Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT};
+
+    private final TileGrid grid;
+    private final BombTable bombs;
+
+    private final long[] blastAt;
+
+    // The tiles of the bombs whose blast must be painted again with an earlier tick,
+    // in a circular queue where every tile appears at most once
+    private final int[] queue;
+    private final boolean[] queued;
+    private int head = 0;
+    private int count = 0;
+
+    /**
+     * @param grid the grid of the map
+     * @param bombs the bombs on the map
+     */
+    public DangerMap(TileGrid grid, BombTable bombs) {
+        this.grid = grid;
+        this.bombs = bombs;
+        int tileCount = grid.getWidth() * grid.getHeight();
+        blastAt = new long[tileCount];
+        queue = new int[tileCount];
+        queued = new boolean[tileCount];
+        Arrays.fill(blastAt, NEVER);
+    }
+
+    /**
+     * Paints the blast of a bomb just added to the BombTable. If the bomb is already in the blast of
+     * another one it explodes earlier than its fuse, and if its blast reaches a bomb that would explode
+     * later, that bomb explodes earlier too
+     */
+    public void bombAdded(int x, int y) {
+        int tile = grid.index(x, y);
+        blastAt[tile] = Math.min(blastAt[tile], bombs.getExplodeAt(bombs.slotOf(x, y)));
+        enqueue(tile);
+        while (count > 0) {
+            tile = queue[head];
+            queued[tile] = false;
+            head = (head + 1) % queue.length;
+            count--;
+            paint(tile % grid.getWidth(), tile / grid.getWidth(), true);
+        }
+    }
+
+    private void enqueue(int tile) {
+        if (!queued[tile]) {
+            queued[tile] = true;
+            queue[(head + count) % queue.length] = tile;
+            count++;
+        }
+    }
+
+    /**
+     * Clears the tiles hit by an explosion, then paints again the blasts of the bombs that are left,
+     * that could cover some of those tiles
+     * @param explosion the tiles hit by the explosion, as returned by BombTable.detonate()
+     */
+    public void bombsExploded(List<Triad> explosion) {
+        for (Triad triad : explosion) {
+            blastAt[grid.index(triad.coordinate().x(), triad.coordinate().y())] = NEVER;
+        }
+        // The bombs left weren't reached by the explosion, so the tick of their blast hasn't changed
+        for (int slot = 0; slot < bombs.size(); slot++) {
+            paint(bombs.getCoordinate(slot).x(), bombs.getCoordinate(slot).y(), false);
+        }
+    }
+
+    /**
+     * Paints the blast of the bomb in the given position with the tick of its own tile
+     * @param chain if the bombs reached earlier than before have to be queued, to paint their blast again
+     */
+    private void paint(int x, int y, boolean chain) {
+        long tick = blastAt[grid.index(x, y)];
+        int range = bombs.getRange(bombs.slotOf(x, y));
+        for (Direction direction : DIRECTIONS) {
+            int length = Math.min(range, grid.getRay(x, y, direction));
+            for (int distance = 1; distance <= length; distance++) {
+                int reachedX = x + direction.getDx() * distance;
+                int reachedY = y + direction.getDy() * distance;
+                int reached = grid.index(reachedX, reachedY);
+                if (tick < blastAt[reached]) {
+                    blastAt[reached] = tick;
+                    if (chain && bombs.slotOf(reachedX, reachedY) >= 0) {
+                        enqueue(reached);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets all the blasts, it's used when the bombs are removed without exploding
+     */
+    public void clear() {
+        Arrays.fill(blastAt, NEVER);
+    }
+
+    //############ DangerMap GETTERS #############//
+
+    /**
+     * @return the tick at which a blast will reach the given position, NEVER if no blast will reach it
+     */
+    public long getBlastAt(int x, int y) {
+        if (!grid.isInside(x, y)) {
+            return NEVER;
+        }
+        return blastAt[grid.index(x, y)];
+    }
+
+    /**
+     * @return true if a blast will reach the given position
+     */
+    public boolean isDangerous(int x, int y) {
+        return getBlastAt(x, y) != NEVER;
+    }
+
+    /**
+     * @param tick the current tick
+     * @return the number of ticks before a blast reaches the given position, NEVER if no blast will reach it
+     */
+    public long getTicksUntilBlast(int x, int y, long tick) {
+        long at = getBlastAt(x, y);
+        return at == NEVER ? NEVER : Math.max(0, at - tick);
+    }
+}
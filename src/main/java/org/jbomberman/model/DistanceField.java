@@ -0,0 +1,167 @@
+package org.jbomberman.model;
+
+import java.util.Arrays;
+
+/**
+ * The DistanceField holds, for every tile of the map, the number of steps needed to walk
+ * to the nearest source tile (the positions of the players) without crossing the obstacles of the grid.
+ * It's computed with a breadth-first visit from the sources and shared by all the enemies:
+ * an enemy that hunts the player only has to look at the distances of its neighbours,
+ * so the cost of moving the enemies doesn't depend on the size of the map.
+ * The field is recomputed only when a source moves or a tile becomes an obstacle; when a tile
+ * stops being an obstacle (a block is destroyed or a bomb explodes) the distances can only
+ * decrease, so they are corrected with a visit that starts from that tile.
+ */
+public class DistanceField {
+
+    // The distance of the tiles that can't reach the source
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    // The number of opened tiles that are corrected one by one, more than these cause a full visit
+    private static final int MAX_OPENED = 64;
+
+    private final TileGrid grid;
+    private final int width;
+
+    private final int[] distances;
+    private final int[] queue;
+
+    // The indexes of the source tiles, none before the first update
+    private int[] sources = new int[1];
+    private int sourceCount = 0;
+
+    // The array given by update(x, y) to update(tiles, count), so that it doesn't allocate
+    private final int[] singleSource = new int[1];
+
+    // If a tile has become an obstacle since the last update
+    private boolean dirty = true;
+
+    // The tiles that have stopped being obstacles since the last update
+    private final int[] opened = new int[MAX_OPENED];
+    private int openedCount = 0;
+
+    /**
+     * @param grid the grid whose obstacles can't be crossed
+     */
+    public DistanceField(TileGrid grid) {
+        this.grid = grid;
+        this.width = grid.getWidth();
+        distances = new int[width * grid.getHeight()];
+        queue = new int[distances.length];
+        Arrays.fill(distances, UNREACHABLE);
+    }
+
+    /**
+     * Brings the distances up to date with the grid and the given source.
+     * It does nothing if neither the source nor the grid changed since the last update
+     * @return true if the distances have been recomputed from scratch
+     */
+    public boolean update(int x, int y) {
+        singleSource[0] = grid.index(x, y);
+        return update(singleSource, 1);
+    }
+
+    /**
+     * Brings the distances up to date with the grid and the given sources, in the same way of update(x, y)
+     * @param tiles the indexes of the source tiles on the grid, in a fixed order
+     * @param count the number of sources in the array
+     * @return true if the distances have been recomputed from scratch
+     */
+    public boolean update(int[] tiles, int count) {
+        if (dirty || openedCount > MAX_OPENED || !Arrays.equals(sources, 0, sourceCount, tiles, 0, count)) {
+            if (sources.length < count) {
+                sources = new int[count];
+            }
+            System.arraycopy(tiles, 0, sources, 0, count);
+            sourceCount = count;
+            dirty = false;
+            openedCount = 0;
+            Arrays.fill(distances, UNREACHABLE);
+            int tail = 0;
+            for (int i = 0; i < count; i++) {
+                // More players can stand on the same tile
+                if (distances[tiles[i]] != 0) {
+                    distances[tiles[i]] = 0;
+                    queue[tail++] = tiles[i];
+                }
+            }
+            visit(tail);
+            return true;
+        }
+        for (int i = 0; i < openedCount; i++) {
+            relaxOpened(opened[i]);
+        }
+        openedCount = 0;
+        return false;
+    }
+
+    /**
+     * Records that the tile in the given position is no longer an obstacle
+     */
+    public void open(int x, int y) {
+        if (openedCount < MAX_OPENED) {
+            opened[openedCount] = grid.index(x, y);
+        }
+        openedCount++;
+    }
+
+    /**
+     * Records that a tile has become an obstacle, so that the next update recomputes all the distances
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * @return the number of steps from the given position to the source, UNREACHABLE if there is no path
+     */
+    public int getDistance(int x, int y) {
+        if (!grid.isInside(x, y)) {
+            return UNREACHABLE;
+        }
+        return distances[grid.index(x, y)];
+    }
+
+    /**
+     * Gives an opened tile the distance of its nearest neighbour plus one, then spreads the shorter
+     * distances to the tiles around it
+     */
+    private void relaxOpened(int tile) {
+        if (grid.isObstacle(tile)) {
+            // It has been closed again, e.g. by another bomb
+            return;
+        }
+        int nearest = Math.min(Math.min(distances[tile - width], distances[tile + width]),
+                Math.min(distances[tile - 1], distances[tile + 1]));
+        if (nearest != UNREACHABLE && nearest + 1 < distances[tile]) {
+            distances[tile] = nearest + 1;
+            queue[0] = tile;
+            visit(1);
+        }
+    }
+
+    /**
+     * Breadth-first visit from the tiles in the queue, that only shortens the distances
+     * @param tail the number of tiles in the queue
+     */
+    private void visit(int tail) {
+        int head = 0;
+        while (head < tail) {
+            int tile = queue[head++];
+            int next = distances[tile] + 1;
+            // The tiles on the edges are fixed blocks, so the neighbours of a free tile are always inside
+            tail = relax(tile - width, next, tail);
+            tail = relax(tile + width, next, tail);
+            tail = relax(tile - 1, next, tail);
+            tail = relax(tile + 1, next, tail);
+        }
+    }
+
+    private int relax(int tile, int distance, int tail) {
+        if (distance < distances[tile] && !grid.isObstacle(tile)) {
+            distances[tile] = distance;
+            queue[tail++] = tile;
+        }
+        return tail;
+    }
+}
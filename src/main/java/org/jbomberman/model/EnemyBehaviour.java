@@ -0,0 +1,11 @@
+package org.jbomberman.model;
+
+/**
+ * How the enemies of a level choose their next tile
+ */
+public enum EnemyBehaviour {
+    // A random free tile next to the enemy
+    RANDOM,
+    // The free tile next to the enemy that is nearest to the player, following the DistanceField
+    HUNTER
+}
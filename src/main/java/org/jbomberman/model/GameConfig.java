@@ -0,0 +1,360 @@
+package org.jbomberman.model;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The GameConfig contains the parameters used by the MainModel to generate a level:
+ * the size of the map, the number of random blocks, enemies and coins, and the balance
+ * of the game (the points earned, the lives and the behaviour of the enemies).
+ * The instances are immutable and are created with the Builder.
+ */
+public class GameConfig {
+
+    public static final GameConfig DEFAULT = new Builder().build();
+
+    // The maximum number of players of a level, that all start from the spawn corner
+    public static final int MAX_PLAYERS = 16;
+
+    // The maximum width and height of the map, so that the arrays of the tiles always fit in memory
+    public static final int MAX_SIZE = 1001;
+
+    // The items that are always hidden behind the random blocks: exit door, bomb range, bomb capacity,
+    // life and invincibility power ups
+    private static final int NUMBER_OF_POWER_UPS_AND_DOOR = 5;
+
+    // The width and the height of the map, edges included
+    private final int width;
+    private final int height;
+
+    private final int numberOfRandomBlocks;
+    private final int numberOfEnemies;
+    private final int numberOfCoins;
+
+    private final int pointsForACoin;
+    private final int pointsForAnEnemy;
+
+    // The lives of an enemy are this value multiplied by the level
+    private final int enemyHpPerLevel;
+
+    // The range of the bomb at the beginning of every level
+    private final int bombRange;
+
+    // The number of bombs that can be on the map at the same time, at the beginning of every level
+    private final int bombCapacity;
+
+    // The behaviour of the enemies of every level, the last one is used also by the following levels
+    private final List<EnemyBehaviour> enemyBehaviours;
+
+    // The number of players that share the levels, 1 in the local game
+    private final int numberOfPlayers;
+
+    private GameConfig(Builder builder) {
+        width = builder.width;
+        height = builder.height;
+        numberOfEnemies = builder.numberOfEnemies;
+        numberOfCoins = builder.numberOfCoins;
+        pointsForACoin = builder.pointsForACoin;
+        pointsForAnEnemy = builder.pointsForAnEnemy;
+        enemyHpPerLevel = builder.enemyHpPerLevel;
+        bombRange = builder.bombRange;
+        bombCapacity = builder.bombCapacity;
+        enemyBehaviours = builder.enemyBehaviours;
+        numberOfPlayers = builder.numberOfPlayers;
+        if (builder.blockDensity >= 0) {
+            numberOfRandomBlocks = (int) Math.round(builder.blockDensity * freeTiles(width, height));
+        } else {
+            numberOfRandomBlocks = builder.numberOfRandomBlocks;
+        }
+    }
+
+    /**
+     * Creates a configuration from the named parameters of the command line
+     * (--width, --height, --density, --blocks, --enemies, --coins, --coin-points, --enemy-points, --enemy-hp, --bomb-range, --bomb-capacity, --enemy-behaviour, --players).
+     * The behaviour of the enemies is a list separated by commas, one for each level, e.g. random,random,hunter
+     * The missing parameters keep the default value
+     * @param parameters the named parameters
+     * @return the configuration
+     */
+    public static GameConfig fromParameters(Map<String, String> parameters) {
+        Builder builder = new Builder();
+        if (parameters.containsKey("width") || parameters.containsKey("height")) {
+            builder.setSize(Integer.parseInt(parameters.getOrDefault("width", Integer.toString(DEFAULT.width))),
+                    Integer.parseInt(parameters.getOrDefault("height", Integer.toString(DEFAULT.height))));
+        }
+        if (parameters.containsKey("density")) {
+            builder.setBlockDensity(Double.parseDouble(parameters.get("density")));
+        }
+        if (parameters.containsKey("blocks")) {
+            builder.setRandomBlocks(Integer.parseInt(parameters.get("blocks")));
+        }
+        if (parameters.containsKey("enemies")) {
+            builder.setEnemies(Integer.parseInt(parameters.get("enemies")));
+        }
+        if (parameters.containsKey("coins")) {
+            builder.setCoins(Integer.parseInt(parameters.get("coins")));
+        }
+        if (parameters.containsKey("coin-points")) {
+            builder.setPointsForACoin(Integer.parseInt(parameters.get("coin-points")));
+        }
+        if (parameters.containsKey("enemy-points")) {
+            builder.setPointsForAnEnemy(Integer.parseInt(parameters.get("enemy-points")));
+        }
+        if (parameters.containsKey("enemy-hp")) {
+            builder.setEnemyHpPerLevel(Integer.parseInt(parameters.get("enemy-hp")));
+        }
+        if (parameters.containsKey("bomb-range")) {
+            builder.setBombRange(Integer.parseInt(parameters.get("bomb-range")));
+        }
+        if (parameters.containsKey("bomb-capacity")) {
+            builder.setBombCapacity(Integer.parseInt(parameters.get("bomb-capacity")));
+        }
+        if (parameters.containsKey("enemy-behaviour")) {
+            String[] names = parameters.get("enemy-behaviour").split(",");
+            EnemyBehaviour[] behaviours = new EnemyBehaviour[names.length];
+            for (int i = 0; i < names.length; i++) {
+                behaviours[i] = EnemyBehaviour.valueOf(names[i].trim().toUpperCase(Locale.ROOT));
+            }
+            builder.setEnemyBehaviours(behaviours);
+        }
+        if (parameters.containsKey("players")) {
+            builder.setPlayers(Integer.parseInt(parameters.get("players")));
+        }
+        return builder.build();
+    }
+
+    /**
+     * The opposite of fromParameters(), used to store the configuration e.g. in a replay
+     * @return the named parameters that create an equal configuration, in a fixed order
+     */
+    public Map<String, String> toParameters() {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("width", Integer.toString(width));
+        parameters.put("height", Integer.toString(height));
+        parameters.put("blocks", Integer.toString(numberOfRandomBlocks));
+        parameters.put("enemies", Integer.toString(numberOfEnemies));
+        parameters.put("coins", Integer.toString(numberOfCoins));
+        parameters.put("coin-points", Integer.toString(pointsForACoin));
+        parameters.put("enemy-points", Integer.toString(pointsForAnEnemy));
+        parameters.put("enemy-hp", Integer.toString(enemyHpPerLevel));
+        parameters.put("bomb-range", Integer.toString(bombRange));
+        parameters.put("bomb-capacity", Integer.toString(bombCapacity));
+        parameters.put("enemy-behaviour", enemyBehaviours.stream()
+                .map(behaviour -> behaviour.name().toLowerCase(Locale.ROOT))
+                .collect(Collectors.joining(",")));
+        parameters.put("players", Integer.toString(numberOfPlayers));
+        return parameters;
+    }
+
+    /**
+     * @return the number of the tiles where a random block or an enemy can be placed: the ground
+     * without the checkerboard of fixed blocks and without the spawn corner of the player
+     */
+    static int freeTiles(int width, int height) {
+        int columns = width - 2;
+        int rows = height - 2;
+        return columns * rows - (columns / 2) * (rows / 2) - 3;
+    }
+
+    //############ GameConfig GETTERS #############//
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getNumberOfRandomBlocks() {
+        return numberOfRandomBlocks;
+    }
+
+    public int getNumberOfEnemies() {
+        return numberOfEnemies;
+    }
+
+    public int getNumberOfCoins() {
+        return numberOfCoins;
+    }
+
+    public int getPointsForACoin() {
+        return pointsForACoin;
+    }
+
+    public int getPointsForAnEnemy() {
+        return pointsForAnEnemy;
+    }
+
+    public int getEnemyHpPerLevel() {
+        return enemyHpPerLevel;
+    }
+
+    public int getBombRange() {
+        return bombRange;
+    }
+
+    public int getBombCapacity() {
+        return bombCapacity;
+    }
+
+    /**
+     * @param level the level, starting from 1
+     * @return the behaviour of the enemies in the given level
+     */
+    public EnemyBehaviour getEnemyBehaviour(int level) {
+        return enemyBehaviours.get(Math.min(level, enemyBehaviours.size()) - 1);
+    }
+
+    public int getNumberOfPlayers() {
+        return numberOfPlayers;
+    }
+
+    /**
+     * The Builder class to implement the builder pattern
+     */
+    public static class Builder {
+        private int width = 17;
+        private int height = 11;
+        private int numberOfRandomBlocks = 20;
+        private double blockDensity = -1;
+        private int numberOfEnemies = 3;
+        private int numberOfCoins = 4;
+        private int pointsForACoin = 400;
+        private int pointsForAnEnemy = 200;
+        private int enemyHpPerLevel = 1;
+        private int bombRange = 1;
+        private int bombCapacity = 1;
+        private List<EnemyBehaviour> enemyBehaviours = List.of(EnemyBehaviour.RANDOM);
+        private int numberOfPlayers = 1;
+
+        //############### BUILDER SETTER METHODS ##############//
+
+        /**
+         * @param width the number of columns of the map, edges included; it must be odd and at most MAX_SIZE
+         * @param height the number of rows of the map, edges included; it must be odd and at most MAX_SIZE
+         */
+        public Builder setSize(int width, int height) {
+            this.width = width;
+            this.height = height;
+            return this;
+        }
+
+        public Builder setRandomBlocks(int numberOfRandomBlocks) {
+            this.numberOfRandomBlocks = numberOfRandomBlocks;
+            this.blockDensity = -1;
+            return this;
+        }
+
+        /**
+         * @param blockDensity the fraction of the free tiles that will be covered by random blocks
+         */
+        public Builder setBlockDensity(double blockDensity) {
+            this.blockDensity = blockDensity;
+            return this;
+        }
+
+        public Builder setEnemies(int numberOfEnemies) {
+            this.numberOfEnemies = numberOfEnemies;
+            return this;
+        }
+
+        public Builder setCoins(int numberOfCoins) {
+            this.numberOfCoins = numberOfCoins;
+            return this;
+        }
+
+        public Builder setPointsForACoin(int pointsForACoin) {
+            this.pointsForACoin = pointsForACoin;
+            return this;
+        }
+
+        public Builder setPointsForAnEnemy(int pointsForAnEnemy) {
+            this.pointsForAnEnemy = pointsForAnEnemy;
+            return this;
+        }
+
+        public Builder setEnemyHpPerLevel(int enemyHpPerLevel) {
+            this.enemyHpPerLevel = enemyHpPerLevel;
+            return this;
+        }
+
+        public Builder setBombRange(int bombRange) {
+            this.bombRange = bombRange;
+            return this;
+        }
+
+        public Builder setBombCapacity(int bombCapacity) {
+            this.bombCapacity = bombCapacity;
+            return this;
+        }
+
+        /**
+         * @param enemyBehaviours the behaviour of the enemies of every level, starting from the first one;
+         *                        the last one is used also by the following levels
+         */
+        public Builder setEnemyBehaviours(EnemyBehaviour... enemyBehaviours) {
+            this.enemyBehaviours = List.of(enemyBehaviours);
+            return this;
+        }
+
+        /**
+         * @param numberOfPlayers the number of players, from 1 to MAX_PLAYERS
+         */
+        public Builder setPlayers(int numberOfPlayers) {
+            this.numberOfPlayers = numberOfPlayers;
+            return this;
+        }
+
+        /**
+         * This method creates the GameConfig instance, checking that the level can be generated
+         * @return the configuration
+         */
+        public GameConfig build() {
+            if (width < 5 || height < 5 || width % 2 == 0 || height % 2 == 0) {
+                throw new IllegalArgumentException("The size of the map must be odd and at least 5x5: " + width + "x" + height);
+            }
+            if (width > MAX_SIZE || height > MAX_SIZE) {
+                throw new IllegalArgumentException("The size of the map can't be greater than " + MAX_SIZE + "x" + MAX_SIZE + ": " + width + "x" + height);
+            }
+            if (enemyHpPerLevel < 1) {
+                throw new IllegalArgumentException("The enemies must have at least one life: " + enemyHpPerLevel);
+            }
+            if (bombRange < 1) {
+                throw new IllegalArgumentException("The range of the bomb must be at least 1: " + bombRange);
+            }
+            if (enemyBehaviours.isEmpty()) {
+                throw new IllegalArgumentException("The behaviour of the enemies must be given at least for the first level");
+            }
+            if (bombCapacity < 1) {
+                throw new IllegalArgumentException("The player must be able to release at least 1 bomb: " + bombCapacity);
+            }
+            if (numberOfPlayers < 1 || numberOfPlayers > MAX_PLAYERS) {
+                throw new IllegalArgumentException("The number of players must be between 1 and " + MAX_PLAYERS + ": " + numberOfPlayers);
+            }
+            if (blockDensity > 1) {
+                throw new IllegalArgumentException("The block density can't be greater than 1: " + blockDensity);
+            }
+            if (blockDensity < 0 && numberOfRandomBlocks < 0) {
+                throw new IllegalArgumentException("The number of random blocks can't be negative: " + numberOfRandomBlocks);
+            }
+            if (numberOfEnemies < 0) {
+                throw new IllegalArgumentException("The number of enemies can't be negative: " + numberOfEnemies);
+            }
+            if (numberOfCoins < 0) {
+                throw new IllegalArgumentException("The number of coins can't be negative: " + numberOfCoins);
+            }
+            GameConfig config = new GameConfig(this);
+            // In long, so that the huge numbers don't overflow
+            if (config.numberOfRandomBlocks < NUMBER_OF_POWER_UPS_AND_DOOR + (long) config.numberOfCoins) {
+                throw new IllegalArgumentException("Not enough random blocks to hide the door, the power ups and " + config.numberOfCoins + " coins");
+            }
+            if ((long) config.numberOfRandomBlocks + config.numberOfEnemies >= freeTiles(width, height)) {
+                throw new IllegalArgumentException("Not enough free tiles for " + config.numberOfRandomBlocks + " blocks and " + config.numberOfEnemies + " enemies");
+            }
+            return config;
+        }
+    }
+}
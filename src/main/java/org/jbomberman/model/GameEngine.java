@@ -0,0 +1,367 @@
+package org.jbomberman.model;
+
+import org.jbomberman.utils.Coordinate;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The GameEngine advances a level of the game in time, with a fixed timestep.
+ * It drives all the timers of the game (the fuses of the bombs, the invincibility power up, the
+ * steps of the enemies and the time every player needs to walk to the next tile), that are
+ * expressed in ticks and fire at a given tick count, so that a level played with the same
+ * actions at the same ticks always ends in the same way. The fuses are kept, one for every bomb,
+ * in the BombTable of the model.
+ * The time flows only with explicit calls to step() or tick(), so that the game can be run
+ * without JavaFX, e.g. by the GameLoop of the controller or by a simulation as fast as possible.
+ */
+public class GameEngine {
+
+    // The number of ticks in a second used when it's not specified
+    public static final int DEFAULT_TICK_RATE = 60;
+
+    // The time between the release and the explosion of the bomb
+    public static final long BOMB_FUSE = 1_750_000_000L;
+
+    // The duration of the invincibility power up
+    public static final long INVINCIBILITY_DURATION = 10_000_000_000L;
+
+    // The time between two steps of the enemies
+    public static final long ENEMY_STEP = 1_000_000_000L;
+
+    // The time the player needs to walk to the next tile, or to come back to the spawn after losing a life
+    public static final long PLAYER_STEP = 200_000_000L;
+
+    // The value of a timer that is not running
+    private static final long STOPPED = -1;
+
+    private final MainModel model;
+
+    private final int tickRate;
+
+    // The duration of a tick, in nanoseconds
+    private final long tickNanos;
+
+    // The durations converted in ticks
+    private final long bombFuseTicks;
+    private final long invincibilityTicks;
+    private final long enemyStepTicks;
+    private final long playerStepTicks;
+
+    // The ticks elapsed since the start of the level
+    private long tick = 0;
+
+    // The tick at which every timer fires, the ones of the players are indexed by the number of the player
+    private final long[] invincibilityEndsAt;
+    private long nextEnemyStep;
+    private final long[] playerReadyAt;
+
+    // The lives of the players at the end of the last action or tick, to notice when they respawn
+    private final int[] playerHealthPoints;
+
+    // The time received by tick() that isn't enough for another step
+    private long accumulator = 0;
+
+    // Notified of every action performed, e.g. to record a replay; null if there isn't one
+    private ActionListener actionListener;
+
+    // Measures the phases of every step; null if they aren't measured
+    private Profiler profiler;
+
+    /**
+     * Receives the actions of the players that have been performed by the engine and changed something
+     */
+    public interface ActionListener {
+        /**
+         * @param tick the tick in which the action has been performed, before the engine stepped
+         * @param player the number of the player
+         * @param action the action of the player
+         */
+        void actionPerformed(long tick, int player, Action action);
+    }
+
+    /**
+     * The phases of a step that can be measured by a Profiler
+     */
+    public enum Phase {
+        EXPLOSIONS,
+        ENEMIES
+    }
+
+    /**
+     * Receives the beginning and the end of the phases of every step, e.g. to measure their duration
+     */
+    public interface Profiler {
+        void phaseStarted(Phase phase);
+
+        void phaseEnded(Phase phase);
+    }
+
+    /**
+     * Creates an engine that runs at DEFAULT_TICK_RATE
+     * @param model the model of the level, already initialized
+     */
+    public GameEngine(MainModel model) {
+        this(model, DEFAULT_TICK_RATE);
+    }
+
+    /**
+     * @param model the model of the level, already initialized
+     * @param tickRate the number of ticks in a second of game
+     */
+    public GameEngine(MainModel model, int tickRate) {
+        if (tickRate < 1 || tickRate > 1000) {
+            throw new IllegalArgumentException("The tick rate must be between 1 and 1000 Hz: " + tickRate);
+        }
+        this.model = model;
+        this.tickRate = tickRate;
+        this.tickNanos = 1_000_000_000L / tickRate;
+        bombFuseTicks = toTicks(BOMB_FUSE);
+        invincibilityTicks = toTicks(INVINCIBILITY_DURATION);
+        enemyStepTicks = toTicks(ENEMY_STEP);
+        playerStepTicks = toTicks(PLAYER_STEP);
+        nextEnemyStep = enemyStepTicks;
+        int players = model.getNumberOfPlayers();
+        invincibilityEndsAt = new long[players];
+        Arrays.fill(invincibilityEndsAt, STOPPED);
+        playerReadyAt = new long[players];
+        playerHealthPoints = new int[players];
+        for (int player = 0; player < players; player++) {
+            playerHealthPoints[player] = model.getPlayerHealthPoint(player);
+        }
+    }
+
+    /**
+     * @param nanos a duration in nanoseconds
+     * @return the same duration in ticks, rounded to the nearest tick (at least one)
+     */
+    public long toTicks(long nanos) {
+        return toTicks(nanos, tickRate);
+    }
+
+    /**
+     * @param nanos a duration in nanoseconds
+     * @param tickRate the number of ticks in a second of game
+     * @return the same duration in ticks, as converted by an engine with the given tick rate
+     */
+    public static long toTicks(long nanos, int tickRate) {
+        return Math.max(1, (nanos * tickRate + 500_000_000L) / 1_000_000_000L);
+    }
+
+    /**
+     * Performs an action of the first player, see perform(player, action)
+     * @param action the action of the player
+     * @return false if the action was ignored, see perform(player, action)
+     */
+    public boolean perform(Action action) {
+        return perform(0, action);
+    }
+
+    /**
+     * Performs the action of the player, if he isn't still walking to the previous tile,
+     * starting the fuse of the bomb, the timer of the invincibility and of the movement if it's needed.
+     * Only the actions that changed something are passed to the ActionListener: a bomb that couldn't be
+     * released or a movement against an obstacle changes nothing, so a replay doesn't need them
+     * @param player the number of the player
+     * @param action the action of the player
+     * @return false if the action was ignored, because the player wasn't ready or because it changed nothing
+     */
+    public boolean perform(int player, Action action) {
+        if (!isPlayerReady(player)) {
+            return false;
+        }
+        if (action == Action.BOMB) {
+            if (!model.releaseBomb(player, tick + bombFuseTicks)) {
+                return false;
+            }
+        } else {
+            Coordinate oldPosition = model.getPlayerPosition(player);
+            if (!model.movePlayer(player, action.getDirection())) {
+                return false;
+            }
+            if (!model.getPlayerPosition(player).equals(oldPosition)) {
+                playerReadyAt[player] = tick + playerStepTicks;
+            }
+            if (invincibilityEndsAt[player] == STOPPED && model.isPlayerInvincible(player)) {
+                invincibilityEndsAt[player] = tick + invincibilityTicks;
+            }
+            checkRespawn();
+        }
+        if (actionListener != null) {
+            actionListener.actionPerformed(tick, player, action);
+        }
+        return true;
+    }
+
+    /**
+     * Advances the game by exactly one tick, firing the timers that expire in it
+     */
+    public void step() {
+        tick++;
+
+        if (profiler != null) {
+            profiler.phaseStarted(Phase.EXPLOSIONS);
+        }
+        model.explodeBombs(tick);
+        if (profiler != null) {
+            profiler.phaseEnded(Phase.EXPLOSIONS);
+        }
+
+        for (int player = 0; player < invincibilityEndsAt.length; player++) {
+            if (invincibilityEndsAt[player] != STOPPED && tick >= invincibilityEndsAt[player]) {
+                invincibilityEndsAt[player] = STOPPED;
+                model.endInvincibility(player);
+            }
+        }
+
+        if (tick >= nextEnemyStep) {
+            nextEnemyStep += enemyStepTicks;
+            if (profiler != null) {
+                profiler.phaseStarted(Phase.ENEMIES);
+            }
+            model.moveEnemies();
+            if (profiler != null) {
+                profiler.phaseEnded(Phase.ENEMIES);
+            }
+        }
+
+        checkRespawn();
+    }
+
+    /**
+     * Advances the game by all the whole ticks contained in the given amount of time; the rest
+     * is kept for the next call
+     * @param nanos the time elapsed since the last call, in nanoseconds
+     * @return the number of ticks performed
+     */
+    public int tick(long nanos) {
+        accumulator += nanos;
+        int steps = 0;
+        while (accumulator >= tickNanos) {
+            accumulator -= tickNanos;
+            step();
+            steps++;
+        }
+        return steps;
+    }
+
+    /**
+     * After losing a life a player is moved to the spawn, and he has to wait before moving again;
+     * any player can be hit by the action of another one
+     */
+    private void checkRespawn() {
+        for (int player = 0; player < playerHealthPoints.length; player++) {
+            int healthPoint = model.getPlayerHealthPoint(player);
+            if (healthPoint < playerHealthPoints[player]) {
+                playerReadyAt[player] = tick + playerStepTicks;
+            }
+            playerHealthPoints[player] = healthPoint;
+        }
+    }
+
+    /**
+     * Writes the timers in a ModelSnapshot
+     */
+    void writeState(DataOutput out) throws IOException {
+        out.writeInt(tickRate);
+        out.writeLong(tick);
+        out.writeLong(nextEnemyStep);
+        out.writeLong(accumulator);
+        out.writeInt(playerHealthPoints.length);
+        for (int player = 0; player < playerHealthPoints.length; player++) {
+            out.writeLong(invincibilityEndsAt[player]);
+            out.writeLong(playerReadyAt[player]);
+            out.writeInt(playerHealthPoints[player]);
+        }
+    }
+
+    /**
+     * Replaces the timers with the ones written by writeState()
+     * @throws IOException if the timers were written by an engine with a different tick rate or number of players
+     */
+    void readState(DataInput in) throws IOException {
+        int snapshotTickRate = in.readInt();
+        if (snapshotTickRate != tickRate) {
+            throw new IOException("The snapshot was taken at " + snapshotTickRate + " ticks per second, not " + tickRate);
+        }
+        tick = in.readLong();
+        nextEnemyStep = in.readLong();
+        accumulator = in.readLong();
+        int players = in.readInt();
+        if (players != playerHealthPoints.length) {
+            throw new IOException("The snapshot has " + players + " players, not " + playerHealthPoints.length);
+        }
+        for (int player = 0; player < playerHealthPoints.length; player++) {
+            invincibilityEndsAt[player] = in.readLong();
+            playerReadyAt[player] = in.readLong();
+            playerHealthPoints[player] = in.readInt();
+        }
+    }
+
+    /**
+     * @param actionListener notified of every action performed from now on, null to remove it
+     */
+    public void setActionListener(ActionListener actionListener) {
+        this.actionListener = actionListener;
+    }
+
+    /**
+     * @param profiler notified of the phases of every step from now on, null to remove it
+     */
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Gives the player the state of a new player (see MainModel.resetPlayer()), stopping his timers
+     * @param player the number of the player
+     */
+    public void resetPlayer(int player) {
+        model.resetPlayer(player);
+        invincibilityEndsAt[player] = STOPPED;
+        playerReadyAt[player] = tick;
+        playerHealthPoints[player] = model.getPlayerHealthPoint(player);
+    }
+
+    //############ GameEngine GETTERS #############//
+
+    /**
+     * @return true if the first player can perform an action in this tick
+     */
+    public boolean isPlayerReady() {
+        return isPlayerReady(0);
+    }
+
+    /**
+     * @param player the number of the player
+     * @return true if the player can perform an action in this tick
+     */
+    public boolean isPlayerReady(int player) {
+        return tick >= playerReadyAt[player];
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public int getTickRate() {
+        return tickRate;
+    }
+
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * @return the time elapsed since the start of the level, in nanoseconds
+     */
+    public long getElapsed() {
+        return tick * tickNanos;
+    }
+
+    public MainModel getModel() {
+        return model;
+    }
+}
@@ -0,0 +1,63 @@
+package org.jbomberman.model;
+
+import java.util.Random;
+
+/**
+ * The generator of the random numbers of a match.
+ * It's the same linear congruential generator of java.util.Random, so a seed gives the same numbers,
+ * but its state can be read and restored, so that it can be saved in a ModelSnapshot.
+ * It isn't thread safe: a match is played by a single thread, so it doesn't need the atomic
+ * operations of java.util.Random.
+ */
+public class GameRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    // Set by setSeed(), that is called also by the constructor of Random
+    private long state;
+
+    /**
+     * Creates a generator with a seed that is different at every call
+     */
+    public GameRandom() {
+        super();
+    }
+
+    /**
+     * @param seed the seed of the generator
+     */
+    public GameRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+        // Forgets the cached Gaussian value kept by Random
+        super.setSeed(seed);
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * @return the internal state of the generator, that determines all the following numbers
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * @param state an internal state read by getState()
+     */
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+}
@@ -0,0 +1,418 @@
+package org.jbomberman.model;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The LeaderboardStore keeps the best result of every player.
+ * On disk it's made of two files:
+ * - the snapshot, a JSON array of users (the same format of the old leaderboard.json)
+ * - the log, next to the snapshot with the .log extension, where every save appends one
+ *   JSON line for each user that changed since the previous save
+ * When the log grows too much compared to the snapshot, the two are compacted in a new
+ * snapshot, that is written in a temporary file and then moved over the old one,
+ * so that a crash never leaves a half written snapshot. A damaged line of the log (e.g. the last one,
+ * if the program stopped while writing it) is skipped, and the next save compacts the files.
+ * A damaged snapshot is read until the damage, but it isn't rewritten until a load reads it whole (and neither
+ * if the load failed), since the users after the damage would be lost: meanwhile the saves only append to the log.
+ * In memory the users are indexed by name and kept sorted by ranking in a RankedSet, so a change,
+ * the rank of a user and a page of the leaderboard take O(log n) (plus the size of the page).
+ * The files are read and written by loadAsync() and saveAsync() on a single background thread,
+ * so the methods of the store are synchronized; the lock is never held while the files are accessed.
+ */
+public class LeaderboardStore {
+
+    // The order of the leaderboard: higher score first, then lower level, then name
+    public static final Comparator<User> RANKING = Comparator.comparingInt(User::score).reversed()
+            .thenComparingInt(User::level)
+            .thenComparing(User::name);
+
+    // The log is compacted when it has more lines than this, and more than the users in the snapshot
+    private static final int MIN_LOG_LINES_TO_COMPACT = 1000;
+
+    // The thread that reads and writes the files of all the stores, in the order of the requests
+    private static final ExecutorService IO_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "leaderboard-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Gson gson = new Gson();
+
+    // Only one save at a time can write the files
+    private final Object ioLock = new Object();
+
+    // The save requested but not started yet, that the next requests join
+    private CompletableFuture<Void> scheduledSave = null;
+
+    private final Path snapshot;
+    private final Path log;
+
+    private final Map<String, User> byName = new HashMap<>();
+    private final RankedSet<User> ranking = new RankedSet<>(RANKING);
+
+    // The users changed after the last save, to append to the log
+    private final List<User> pending = new ArrayList<>();
+
+    // The number of users in the snapshot and of lines in the log file
+    private int snapshotSize = 0;
+    private int logLines = 0;
+
+    // If a line of the log couldn't be read, the next lines can't be appended to it
+    private boolean logDamaged = false;
+
+    // If the last load couldn't read the whole snapshot, or failed: the snapshot mustn't be replaced
+    private boolean snapshotUnreadable = false;
+
+    /**
+     * @param snapshot the path of the snapshot, the log is the same path with the .log extension
+     */
+    public LeaderboardStore(Path snapshot) {
+        this.snapshot = snapshot;
+        this.log = snapshot.resolveSibling(snapshot.getFileName() + ".log");
+    }
+
+    /**
+     * Reads the files on the background thread
+     * @return the future completed when the users have been loaded
+     */
+    public CompletableFuture<Void> loadAsync() {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                load();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, IO_EXECUTOR);
+    }
+
+    /**
+     * Reads the snapshot and then replays the log over it. Missing files are considered empty.
+     * The results submitted before the end of the load are kept, if they are better than the loaded ones
+     * @throws IOException if the files can't be read; the snapshot won't be compacted until a load succeeds
+     */
+    public void load() throws IOException {
+        try {
+            read();
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                snapshotUnreadable = true;
+            }
+            throw e;
+        }
+    }
+
+    private void read() throws IOException {
+        List<User> snapshotUsers = new ArrayList<>();
+        List<User> logUsers = new ArrayList<>();
+        int lines = 0;
+        boolean damaged = false;
+        boolean snapshotDamaged = false;
+
+        // There is no snapshot before the first compaction
+        if (Files.exists(snapshot) && Files.size(snapshot) > 0) {
+            try (JsonReader reader = new JsonReader(Files.newBufferedReader(snapshot, StandardCharsets.UTF_8))) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    snapshotUsers.add(gson.fromJson(reader, User.class));
+                }
+                reader.endArray();
+            } catch (JsonParseException | MalformedJsonException | EOFException | IllegalStateException e) {
+                // The users before the damage are kept
+                snapshotDamaged = true;
+            }
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    logUsers.add(gson.fromJson(line, User.class));
+                } catch (JsonParseException e) {
+                    damaged = true;
+                }
+                lines++;
+            }
+        } catch (NoSuchFileException e) {
+            // Nothing has been saved after the last compaction
+        }
+
+        synchronized (this) {
+            List<User> submitted = new ArrayList<>(pending);
+            byName.clear();
+            ranking.clear();
+            snapshotUsers.forEach(this::put);
+            logUsers.forEach(this::submitLoaded);
+            submitted.forEach(this::submitLoaded);
+            snapshotSize = snapshotUsers.size();
+            logLines = lines;
+            logDamaged = damaged;
+            snapshotUnreadable = snapshotDamaged;
+        }
+    }
+
+    /**
+     * Adds the result of a player, if it's the first one of the player or if it's better than his previous one
+     * (a higher score or a higher level)
+     * @param user the result
+     * @return true if the leaderboard has changed
+     */
+    public synchronized boolean submit(User user) {
+        if (!submitLoaded(user)) {
+            return false;
+        }
+        pending.add(user);
+        return true;
+    }
+
+    private boolean submitLoaded(User user) {
+        User existing = byName.get(user.name());
+        if (existing != null) {
+            if (user.score() <= existing.score() && user.level() <= existing.level()) {
+                return false;
+            }
+        }
+        put(user);
+        return true;
+    }
+
+    private void put(User user) {
+        User old = byName.put(user.name(), user);
+        if (old != null) {
+            ranking.remove(old);
+        }
+        ranking.add(user);
+    }
+
+    //############ QUERIES #############//
+
+    /**
+     * @param k the number of users
+     * @return the first k users of the leaderboard (or all of them, if they are less)
+     */
+    public List<User> top(int k) {
+        return page(0, k);
+    }
+
+    /**
+     * @param offset the rank of the first user, starting from 0
+     * @param limit the maximum number of users
+     * @return the users from offset to offset + limit, in ranking order
+     */
+    public synchronized List<User> page(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("The offset and the limit can't be negative: " + offset + ", " + limit);
+        }
+        return Collections.unmodifiableList(ranking.range(offset, (int) Math.min((long) offset + limit, Integer.MAX_VALUE)));
+    }
+
+    /**
+     * @param rank the rank of the user, starting from 0
+     * @return the user at that rank
+     */
+    public synchronized User getByRank(int rank) {
+        return ranking.get(rank);
+    }
+
+    /**
+     * @param name the name of the player
+     * @return the rank of the player starting from 0, or -1 if he's not in the leaderboard
+     */
+    public synchronized int rankOf(String name) {
+        User user = byName.get(name);
+        if (user == null) {
+            return -1;
+        }
+        return ranking.indexOf(user);
+    }
+
+    /**
+     * Saves the store on the background thread. If a save is already waiting to start,
+     * the request joins it, so that many requests in a short time cause a single write
+     * @return the future completed when the changes submitted until now have been written
+     */
+    public synchronized CompletableFuture<Void> saveAsync() {
+        if (scheduledSave != null) {
+            return scheduledSave;
+        }
+        CompletableFuture<Void> save = new CompletableFuture<>();
+        scheduledSave = save;
+        IO_EXECUTOR.execute(() -> {
+            synchronized (this) {
+                // The next requests will need another save
+                scheduledSave = null;
+            }
+            try {
+                save();
+                save.complete(null);
+            } catch (IOException | RuntimeException e) {
+                save.completeExceptionally(e);
+            }
+        });
+        return save;
+    }
+
+    /**
+     * Appends the changed users to the log, compacting it if it's too long.
+     * It does nothing if nothing changed
+     * @throws IOException if the files can't be written
+     */
+    public void save() throws IOException {
+        write(false);
+    }
+
+    /**
+     * Writes all the users in a new snapshot, replacing the old one atomically, and empties the log
+     * @throws IOException if the files can't be written, or if the last load couldn't read the snapshot
+     */
+    public void compact() throws IOException {
+        write(true);
+    }
+
+    /**
+     * Takes the changes under the lock of the store, and writes them without it
+     * @param compact if the snapshot has to be rewritten even if the log is short
+     */
+    private void write(boolean compact) throws IOException {
+        synchronized (ioLock) {
+            List<User> changes;
+            List<User> users = null;
+            boolean appendAfterDamage = false;
+            synchronized (this) {
+                if (compact && snapshotUnreadable) {
+                    throw new IOException("The snapshot " + snapshot + " couldn't be loaded, it isn't replaced until a load reads it");
+                }
+                if (pending.isEmpty() && !compact) {
+                    return;
+                }
+                changes = new ArrayList<>(pending);
+                pending.clear();
+                if (snapshotUnreadable) {
+                    // Appended also to a damaged log, after a new line in case its last line was cut
+                    appendAfterDamage = logDamaged;
+                } else if (compact || logDamaged || logLines + changes.size() > Math.max(MIN_LOG_LINES_TO_COMPACT, snapshotSize)) {
+                    // A copy, written without the lock
+                    users = ranking.range(0, ranking.size());
+                }
+            }
+            try {
+                if (users != null) {
+                    writeSnapshot(users);
+                } else {
+                    appendToLog(changes, appendAfterDamage);
+                }
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    // They will be written by the next save
+                    pending.addAll(0, changes);
+                }
+                throw e;
+            }
+            synchronized (this) {
+                if (users != null) {
+                    snapshotSize = users.size();
+                    logLines = 0;
+                    logDamaged = false;
+                } else {
+                    logLines += changes.size();
+                }
+            }
+        }
+    }
+
+    private void appendToLog(List<User> changes, boolean afterDamage) throws IOException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8)) {
+            if (afterDamage) {
+                // The blank lines are skipped by load()
+                writer.write('\n');
+            }
+            for (User user : changes) {
+                writer.write(gson.toJson(user));
+                writer.write('\n');
+            }
+            writer.flush();
+            channel.force(false);
+        }
+    }
+
+    private void writeSnapshot(List<User> users) throws IOException {
+        Path parent = snapshot.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, snapshot.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 JsonWriter writer = new JsonWriter(Channels.newWriter(channel, StandardCharsets.UTF_8))) {
+                writer.beginArray();
+                for (User user : users) {
+                    gson.toJson(user, User.class, writer);
+                }
+                writer.endArray();
+                writer.flush();
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        // The log is removed only after the new snapshot is in place: if it's replayed again it changes nothing
+        Files.deleteIfExists(log);
+    }
+
+    //############ LeaderboardStore GETTERS #############//
+
+    /**
+     * @param name the name of the player
+     * @return the best result of the player, or null if he's not in the leaderboard
+     */
+    public synchronized User get(String name) {
+        return byName.get(name);
+    }
+
+    public synchronized int size() {
+        return byName.size();
+    }
+
+
+    public Path getSnapshot() {
+        return snapshot;
+    }
+
+    public Path getLog() {
+        return log;
+    }
+}
@@ -1,46 +1,60 @@
 package org.jbomberman.model;
 
-import com.google.gson.reflect.TypeToken;
-import javafx.animation.PauseTransition;
-import javafx.util.Duration;
 import org.jbomberman.utils.*;
-import javafx.scene.input.KeyCode;
-import com.google.gson.Gson;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The MainModel is the class that maintains the status of the game and that
  * implements all the game logics.
- * It is the Model of the MVC pattern and is the Observable in the Observer/Observable pattern
- * responsible to notify the View of its status changes.
+ * It is the Model of the MVC pattern and publishes its status changes on an UpdateBus,
+ * where the View subscribes to the types of update it's interested in.
+ * It doesn't depend on JavaFX and doesn't keep track of the time: the timers of the game
+ * are handled by the GameEngine.
  */
-public class MainModel extends Observable {
-
-    private static final int POINTS_FOR_A_COIN = 400;
-
-    private static final int POINTS_FOR_AN_ENEMY = 200;
+public class MainModel {
 
     // how much the character can move every time a key is pressed
     private static final int MOVEMENT = 1;
 
-    private static final ArrayList<KeyCode> KEY_CODES = new ArrayList<>(List.of(KeyCode.UP,KeyCode.DOWN,KeyCode.LEFT,KeyCode.RIGHT));
+    private static final Direction[] DIRECTIONS = {Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT};
+
+    // The lives of every player at the beginning of a match
+    private static final int INITIAL_HEALTH_POINT = 3;
 
-    private ArrayList<User> leaderboard;
+    // The leaderboard is loaded from its file the first time it's needed
+    private LeaderboardStore leaderboard;
+    private CompletableFuture<Void> leaderboardLoading;
 
     // LIMITS OF THE MAP
     private final int xMax;
     private final int yMax;
 
-    private int numberOfRandomBlocks = 20;
-    private int numberOfEnemies = 3;
-    private int numberOfCoins = 4;
+    private final int numberOfRandomBlocks;
+    private final int numberOfEnemies;
+    private final int numberOfCoins;
+
+    private final int pointsForACoin;
+    private final int pointsForAnEnemy;
+    private final int enemyHpPerLevel;
+
+    // The configuration, read again at every level for the behaviour of the enemies
+    private final GameConfig config;
+
+    // The behaviour of the enemies of the current level
+    private EnemyBehaviour enemyBehaviour = EnemyBehaviour.RANDOM;
+
+    // The distance of every tile from the nearest player, shared by the enemies that hunt the players
+    private final DistanceField distanceField;
+
+    // The tiles of the players still in the game, the sources of the distance field
+    private final int[] huntedTiles;
 
     // The coordinates of the ground
     private final ArrayList<Coordinate> coordinateGround = new ArrayList<>();
@@ -48,20 +62,38 @@ public class MainModel extends Observable {
     // The coordinates of the fixed blocks (the blocks that can't be destroyed)
     private final ArrayList<Coordinate> coordinatesFixedBlocks = new ArrayList<>();
 
-    // The coordinates of the random blocks (the blocks that can be destroyed)
+    // The random blocks, the coins and the enemies are kept in lists whose order is not preserved:
+    // a removed element is replaced by the last one. Every element has a stable id in a parallel list,
+    // that is the one sent to the view; the ids are the positions in the list when the level is generated
+
+    // The coordinates of the random blocks (the blocks that can be destroyed) and their ids
     private final ArrayList<Coordinate> coordinatesRandomBlocks = new ArrayList<>();
+    private final ArrayList<Integer> blockIds = new ArrayList<>();
 
-    // The coordinates of the coins
+    // The coordinates of the coins and their ids
     private final ArrayList<Coordinate> coins = new ArrayList<>();
+    private final ArrayList<Integer> coinIds = new ArrayList<>();
 
-    // The coordinates of the enemies
+    // The coordinates of the enemies and their ids
     private final ArrayList<Coordinate> coordinateEnemies = new ArrayList<>();
+    private final ArrayList<Integer> enemyIds = new ArrayList<>();
 
     // The HP of the enemies
     private final ArrayList<Integer> enemiesHp = new ArrayList<>();
 
+    // The flags of every tile of the map, used to check the content of a tile without scanning the lists
+    private final TileGrid grid;
+
+    // The Coordinate of every tile of the map, indexed like the grid, so that the movements don't create new ones
+    private final Coordinate[] tileCoordinates;
+
+    // The position in their list of the random block, the coin and the enemy on every tile
+    private final OccupancyIndex blockIndex;
+    private final OccupancyIndex coinIndex;
+    private final OccupancyIndex enemyIndex;
+
     // The free positions on the map
-    private List<Coordinate>  freePositions;
+    private final ArrayList<Coordinate> freePositions = new ArrayList<>();
 
     // The coordinates of the exit door
     private Coordinate exitDoor;
@@ -69,68 +101,130 @@ public class MainModel extends Observable {
     // The coordinates of the high potential bomb
     private Coordinate bombPu;
 
+    // The coordinates of the extra bomb
+    private Coordinate capacityPu;
+
     // The coordinates of the extra life
     private Coordinate lifePu;
 
     // The coordinates of the 10 seconds invincibility
     private Coordinate invinciblePu;
 
-    // The coordinates of the tnt
-    private Coordinate tntCoordinates;
+    // The bombs on the map
+    private final BombTable bombs;
+
+    // The tick at which the blasts of the bombs will reach every tile
+    private final DangerMap dangerMap;
+
+    // The players share the level, the points and the exit door; all of them start from the spawn corner.
+    // Their state is kept in arrays indexed by the number of the player, the player of the local game is 0
+    private final int numberOfPlayers;
 
-    // The number of lives of the player
-    private int playerHealthPoint;
+    // The number of lives of every player, a player without lives is out of the game
+    private final int[] playerHealthPoints;
 
-    // The currents amount of points of the player
+    // The currents amount of points of the players
     private int points;
 
-    // The actual bomb range
-    private int bombRange = 1;
+    // The actual bomb range of every player
+    private final int[] bombRanges;
+
+    // The bomb range at the beginning of every level
+    private final int initialBombRange;
+
+    // The number of bombs of every player that can be on the map at the same time
+    private final int[] bombCapacities;
+
+    // The bomb capacity at the beginning of every level
+    private final int initialBombCapacity;
 
     // The actual level
     private int level = 1;
 
-    // The invincibility boolean
-    private boolean playerInvincible = false;
+    // The invincibility of every player
+    private final boolean[] playersInvincible;
+
+    private final Coordinate[] playerPositions;
 
-    private Coordinate playerPosition = new Coordinate(1,1);
+    // The players hit by the explosion that is being resolved
+    private final boolean[] playersHit;
 
-    private final Random random = new Random();
+    private final GameRandom random;
+
+    // The bus where the updates are published, each type of update reuses the same UpdateInfo
+    private final UpdateBus updateBus = new UpdateBus();
 
     // The door boolean
     private boolean doorOpen = false;
 
-    // The bomb boolean
-    boolean isBombExploding = false;
-
 //############################# CONSTRUCTOR AND INITIALIZATION ############################//
 
     /**
-     * @param dx the width of the area
-     * @param dy the height of the area
+     * @param config the size of the map and the number of blocks, enemies and coins of every level
      */
-    public MainModel(int dx, int dy) {
-        xMax = dx-2;
-        yMax = dy-2-1;
-        playerHealthPoint = 3;
+    public MainModel(GameConfig config) {
+        this(config, new GameRandom());
+    }
+
+    /**
+     * @param config the size of the map and the number of blocks, enemies and coins of every level
+     * @param random the generator used for the map and the movements of the enemies; it's the only
+     *               source of randomness of the model, so a match is reproduced by the same seed
+     */
+    public MainModel(GameConfig config, GameRandom random) {
+        this.random = random;
+        this.config = config;
+        xMax = config.getWidth()-2;
+        yMax = config.getHeight()-2;
+        numberOfRandomBlocks = config.getNumberOfRandomBlocks();
+        numberOfEnemies = config.getNumberOfEnemies();
+        numberOfCoins = config.getNumberOfCoins();
+        pointsForACoin = config.getPointsForACoin();
+        pointsForAnEnemy = config.getPointsForAnEnemy();
+        enemyHpPerLevel = config.getEnemyHpPerLevel();
+        initialBombRange = config.getBombRange();
+        initialBombCapacity = config.getBombCapacity();
+        numberOfPlayers = config.getNumberOfPlayers();
+        playerPositions = new Coordinate[numberOfPlayers];
+        playerHealthPoints = new int[numberOfPlayers];
+        bombRanges = new int[numberOfPlayers];
+        bombCapacities = new int[numberOfPlayers];
+        playersInvincible = new boolean[numberOfPlayers];
+        playersHit = new boolean[numberOfPlayers];
+        huntedTiles = new int[numberOfPlayers];
+        Arrays.fill(playerPositions, new Coordinate(1, 1));
+        Arrays.fill(bombRanges, initialBombRange);
+        Arrays.fill(bombCapacities, initialBombCapacity);
+        grid = new TileGrid(config.getWidth(), config.getHeight());
+        tileCoordinates = new Coordinate[config.getWidth() * config.getHeight()];
+        blockIndex = new OccupancyIndex(grid);
+        coinIndex = new OccupancyIndex(grid);
+        enemyIndex = new OccupancyIndex(grid);
+        bombs = new BombTable(grid, tileCoordinates);
+        dangerMap = new DangerMap(grid, bombs);
+        distanceField = new DistanceField(grid);
+        Arrays.fill(playerHealthPoints, INITIAL_HEALTH_POINT);
         points = 0;
         level = 1;
-        loadLeaderboardFromFile();
     }
 
     /**
      * Generates the position of the random blocks, the enemies,
      * the power ups, the exit door and the coins
-     * Initialize the player position and the bomb range
+     * Initialize the positions of the players, their bomb range, their bomb capacity and the behaviour of the enemies
      */
     public void initialize(){
         generateBlocks();
         generateItemsAndExitDoorPositions();
         generateEnemiesPositions();
 
-        playerPosition = new Coordinate(1,1);
+        Arrays.fill(playerPositions, tileCoordinates[grid.index(1, 1)]);
 
-        bombRange = 1;
+        Arrays.fill(bombRanges, initialBombRange);
+        Arrays.fill(bombCapacities, initialBombCapacity);
+        enemyBehaviour = config.getEnemyBehaviour(level);
+        // The level has new blocks
+        distanceField.invalidate();
     }
 
     /**
@@ -139,26 +233,43 @@ public class MainModel extends Observable {
      *  This method is used when the user goes to the next level
      */
     public void reset() {
+        clearLevel();
+        updateBus.unsubscribeAll();
+    }
+
+    /**
+     * Empties the map and resets the state of the players that lasts only for a level
+     */
+    private void clearLevel() {
+        grid.clear();
+        blockIndex.clear();
+        coinIndex.clear();
+        enemyIndex.clear();
         coordinateGround.clear();
         coordinatesFixedBlocks.clear();
+        freePositions.clear();
         coordinatesRandomBlocks.clear();
+        blockIds.clear();
         coins.clear();
+        coinIds.clear();
         invinciblePu = null;
         lifePu = null;
         bombPu = null;
+        capacityPu = null;
         exitDoor = null;
         doorOpen = false;
 
         coordinateEnemies.clear();
+        enemyIds.clear();
         enemiesHp.clear();
 
-        playerPosition = new Coordinate(1,1);
-        bombRange = 1;
-        playerInvincible = false;
-
-        tntCoordinates = null;
+        Arrays.fill(playerPositions, new Coordinate(1,1));
+        Arrays.fill(bombRanges, initialBombRange);
+        Arrays.fill(bombCapacities, initialBombCapacity);
+        Arrays.fill(playersInvincible, false);
 
-        deleteObservers();
+        bombs.clear();
+        dangerMap.clear();
     }
 
     /**
@@ -166,7 +277,7 @@ public class MainModel extends Observable {
      * It's used when the player quit the game to the main menu
      */
     public void resetGame(){
-        playerHealthPoint = 3;
+        Arrays.fill(playerHealthPoints, INITIAL_HEALTH_POINT);
         points = 0;
         level = 1;
     }
@@ -175,6 +286,15 @@ public class MainModel extends Observable {
         level++;
     }
 
+    /**
+     * Seeds the generator of the model at the beginning of a match: with the same seed, the same
+     * configuration and the same actions at the same ticks, the match is played in the same way
+     * @param seed the seed of the match
+     */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
 
     private void generateBlocks() {
         generateBackground();
@@ -182,22 +302,23 @@ public class MainModel extends Observable {
     }
 
     private void generateBackground() {
+        coordinateGround.ensureCapacity(xMax * yMax);
+        freePositions.ensureCapacity(xMax * yMax);
+
         // This is the green ground (1 .. X_MAX, 1 .. Y_MAX)
+        // The free positions are all the green ground positions, except the ones of the first corner
+        // and the ones of the fixed checkerboard blocks
         for (int x = 1; x <= xMax; x += 1) {
             for (int y = 1; y <= yMax; y += 1) {
-                coordinateGround.add(new Coordinate(x, y));
-            }
-        }
-
-        // At the beginning the free positions are all the green ground positions, except the ones of the first corner
-        freePositions = coordinateGround.stream().filter(p -> p.x() + p.y() > 3).collect(Collectors.toList());
-
-        // This generates the fixed checkerboard blocks, removing the corresponding positions from the free positions list
-        for (int x = 1 + 1; x <= xMax; x += 2) {
-            for (int y = 1 + 1; y <= yMax; y += 2) {
-                var fixedBlock = new Coordinate(x, y);
-                coordinatesFixedBlocks.add(fixedBlock);
-                freePositions.remove(fixedBlock);
+                var ground = new Coordinate(x, y);
+                coordinateGround.add(ground);
+                tileCoordinates[grid.index(x, y)] = ground;
+                if (x % 2 == 0 && y % 2 == 0) {
+                    coordinatesFixedBlocks.add(ground);
+                    grid.set(x, y, TileGrid.FIXED_BLOCK);
+                } else if (x + y > 3) {
+                    freePositions.add(ground);
+                }
             }
         }
 
@@ -206,19 +327,27 @@ public class MainModel extends Observable {
             for (int y = 0; y <= yMax + 1; y += 1) {
                 if (x == 0 || x == xMax +1 || y == 0 || y == yMax +1) {
                     coordinatesFixedBlocks.add(new Coordinate(x, y));
+                    grid.set(x, y, TileGrid.FIXED_BLOCK);
                 }
             }
         }
+
+        // The fixed blocks don't change until the next level
+        grid.computeRays();
     }
 
     /**
-     * Generate NUM_RND_BLOCKS random blocks in the range 1 .. xMax-1, 1 .. yMax-1
+     * Generate numberOfRandomBlocks random blocks in the range 1 .. xMax-1, 1 .. yMax-1
      * the corresponding coordinates are taken from the free positions list and put in the coordinatesRandomBlocks list.
      */
     private void generateRandomBlocksPositions() {
+        coordinatesRandomBlocks.ensureCapacity(numberOfRandomBlocks);
         for (int i = 0; i< numberOfRandomBlocks; i++) {
-            Coordinate rndBlock = freePositions.remove(random.nextInt(freePositions.size()-1));
+            Coordinate rndBlock = removeRandom(freePositions);
+            blockIndex.put(rndBlock.x(), rndBlock.y(), coordinatesRandomBlocks.size());
+            blockIds.add(coordinatesRandomBlocks.size());
             coordinatesRandomBlocks.add(rndBlock);
+            grid.set(rndBlock.x(), rndBlock.y(), TileGrid.RANDOM_BLOCK);
         }
     }
 
@@ -228,38 +357,41 @@ public class MainModel extends Observable {
         ArrayList<Coordinate> availableCoordinates = new ArrayList<>(coordinatesRandomBlocks);
 
         // Generate the exit door
-        int randomExit = random.nextInt(coordinatesRandomBlocks.size());
-        exitDoor = coordinatesRandomBlocks.get(randomExit);
-        availableCoordinates.remove(exitDoor);
+        exitDoor = removeRandom(availableCoordinates);
+        grid.set(exitDoor.x(), exitDoor.y(), TileGrid.DOOR);
 
         //Generate the bigger bomb power up
-        int randomFire = random.nextInt(availableCoordinates.size());
-        bombPu = availableCoordinates.get(randomFire);
-        availableCoordinates.remove(bombPu);
+        bombPu = removeRandom(availableCoordinates);
+        grid.set(bombPu.x(), bombPu.y(), TileGrid.ITEM);
+
+        capacityPu = removeRandom(availableCoordinates);
+        grid.set(capacityPu.x(), capacityPu.y(), TileGrid.ITEM);
 
-        int randomLife = random.nextInt(availableCoordinates.size());
-        lifePu = availableCoordinates.get(randomLife);
-        availableCoordinates.remove(lifePu);
+        lifePu = removeRandom(availableCoordinates);
+        grid.set(lifePu.x(), lifePu.y(), TileGrid.ITEM);
 
-        int randomInvincible = random.nextInt(availableCoordinates.size());
-        invinciblePu = availableCoordinates.get(randomInvincible);
-        availableCoordinates.remove(invinciblePu);
+        invinciblePu = removeRandom(availableCoordinates);
+        grid.set(invinciblePu.x(), invinciblePu.y(), TileGrid.ITEM);
 
         // Generate the coordinates of the coins
         for (int i = 0; i < numberOfCoins; i++) {
-            int randomCoin = random.nextInt(availableCoordinates.size());
-            Coordinate coin = availableCoordinates.get(randomCoin);
-            availableCoordinates.remove(coin);
+            Coordinate coin = removeRandom(availableCoordinates);
+            coinIndex.put(coin.x(), coin.y(), coins.size());
+            coinIds.add(coins.size());
             coins.add(coin);
+            grid.set(coin.x(), coin.y(), TileGrid.ITEM);
         }
     }
 
     private void generateEnemiesPositions() {
         for (int i = 0; i< numberOfEnemies; i++) {
-            Coordinate enemy = freePositions.remove(random.nextInt(freePositions.size()-1));
+            Coordinate enemy = removeRandom(freePositions);
+            enemyIndex.put(enemy.x(), enemy.y(), coordinateEnemies.size());
+            enemyIds.add(coordinateEnemies.size());
             coordinateEnemies.add(enemy);
+            grid.set(enemy.x(), enemy.y(), TileGrid.ENEMY);
             // The number of lives of an enemy depends upon the level
-            enemiesHp.add(level);
+            enemiesHp.add(level * enemyHpPerLevel);
         }
     }
 
@@ -267,225 +399,255 @@ public class MainModel extends Observable {
 //######################################  TNT  ######################################//
 
     /**
-     * This method try to release the bomb
-     * @return false if the bomb is already deployed or the player is in the "safe zone" (his spawn block)
+     * This method try to release a bomb where the first player is
+     * @param explodeAt the tick at which the fuse of the bomb ends
+     * @return true if the bomb has been released, see releaseBomb(player, explodeAt)
+     */
+    public boolean releaseBomb(long explodeAt) {
+        return releaseBomb(0, explodeAt);
+    }
+
+    /**
+     * This method try to release a bomb where the player is
+     * @param player the number of the player
+     * @param explodeAt the tick at which the fuse of the bomb ends
+     * @return false if the player has already released all his bombs, if there is already a bomb
+     *         on his tile, if he is in the "safe zone" (his spawn block) or out of the game
      *         true if the bomb has been released
      */
-    public boolean releaseBomb() {
-        if (tntCoordinates != null || Objects.equals(playerPosition, new Coordinate(1, 1))){
+    public boolean releaseBomb(int player, long explodeAt) {
+        Coordinate playerPosition = playerPositions[player];
+        if (playerHealthPoints[player] <= 0 || bombs.countOwnedBy(player) >= bombCapacities[player]
+                || (playerPosition.x() == 1 && playerPosition.y() == 1)){
             return false;
         }
 
-        tntCoordinates = playerPosition;
+        if (!bombs.add(playerPosition.x(), playerPosition.y(), bombRanges[player], explodeAt, player)) {
+            return false;
+        }
+        distanceField.invalidate();
+        dangerMap.bombAdded(playerPosition.x(), playerPosition.y());
 
-        notifyBombReleased(tntCoordinates);
+        notifyBombReleased(playerPosition, player);
         return true;
     }
 
     /**
-     * This method calculates what has been hit during the explosion
+     * This method explodes the bombs whose fuse ends at the given tick, and the bombs reached by their
+     * blasts, then calculates what has been hit.
+     * Every blast propagates from its bomb in the four directions for the range of the bomb, stopping
+     * before the first fixed block; the blasts are merged, so a tile reached by many of them is hit once
+     * @param tick the current tick
+     * @return true if at least one bomb exploded
      */
-    public void explodeBomb() {
-        Set<Coordinate> blocksToRemove = new HashSet<>();
-        Set<Coordinate> enemiesToRemove = new HashSet<>();
-        Set<Coordinate> enemiesHpToRemove = new HashSet<>();
-
-        ArrayList<Triad> adjacentCoordinates = getCoordinates();
-        adjacentCoordinates.add(new Triad(tntCoordinates, Direction.CENTER, true));
-
-        for (Triad terna : adjacentCoordinates) {
-            Coordinate coord = terna.coordinate();
+    public boolean explodeBombs(long tick) {
+        List<Triad> explosion = bombs.detonate(tick);
+        if (explosion.isEmpty()) {
+            return false;
+        }
+        dangerMap.bombsExploded(explosion);
 
-            if (playerPosition.equals(coord)) {
-                decreasePlayerLife();
+        // Every player is hit at most once, even if he respawns inside the explosion
+        Arrays.fill(playersHit, false);
+        for (Triad triad : explosion) {
+            for (int player = 0; player < numberOfPlayers; player++) {
+                playersHit[player] |= playerPositions[player].equals(triad.coordinate());
             }
-
-            if (coordinatesRandomBlocks.contains(coord)) {
-                blocksToRemove.add(coord);
+            hit(triad.coordinate());
+            if (triad.direction() == Direction.CENTER) {
+                // The tile of the bomb can be walked on again
+                distanceField.open(triad.coordinate().x(), triad.coordinate().y());
             }
-
-            if (coordinateEnemies.contains(coord)) {
-                int enemyIndex = coordinateEnemies.indexOf(coord);
-
-                    enemiesHp.set(enemyIndex, enemiesHp.get(enemyIndex)-1);
-                    if (enemiesHp.get(enemyIndex) == 0) {
-                        enemiesToRemove.add(coord);
-                        enemiesHp.remove(enemyIndex);
-                    } else
-                        enemiesHpToRemove.add(coord);
+        }
+        for (int player = 0; player < numberOfPlayers; player++) {
+            if (playersHit[player]) {
+                decreasePlayerLife(player);
             }
         }
 
-        blocksToRemove.forEach(coordinate -> {
-            int index = coordinatesRandomBlocks.indexOf(coordinate);
-            coordinatesRandomBlocks.remove(coordinate);
-            notifyBlockRemoved(index);
-        });
-
-        enemiesToRemove.forEach(coordinate -> {
-            int index = coordinateEnemies.indexOf(coordinate);
-            coordinateEnemies.remove(coordinate);
-            notifyDeadEnemy(index);
-            points += POINTS_FOR_AN_ENEMY;
-            notifyPoints(POINTS_FOR_AN_ENEMY, coordinate);
-        });
-
-        enemiesHpToRemove.forEach(coordinate -> {
-            int index = coordinateEnemies.indexOf(coordinate);
-            notifyLessLifeEnemy(index);
-        });
-
-        notifyExplosion(adjacentCoordinates);
-        tntCoordinates = null;
-        isBombExploding = false;
+        notifyExplosion(explosion);
 
         checkAndOpenTheDoor();
-    }
-
-
-    private void checkAndOpenTheDoor() {
-        if (!doorOpen && coordinateEnemies.isEmpty()){
-            notifyOpenedDoor();
-            doorOpen = true;
-        }
+        return true;
     }
 
     /**
-     * This method calculates the coordinates affected by the bomb explosion
-     * @return a List of Triads, where each Triad contains the coordinate, the direction, and a
-     * boolean that is true if that is the last coordinate in that direction
+     * Destroys the random block and damages the enemy on a tile reached by the explosion
+     * @param coordinate the tile
      */
-    private ArrayList<Triad> getCoordinates() {
-        ArrayList<Triad> adjacentCoordinate = new ArrayList<>();
-
-        // Flags to stop the propagation of the bomb in that direction
-        // I'm using these flags because you need to know if the propagation in that direction has encountered an
-        // obstacle the cycle before
-        boolean stopUp = false;
-        boolean stopDown = false;
-        boolean stopLeft = false;
-        boolean stopRight = false;
-
-        // Checking every direction, then, if the bomb range is >1, check the external blocks
-        for (int distance = 1; distance <= bombRange; distance++) {
-            Coordinate coordUp = new Coordinate(tntCoordinates.x(), tntCoordinates.y() - distance);
-            Coordinate coordDown = new Coordinate(tntCoordinates.x(), tntCoordinates.y() + distance);
-            Coordinate coordLeft = new Coordinate(tntCoordinates.x() - distance, tntCoordinates.y());
-            Coordinate coordRight = new Coordinate(tntCoordinates.x() + distance, tntCoordinates.y());
-
-            if (!stopUp && !coordinatesFixedBlocks.contains(coordUp)) {
-                adjacentCoordinate.add(new Triad(coordUp, Direction.UP, distance == bombRange));
-            } else {
-                stopUp = true;
-            }
-
-            if (!stopDown && !coordinatesFixedBlocks.contains(coordDown)) {
-                adjacentCoordinate.add(new Triad(coordDown, Direction.DOWN, distance == bombRange));
-            } else {
-                stopDown = true;
-            }
+    private void hit(Coordinate coordinate) {
+        if (grid.has(coordinate.x(), coordinate.y(), TileGrid.RANDOM_BLOCK)) {
+            int slot = blockIndex.get(coordinate.x(), coordinate.y());
+            int id = swapRemove(blockIds, slot);
+            swapRemove(coordinatesRandomBlocks, slot);
+            blockIndex.swapRemoved(coordinate, coordinatesRandomBlocks, slot);
+            grid.unset(coordinate.x(), coordinate.y(), TileGrid.RANDOM_BLOCK);
+            distanceField.open(coordinate.x(), coordinate.y());
+            notifyBlockRemoved(id);
+        }
 
-            if (!stopLeft && !coordinatesFixedBlocks.contains(coordLeft)) {
-                adjacentCoordinate.add(new Triad(coordLeft, Direction.LEFT, distance == bombRange));
+        if (grid.has(coordinate.x(), coordinate.y(), TileGrid.ENEMY)) {
+            int slot = enemyIndex.get(coordinate.x(), coordinate.y());
+            int id = enemyIds.get(slot);
+            enemiesHp.set(slot, enemiesHp.get(slot) - 1);
+            if (enemiesHp.get(slot) == 0) {
+                // The hp and the id are removed together with the coordinate, to keep the lists aligned
+                swapRemove(coordinateEnemies, slot);
+                swapRemove(enemyIds, slot);
+                swapRemove(enemiesHp, slot);
+                enemyIndex.swapRemoved(coordinate, coordinateEnemies, slot);
+                grid.unset(coordinate.x(), coordinate.y(), TileGrid.ENEMY);
+                notifyDeadEnemy(id);
+                points += pointsForAnEnemy;
+                notifyPoints(pointsForAnEnemy, coordinate);
             } else {
-                stopLeft = true;
+                notifyLessLifeEnemy(id);
             }
+        }
+    }
 
-            if (!stopRight && !coordinatesFixedBlocks.contains(coordRight)) {
-                adjacentCoordinate.add(new Triad(coordRight, Direction.RIGHT, distance == bombRange));
-            } else {
-                stopRight = true;
-            }
+    private void checkAndOpenTheDoor() {
+        if (!doorOpen && coordinateEnemies.isEmpty()){
+            notifyOpenedDoor();
+            doorOpen = true;
         }
-        return adjacentCoordinate;
     }
 
 
 
 //####################################  POWER UPS AND LIFE  ####################################//
 
-    private void decreasePlayerLife() {
-        if (!playerInvincible && playerHealthPoint > 0) {
-            playerHealthPoint -= 1;
-            if (playerHealthPoint <= 0) {
+    /**
+     * The player loses a life and goes back to the spawn; without lives he is out of the game,
+     * and the game is over when all the players are out
+     */
+    private void decreasePlayerLife(int player) {
+        if (!playersInvincible[player] && playerHealthPoints[player] > 0) {
+            playerHealthPoints[player] -= 1;
+            if (playerHealthPoints[player] > 0) {
+                playerPositions[player] = tileCoordinates[grid.index(1, 1)];
+                notifyLessLife(player);
+            } else if (getPlayersInGame() == 0) {
                 notifyDefeat();
             } else {
-                playerPosition = new Coordinate(1, 1);
-                notifyLessLife();
+                notifyLessLife(player);
             }
         }
     }
 
+    /**
+     * Gives the player the state of a new player: the initial lives and power ups, at the spawn.
+     * It's used when another person takes the place of the player, e.g. in a room of the RoomServer
+     * @param player the number of the player
+     */
+    public void resetPlayer(int player) {
+        playerHealthPoints[player] = INITIAL_HEALTH_POINT;
+        bombRanges[player] = initialBombRange;
+        bombCapacities[player] = initialBombCapacity;
+        endInvincibility(player);
+        playerPositions[player] = tileCoordinates[grid.index(1, 1)];
+        notifyLessLife(player);
+    }
+
 
 //####################################  PLAYER MOVEMENT  ####################################//
     /**
-     * Given the key code of the key pressed by the player, changes accordingly its position,
+     * Moves the first player, see movePlayer(player, direction)
+     * @param direction is the direction of the movement
+     * @return true if the player has moved
+     */
+    public boolean movePlayer(Direction direction) {
+        return movePlayer(0, direction);
+    }
+
+    /**
+     * Given the direction chosen by the player, changes accordingly its position,
      * checking if it found the exit or if got a power up or a coin
-     * @param keyCode is the code of the key pressed by the player
+     * @param player the number of the player, that must be still in the game
+     * @param direction is the direction of the movement
+     * @return true if the player has moved (even if he has then been sent back to the spawn by an enemy),
+     *         false if the movement was blocked and nothing changed
      */
-    public void movePlayer(KeyCode keyCode) {
-        if (KEY_CODES.contains(keyCode)) {
-        Coordinate oldPosition = playerPosition;
-            Coordinate newPosition = calculateNewPosition(keyCode, playerPosition);
+    public boolean movePlayer(int player, Direction direction) {
+        if (direction != null && direction != Direction.CENTER && playerHealthPoints[player] > 0) {
+        Coordinate oldPosition = playerPositions[player];
+            Coordinate newPosition = calculateNewPosition(direction, oldPosition);
 
             // If the player can change position, then let him change position
             if (!newPosition.equals(oldPosition) && !collision(newPosition)) {
-                playerPosition = newPosition;
-                notifyPlayerPosition(newPosition, oldPosition);
+                playerPositions[player] = newPosition;
+                notifyPlayerPosition(newPosition, oldPosition, player);
 
                 // Check if he found the exit and if he can finish the level
                 // Else check if he got a power up or took a coin
-                if (newPosition.equals(exitDoor) && coordinateEnemies.isEmpty()) {
+                if (grid.has(newPosition.x(), newPosition.y(), TileGrid.DOOR) && coordinateEnemies.isEmpty()) {
                     notifyVictory();
-                } else if (newPosition.equals(bombPu)) {
-                    notifyPUExplosion();
-                } else if (newPosition.equals(lifePu)) {
-                    notifyPULife();
-                } else if (newPosition.equals(invinciblePu)) {
-                    notifyPUInvincible();
-                } else {
-                    ArrayList<Coordinate> coinsToRemove = new ArrayList<>(coins);
-                    coinsToRemove.forEach(coordinate -> {
-                        if (newPosition.equals(coordinate)) {
-                            // Notify the removal of the coin
-                            notifyCoin(coins.indexOf(coordinate));
-                            coins.remove(coordinate);
-                            // Notify the addition of the points
-                            points += POINTS_FOR_A_COIN;
-                            notifyPoints(POINTS_FOR_A_COIN, coordinate);
-                        }
-                    });
+                } else if (grid.has(newPosition.x(), newPosition.y(), TileGrid.ITEM)) {
+                    grid.unset(newPosition.x(), newPosition.y(), TileGrid.ITEM);
+                    if (newPosition.equals(bombPu)) {
+                        notifyPUExplosion(player);
+                    } else if (newPosition.equals(capacityPu)) {
+                        notifyPUCapacity(player);
+                    } else if (newPosition.equals(lifePu)) {
+                        notifyPULife(player);
+                    } else if (newPosition.equals(invinciblePu)) {
+                        notifyPUInvincible(player);
+                    } else {
+                        // The only items left are the coins
+                        int slot = coinIndex.get(newPosition.x(), newPosition.y());
+                        // Notify the removal of the coin
+                        notifyCoin(swapRemove(coinIds, slot));
+                        swapRemove(coins, slot);
+                        coinIndex.swapRemoved(newPosition, coins, slot);
+                        // Notify the addition of the points
+                        points += pointsForACoin;
+                        notifyPoints(pointsForACoin, newPosition);
+                    }
                 }
+                return true;
             }
         }
+        return false;
     }
 
 
 
 //####################################   UTILITIES   ####################################//
     /**
-     * Starting from the current position, for the given keyCode calculates the new position on the game board
+     * Starting from the current position, for the given direction calculates the new position on the game board
      * (without taking into account any collision).
-     * @param keyCode is the code of the key pressed by the player
+     * @param direction is the direction of the movement
      * @return returns the new position of the player
      */
-    private Coordinate calculateNewPosition(KeyCode keyCode, Coordinate currentPosition) {
-        int deltaX = 0;
-        int deltaY = 0;
+    private Coordinate calculateNewPosition(Direction direction, Coordinate currentPosition) {
+        int newX = clamp(currentPosition.x() + direction.getDx() * MOVEMENT, 1, xMax);
+        int newY = clamp(currentPosition.y() + direction.getDy() * MOVEMENT, 1, yMax);
 
-        switch (keyCode) {
-            case UP -> deltaY = -MOVEMENT;
-            case DOWN -> deltaY = MOVEMENT;
-            case LEFT -> deltaX = -MOVEMENT;
-            case RIGHT -> deltaX = MOVEMENT;
-            default -> {
-            }
-        }
+        return tileCoordinates[grid.index(newX, newY)];
+    }
 
-        int newX = clamp(currentPosition.x() + deltaX, 1, xMax);
-        int newY = clamp(currentPosition.y() + deltaY, 1, yMax);
+    /**
+     * Removes a random element from the list in constant time, moving the last element in its place
+     * @param coordinates the list, whose order is not preserved
+     * @return the removed element
+     */
+    private Coordinate removeRandom(List<Coordinate> coordinates) {
+        return swapRemove(coordinates, random.nextInt(coordinates.size()));
+    }
 
-        return new Coordinate(newX, newY);
+    /**
+     * Removes an element from the list in constant time, moving the last element in its place
+     * @param list the list, whose order is not preserved
+     * @param index the position of the element
+     * @return the removed element
+     */
+    private static <T> T swapRemove(List<T> list, int index) {
+        T removed = list.get(index);
+        T last = list.remove(list.size() - 1);
+        if (index < list.size()) {
+            list.set(index, last);
+        }
+        return removed;
     }
 
     /**
@@ -503,72 +665,377 @@ public class MainModel extends Observable {
      * @return true if the given coordinate collides with an existing fixed block or random block.
      */
     private boolean collision(Coordinate coordinate) {
-        return (coordinatesFixedBlocks.contains(coordinate) || coordinatesRandomBlocks.contains(coordinate) || coordinate.equals(tntCoordinates));
+        return grid.isObstacle(coordinate.x(), coordinate.y());
+    }
+
+    private void checkFatalCollision(int player) {
+        Coordinate playerPosition = playerPositions[player];
+        if(grid.has(playerPosition.x(), playerPosition.y(), TileGrid.ENEMY)){
+            decreasePlayerLife(player);
+        }
+    }
+
+
+//####################################   GETTERS   ####################################//
+    /**
+     * The grid must not be modified outside the model
+     * @return the flags of every tile of the map
+     */
+    public TileGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return the number of players, that is fixed by the configuration
+     */
+    public int getNumberOfPlayers() {
+        return numberOfPlayers;
+    }
+
+    /**
+     * @return the number of players that still have lives
+     */
+    public int getPlayersInGame() {
+        int count = 0;
+        for (int healthPoint : playerHealthPoints) {
+            if (healthPoint > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public Coordinate getPlayerPosition() {
+        return playerPositions[0];
+    }
+
+    public Coordinate getPlayerPosition(int player) {
+        return playerPositions[player];
+    }
+
+    /**
+     * The bombs must not be modified outside the model
+     * @return the bombs on the map
+     */
+    public BombTable getBombs() {
+        return bombs;
+    }
+
+    /**
+     * The danger map must not be modified outside the model
+     * @return the tick at which the blasts of the bombs will reach every tile
+     */
+    public DangerMap getDangerMap() {
+        return dangerMap;
+    }
+
+    public int getBombRange() {
+        return bombRanges[0];
+    }
+
+    public int getBombRange(int player) {
+        return bombRanges[player];
+    }
+
+    public int getBombCapacity() {
+        return bombCapacities[0];
+    }
+
+    public int getBombCapacity(int player) {
+        return bombCapacities[player];
+    }
+
+    public int getPoints() {
+        return points;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getPlayerHealthPoint() {
+        return playerHealthPoints[0];
+    }
+
+    public int getPlayerHealthPoint(int player) {
+        return playerHealthPoints[player];
+    }
+
+    public Coordinate getExitDoor() {
+        return exitDoor;
+    }
+
+    public boolean isDoorOpen() {
+        return doorOpen;
+    }
+
+
+//####################################   SNAPSHOT   ####################################//
+    /**
+     * Writes the state of the level in a ModelSnapshot: the players, the items, the entities in the order
+     * of their lists (that decides the order in which they act) with their ids, the bombs and the state
+     * of the generator. The rest (the grid, the indexes, the danger map) is derived from these
+     */
+    void writeState(DataOutput out) throws IOException {
+        out.writeInt(level);
+        out.writeInt(points);
+        out.writeBoolean(doorOpen);
+        out.writeByte(enemyBehaviour.ordinal());
+        out.writeLong(random.getState());
+
+        out.writeInt(numberOfPlayers);
+        for (int player = 0; player < numberOfPlayers; player++) {
+            writeTile(out, playerPositions[player]);
+            out.writeInt(playerHealthPoints[player]);
+            out.writeInt(bombRanges[player]);
+            out.writeInt(bombCapacities[player]);
+            out.writeBoolean(playersInvincible[player]);
+        }
+        writeTile(out, exitDoor);
+        writeTile(out, bombPu);
+        writeTile(out, capacityPu);
+        writeTile(out, lifePu);
+        writeTile(out, invinciblePu);
+
+        out.writeInt(coordinatesRandomBlocks.size());
+        for (int slot = 0; slot < coordinatesRandomBlocks.size(); slot++) {
+            writeTile(out, coordinatesRandomBlocks.get(slot));
+            out.writeInt(blockIds.get(slot));
+        }
+        out.writeInt(coins.size());
+        for (int slot = 0; slot < coins.size(); slot++) {
+            writeTile(out, coins.get(slot));
+            out.writeInt(coinIds.get(slot));
+        }
+        out.writeInt(coordinateEnemies.size());
+        for (int slot = 0; slot < coordinateEnemies.size(); slot++) {
+            writeTile(out, coordinateEnemies.get(slot));
+            out.writeInt(enemyIds.get(slot));
+            out.writeInt(enemiesHp.get(slot));
+        }
+        out.writeInt(bombs.size());
+        for (int slot = 0; slot < bombs.size(); slot++) {
+            writeTile(out, bombs.getCoordinate(slot));
+            out.writeInt(bombs.getRange(slot));
+            out.writeLong(bombs.getExplodeAt(slot));
+            out.writeInt(bombs.getOwner(slot));
+        }
+    }
+
+    /**
+     * Replaces the level with the one written by writeState(), without notifying the listeners:
+     * notifyModelReady() then sends it to the view
+     * @throws IOException if the state is corrupted
+     */
+    void readState(DataInput in) throws IOException {
+        clearLevel();
+        level = in.readInt();
+        points = in.readInt();
+        doorOpen = in.readBoolean();
+        int behaviour = in.readUnsignedByte();
+        if (behaviour >= EnemyBehaviour.values().length) {
+            throw new IOException("Unknown behaviour of the enemies: " + behaviour);
+        }
+        enemyBehaviour = EnemyBehaviour.values()[behaviour];
+        random.setState(in.readLong());
+
+        generateBackground();
+        int players = in.readInt();
+        if (players != numberOfPlayers) {
+            throw new IOException("The snapshot has " + players + " players, not " + numberOfPlayers);
+        }
+        for (int player = 0; player < numberOfPlayers; player++) {
+            playerPositions[player] = readTile(in);
+            if (playerPositions[player] == null) {
+                throw new IOException("The position of the player " + player + " is missing");
+            }
+            playerHealthPoints[player] = in.readInt();
+            bombRanges[player] = in.readInt();
+            bombCapacities[player] = in.readInt();
+            playersInvincible[player] = in.readBoolean();
+        }
+        exitDoor = readTile(in);
+        if (exitDoor == null) {
+            throw new IOException("The position of the exit door is missing");
+        }
+        grid.set(exitDoor.x(), exitDoor.y(), TileGrid.DOOR);
+        bombPu = readItem(in);
+        capacityPu = readItem(in);
+        lifePu = readItem(in);
+        invinciblePu = readItem(in);
+
+        int blockCount = readCount(in);
+        for (int i = 0; i < blockCount; i++) {
+            Coordinate block = readTile(in);
+            blockIndex.put(block.x(), block.y(), coordinatesRandomBlocks.size());
+            blockIds.add(in.readInt());
+            coordinatesRandomBlocks.add(block);
+            grid.set(block.x(), block.y(), TileGrid.RANDOM_BLOCK);
+        }
+        int coinCount = readCount(in);
+        for (int i = 0; i < coinCount; i++) {
+            Coordinate coin = readTile(in);
+            coinIndex.put(coin.x(), coin.y(), coins.size());
+            coinIds.add(in.readInt());
+            coins.add(coin);
+            grid.set(coin.x(), coin.y(), TileGrid.ITEM);
+        }
+        int enemyCount = readCount(in);
+        for (int i = 0; i < enemyCount; i++) {
+            Coordinate enemy = readTile(in);
+            enemyIndex.put(enemy.x(), enemy.y(), coordinateEnemies.size());
+            enemyIds.add(in.readInt());
+            enemiesHp.add(in.readInt());
+            coordinateEnemies.add(enemy);
+            grid.set(enemy.x(), enemy.y(), TileGrid.ENEMY);
+        }
+        // The bombs are added in the order of their slots, that decides the order of the chain reactions
+        int bombCount = readCount(in);
+        for (int i = 0; i < bombCount; i++) {
+            Coordinate bomb = readTile(in);
+            int range = in.readInt();
+            long explodeAt = in.readLong();
+            int owner = in.readInt();
+            if (owner < 0 || owner >= numberOfPlayers) {
+                throw new IOException("Not a player: " + owner);
+            }
+            bombs.add(bomb.x(), bomb.y(), range, explodeAt, owner);
+            dangerMap.bombAdded(bomb.x(), bomb.y());
+        }
+        distanceField.invalidate();
     }
 
-    private void checkFatalCollision() {
-        if(coordinateEnemies.contains(playerPosition)){
-            decreasePlayerLife();
+    private void writeTile(DataOutput out, Coordinate coordinate) throws IOException {
+        out.writeInt(coordinate == null ? -1 : grid.index(coordinate.x(), coordinate.y()));
+    }
+
+    /**
+     * @return the Coordinate of a tile of the ground written by writeTile(), null if it was written for a missing item
+     */
+    private Coordinate readTile(DataInput in) throws IOException {
+        int index = in.readInt();
+        if (index == -1) {
+            return null;
+        }
+        if (index < 0 || index >= tileCoordinates.length || tileCoordinates[index] == null) {
+            throw new IOException("Not a tile of the ground: " + index);
         }
+        return tileCoordinates[index];
+    }
+
+    /**
+     * @return the position of a power up, that is marked on the grid, or null if it has been taken
+     */
+    private Coordinate readItem(DataInput in) throws IOException {
+        Coordinate item = readTile(in);
+        if (item != null) {
+            grid.set(item.x(), item.y(), TileGrid.ITEM);
+        }
+        return item;
+    }
+
+    private int readCount(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > tileCoordinates.length) {
+            throw new IOException("Too many entities for the map: " + count);
+        }
+        return count;
     }
 
 
 //####################################  NOTIFICATIONS  ####################################//
+    /**
+     * Subscribes the listener to the updates of the given types
+     * @param listener the listener
+     * @param updateTypes the types of update the listener wants to receive
+     */
+    public void subscribe(UpdateListener listener, Set<UpdateType> updateTypes) {
+        updateBus.subscribe(listener, updateTypes);
+    }
+
+    /**
+     * Removes all the listeners
+     */
+    public void unsubscribeAll() {
+        updateBus.unsubscribeAll();
+    }
+
     public void notifyModelReady() {
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.LOAD_POINTS).setPoints(points).build());
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.LOAD_LIFE).setHealthPoint(playerHealthPoint).build());
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.LEVEL).setLevel(level).build());
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.LOAD_MAP).setSubBlock(BlockType.GROUND_BLOCKS).setBlocks(coordinateGround).build());
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.LOAD_MAP).setSubBlock(BlockType.STATIC_BLOCKS).setBlocks(coordinatesFixedBlocks).build());
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.LOAD_POWER_UP_BOMB).setCoordinate(bombPu).build());
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.LOAD_POWER_UP_LIFE).setCoordinate(lifePu).build());
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.LOAD_POWER_UP_INVINCIBLE).setCoordinate(invinciblePu).build());
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.LOAD_EXIT).setCoordinate(exitDoor).build());
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.LOAD_COINS).setEntities(coins).build());
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.LOAD_MAP).setSubBlock(BlockType.RANDOM_BLOCKS).setBlocks(coordinatesRandomBlocks).build());
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.LOAD_PLAYER).setCoordinate(playerPosition).build());
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.LOAD_ENEMIES).setEntities(coordinateEnemies).build());
+        updateBus.publish(updateBus.acquire(UpdateType.LOAD_POINTS).setPoints(points));
+        for (int player = 0; player < numberOfPlayers; player++) {
+            updateBus.publish(updateBus.acquire(UpdateType.LOAD_LIFE).setHealthPoint(playerHealthPoints[player]).setIndex(player));
+        }
+        updateBus.publish(updateBus.acquire(UpdateType.LEVEL).setLevel(level));
+        updateBus.publish(updateBus.acquire(UpdateType.LOAD_MAP).setSubBlock(BlockType.GROUND_BLOCKS).setBlocks(coordinateGround));
+        updateBus.publish(updateBus.acquire(UpdateType.LOAD_MAP).setSubBlock(BlockType.STATIC_BLOCKS).setBlocks(coordinatesFixedBlocks));
+        // The power ups already taken are missing when the level is restored from a snapshot
+        if (bombPu != null) {
+            updateBus.publish(updateBus.acquire(UpdateType.LOAD_POWER_UP_BOMB).setCoordinate(bombPu));
+        }
+        if (capacityPu != null) {
+            updateBus.publish(updateBus.acquire(UpdateType.LOAD_POWER_UP_CAPACITY).setCoordinate(capacityPu));
+        }
+        if (lifePu != null) {
+            updateBus.publish(updateBus.acquire(UpdateType.LOAD_POWER_UP_LIFE).setCoordinate(lifePu));
+        }
+        if (invinciblePu != null) {
+            updateBus.publish(updateBus.acquire(UpdateType.LOAD_POWER_UP_INVINCIBLE).setCoordinate(invinciblePu));
+        }
+        updateBus.publish(updateBus.acquire(UpdateType.LOAD_EXIT).setCoordinate(exitDoor));
+        updateBus.publish(updateBus.acquire(UpdateType.LOAD_COINS).setEntities(coins).setIds(coinIds));
+        updateBus.publish(updateBus.acquire(UpdateType.LOAD_MAP).setSubBlock(BlockType.RANDOM_BLOCKS).setBlocks(coordinatesRandomBlocks).setIds(blockIds));
+        for (int player = 0; player < numberOfPlayers; player++) {
+            updateBus.publish(updateBus.acquire(UpdateType.LOAD_PLAYER).setCoordinate(playerPositions[player]).setIndex(player));
+        }
+        updateBus.publish(updateBus.acquire(UpdateType.LOAD_ENEMIES).setEntities(coordinateEnemies).setIds(enemyIds));
+
+        // The rest of the state that a restored level can have
+        if (!bombs.isEmpty()) {
+            List<Coordinate> bombCoordinates = new ArrayList<>(bombs.size());
+            for (int slot = 0; slot < bombs.size(); slot++) {
+                bombCoordinates.add(bombs.getCoordinate(slot));
+            }
+            updateBus.publish(updateBus.acquire(UpdateType.LOAD_BOMBS).setEntities(bombCoordinates));
+        }
+        for (int slot = 0; slot < coordinateEnemies.size(); slot++) {
+            if (enemiesHp.get(slot) == 1 && level * enemyHpPerLevel > 1) {
+                notifyLessLifeEnemy(enemyIds.get(slot));
+            }
+        }
+        for (int player = 0; player < numberOfPlayers; player++) {
+            if (playersInvincible[player]) {
+                updateBus.publish(updateBus.acquire(UpdateType.UPDATE_PU_INVINCIBLE).setPlayerInvincible(true).setIndex(player));
+            }
+        }
+        if (doorOpen) {
+            notifyOpenedDoor();
+        }
     }
 
     /**
      * Notify that the bomb has been released
      * @param tnt The coordinates where the tnt needs to be drawn
+     * @param player the number of the player who released it
      */
-    private void notifyBombReleased(Coordinate tnt){
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_BOMB_RELEASED).setCoordinate(tnt).build());
+    private void notifyBombReleased(Coordinate tnt, int player){
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_BOMB_RELEASED).setCoordinate(tnt).setIndex(player));
     }
 
     /**
      * Notify that a block has been removed
-     * @param blockToRemove The index of the block to be removed
+     * @param blockToRemove The id of the block to be removed
      */
     private void notifyBlockRemoved(int blockToRemove) {
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_BLOCK_DESTROYED).setIndex(blockToRemove).build());
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_BLOCK_DESTROYED).setIndex(blockToRemove));
     }
 
 
     /**
      * Notify that a coin has been taken
-     * @param coinToRemove The index of the coin to be removed
+     * @param coinToRemove The id of the coin to be removed
      */
     private void notifyCoin(int coinToRemove) {
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_COINS).setIndex(coinToRemove).build());
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_COINS).setIndex(coinToRemove));
     }
 
     /**
@@ -577,237 +1044,330 @@ public class MainModel extends Observable {
      * @param pointsCoordinates The coordinates of where the points have been earned
      */
     private void notifyPoints(int earnedPoints, Coordinate pointsCoordinates) {
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_POINTS).setCoordinate(pointsCoordinates).setEarnedPoints(earnedPoints).setPoints(points).build());
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_POINTS).setCoordinate(pointsCoordinates).setEarnedPoints(earnedPoints).setPoints(points));
     }
 
     /**
      * Notify that an enemy has lost a life
-     * @param enemyWithLessLife The index of the enemy that has lost a life
+     * @param enemyWithLessLife The id of the enemy that has lost a life
      */
     private void notifyLessLifeEnemy(int enemyWithLessLife) {
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_ENEMY_LIFE).setIndex(enemyWithLessLife).build());
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_ENEMY_LIFE).setIndex(enemyWithLessLife));
     }
 
     private void notifyOpenedDoor() {
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_DOOR).build());
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_DOOR));
     }
 
     /**
      * Notify that an enemy has been killed
-     * @param deadEnemyIdx the index of the enemy that is now dead
+     * @param deadEnemyIdx the id of the enemy that is now dead
      */
     private void notifyDeadEnemy(int deadEnemyIdx) {
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_ENEMY_DEAD).setIndex(deadEnemyIdx).build());
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_ENEMY_DEAD).setIndex(deadEnemyIdx));
     }
 
     /**
-     * Notify that the player has changed position
+     * Notify that a player has changed position; the index of the update is -1 for the first player,
+     * -2 for the second one and so on, since the non-negative ones are the ids of the enemies
      * @param newPosition The new player position
      * @param oldPosition The old player position
+     * @param player the number of the player
      */
-    private void notifyPlayerPosition(Coordinate newPosition, Coordinate oldPosition) {
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_POSITION).setNewPosition(newPosition).setOldPosition(oldPosition).setIndex(-1).build());
-        checkFatalCollision();
+    private void notifyPlayerPosition(Coordinate newPosition, Coordinate oldPosition, int player) {
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_POSITION).setNewPosition(newPosition).setOldPosition(oldPosition).setIndex(-1 - player));
+        checkFatalCollision(player);
     }
 
-    private void notifyLessLife() {
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_RESPAWN).setHealthPoint(playerHealthPoint).build());
+    /**
+     * Notify that a player has lost a life and is back to the spawn, or that he is out of the game if he has no more lives
+     * @param player the number of the player
+     */
+    private void notifyLessLife(int player) {
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_RESPAWN).setHealthPoint(playerHealthPoints[player]).setIndex(player));
     }
 
     /**
-     * Notify the explosion path
+     * Notify the explosion path, with the blasts of all the bombs exploded in the same tick
      * @param triadList the list of the Triads
      */
     private void notifyExplosion(List<Triad> triadList) {
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_EXPLOSION).setTriadList(triadList).build());
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_EXPLOSION).setTriadList(triadList));
     }
 
-    private void notifyPUExplosion(){
-        bombRange += 1;
+    private void notifyPUExplosion(int player){
+        bombRanges[player] += 1;
         bombPu = null;
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_PU_BOMB).build());
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_PU_BOMB).setIndex(player));
+    }
+
+    private void notifyPUCapacity(int player){
+        bombCapacities[player] += 1;
+        capacityPu = null;
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_PU_CAPACITY).setIndex(player));
     }
 
-    private void notifyPULife(){
-        playerHealthPoint += 1;
+    private void notifyPULife(int player){
+        playerHealthPoints[player] += 1;
         lifePu = null;
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_PU_LIFE).setHealthPoint(playerHealthPoint).build());
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_PU_LIFE).setHealthPoint(playerHealthPoints[player]).setIndex(player));
     }
 
-    public void notifyPUInvincible(){
+    private void notifyPUInvincible(int player){
         invinciblePu = null;
-        playerInvincible = true;
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_PU_INVINCIBLE).setPlayerInvincible(true).build());
-        PauseTransition pauseInvincible = new PauseTransition(Duration.seconds(10));
-        pauseInvincible.setOnFinished(actionEvent -> {
-            playerInvincible = false;
-            setChanged();
-            notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_PU_INVINCIBLE).setPlayerInvincible(false).build());
-        });
-        pauseInvincible.play();
+        playersInvincible[player] = true;
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_PU_INVINCIBLE).setPlayerInvincible(true).setIndex(player));
+    }
+
+    /**
+     * Ends the invincibility of the first player
+     */
+    public void endInvincibility() {
+        endInvincibility(0);
+    }
+
+    /**
+     * Ends the invincibility of the player, it's called by the GameEngine when the timer of the power up expires
+     * @param player the number of the player
+     */
+    public void endInvincibility(int player) {
+        if (playersInvincible[player]) {
+            playersInvincible[player] = false;
+            updateBus.publish(updateBus.acquire(UpdateType.UPDATE_PU_INVINCIBLE).setPlayerInvincible(false).setIndex(player));
+        }
+    }
+
+    public boolean isPlayerInvincible() {
+        return playersInvincible[0];
+    }
+
+    public boolean isPlayerInvincible(int player) {
+        return playersInvincible[player];
     }
 
     private void notifyVictory() {
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_GAME_WIN).build());
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_GAME_WIN));
     }
 
     private void notifyDefeat() {
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_GAME_OVER).build());
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_GAME_OVER));
     }
 
-    private void notifyEnemyMovement(Coordinate oldPosition, Coordinate newPosition, int enemyId, KeyCode keyCode) {
-        setChanged();
-        notifyObservers(new UpdateInfo.Builder(UpdateType.UPDATE_POSITION).setOldPosition(oldPosition).setNewPosition(newPosition).setIndex(enemyId).setKeyCode(keyCode).setEnemyLastLife(enemiesHp.get(enemyId) == 1).build());
-        checkFatalCollision();
+    private void notifyEnemyMovement(Coordinate oldPosition, Coordinate newPosition, int slot, Direction direction) {
+        updateBus.publish(updateBus.acquire(UpdateType.UPDATE_POSITION).setOldPosition(oldPosition).setNewPosition(newPosition).setIndex(enemyIds.get(slot)).setDirection(direction).setEnemyLastLife(enemiesHp.get(slot) == 1));
+        for (int player = 0; player < numberOfPlayers; player++) {
+            checkFatalCollision(player);
+        }
     }
 
 
 //########################################  ENEMIES  ########################################//
 
     /**
-     * Generate the new positions for the enemies
+     * Generate the new positions for the enemies.
+     * The enemies that hunt the players share a single DistanceField, updated once for all of them,
+     * that leads every enemy to the nearest player still in the game
      */
     public void moveEnemies() {
+        if (enemyBehaviour == EnemyBehaviour.HUNTER) {
+            int hunted = 0;
+            for (int player = 0; player < numberOfPlayers; player++) {
+                if (playerHealthPoints[player] > 0) {
+                    huntedTiles[hunted++] = grid.index(playerPositions[player].x(), playerPositions[player].y());
+                }
+            }
+            distanceField.update(huntedTiles, hunted);
+        }
         for (int i = 0; i< coordinateEnemies.size(); i++) {
             calculateNewEnemyPosition(i);
         }
     }
 
-    private void calculateNewEnemyPosition(int enemyId) {
-        Coordinate oldEnemyPosition = coordinateEnemies.get(enemyId);
-        int randomInt = random.nextInt(KEY_CODES.size());
-        Coordinate newEnemyPosition;
-        int i = 0;
-        KeyCode key;
-        do{
-            key = KEY_CODES.get((randomInt + i)%4);
-            newEnemyPosition = calculateNewPosition(key, oldEnemyPosition);
-            i++;
+    private void calculateNewEnemyPosition(int slot) {
+        Coordinate oldEnemyPosition = coordinateEnemies.get(slot);
+        Direction direction = null;
+        if (enemyBehaviour == EnemyBehaviour.HUNTER) {
+            direction = huntingDirection(oldEnemyPosition);
+        }
+        if (direction == null) {
+            direction = randomDirection(oldEnemyPosition, enemyBehaviour == EnemyBehaviour.HUNTER);
+        }
 
-        } while((collision(newEnemyPosition) || coordinateEnemies.contains(newEnemyPosition)|| !isSafeZone(newEnemyPosition)) && i < 4);
+        if (direction != null) {
+            int newX = oldEnemyPosition.x() + direction.getDx() * MOVEMENT;
+            int newY = oldEnemyPosition.y() + direction.getDy() * MOVEMENT;
+            Coordinate newEnemyPosition = tileCoordinates[grid.index(newX, newY)];
+            coordinateEnemies.set(slot, newEnemyPosition);
+            enemyIndex.move(oldEnemyPosition, newEnemyPosition);
+            grid.unset(oldEnemyPosition.x(), oldEnemyPosition.y(), TileGrid.ENEMY);
+            grid.set(newX, newY, TileGrid.ENEMY);
+            notifyEnemyMovement(oldEnemyPosition, newEnemyPosition, slot, direction);
+        }
+    }
+
+    /**
+     * Tries the four directions starting from a random one
+     * @param avoidDanger if the tiles that will be reached by a blast must be avoided
+     * @return the first direction where the enemy can move, or null if it's stuck
+     */
+    private Direction randomDirection(Coordinate enemyPosition, boolean avoidDanger) {
+        int randomInt = random.nextInt(DIRECTIONS.length);
+        // The candidate positions are checked on the grid, without looking up their Coordinate
+        for (int i = 0; i < DIRECTIONS.length; i++) {
+            Direction direction = DIRECTIONS[(randomInt + i)%4];
+            int x = enemyPosition.x() + direction.getDx() * MOVEMENT;
+            int y = enemyPosition.y() + direction.getDy() * MOVEMENT;
+            if (canEnemyMove(x, y) && !(avoidDanger && dangerMap.isDangerous(x, y))) {
+                return direction;
+            }
+        }
+        return null;
+    }
 
-        if (i != 4){
-            coordinateEnemies.set(enemyId, newEnemyPosition);
-            notifyEnemyMovement(oldEnemyPosition, newEnemyPosition, enemyId, key);
+    /**
+     * Looks at the distance from the nearest player of the four tiles around the enemy, ignoring the tiles
+     * that will be reached by a blast. If the enemy is in the way of a blast, any safe tile is better than its own
+     * @return the direction that takes the enemy nearer to a player, or null if there isn't one
+     */
+    private Direction huntingDirection(Coordinate enemyPosition) {
+        boolean inDanger = dangerMap.isDangerous(enemyPosition.x(), enemyPosition.y());
+        Direction best = null;
+        int bestDistance = distanceField.getDistance(enemyPosition.x(), enemyPosition.y());
+        for (Direction direction : DIRECTIONS) {
+            int x = enemyPosition.x() + direction.getDx() * MOVEMENT;
+            int y = enemyPosition.y() + direction.getDy() * MOVEMENT;
+            if (!canEnemyMove(x, y) || dangerMap.isDangerous(x, y)) {
+                continue;
+            }
+            int distance = distanceField.getDistance(x, y);
+            if (distance < bestDistance || (inDanger && best == null)) {
+                best = direction;
+                bestDistance = distance;
+            }
         }
+        return best;
+    }
+
+    private boolean canEnemyMove(int x, int y) {
+        return !grid.isObstacle(x, y) && !grid.has(x, y, TileGrid.ENEMY) && isSafeZone(x, y);
     }
 
     /**
      * This method ensure that the enemies won't enter the safe zone
-     * @param newEnemyPosition the new position that needs to be checked
      * @return true if the position is out of the safe zone
      */
-    private boolean isSafeZone(Coordinate newEnemyPosition) {
-        return (newEnemyPosition.x()+newEnemyPosition.y() >3);
+    private boolean isSafeZone(int x, int y) {
+        return (x + y > 3);
     }
 
 
     //##################### TEST ####################//
     //TODO remove after test
     public void removeRandom() {
-        ArrayList<Coordinate> array = new ArrayList<>(coordinatesRandomBlocks);
-        array.forEach(coordinate -> {
-                    int index = coordinatesRandomBlocks.indexOf(coordinate);
-                    coordinatesRandomBlocks.remove(coordinate);
-                    notifyBlockRemoved(index);
-                }
-        );
+        // The blocks are removed from the last one, so that the others don't move
+        for (int slot = coordinatesRandomBlocks.size() - 1; slot >= 0; slot--) {
+            Coordinate coordinate = coordinatesRandomBlocks.remove(slot);
+            blockIndex.remove(coordinate.x(), coordinate.y());
+            grid.unset(coordinate.x(), coordinate.y(), TileGrid.RANDOM_BLOCK);
+            distanceField.open(coordinate.x(), coordinate.y());
+            notifyBlockRemoved(blockIds.remove(slot));
+        }
     }
 
     //################# LEADERBOARD HANDLING #################//
-    public List<User> getLeaderboard(){
-        return leaderboard;
-    }
 
     /**
-     * This method adds the user to the leaderboard
-     * @param name the name of the player
+     * @return the number of users in the leaderboard
      */
-    public void setPlayer(String name) {
-        //using the returning Optional value of the stream to check if the player is already present in the leaderboard
-        Optional<User> existingUser = leaderboard.stream()
-                .filter(user -> user.name().equals(name))
-                .findAny();
-
-        if (existingUser.isPresent()) {
-            User user = existingUser.get();
-            //checking if
-            if (points > user.score() || level > user.level()) {
-                user = new User(name, points, level);
-                leaderboard.remove(existingUser.get());
-                leaderboard.add(user);
-            }
-        } else {
-            User user = new User(name, points, level);
-            leaderboard.add(user);
-        }
+    public int getLeaderboardSize() {
+        loadLeaderboardIfNeeded();
+        return leaderboard.size();
     }
 
     /**
-     * This method loads the leaderboard from its file
+     * @param k the number of users
+     * @return the best k users of the leaderboard, in ranking order
      */
-    private void loadLeaderboardFromFile(){
-        String filePath = getFilePath();
-
-        try {
-            FileReader fileReader = new FileReader(filePath);
+    public List<User> getLeaderboardTop(int k) {
+        loadLeaderboardIfNeeded();
+        return leaderboard.top(k);
+    }
 
-            Gson gson = new Gson();
+    /**
+     * @param offset the rank of the first user, starting from 0
+     * @param limit the maximum number of users
+     * @return a page of the leaderboard, in ranking order
+     */
+    public List<User> getLeaderboardPage(int offset, int limit) {
+        loadLeaderboardIfNeeded();
+        return leaderboard.page(offset, limit);
+    }
 
-            //using type class to match the type of what is written in the gson file (an ArrayList of User)
-            Type type = new TypeToken<ArrayList<User>>(){}.getType();
-            leaderboard = gson.fromJson(fileReader, type);
+    /**
+     * @param name the name of the player
+     * @return the rank of the player starting from 0, or -1 if he's not in the leaderboard
+     */
+    public int getLeaderboardRank(String name) {
+        loadLeaderboardIfNeeded();
+        return leaderboard.rankOf(name);
+    }
 
-            fileReader.close();
+    /**
+     * This method adds the user to the leaderboard, if it's a new player or if he did better than before
+     * @param name the name of the player
+     */
+    public void setPlayer(String name) {
+        loadLeaderboardIfNeeded();
+        leaderboard.submit(new User(name, points, level));
+    }
 
-        } catch (IOException e) {
-            System.out.println("Si è verificato un errore durante la lettura del file: " + e.getMessage());
-            e.printStackTrace();
-            leaderboard = new ArrayList<>();
+    /**
+     * The leaderboard is loaded only when it's used, so that the models of the simulations don't read the file.
+     * Until the load is complete the leaderboard contains only the results added in the meantime
+     */
+    private void loadLeaderboardIfNeeded() {
+        if (leaderboard == null) {
+            leaderboard = new LeaderboardStore(Path.of(getFilePath()));
+            leaderboardLoading = leaderboard.loadAsync().exceptionally(e -> {
+                System.out.println("Si è verificato un errore durante la lettura del file: " + e.getMessage());
+                e.printStackTrace();
+                return null;
+            });
         }
     }
 
     /**
-     * This method saves the leaderboard in its file with the new data
+     * This method starts loading the leaderboard from its files on a background thread
+     * @return the future completed when the leaderboard has been loaded (even if the files couldn't be read)
      */
-    public void save(){
-        Gson gson = new Gson();
-        String jsonString = gson.toJson(leaderboard);
-
-        System.out.println(jsonString);
-
-        String filePath = getFilePath();
-
-        try {
-            FileWriter fileWriter = new FileWriter(filePath);
-
-            fileWriter.write(jsonString);
-
-            fileWriter.close();
+    public CompletableFuture<Void> loadLeaderboard() {
+        loadLeaderboardIfNeeded();
+        return leaderboardLoading;
+    }
 
-            System.out.println("Stringa JSON salvata con successo su " + filePath);
-        } catch (IOException e) {
+    /**
+     * This method saves the results added since the last save on a background thread
+     * @return the future completed when they have been written (even if the files couldn't be written)
+     */
+    public CompletableFuture<Void> save(){
+        if (leaderboard == null) {
+            // The leaderboard has never been loaded, so it has not been modified
+            return CompletableFuture.completedFuture(null);
+        }
+        return leaderboard.saveAsync().exceptionally(e -> {
             System.out.println("Si è verificato un errore durante il salvataggio del file: " + e.getMessage());
             e.printStackTrace();
-        }
+            return null;
+        });
     }
 
+    /**
+     * @return the path of the leaderboard file, that can be changed with the jbomberman.leaderboard property
+     */
     private static String getFilePath() {
         String homeDir = System.getProperty("user.home");
         String separator = File.separator;
-        return homeDir + separator+ "leaderboard.json";
+        return System.getProperty("jbomberman.leaderboard", homeDir + separator+ "leaderboard.json");
     }
     //###############################################//
 }
\ No newline at end of file
@@ -0,0 +1,323 @@
+package org.jbomberman.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * An immutable copy of the whole state of a level: the model (the players, the items, the entities,
+ * the bombs and the state of its generator) and the timers of the engine. Restoring it and going on
+ * with the same actions plays the level exactly as it was played after the snapshot.
+ * The snapshot is a compact array of bytes, only the state that can't be derived is stored:
+ * - the header: the magic number "JBSS", the version, the size of the map, the tick and the level
+ * - the timers of the engine, written by GameEngine.writeState()
+ * - the level, written by MainModel.writeState()
+ * All the numbers are big endian. A snapshot of the default map takes about 300 bytes and a few
+ * microseconds; consecutive snapshots differ in a few bytes, so they can be kept as deltas (see delta()).
+ */
+public final class ModelSnapshot {
+
+    private static final int MAGIC = 0x4A425353;
+    private static final int VERSION = 2;
+
+    // The position of the tick and of the level in the header
+    private static final int TICK_OFFSET = 16;
+    private static final int LEVEL_OFFSET = 24;
+
+    private final byte[] data;
+
+    /**
+     * The stream where a snapshot is written: unlike ByteArrayOutputStream its methods aren't synchronized,
+     * that matters since the values are written a byte at a time
+     */
+    private static final class SnapshotOutput extends OutputStream {
+        private byte[] bytes = new byte[512];
+        private int count = 0;
+
+        @Override
+        public void write(int b) {
+            if (count == bytes.length) {
+                bytes = Arrays.copyOf(bytes, count * 2);
+            }
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int offset, int length) {
+            if (count + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(count * 2, count + length));
+            }
+            System.arraycopy(b, offset, bytes, count, length);
+            count += length;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(bytes, count);
+        }
+    }
+
+    /**
+     * The stream where a snapshot is read, not synchronized like SnapshotOutput
+     */
+    private static final class SnapshotInput extends InputStream {
+        private final byte[] bytes;
+        private int position;
+
+        private SnapshotInput(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        @Override
+        public int read() {
+            return position < bytes.length ? bytes[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int offset, int length) {
+            if (position == bytes.length) {
+                return -1;
+            }
+            int read = Math.min(length, bytes.length - position);
+            System.arraycopy(bytes, position, b, offset, read);
+            position += read;
+            return read;
+        }
+    }
+
+    private ModelSnapshot(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Copies the state of the level
+     * @param engine the engine of the level, with its model
+     * @return the snapshot
+     */
+    public static ModelSnapshot capture(GameEngine engine) {
+        MainModel model = engine.getModel();
+        SnapshotOutput bytes = new SnapshotOutput();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(model.getGrid().getWidth());
+            out.writeInt(model.getGrid().getHeight());
+            out.writeLong(engine.getTick());
+            out.writeInt(model.getLevel());
+            engine.writeState(out);
+            model.writeState(out);
+        } catch (IOException e) {
+            // A SnapshotOutput never fails
+            throw new UncheckedIOException(e);
+        }
+        return new ModelSnapshot(bytes.toByteArray());
+    }
+
+    /**
+     * Replaces the level of the engine and of its model with the one of the snapshot, without notifying
+     * the listeners of the model: the view is then rebuilt by MainModel.notifyModelReady()
+     * @param engine the engine, whose model has the same size of the map and whose tick rate is the same
+     * @throws IllegalArgumentException if the snapshot was taken with a different map, tick rate or number of players
+     */
+    public void restore(GameEngine engine) {
+        TileGrid grid = engine.getModel().getGrid();
+        ByteBuffer header = ByteBuffer.wrap(data);
+        if (header.getInt(8) != grid.getWidth() || header.getInt(12) != grid.getHeight()) {
+            throw new IllegalArgumentException("The snapshot was taken on a map of " + header.getInt(8) + "x" + header.getInt(12)
+                    + ", not " + grid.getWidth() + "x" + grid.getHeight());
+        }
+        try (DataInputStream in = new DataInputStream(new SnapshotInput(data, LEVEL_OFFSET + 4))) {
+            engine.readState(in);
+            engine.getModel().readState(in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("The snapshot can't be restored: " + e.getMessage(), e);
+        }
+    }
+
+    //################# READ AND WRITE #################//
+
+    /**
+     * @return a copy of the bytes of the snapshot
+     */
+    public byte[] toByteArray() {
+        return data.clone();
+    }
+
+    /**
+     * @param bytes the bytes of a snapshot, e.g. returned by toByteArray()
+     * @return the snapshot
+     * @throws IOException if the bytes are not a snapshot of this version
+     */
+    public static ModelSnapshot fromByteArray(byte[] bytes) throws IOException {
+        if (bytes.length < LEVEL_OFFSET + 4) {
+            throw new IOException("Not a snapshot");
+        }
+        ByteBuffer header = ByteBuffer.wrap(bytes);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a snapshot");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported version of the snapshot: " + header.getInt(4));
+        }
+        return new ModelSnapshot(bytes.clone());
+    }
+
+    /**
+     * Writes the snapshot in a file followed by its CRC-32, through a temporary file that then replaces the old one
+     * @param path the path of the file
+     * @throws IOException if the file can't be written
+     */
+    public void write(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        byte[] file = Arrays.copyOf(data, data.length + 4);
+        ByteBuffer.wrap(file).putInt(data.length, (int) crc.getValue());
+
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, file);
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads a snapshot written by write()
+     * @param path the path of the file
+     * @return the snapshot
+     * @throws IOException if the file can't be read, it's not a snapshot or it's damaged
+     */
+    public static ModelSnapshot read(Path path) throws IOException {
+        byte[] file = Files.readAllBytes(path);
+        if (file.length < 4) {
+            throw new IOException("Not a snapshot");
+        }
+        byte[] bytes = Arrays.copyOf(file, file.length - 4);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if (ByteBuffer.wrap(file).getInt(bytes.length) != (int) crc.getValue()) {
+            throw new IOException("The snapshot is damaged");
+        }
+        return fromByteArray(bytes);
+    }
+
+    //##################### DELTAS #####################//
+
+    /**
+     * Encodes this snapshot as the difference from another one: the length of this snapshot, then
+     * the runs of different bytes, each one as the number of equal bytes before it, its length and its bytes
+     * (the numbers are variable-length integers, usually a single byte)
+     * @param base the snapshot the delta is computed from, usually an older one of the same level
+     * @return the delta, that applyDelta() turns back in this snapshot
+     */
+    public byte[] delta(ModelSnapshot base) {
+        byte[] from = base.data;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        writeVarInt(out, data.length);
+        int common = Math.min(from.length, data.length);
+        int position = 0;
+        int equalSince = 0;
+        while (position < data.length) {
+            if (position < common) {
+                // Skips the equal bytes, compared many at a time
+                int mismatch = Arrays.mismatch(from, position, common, data, position, common);
+                position = mismatch < 0 ? common : position + mismatch;
+                if (position == data.length) {
+                    break;
+                }
+            }
+            int start = position;
+            while (position < data.length && (position >= common || from[position] != data[position])) {
+                position++;
+            }
+            writeVarInt(out, start - equalSince);
+            writeVarInt(out, position - start);
+            out.write(data, start, position - start);
+            equalSince = position;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param base the snapshot the delta was computed from
+     * @param delta the delta returned by delta()
+     * @return the snapshot encoded by the delta
+     */
+    public static ModelSnapshot applyDelta(ModelSnapshot base, byte[] delta) {
+        byte[] from = base.data;
+        int[] position = {0};
+        byte[] result = new byte[readVarInt(delta, position)];
+        int target = 0;
+        while (position[0] < delta.length) {
+            int equal = readVarInt(delta, position);
+            System.arraycopy(from, target, result, target, equal);
+            target += equal;
+            int length = readVarInt(delta, position);
+            System.arraycopy(delta, position[0], result, target, length);
+            position[0] += length;
+            target += length;
+        }
+        if (target < result.length) {
+            System.arraycopy(from, target, result, target, result.length - target);
+        }
+        return new ModelSnapshot(result);
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] bytes, int[] position) {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = bytes[position[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    //############ ModelSnapshot GETTERS #############//
+
+    /**
+     * @return the tick of the level at which the snapshot was taken
+     */
+    public long getTick() {
+        return ByteBuffer.wrap(data).getLong(TICK_OFFSET);
+    }
+
+    public int getLevel() {
+        return ByteBuffer.wrap(data).getInt(LEVEL_OFFSET);
+    }
+
+    /**
+     * @return the number of bytes of the snapshot
+     */
+    public int size() {
+        return data.length;
+    }
+}
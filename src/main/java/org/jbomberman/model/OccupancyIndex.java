@@ -0,0 +1,80 @@
+package org.jbomberman.model;
+
+import org.jbomberman.utils.Coordinate;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The OccupancyIndex maps every tile of the map to the entity that occupies it (an enemy, a coin,
+ * a random block), identified by its slot in the list of the model, so that the entity on a
+ * tile is found in constant time instead of searching its Coordinate in the list.
+ * A tile holds at most one entity of every kind, so the index is a flat array like the TileGrid.
+ * The index is updated by the model at every movement and removal: a removal moves the last
+ * entity of the list in the removed slot, so only its entry is rewritten.
+ */
+public class OccupancyIndex {
+
+    // The value of the tiles without an entity
+    public static final int NONE = -1;
+
+    private final TileGrid grid;
+    private final int[] ids;
+
+    /**
+     * @param grid the grid of the map, that gives the size and the indexing of the tiles
+     */
+    public OccupancyIndex(TileGrid grid) {
+        this.grid = grid;
+        ids = new int[grid.getWidth() * grid.getHeight()];
+        Arrays.fill(ids, NONE);
+    }
+
+    /**
+     * @return the slot in the list of the entity on the given tile, NONE if there isn't one
+     */
+    public int get(int x, int y) {
+        if (!grid.isInside(x, y)) {
+            return NONE;
+        }
+        return ids[grid.index(x, y)];
+    }
+
+    public void put(int x, int y, int id) {
+        ids[grid.index(x, y)] = id;
+    }
+
+    public void remove(int x, int y) {
+        ids[grid.index(x, y)] = NONE;
+    }
+
+    /**
+     * Moves the entity from a tile to another one
+     */
+    public void move(Coordinate from, Coordinate to) {
+        int id = ids[grid.index(from.x(), from.y())];
+        ids[grid.index(from.x(), from.y())] = NONE;
+        ids[grid.index(to.x(), to.y())] = id;
+    }
+
+    /**
+     * Updates the index after an entity has been removed from its list, and replaced by the last one
+     * @param removed the position of the removed entity
+     * @param entities the list of the entities, after the removal
+     * @param slot the slot of the removed entity, where the last one has been moved
+     */
+    public void swapRemoved(Coordinate removed, List<Coordinate> entities, int slot) {
+        remove(removed.x(), removed.y());
+        if (slot < entities.size()) {
+            Coordinate moved = entities.get(slot);
+            put(moved.x(), moved.y(), slot);
+        }
+    }
+
+    /**
+     * Removes all the entities
+     */
+    public void clear() {
+        Arrays.fill(ids, NONE);
+    }
+}
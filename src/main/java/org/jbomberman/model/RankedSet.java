@@ -0,0 +1,226 @@
+package org.jbomberman.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A sorted set that also answers the queries by position: a treap (a binary search tree balanced by random
+ * priorities) where every node knows the size of its subtree. Adding, removing, the position of an element
+ * and the element at a position take O(log n), a range of k elements O(log n + k), without copying the set.
+ * It's not synchronized.
+ * @param <T> the type of the elements, that are compared by the comparator of the set
+ */
+final class RankedSet<T> {
+
+    private static final class Node<T> {
+        private final T value;
+        private final int priority;
+        private Node<T> left;
+        private Node<T> right;
+        private int size = 1;
+
+        private Node(T value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+    }
+
+    private final Comparator<? super T> comparator;
+    private Node<T> root;
+
+    // The state of the generator of the priorities (xorshift)
+    private int seed = 0x2545F491;
+
+    RankedSet(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * @return true if the element has been added, false if an equal one was already in the set
+     */
+    boolean add(T value) {
+        int before = size();
+        root = insert(root, value);
+        return size() != before;
+    }
+
+    /**
+     * @return true if the element was in the set
+     */
+    boolean remove(T value) {
+        int before = size();
+        root = delete(root, value);
+        return size() != before;
+    }
+
+    void clear() {
+        root = null;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * @return the position of the element in the order of the set, starting from 0, or -1 if it isn't in the set
+     */
+    int indexOf(T value) {
+        int index = 0;
+        Node<T> node = root;
+        while (node != null) {
+            int c = comparator.compare(value, node.value);
+            if (c < 0) {
+                node = node.left;
+            } else if (c > 0) {
+                index += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return index + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index the position, from 0 to size() - 1
+     * @return the element at that position
+     */
+    T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+        }
+        Node<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.value;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * @param from the position of the first element, included
+     * @param to the position of the last element, excluded; it's limited to size()
+     * @return the elements between the two positions, in order
+     */
+    List<T> range(int from, int to) {
+        to = Math.min(to, size());
+        List<T> elements = new ArrayList<>(Math.max(0, to - from));
+        if (from >= to) {
+            return elements;
+        }
+        // The path to the first element: the nodes on the stack are the next ones, in order
+        Deque<Node<T>> stack = new ArrayDeque<>();
+        Node<T> node = root;
+        int index = from;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                stack.push(node);
+                node = node.left;
+            } else if (index == leftSize) {
+                stack.push(node);
+                node = null;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        while (elements.size() < to - from) {
+            Node<T> next = stack.pop();
+            elements.add(next.value);
+            for (Node<T> child = next.right; child != null; child = child.left) {
+                stack.push(child);
+            }
+        }
+        return elements;
+    }
+
+    //############ TREAP #############//
+
+    private Node<T> insert(Node<T> node, T value) {
+        if (node == null) {
+            return new Node<>(value, nextPriority());
+        }
+        int c = comparator.compare(value, node.value);
+        if (c < 0) {
+            node.left = insert(node.left, value);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else if (c > 0) {
+            node.right = insert(node.right, value);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private Node<T> delete(Node<T> node, T value) {
+        if (node == null) {
+            return null;
+        }
+        int c = comparator.compare(value, node.value);
+        if (c < 0) {
+            node.left = delete(node.left, value);
+        } else if (c > 0) {
+            node.right = delete(node.right, value);
+        } else if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        } else if (node.left.priority > node.right.priority) {
+            // The child with the higher priority goes up, the node goes down until it has a single child
+            node = rotateRight(node);
+            node.right = delete(node.right, value);
+        } else {
+            node = rotateLeft(node);
+            node.left = delete(node.left, value);
+        }
+        update(node);
+        return node;
+    }
+
+    private Node<T> rotateRight(Node<T> node) {
+        Node<T> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private Node<T> rotateLeft(Node<T> node) {
+        Node<T> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static <T> void update(Node<T> node) {
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private static <T> int size(Node<T> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+}
@@ -0,0 +1,166 @@
+package org.jbomberman.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The RewindBuffer keeps the last seconds of a level, so that the game can go back in time.
+ * A whole snapshot is taken only every keyframeInterval ticks, and between two keyframes only the actions
+ * performed by the players are logged (the buffer is the ActionListener of the engine): going back restores
+ * the nearest keyframe before the target tick and plays the logged actions again until that tick, since
+ * the engine is deterministic. So a tick costs nothing unless it's a keyframe, and a rewind at most
+ * keyframeInterval ticks of simulation.
+ * When the buffer is full the oldest keyframe is dropped with its actions.
+ */
+public class RewindBuffer implements GameEngine.ActionListener {
+
+    /**
+     * An action logged after a keyframe
+     */
+    private record LoggedAction(long tick, int player, Action action) {
+    }
+
+    /**
+     * A keyframe with the actions performed after it, until the next keyframe
+     */
+    private static class Group {
+        private final ModelSnapshot keyframe;
+        private final List<LoggedAction> actions = new ArrayList<>();
+
+        private Group(ModelSnapshot keyframe) {
+            this.keyframe = keyframe;
+        }
+    }
+
+    // The bytes counted for a logged action: the tick, the player and the action
+    private static final int ACTION_BYTES = Long.BYTES + 2;
+
+    private final int capacity;
+    private final int keyframeInterval;
+
+    private final ArrayDeque<Group> groups = new ArrayDeque<>();
+
+    // The tick of the last capture()
+    private long lastTick = 0;
+
+    // True while the logged actions are played again, so that they aren't logged twice
+    private boolean replaying = false;
+
+    // The bytes of all the keyframes and the actions
+    private long bytes = 0;
+
+    /**
+     * @param capacity the number of ticks that can always be rewound
+     * @param keyframeInterval the number of ticks between two keyframes
+     */
+    public RewindBuffer(int capacity, int keyframeInterval) {
+        if (capacity < 1 || keyframeInterval < 1) {
+            throw new IllegalArgumentException("The capacity and the keyframe interval must be at least 1: " + capacity + ", " + keyframeInterval);
+        }
+        this.capacity = capacity;
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * Called after every tick: takes a snapshot of the level if keyframeInterval ticks have passed since the last one
+     * @param engine the engine of the level, with its model
+     */
+    public void capture(GameEngine engine) {
+        lastTick = engine.getTick();
+        Group last = groups.peekLast();
+        if (last != null && lastTick - last.keyframe.getTick() < keyframeInterval) {
+            return;
+        }
+        ModelSnapshot keyframe = ModelSnapshot.capture(engine);
+        groups.addLast(new Group(keyframe));
+        bytes += keyframe.size();
+
+        // The oldest keyframe is dropped only when the next one is still capacity ticks old
+        while (groups.size() > 1 && lastTick - secondKeyframeTick() >= capacity) {
+            Group oldest = groups.removeFirst();
+            bytes -= oldest.keyframe.size() + (long) oldest.actions.size() * ACTION_BYTES;
+        }
+    }
+
+    @Override
+    public void actionPerformed(long tick, int player, Action action) {
+        Group last = groups.peekLast();
+        if (!replaying && last != null) {
+            last.actions.add(new LoggedAction(tick, player, action));
+            bytes += ACTION_BYTES;
+        }
+    }
+
+    /**
+     * Goes back by the given number of ticks, forgetting what happened after them: the nearest keyframe is
+     * restored in the engine and the logged actions are performed again. The model doesn't notify its
+     * listeners while the ticks are played again, it should have none (see MainModel.unsubscribeAll()).
+     * @param engine the engine of the level, with its model
+     * @param count the number of ticks to go back
+     * @return false if the buffer is empty and nothing has been done; otherwise the engine is at the
+     * target tick, or at the oldest keyframe if there aren't enough ticks
+     */
+    public boolean rewind(GameEngine engine, int count) {
+        if (groups.isEmpty()) {
+            return false;
+        }
+        long target = Math.max(groups.peekFirst().keyframe.getTick(), lastTick - Math.max(count, 0));
+        while (groups.peekLast().keyframe.getTick() > target) {
+            groups.removeLast();
+        }
+        Group last = groups.peekLast();
+        last.actions.removeIf(logged -> logged.tick() >= target);
+        bytes = 0;
+        groups.forEach(group -> bytes += group.keyframe.size() + (long) group.actions.size() * ACTION_BYTES);
+
+        last.keyframe.restore(engine);
+        replaying = true;
+        try {
+            Iterator<LoggedAction> actions = last.actions.iterator();
+            LoggedAction next = actions.hasNext() ? actions.next() : null;
+            while (engine.getTick() < target) {
+                while (next != null && next.tick() == engine.getTick()) {
+                    engine.perform(next.player(), next.action());
+                    next = actions.hasNext() ? actions.next() : null;
+                }
+                engine.step();
+            }
+        } finally {
+            replaying = false;
+        }
+        lastTick = target;
+        return true;
+    }
+
+    /**
+     * Forgets all the keyframes and the actions, e.g. when a new level starts
+     */
+    public void clear() {
+        groups.clear();
+        bytes = 0;
+    }
+
+    private long secondKeyframeTick() {
+        Iterator<Group> iterator = groups.iterator();
+        iterator.next();
+        return iterator.next().keyframe.getTick();
+    }
+
+    //############ RewindBuffer GETTERS #############//
+
+    /**
+     * @return the number of ticks that can be rewound from the last capture()
+     */
+    public long size() {
+        return groups.isEmpty() ? 0 : lastTick - groups.peekFirst().keyframe.getTick();
+    }
+
+    /**
+     * @return the bytes used by the keyframes and the actions
+     */
+    public long getBytes() {
+        return bytes;
+    }
+}
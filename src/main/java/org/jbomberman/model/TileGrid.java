@@ -0,0 +1,177 @@
+package org.jbomberman.model;
+
+import org.jbomberman.utils.Direction;
+
+import java.util.Arrays;
+
+/**
+ * The TileGrid is a packed representation of the game board.
+ * Every tile is a byte of flags stored in a flat array indexed by y*width+x, so that
+ * the model can check what occupies a tile in constant time and without allocating
+ * any Coordinate.
+ * The tiles outside the board are considered fixed blocks.
+ * Since the fixed blocks don't change during a level, the grid can also precompute for every tile
+ * the number of free tiles before the nearest fixed block in each direction (the ray lengths),
+ * that bound the propagation of the explosions.
+ */
+public class TileGrid {
+
+    // The block that can't be destroyed
+    public static final byte FIXED_BLOCK = 1;
+
+    // The block that can be destroyed by the bomb
+    public static final byte RANDOM_BLOCK = 1 << 1;
+
+    // A power up or a coin
+    public static final byte ITEM = 1 << 2;
+
+    // The exit door
+    public static final byte DOOR = 1 << 3;
+
+    // A bomb that hasn't exploded yet
+    public static final byte BOMB = 1 << 4;
+
+    // An enemy
+    public static final byte ENEMY = 1 << 5;
+
+    // The flags that prevent an entity from walking on a tile
+    private static final byte OBSTACLE = FIXED_BLOCK | RANDOM_BLOCK | BOMB;
+
+    private final int width;
+    private final int height;
+    private final byte[] tiles;
+
+    // The ray lengths of every tile, 4 values (up, down, left, right) for each index
+    private final short[] rays;
+
+    // Incremented whenever an obstacle is added or removed, so that a caller can tell that the obstacles haven't changed
+    private long obstacleVersion = 0;
+
+    /**
+     * @param width the number of columns of the board
+     * @param height the number of rows of the board
+     */
+    public TileGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        tiles = new byte[width * height];
+        rays = new short[width * height * 4];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return true if the given position is inside the board
+     */
+    public boolean isInside(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * @return the index of the given position in the flat array
+     */
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    /**
+     * Checks if the tile in the given position has at least one of the given flags
+     * @param flags one or more flags combined with the bitwise or
+     * @return true if at least one of the flags is set
+     */
+    public boolean has(int x, int y, int flags) {
+        if (!isInside(x, y)) {
+            return (flags & FIXED_BLOCK) != 0;
+        }
+        return (tiles[index(x, y)] & flags) != 0;
+    }
+
+    /**
+     * @return true if the tile in the given position can't be walked on
+     */
+    public boolean isObstacle(int x, int y) {
+        return has(x, y, OBSTACLE);
+    }
+
+    /**
+     * @param index the index of a tile inside the board
+     * @return true if the tile can't be walked on
+     */
+    public boolean isObstacle(int index) {
+        return (tiles[index] & OBSTACLE) != 0;
+    }
+
+    public void set(int x, int y, int flags) {
+        tiles[index(x, y)] |= (byte) flags;
+        if ((flags & OBSTACLE) != 0) {
+            obstacleVersion++;
+        }
+    }
+
+    public void unset(int x, int y, int flags) {
+        tiles[index(x, y)] &= (byte) ~flags;
+        if ((flags & OBSTACLE) != 0) {
+            obstacleVersion++;
+        }
+    }
+
+    /**
+     * @return a number that changes whenever an obstacle is added or removed
+     */
+    public long getObstacleVersion() {
+        return obstacleVersion;
+    }
+
+    /**
+     * Computes the ray lengths of every tile, it must be called after the fixed blocks of the level have been placed.
+     * Every direction is a single pass over the board, where a tile extends the ray of its neighbour
+     */
+    public void computeRays() {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = index(x, y);
+                rays[i * 4 + Direction.UP.ordinal()] = extendRay(x, y - 1, Direction.UP);
+                rays[i * 4 + Direction.LEFT.ordinal()] = extendRay(x - 1, y, Direction.LEFT);
+            }
+        }
+        for (int y = height - 1; y >= 0; y--) {
+            for (int x = width - 1; x >= 0; x--) {
+                int i = index(x, y);
+                rays[i * 4 + Direction.DOWN.ordinal()] = extendRay(x, y + 1, Direction.DOWN);
+                rays[i * 4 + Direction.RIGHT.ordinal()] = extendRay(x + 1, y, Direction.RIGHT);
+            }
+        }
+    }
+
+    /**
+     * @return the ray length of a tile whose neighbour in the given direction is in the given position
+     */
+    private short extendRay(int x, int y, Direction direction) {
+        if (has(x, y, FIXED_BLOCK)) {
+            return 0;
+        }
+        return (short) Math.min(Short.MAX_VALUE, rays[index(x, y) * 4 + direction.ordinal()] + 1);
+    }
+
+    /**
+     * @param direction one of UP, DOWN, LEFT and RIGHT
+     * @return the number of consecutive tiles without fixed blocks next to the given position in the given direction
+     */
+    public int getRay(int x, int y, Direction direction) {
+        return rays[index(x, y) * 4 + direction.ordinal()];
+    }
+
+    /**
+     * Removes every flag from every tile
+     */
+    public void clear() {
+        Arrays.fill(tiles, (byte) 0);
+        obstacleVersion++;
+    }
+}
@@ -0,0 +1,249 @@
+package org.jbomberman.net;
+
+import org.jbomberman.utils.BlockType;
+import org.jbomberman.utils.Coordinate;
+import org.jbomberman.utils.Direction;
+import org.jbomberman.utils.Triad;
+import org.jbomberman.utils.UpdateBus;
+import org.jbomberman.utils.UpdateInfo;
+import org.jbomberman.utils.UpdateType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.jbomberman.net.NetProtocol.readSignedVarInt;
+import static org.jbomberman.net.NetProtocol.readVarInt;
+import static org.jbomberman.net.NetProtocol.writeSignedVarInt;
+import static org.jbomberman.net.NetProtocol.writeVarInt;
+
+/**
+ * The EventCodec turns the updates published by the model in bytes and back, so that a client can
+ * publish on its own UpdateBus the same updates of the model of the server.
+ * An update is the ordinal of its UpdateType followed by the attributes meaningful for the type:
+ * the positions are the index of their tile (y * width + x), the numbers are variable-length
+ * integers, so most of the updates of a tick take from 2 to 5 bytes. A movement doesn't need
+ * anything else than the id of the entity and its two tiles, the blocks, the coins and the enemies
+ * are identified by their stable ids.
+ */
+public class EventCodec {
+
+    private static final UpdateType[] UPDATE_TYPES = UpdateType.values();
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final BlockType[] BLOCK_TYPES = BlockType.values();
+
+    private final int width;
+
+    // The Coordinate of every tile, created when a tile is decoded for the first time
+    private final Coordinate[] tiles;
+
+    /**
+     * @param width the width of the map, edges included
+     * @param height the height of the map, edges included
+     */
+    public EventCodec(int width, int height) {
+        this.width = width;
+        this.tiles = new Coordinate[width * height];
+    }
+
+    /**
+     * Writes an update
+     * @param updateInfo the update, that can be reused after the call
+     * @param out where the update is written
+     */
+    public void encode(UpdateInfo updateInfo, DataOutput out) throws IOException {
+        UpdateType type = updateInfo.getUpdateType();
+        out.writeByte(type.ordinal());
+        switch (type) {
+            case UPDATE_POSITION -> {
+                writeSignedVarInt(out, updateInfo.getIndex());
+                writeTile(out, updateInfo.getOldCoord());
+                writeTile(out, updateInfo.getNewCoord());
+                Direction direction = updateInfo.getDirection();
+                out.writeByte((direction == null ? 0 : direction.ordinal() + 1) | (updateInfo.isEnemyLastLife() ? 0x80 : 0));
+            }
+            case UPDATE_BLOCK_DESTROYED, UPDATE_COINS, UPDATE_ENEMY_DEAD, UPDATE_ENEMY_LIFE,
+                    UPDATE_PU_BOMB, UPDATE_PU_CAPACITY -> writeVarInt(out, updateInfo.getIndex());
+            case UPDATE_BOMB_RELEASED, LOAD_PLAYER -> {
+                writeTile(out, updateInfo.getCoordinate());
+                writeVarInt(out, updateInfo.getIndex());
+            }
+            case UPDATE_RESPAWN, UPDATE_PU_LIFE, LOAD_LIFE -> {
+                writeVarInt(out, updateInfo.getIndex());
+                writeVarInt(out, updateInfo.getHealthPoint());
+            }
+            case UPDATE_PU_INVINCIBLE -> {
+                writeVarInt(out, updateInfo.getIndex());
+                out.writeBoolean(updateInfo.isInvincible());
+            }
+            case UPDATE_POINTS -> {
+                writeTile(out, updateInfo.getCoordinate());
+                writeVarInt(out, updateInfo.getEarnedPoints());
+                writeVarInt(out, updateInfo.getPoints());
+            }
+            case UPDATE_EXPLOSION -> {
+                List<Triad> triads = updateInfo.getTriadList();
+                writeVarInt(out, triads.size());
+                for (Triad triad : triads) {
+                    writeTile(out, triad.coordinate());
+                    out.writeByte(triad.direction().ordinal() | (triad.isLast() ? 0x80 : 0));
+                }
+            }
+            case LEVEL -> writeVarInt(out, updateInfo.getLevel());
+            case LOAD_POINTS -> writeVarInt(out, updateInfo.getPoints());
+            case LOAD_MAP -> {
+                out.writeByte(updateInfo.getBlockType().ordinal());
+                writeTiles(out, updateInfo.getBlocks());
+                writeIds(out, updateInfo.getIds());
+            }
+            case LOAD_COINS, LOAD_ENEMIES -> {
+                writeTiles(out, updateInfo.getEntities());
+                writeIds(out, updateInfo.getIds());
+            }
+            case LOAD_BOMBS -> writeTiles(out, updateInfo.getEntities());
+            case LOAD_POWER_UP_LIFE, LOAD_POWER_UP_BOMB, LOAD_POWER_UP_CAPACITY, LOAD_POWER_UP_INVINCIBLE,
+                    LOAD_EXIT -> writeTile(out, updateInfo.getCoordinate());
+            case UPDATE_GAME_WIN, UPDATE_GAME_OVER, UPDATE_DOOR -> {
+                // The type is the whole update
+            }
+        }
+    }
+
+    /**
+     * Reads an update written by encode() and publishes it
+     * @param in where the update is read
+     * @param updateBus the bus where the update is published
+     * @return the type of the update
+     * @throws IOException if the update is malformed
+     */
+    public UpdateType decode(DataInput in, UpdateBus updateBus) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= UPDATE_TYPES.length) {
+            throw new IOException("Unknown update " + ordinal);
+        }
+        UpdateType type = UPDATE_TYPES[ordinal];
+        UpdateInfo updateInfo = updateBus.acquire(type);
+        switch (type) {
+            case UPDATE_POSITION -> {
+                updateInfo.setIndex(readSignedVarInt(in)).setOldPosition(readTile(in)).setNewPosition(readTile(in));
+                int flags = in.readUnsignedByte();
+                int direction = flags & 0x7F;
+                if (direction > DIRECTIONS.length) {
+                    throw new IOException("Unknown direction " + direction);
+                }
+                updateInfo.setDirection(direction == 0 ? null : DIRECTIONS[direction - 1]).setEnemyLastLife((flags & 0x80) != 0);
+            }
+            case UPDATE_BLOCK_DESTROYED, UPDATE_COINS, UPDATE_ENEMY_DEAD, UPDATE_ENEMY_LIFE,
+                    UPDATE_PU_BOMB, UPDATE_PU_CAPACITY -> updateInfo.setIndex(readVarInt(in));
+            case UPDATE_BOMB_RELEASED, LOAD_PLAYER -> updateInfo.setCoordinate(readTile(in)).setIndex(readVarInt(in));
+            case UPDATE_RESPAWN, UPDATE_PU_LIFE, LOAD_LIFE -> updateInfo.setIndex(readVarInt(in)).setHealthPoint(readVarInt(in));
+            case UPDATE_PU_INVINCIBLE -> updateInfo.setIndex(readVarInt(in)).setPlayerInvincible(in.readBoolean());
+            case UPDATE_POINTS -> updateInfo.setCoordinate(readTile(in)).setEarnedPoints(readVarInt(in)).setPoints(readVarInt(in));
+            case UPDATE_EXPLOSION -> {
+                int count = readCount(in);
+                List<Triad> triads = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    Coordinate coordinate = readTile(in);
+                    int flags = in.readUnsignedByte();
+                    if ((flags & 0x7F) >= DIRECTIONS.length) {
+                        throw new IOException("Unknown direction " + (flags & 0x7F));
+                    }
+                    triads.add(new Triad(coordinate, DIRECTIONS[flags & 0x7F], (flags & 0x80) != 0));
+                }
+                updateInfo.setTriadList(triads);
+            }
+            case LEVEL -> updateInfo.setLevel(readVarInt(in));
+            case LOAD_POINTS -> updateInfo.setPoints(readVarInt(in));
+            case LOAD_MAP -> {
+                int blockType = in.readUnsignedByte();
+                if (blockType >= BLOCK_TYPES.length) {
+                    throw new IOException("Unknown block type " + blockType);
+                }
+                updateInfo.setSubBlock(BLOCK_TYPES[blockType]).setBlocks(readTiles(in)).setIds(readIds(in));
+            }
+            case LOAD_COINS, LOAD_ENEMIES -> updateInfo.setEntities(readTiles(in)).setIds(readIds(in));
+            case LOAD_BOMBS -> updateInfo.setEntities(readTiles(in));
+            case LOAD_POWER_UP_LIFE, LOAD_POWER_UP_BOMB, LOAD_POWER_UP_CAPACITY, LOAD_POWER_UP_INVINCIBLE,
+                    LOAD_EXIT -> updateInfo.setCoordinate(readTile(in));
+            case UPDATE_GAME_WIN, UPDATE_GAME_OVER, UPDATE_DOOR -> {
+                // The type is the whole update
+            }
+        }
+        updateBus.publish(updateInfo);
+        return type;
+    }
+
+    private void writeTile(DataOutput out, Coordinate coordinate) throws IOException {
+        writeVarInt(out, coordinate.y() * width + coordinate.x());
+    }
+
+    private Coordinate readTile(DataInput in) throws IOException {
+        int index = readVarInt(in);
+        if (index >= tiles.length) {
+            throw new IOException("Not a tile of the map: " + index);
+        }
+        if (tiles[index] == null) {
+            tiles[index] = new Coordinate(index % width, index / width);
+        }
+        return tiles[index];
+    }
+
+    private void writeTiles(DataOutput out, List<Coordinate> coordinates) throws IOException {
+        writeVarInt(out, coordinates.size());
+        for (Coordinate coordinate : coordinates) {
+            writeTile(out, coordinate);
+        }
+    }
+
+    private List<Coordinate> readTiles(DataInput in) throws IOException {
+        int count = readCount(in);
+        List<Coordinate> coordinates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            coordinates.add(readTile(in));
+        }
+        return coordinates;
+    }
+
+    /**
+     * Writes the number of ids plus one, then the ids; the fixed blocks and the ground don't have ids, they are written as 0
+     */
+    private void writeIds(DataOutput out, List<Integer> ids) throws IOException {
+        if (ids == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, ids.size() + 1);
+        for (int id : ids) {
+            writeVarInt(out, id);
+        }
+    }
+
+    /**
+     * @return the ids, or null if they were written for a list without ids
+     */
+    private List<Integer> readIds(DataInput in) throws IOException {
+        int written = readVarInt(in);
+        if (written == 0) {
+            return null;
+        }
+        int count = written - 1;
+        if (count > tiles.length) {
+            throw new IOException("Too many ids for the map: " + count);
+        }
+        List<Integer> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(readVarInt(in));
+        }
+        return ids;
+    }
+
+    private int readCount(DataInput in) throws IOException {
+        int count = readVarInt(in);
+        if (count > tiles.length) {
+            throw new IOException("Too many tiles for the map: " + count);
+        }
+        return count;
+    }
+}
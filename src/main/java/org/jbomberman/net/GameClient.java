@@ -0,0 +1,475 @@
+package org.jbomberman.net;
+
+import org.jbomberman.model.Action;
+import org.jbomberman.model.GameConfig;
+import org.jbomberman.model.GameEngine;
+import org.jbomberman.model.TileGrid;
+import org.jbomberman.utils.BlockType;
+import org.jbomberman.utils.Coordinate;
+import org.jbomberman.utils.Direction;
+import org.jbomberman.utils.Triad;
+import org.jbomberman.utils.UpdateBus;
+import org.jbomberman.utils.UpdateInfo;
+import org.jbomberman.utils.UpdateListener;
+import org.jbomberman.utils.UpdateType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongConsumer;
+
+import static org.jbomberman.net.NetProtocol.*;
+
+/**
+ * The GameClient plays one of the players of the match of a GameServer.
+ * The updates sent by the server are published on an UpdateBus of the client, so that a listener
+ * (e.g. a view) receives the same updates it would receive from a local model. They are received by a
+ * thread of the client and published by update(), on the thread that owns the client, like the
+ * actions sent by perform().
+ * The position of the player is predicted: a movement is applied at once on the obstacles known by the
+ * client, without waiting for the server. When the server acknowledges the actions, the prediction is
+ * computed again from the position confirmed by the server and the actions it hasn't performed yet;
+ * if it's different (e.g. the server refused a movement, or the player has been hit) it's corrected.
+ */
+public class GameClient implements Closeable {
+
+    /**
+     * An action sent to the server and not yet acknowledged
+     */
+    private record PendingAction(int sequence, Action action, long sentAt) {
+    }
+
+    /**
+     * A TICK received by the reading thread, with the time it was received
+     */
+    private record ReceivedTick(byte[] message, long receivedAt) {
+    }
+
+    private final Socket socket;
+    private final DataOutputStream out;
+
+    private final int player;
+    private final int tickRate;
+    private final long tickNanos;
+    private final long playerStepTicks;
+    private final GameConfig config;
+
+    private final UpdateBus updateBus = new UpdateBus();
+    private final EventCodec codec;
+
+    // The TICK messages received by the reading thread and not yet published
+    private final ConcurrentLinkedQueue<ReceivedTick> received = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed = false;
+    private volatile long bytesReceived = 0;
+
+    // The obstacles of the map known by the client, and the position of the random blocks by id
+    private final TileGrid grid;
+    private final List<Coordinate> blocks = new ArrayList<>();
+
+    // The last tick of the server and when it has been received
+    private long serverTick = 0;
+    private long serverTickReceivedAt;
+
+    // The position of the player confirmed by the server and its lives
+    private Coordinate serverPosition;
+    private int healthPoint;
+
+    // The prediction: the actions not yet acknowledged, the position after them and the
+    // tick of the server at which the player will be able to move again
+    private final ArrayDeque<PendingAction> pending = new ArrayDeque<>();
+    private int nextSequence = 1;
+    private Coordinate predictedPosition;
+    private long readyAt = 0;
+    private int corrections = 0;
+
+    // Notified of the round trip time of every action acknowledged, null if there isn't one
+    private LongConsumer roundTripListener;
+
+    /**
+     * Connects to a server and waits for a player
+     * @param host the host of the server
+     * @param port the port of the server
+     * @return the client, that receives the level of the server with the first update()
+     * @throws IOException if the connection fails or the server is full
+     */
+    public static GameClient connect(String host, int port) throws IOException {
+        Socket socket = new Socket(host, port);
+        try {
+            socket.setTcpNoDelay(true);
+            return new GameClient(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private GameClient(Socket socket) throws IOException {
+        this.socket = socket;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        send(new byte[]{HELLO, VERSION});
+
+        byte[] welcome = readMessage(in);
+        if (welcome[0] == FULL) {
+            throw new IOException("The server is full");
+        }
+        if (welcome[0] != WELCOME) {
+            throw new IOException("Unexpected message " + welcome[0]);
+        }
+        DataInputStream content = new DataInputStream(new ByteArrayInputStream(welcome, 1, welcome.length - 1));
+        int version = readVarInt(content);
+        if (version != VERSION) {
+            throw new IOException("The server speaks the version " + version + " of the protocol, not " + VERSION);
+        }
+        player = readVarInt(content);
+        tickRate = readVarInt(content);
+        Map<String, String> parameters = new HashMap<>();
+        int count = readVarInt(content);
+        for (int i = 0; i < count; i++) {
+            parameters.put(content.readUTF(), content.readUTF());
+        }
+        try {
+            config = GameConfig.fromParameters(parameters);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("The configuration of the server is not valid: " + e.getMessage(), e);
+        }
+        if (tickRate < 1 || tickRate > 1000) {
+            throw new IOException("Tick rate of the server not valid: " + tickRate);
+        }
+        tickNanos = 1_000_000_000L / tickRate;
+        playerStepTicks = GameEngine.toTicks(GameEngine.PLAYER_STEP, tickRate);
+
+        codec = new EventCodec(config.getWidth(), config.getHeight());
+        grid = new TileGrid(config.getWidth(), config.getHeight());
+        serverTickReceivedAt = System.nanoTime();
+        updateBus.subscribe(this::track, EnumSet.of(UpdateType.LEVEL, UpdateType.LOAD_MAP, UpdateType.LOAD_PLAYER,
+                UpdateType.LOAD_LIFE, UpdateType.LOAD_BOMBS, UpdateType.UPDATE_POSITION, UpdateType.UPDATE_RESPAWN,
+                UpdateType.UPDATE_PU_LIFE, UpdateType.UPDATE_BLOCK_DESTROYED, UpdateType.UPDATE_BOMB_RELEASED,
+                UpdateType.UPDATE_EXPLOSION));
+
+        Thread reader = new Thread(() -> read(in), "client-read-" + player);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Subscribes a listener to the updates of the server
+     * @param listener the listener
+     * @param updateTypes the types of update it receives
+     */
+    public void subscribe(UpdateListener listener, Set<UpdateType> updateTypes) {
+        updateBus.subscribe(listener, updateTypes);
+    }
+
+    /**
+     * @param roundTripListener notified of the time between the sending of every action and its acknowledgement, in nanoseconds
+     */
+    public void setRoundTripListener(LongConsumer roundTripListener) {
+        this.roundTripListener = roundTripListener;
+    }
+
+    /**
+     * Publishes the updates received since the last call and corrects the prediction
+     * @return the number of ticks of the server received
+     * @throws IOException if the server has sent a malformed update
+     */
+    public int update() throws IOException {
+        int ticks = 0;
+        ReceivedTick tick;
+        while ((tick = received.poll()) != null) {
+            byte[] message = tick.message();
+            DataInputStream content = new DataInputStream(new ByteArrayInputStream(message, 1, message.length - 1));
+            serverTick = readVarLong(content);
+            serverTickReceivedAt = tick.receivedAt();
+            int lastAction = readVarInt(content);
+            int count = readVarInt(content);
+            for (int i = 0; i < count; i++) {
+                codec.decode(content, updateBus);
+            }
+            acknowledge(lastAction, tick.receivedAt());
+            ticks++;
+        }
+        return ticks;
+    }
+
+    /**
+     * Sends an action of the player, if he is ready to move according to the prediction, and predicts its movement
+     * @param action the action
+     * @return false if the action hasn't been sent because the player isn't ready, he is out of the game
+     *         or the level hasn't been received yet
+     */
+    public boolean perform(Action action) {
+        if (closed || predictedPosition == null || healthPoint <= 0 || getEstimatedTick() < readyAt) {
+            return false;
+        }
+        int sequence = nextSequence++;
+        try {
+            send(new byte[]{ACTION, 0, 0, 0, 0, 0}, sequence, action);
+        } catch (IOException e) {
+            close();
+            return false;
+        }
+        pending.addLast(new PendingAction(sequence, action, System.nanoTime()));
+        Coordinate next = predict(predictedPosition, action);
+        if (!next.equals(predictedPosition)) {
+            predictedPosition = next;
+            // A tick more than the server, because the action reaches it at least a little later
+            readyAt = getEstimatedTick() + playerStepTicks + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Leaves the match
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            send(new byte[]{BYE});
+        } catch (IOException e) {
+            // The server has already gone away
+        }
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    //################# PREDICTION #################//
+
+    /**
+     * Keeps the obstacles and the position of the player up to date with the updates of the server
+     */
+    private void track(UpdateInfo updateInfo) {
+        switch (updateInfo.getUpdateType()) {
+            case LEVEL -> {
+                // A new level, or the current one sent again
+                grid.clear();
+                blocks.clear();
+                pending.clear();
+                readyAt = 0;
+            }
+            case LOAD_MAP -> {
+                if (updateInfo.getBlockType() == BlockType.STATIC_BLOCKS) {
+                    updateInfo.getBlocks().forEach(block -> grid.set(block.x(), block.y(), TileGrid.FIXED_BLOCK));
+                } else if (updateInfo.getBlockType() == BlockType.RANDOM_BLOCKS) {
+                    List<Coordinate> randomBlocks = updateInfo.getBlocks();
+                    for (int i = 0; i < randomBlocks.size(); i++) {
+                        Coordinate block = randomBlocks.get(i);
+                        grid.set(block.x(), block.y(), TileGrid.RANDOM_BLOCK);
+                        int id = updateInfo.getIds().get(i);
+                        while (blocks.size() <= id) {
+                            blocks.add(null);
+                        }
+                        blocks.set(id, block);
+                    }
+                }
+            }
+            case LOAD_PLAYER -> {
+                if (updateInfo.getIndex() == player) {
+                    serverPosition = updateInfo.getCoordinate();
+                    predictedPosition = serverPosition;
+                }
+            }
+            case LOAD_LIFE, UPDATE_PU_LIFE -> {
+                if (updateInfo.getIndex() == player) {
+                    healthPoint = updateInfo.getHealthPoint();
+                }
+            }
+            case LOAD_BOMBS -> updateInfo.getEntities().forEach(bomb -> grid.set(bomb.x(), bomb.y(), TileGrid.BOMB));
+            case UPDATE_POSITION -> {
+                if (updateInfo.getIndex() == -1 - player) {
+                    serverPosition = updateInfo.getNewCoord();
+                }
+            }
+            case UPDATE_RESPAWN -> {
+                if (updateInfo.getIndex() == player) {
+                    healthPoint = updateInfo.getHealthPoint();
+                    if (healthPoint > 0) {
+                        serverPosition = new Coordinate(1, 1);
+                    }
+                    // The server refuses the actions sent before the player was ready again
+                    pending.clear();
+                    readyAt = serverTick + playerStepTicks;
+                }
+            }
+            case UPDATE_BLOCK_DESTROYED -> {
+                Coordinate block = blocks.get(updateInfo.getIndex());
+                grid.unset(block.x(), block.y(), TileGrid.RANDOM_BLOCK);
+            }
+            case UPDATE_BOMB_RELEASED -> grid.set(updateInfo.getCoordinate().x(), updateInfo.getCoordinate().y(), TileGrid.BOMB);
+            case UPDATE_EXPLOSION -> {
+                for (Triad triad : updateInfo.getTriadList()) {
+                    if (triad.direction() == Direction.CENTER) {
+                        grid.unset(triad.coordinate().x(), triad.coordinate().y(), TileGrid.BOMB);
+                    }
+                }
+            }
+            default -> {
+                // Not subscribed
+            }
+        }
+    }
+
+    /**
+     * Forgets the actions performed by the server, then predicts the position again from the one of the server
+     * @param lastAction the sequence number of the last action performed by the server
+     * @param receivedAt when the acknowledgement has been received
+     */
+    private void acknowledge(int lastAction, long receivedAt) {
+        while (!pending.isEmpty() && pending.peekFirst().sequence() <= lastAction) {
+            PendingAction action = pending.removeFirst();
+            if (roundTripListener != null) {
+                roundTripListener.accept(receivedAt - action.sentAt());
+            }
+        }
+        if (serverPosition == null) {
+            return;
+        }
+        Coordinate position = serverPosition;
+        for (PendingAction action : pending) {
+            position = predict(position, action.action());
+        }
+        if (!position.equals(predictedPosition)) {
+            corrections++;
+            predictedPosition = position;
+        }
+    }
+
+    /**
+     * @return the position of the player after the action, if it's a movement towards a tile without obstacles
+     */
+    private Coordinate predict(Coordinate position, Action action) {
+        if (!action.isMovement()) {
+            return position;
+        }
+        int x = position.x() + action.getDirection().getDx();
+        int y = position.y() + action.getDirection().getDy();
+        if (!grid.isInside(x, y) || grid.isObstacle(x, y)) {
+            return position;
+        }
+        return new Coordinate(x, y);
+    }
+
+    //################# CONNECTION #################//
+
+    private void read(DataInputStream in) {
+        try {
+            while (!closed) {
+                byte[] message = readMessage(in);
+                bytesReceived += message.length + 1;
+                if (message[0] != TICK) {
+                    throw new IOException("Unexpected message " + message[0]);
+                }
+                received.add(new ReceivedTick(message, System.nanoTime()));
+            }
+        } catch (IOException e) {
+            // The server has gone away
+        } finally {
+            closed = true;
+        }
+    }
+
+    /**
+     * Sends an ACTION, written in the given array
+     */
+    private synchronized void send(byte[] content, int sequence, Action action) throws IOException {
+        int length = 1;
+        int value = sequence;
+        while ((value & ~0x7F) != 0) {
+            content[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        content[length++] = (byte) value;
+        content[length++] = (byte) action.ordinal();
+        writeVarInt(out, length);
+        out.write(content, 0, length);
+        out.flush();
+    }
+
+    private synchronized void send(byte[] content) throws IOException {
+        out.write(toMessage(content));
+        out.flush();
+    }
+
+    //############ GameClient GETTERS #############//
+
+    /**
+     * @return the number of the player, that the server uses as index of its updates
+     */
+    public int getPlayer() {
+        return player;
+    }
+
+    public GameConfig getConfig() {
+        return config;
+    }
+
+    public int getTickRate() {
+        return tickRate;
+    }
+
+    /**
+     * @return the tick of the server now, estimated from the last one received
+     */
+    public long getEstimatedTick() {
+        return serverTick + (System.nanoTime() - serverTickReceivedAt) / tickNanos;
+    }
+
+    /**
+     * @return the position of the player predicted by the client, null before the level has been received
+     */
+    public Coordinate getPredictedPosition() {
+        return predictedPosition;
+    }
+
+    /**
+     * @return the last position of the player confirmed by the server
+     */
+    public Coordinate getServerPosition() {
+        return serverPosition;
+    }
+
+    public int getHealthPoint() {
+        return healthPoint;
+    }
+
+    /**
+     * @return the number of times the predicted position was different from the one computed again after the acknowledgement
+     */
+    public int getCorrections() {
+        return corrections;
+    }
+
+    /**
+     * @return the bytes of all the messages received, without the headers of TCP and IP
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return true if the connection has been closed, by the client or by the server
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,550 @@
+package org.jbomberman.net;
+
+import org.jbomberman.model.Action;
+import org.jbomberman.model.GameConfig;
+import org.jbomberman.model.GameEngine;
+import org.jbomberman.model.GameRandom;
+import org.jbomberman.model.MainModel;
+import org.jbomberman.utils.UpdateInfo;
+import org.jbomberman.utils.UpdateType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.jbomberman.net.NetProtocol.*;
+
+/**
+ * The GameServer plays the authoritative match of the players connected over TCP, e.g. on the loopback
+ * or on a LAN, and streams it to them.
+ * The match is played by a single thread with a fixed timestep: at every tick it performs the actions
+ * received from the clients, advances the engine and sends to every client a TICK message with the
+ * updates published by the model in the tick, encoded by the EventCodec. The updates are the delta
+ * from the previous tick (the entities that moved, the blocks destroyed, the blasts), so a tick without
+ * events takes a few bytes. A client that joins receives the whole level as the updates of
+ * MainModel.notifyModelReady(), like a view that has just subscribed.
+ * Every connection has a thread that reads its actions and one that writes its messages, so a slow
+ * client doesn't slow the match down: when it falls behind by more than a second of messages it's disconnected.
+ * When the players win a level the next one starts, when they are all out of the game a new match starts.
+ * The match is paused while no client is connected.
+ *
+ * Usage: GameServer [--port=7777] [--seed=N] [--tick-rate=60] [--players=8] [GameConfig parameters]
+ */
+public class GameServer implements Closeable {
+
+    private static final Action[] ACTIONS = Action.values();
+
+    // The message written to a connection to close it after the ones before
+    private static final byte[] CLOSE = new byte[0];
+
+    private final GameConfig config;
+    private final int tickRate;
+    private final long tickNanos;
+
+    private final ServerSocket serverSocket;
+
+    private final MainModel model;
+    private GameEngine engine;
+    private final EventCodec codec;
+
+    // The connection of every player, null if the player is free; used only by the thread of the match
+    private final Connection[] connections;
+
+    // The connections that have said HELLO and wait for a player, handed over by their reading threads
+    private final ConcurrentLinkedQueue<Connection> joining = new ConcurrentLinkedQueue<>();
+
+    // The updates published by the model since the last TICK, and how many they are
+    private final ByteArrayOutputStream updates = new ByteArrayOutputStream(256);
+    private final DataOutputStream updatesOut = new DataOutputStream(updates);
+    private int updateCount = 0;
+
+    // How the level ended in the current tick
+    private boolean levelWon = false;
+    private boolean gameOver = false;
+
+    // The ticks played since the server started, sent to the clients as the time of the server
+    private long tick = 0;
+
+    private volatile boolean running = false;
+    private Thread matchThread;
+    private Thread acceptThread;
+
+    // The statistics, written only by the thread of the match
+    private volatile long ticksPlayed = 0;
+    private volatile long tickNanosTotal = 0;
+    private volatile long tickNanosMax = 0;
+    private volatile int connectedPlayers = 0;
+    private final LongAdder bytesSent = new LongAdder();
+
+    /**
+     * Opens the port of the server; the match starts with start()
+     * @param config the configuration of the match, with the number of players
+     * @param port the TCP port, 0 for any free port
+     * @param tickRate the number of ticks in a second
+     * @param seed the seed of the model
+     * @throws IOException if the port can't be opened
+     */
+    public GameServer(GameConfig config, int port, int tickRate, long seed) throws IOException {
+        this.config = config;
+        this.tickRate = tickRate;
+        this.model = new MainModel(config, new GameRandom(seed));
+        this.codec = new EventCodec(config.getWidth(), config.getHeight());
+        this.connections = new Connection[config.getNumberOfPlayers()];
+        startLevel();
+        this.tickNanos = engine.getTickNanos();
+        // Nobody is connected yet: the players that join receive the level as a whole
+        clearUpdates();
+        serverSocket = new ServerSocket(port);
+    }
+
+    /**
+     * Starts accepting the connections and playing the match, each one on its own thread
+     */
+    public void start() {
+        running = true;
+        acceptThread = new Thread(this::accept, "server-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        matchThread = new Thread(this::run, "server-match");
+        matchThread.start();
+    }
+
+    /**
+     * Stops the match and closes all the connections
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        if (matchThread != null) {
+            try {
+                matchThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Connection connection : connections) {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+        Connection connection;
+        while ((connection = joining.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    //################# MATCH #################//
+
+    /**
+     * Plays a tick every tickNanos; when it's late by more than a second it skips the lost ticks instead of catching up
+     */
+    private void run() {
+        long next = System.nanoTime();
+        while (running) {
+            long start = System.nanoTime();
+            tick();
+            long duration = System.nanoTime() - start;
+            ticksPlayed++;
+            tickNanosTotal += duration;
+            tickNanosMax = Math.max(tickNanosMax, duration);
+
+            next += tickNanos;
+            long delay;
+            while ((delay = next - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            if (-delay > tickRate * tickNanos) {
+                next = System.nanoTime();
+            }
+        }
+    }
+
+    private void tick() {
+        acceptJoiningPlayers();
+        int connected = 0;
+        for (int player = 0; player < connections.length; player++) {
+            Connection connection = connections[player];
+            if (connection != null && connection.closed) {
+                connections[player] = null;
+                connection = null;
+            }
+            if (connection != null) {
+                connected++;
+                performActions(player, connection);
+            }
+        }
+        connectedPlayers = connected;
+        if (connected == 0) {
+            return;
+        }
+
+        tick++;
+        engine.step();
+        broadcast();
+
+        if (levelWon) {
+            model.reset();
+            model.nextLevel();
+            startLevel();
+            broadcast();
+        } else if (gameOver) {
+            model.reset();
+            model.resetGame();
+            startLevel();
+            broadcast();
+        }
+    }
+
+    private void startLevel() {
+        levelWon = false;
+        gameOver = false;
+        model.initialize();
+        engine = new GameEngine(model, tickRate);
+        model.subscribe(this::collect, EnumSet.allOf(UpdateType.class));
+        model.notifyModelReady();
+    }
+
+    private void performActions(int player, Connection connection) {
+        Long action;
+        while ((action = connection.actions.poll()) != null) {
+            // The actions refused because the player isn't ready are acknowledged anyway
+            engine.perform(player, ACTIONS[(int) (action & 0xFF)]);
+            connection.lastAction = (int) (action >>> 8);
+        }
+    }
+
+    /**
+     * Gives the first free player to the connections that have said HELLO, with the whole level
+     */
+    private void acceptJoiningPlayers() {
+        Connection connection;
+        while ((connection = joining.poll()) != null) {
+            int player = Arrays.asList(connections).indexOf(null);
+            if (player < 0) {
+                connection.send(toMessage(new byte[]{FULL}));
+                connection.send(CLOSE);
+                continue;
+            }
+            // The player left by the previous connection starts again from the spawn, and the others see it
+            engine.resetPlayer(player);
+            broadcast();
+            connections[player] = connection;
+            connection.send(welcome(player));
+            // The updates published since the last TICK have already been sent to the other players
+            model.notifyModelReady();
+            connection.send(tickMessage(updatesBody(), connection.lastAction));
+            clearUpdates();
+        }
+    }
+
+    /**
+     * Receives the updates published by the model, that must be encoded before the next one
+     */
+    private void collect(UpdateInfo updateInfo) {
+        try {
+            codec.encode(updateInfo, updatesOut);
+        } catch (IOException e) {
+            // A ByteArrayOutputStream never fails
+            throw new UncheckedIOException(e);
+        }
+        updateCount++;
+        if (updateInfo.getUpdateType() == UpdateType.UPDATE_GAME_WIN) {
+            levelWon = true;
+        } else if (updateInfo.getUpdateType() == UpdateType.UPDATE_GAME_OVER) {
+            gameOver = true;
+        }
+    }
+
+    /**
+     * Sends the updates published since the last TICK to all the players
+     */
+    private void broadcast() {
+        byte[] body = updatesBody();
+        for (Connection connection : connections) {
+            if (connection != null && !connection.closed) {
+                connection.send(tickMessage(body, connection.lastAction));
+            }
+        }
+        clearUpdates();
+    }
+
+    private void clearUpdates() {
+        updates.reset();
+        updateCount = 0;
+    }
+
+    //################# MESSAGES #################//
+
+    /**
+     * @return the number of updates followed by the updates
+     */
+    private byte[] updatesBody() {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(updates.size() + 5);
+        try {
+            writeVarInt(new DataOutputStream(body), updateCount);
+            updates.writeTo(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return body.toByteArray();
+    }
+
+    private byte[] tickMessage(byte[] body, int lastAction) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream(body.length + 16);
+        DataOutputStream out = new DataOutputStream(content);
+        try {
+            out.writeByte(TICK);
+            writeVarLong(out, tick);
+            writeVarInt(out, lastAction);
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return toMessage(content.toByteArray());
+    }
+
+    private byte[] welcome(int player) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(content);
+        try {
+            out.writeByte(WELCOME);
+            writeVarInt(out, VERSION);
+            writeVarInt(out, player);
+            writeVarInt(out, tickRate);
+            Map<String, String> parameters = config.toParameters();
+            writeVarInt(out, parameters.size());
+            for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                out.writeUTF(parameter.getKey());
+                out.writeUTF(parameter.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return toMessage(content.toByteArray());
+    }
+
+    //################# CONNECTIONS #################//
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                new Connection(socket).start();
+            } catch (SocketException e) {
+                // The server has been closed
+                return;
+            } catch (IOException e) {
+                System.out.println("A connection could not be accepted: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The connection of a client: it reads the actions on a thread and writes the messages on another one
+     */
+    private final class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final OutputStream out;
+
+        // The messages waiting to be written, at most a second of ticks
+        private final BlockingQueue<byte[]> outgoing = new ArrayBlockingQueue<>(Math.max(tickRate, 16));
+
+        // The actions received and not yet performed, each one as its sequence number and the ordinal of the Action
+        private final ConcurrentLinkedQueue<Long> actions = new ConcurrentLinkedQueue<>();
+
+        private Thread writer;
+        private volatile boolean closed = false;
+
+        // The sequence number of the last action performed, used only by the thread of the match
+        private int lastAction = 0;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        private void start() {
+            Thread reader = new Thread(this::read, "server-read-" + socket.getPort());
+            reader.setDaemon(true);
+            writer = new Thread(this::write, "server-write-" + socket.getPort());
+            writer.setDaemon(true);
+            writer.start();
+            reader.start();
+        }
+
+        private void read() {
+            try {
+                byte[] hello = readMessage(in);
+                DataInputStream content = new DataInputStream(new ByteArrayInputStream(hello, 1, hello.length - 1));
+                if (hello[0] != HELLO || readVarInt(content) != VERSION) {
+                    throw new IOException("Not a client of version " + VERSION);
+                }
+                joining.add(this);
+                while (!closed) {
+                    byte[] message = readMessage(in);
+                    content = new DataInputStream(new ByteArrayInputStream(message, 1, message.length - 1));
+                    if (message[0] == ACTION) {
+                        int sequence = readVarInt(content);
+                        int action = content.readUnsignedByte();
+                        if (action >= ACTIONS.length) {
+                            throw new IOException("Unknown action " + action);
+                        }
+                        actions.add((long) sequence << 8 | action);
+                    } else if (message[0] == BYE) {
+                        break;
+                    } else {
+                        throw new IOException("Unknown message " + message[0]);
+                    }
+                }
+            } catch (IOException e) {
+                // The client has gone away or doesn't speak the protocol
+            } finally {
+                close();
+            }
+        }
+
+        private void write() {
+            try {
+                while (!closed) {
+                    byte[] message = outgoing.take();
+                    // The messages are written together as long as there are more, then flushed
+                    while (message != null && message != CLOSE) {
+                        out.write(message);
+                        message = outgoing.poll();
+                    }
+                    out.flush();
+                    if (message == CLOSE) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                // The client has gone away
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Queues a message; a client that doesn't read them fast enough is disconnected
+         */
+        private void send(byte[] message) {
+            if (closed) {
+                return;
+            }
+            if (!outgoing.offer(message)) {
+                System.out.println("The client " + socket.getRemoteSocketAddress() + " is too slow, it has been disconnected");
+                close();
+                return;
+            }
+            bytesSent.add(message.length);
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+            if (writer != null && writer != Thread.currentThread()) {
+                writer.interrupt();
+            }
+        }
+    }
+
+    //############ GameServer GETTERS #############//
+
+    /**
+     * @return the port of the server, useful if it was chosen by the system
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getTickRate() {
+        return tickRate;
+    }
+
+    /**
+     * @return the number of players connected at the last tick
+     */
+    public int getConnectedPlayers() {
+        return connectedPlayers;
+    }
+
+    /**
+     * @return the number of ticks played, including the ones paused without players
+     */
+    public long getTicksPlayed() {
+        return ticksPlayed;
+    }
+
+    /**
+     * @return the average time taken by a tick, including the encoding of the updates and the queueing of the messages
+     */
+    public double getAverageTickNanos() {
+        return ticksPlayed == 0 ? 0 : (double) tickNanosTotal / ticksPlayed;
+    }
+
+    public long getMaxTickNanos() {
+        return tickNanosMax;
+    }
+
+    /**
+     * @return the bytes of all the messages sent, without the headers of TCP and IP
+     */
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    //################# COMMAND LINE #################//
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> parameters = parseArguments(args);
+        int port = Integer.parseInt(take(parameters, "port", Integer.toString(DEFAULT_PORT)));
+        long seed = Long.parseLong(take(parameters, "seed", Long.toString(System.nanoTime())));
+        int tickRate = Integer.parseInt(take(parameters, "tick-rate", Integer.toString(GameEngine.DEFAULT_TICK_RATE)));
+        parameters.putIfAbsent("players", "8");
+
+        GameServer server = new GameServer(GameConfig.fromParameters(parameters), port, tickRate, seed);
+        server.start();
+        System.out.printf("server: %d players on port %d at %d ticks/s%n", server.config.getNumberOfPlayers(), server.getPort(), server.getTickRate());
+
+        long lastBytes = 0;
+        while (true) {
+            Thread.sleep(10_000);
+            long bytes = server.getBytesSent();
+            System.out.printf("players: %d, tick %.1f us on average (max %.1f us), sent %.1f KB/s%n",
+                    server.getConnectedPlayers(), server.getAverageTickNanos() / 1e3, server.getMaxTickNanos() / 1e3,
+                    (bytes - lastBytes) / 10.0 / 1024);
+            lastBytes = bytes;
+        }
+    }
+}
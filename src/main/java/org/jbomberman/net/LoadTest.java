@@ -0,0 +1,165 @@
+package org.jbomberman.net;
+
+import org.jbomberman.model.Action;
+import org.jbomberman.model.GameConfig;
+import org.jbomberman.model.GameEngine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.jbomberman.net.NetProtocol.*;
+
+/**
+ * The LoadTest connects many GameClients to a GameServer, each one played by a thread that moves at
+ * random and sometimes releases a bomb, and prints the cost of the match: the duration of the ticks
+ * of the server, the bytes received by every client, the time between an action and its
+ * acknowledgement and how many times the prediction of the clients had to be corrected.
+ * Without --host the server is started in the same process, on a free port, with a player for every client.
+ *
+ * Usage: LoadTest [--clients=N] [--seconds=N] [--host=name --port=N] [--seed=N] [--tick-rate=N] [GameConfig parameters]
+ */
+public class LoadTest {
+
+    // The clients look for updates and act 60 times a second, like the frames of the game
+    private static final long FRAME = 1_000_000_000L / 60;
+
+    // The probability that a client releases a bomb instead of moving
+    private static final double BOMB_PROBABILITY = 0.05;
+
+    /**
+     * The thread of a client and what it measured
+     */
+    private static final class Bot extends Thread {
+        private final GameClient client;
+        private final long endsAt;
+        private final Random random;
+
+        // The round trip times measured, in nanoseconds
+        private long[] roundTrips = new long[1024];
+        private int roundTripCount = 0;
+        private int actions = 0;
+
+        private Bot(GameClient client, long endsAt, long seed) {
+            super("bot-" + client.getPlayer());
+            this.client = client;
+            this.endsAt = endsAt;
+            this.random = new Random(seed);
+            client.setRoundTripListener(this::addRoundTrip);
+        }
+
+        private void addRoundTrip(long nanos) {
+            if (roundTripCount == roundTrips.length) {
+                roundTrips = Arrays.copyOf(roundTrips, roundTripCount * 2);
+            }
+            roundTrips[roundTripCount++] = nanos;
+        }
+
+        @Override
+        public void run() {
+            Action[] actions = Action.values();
+            Action direction = actions[random.nextInt(4)];
+            long next = System.nanoTime();
+            try {
+                while (!client.isClosed() && System.nanoTime() < endsAt) {
+                    client.update();
+                    // Goes on in the same direction, and turns sometimes or when it's blocked
+                    Action action = random.nextDouble() < BOMB_PROBABILITY ? Action.BOMB : direction;
+                    if (client.perform(action)) {
+                        this.actions++;
+                        if (random.nextInt(4) == 0) {
+                            direction = actions[random.nextInt(4)];
+                        }
+                    } else if (client.getPredictedPosition() != null && random.nextInt(8) == 0) {
+                        direction = actions[random.nextInt(4)];
+                    }
+                    next += FRAME;
+                    LockSupport.parkNanos(next - System.nanoTime());
+                }
+                client.update();
+            } catch (IOException e) {
+                System.out.println("client " + client.getPlayer() + ": " + e.getMessage());
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> parameters = parseArguments(args);
+        int clients = Integer.parseInt(take(parameters, "clients", "8"));
+        long seconds = Long.parseLong(take(parameters, "seconds", "30"));
+        String host = take(parameters, "host", null);
+        int port = Integer.parseInt(take(parameters, "port", Integer.toString(DEFAULT_PORT)));
+        long seed = Long.parseLong(take(parameters, "seed", "0"));
+        int tickRate = Integer.parseInt(take(parameters, "tick-rate", Integer.toString(GameEngine.DEFAULT_TICK_RATE)));
+
+        GameServer server = null;
+        if (host == null) {
+            parameters.putIfAbsent("players", Integer.toString(clients));
+            server = new GameServer(GameConfig.fromParameters(parameters), 0, tickRate, seed);
+            server.start();
+            host = "localhost";
+            port = server.getPort();
+        }
+
+        long endsAt = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Bot> bots = new ArrayList<>();
+        try {
+            for (int i = 0; i < clients; i++) {
+                bots.add(new Bot(GameClient.connect(host, port), endsAt, seed + i));
+            }
+        } catch (IOException e) {
+            System.out.println("client " + bots.size() + " can't connect: " + e.getMessage());
+            bots.forEach(bot -> bot.client.close());
+            if (server != null) {
+                server.close();
+            }
+            return;
+        }
+        long ticksBefore = server != null ? server.getTicksPlayed() : 0;
+        long start = System.nanoTime();
+        bots.forEach(Thread::start);
+        for (Bot bot : bots) {
+            bot.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        printSummary(bots, elapsed);
+        if (server != null) {
+            System.out.printf("server: %.1f ticks/s, tick %.1f us on average (max %.1f us), sent %.1f KB/s%n",
+                    (server.getTicksPlayed() - ticksBefore) / elapsed, server.getAverageTickNanos() / 1e3,
+                    server.getMaxTickNanos() / 1e3, server.getBytesSent() / elapsed / 1024);
+            server.close();
+        }
+    }
+
+    private static void printSummary(List<Bot> bots, double elapsed) {
+        long bytes = 0;
+        long actions = 0;
+        long corrections = 0;
+        long[] roundTrips = new long[0];
+        for (Bot bot : bots) {
+            bytes += bot.client.getBytesReceived();
+            actions += bot.actions;
+            corrections += bot.client.getCorrections();
+            int offset = roundTrips.length;
+            roundTrips = Arrays.copyOf(roundTrips, offset + bot.roundTripCount);
+            System.arraycopy(bot.roundTrips, 0, roundTrips, offset, bot.roundTripCount);
+        }
+        Arrays.sort(roundTrips);
+
+        System.out.printf("clients: %d for %.1f s, %d actions, %d corrections of the prediction (%.2f%%)%n",
+                bots.size(), elapsed, actions, corrections, actions == 0 ? 0.0 : 100.0 * corrections / actions);
+        System.out.printf("received: %.2f KB/s per client%n", bytes / elapsed / 1024 / bots.size());
+        if (roundTrips.length > 0) {
+            double average = Arrays.stream(roundTrips).average().orElse(0);
+            System.out.printf("round trip: %.2f ms on average, %.2f ms p99, %.2f ms max%n", average / 1e6,
+                    roundTrips[(int) (roundTrips.length * 0.99)] / 1e6, roundTrips[roundTrips.length - 1] / 1e6);
+        }
+    }
+}
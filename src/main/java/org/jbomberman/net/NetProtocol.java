@@ -0,0 +1,152 @@
+package org.jbomberman.net;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The messages exchanged by the GameServer and the GameClient over a TCP connection.
+ * Every message is its length (a variable-length integer) followed by its type and its content:
+ * - from the client: HELLO (the version of the protocol), ACTION (the sequence number and the ordinal
+ *   of the Action) and BYE
+ * - from the server: WELCOME (the version, the number of the player, the tick rate and the parameters
+ *   of the GameConfig), FULL (there isn't a free player) and TICK (the tick of the server, the sequence
+ *   number of the last action of the client that has been performed, and the updates published by the
+ *   model in the tick, encoded by the EventCodec)
+ * The server sends a TICK at every tick, even without updates: it's a few bytes, and it lets the client
+ * know the time of the server and when its actions have been performed.
+ */
+public final class NetProtocol {
+
+    public static final int VERSION = 1;
+
+    public static final int DEFAULT_PORT = 7777;
+
+    // The longest message accepted, the updates of a new level of the largest maps are smaller
+    public static final int MAX_MESSAGE = 1 << 20;
+
+    // The types of the messages of the client
+    public static final byte HELLO = 1;
+    public static final byte ACTION = 2;
+    public static final byte BYE = 3;
+
+    // The types of the messages of the server
+    public static final byte WELCOME = 1;
+    public static final byte FULL = 2;
+    public static final byte TICK = 3;
+
+    private NetProtocol() {
+    }
+
+    /**
+     * Writes a non-negative integer in 7 bits per byte, so that the small ones take a single byte
+     */
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /**
+     * Writes an integer that can be negative, e.g. the index of a player in an update, with the zigzag encoding
+     */
+    public static void writeSignedVarInt(DataOutput out, int value) throws IOException {
+        writeVarInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    public static int readSignedVarInt(DataInput in) throws IOException {
+        int value = readVarInt(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @param content the type and the content of a message
+     * @return the message, prefixed by its length
+     */
+    public static byte[] toMessage(byte[] content) {
+        int length = content.length;
+        int header = 1;
+        while ((length >>> (7 * header)) != 0) {
+            header++;
+        }
+        byte[] message = new byte[header + length];
+        for (int i = 0; i < header - 1; i++) {
+            message[i] = (byte) ((length >>> (7 * i)) & 0x7F | 0x80);
+        }
+        message[header - 1] = (byte) (length >>> (7 * (header - 1)));
+        System.arraycopy(content, 0, message, header, length);
+        return message;
+    }
+
+    /**
+     * Reads the next message
+     * @return its bytes, starting from the type
+     * @throws IOException if the connection is closed or the message is too long
+     */
+    public static byte[] readMessage(DataInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length < 1 || length > MAX_MESSAGE) {
+            throw new IOException("Message of " + length + " bytes");
+        }
+        byte[] message = new byte[length];
+        in.readFully(message);
+        return message;
+    }
+
+    /**
+     * Parses the arguments of the command line tools of the package
+     * @return the arguments in the form --name=value as a modifiable map
+     */
+    static Map<String, String> parseArguments(String[] args) {
+        Map<String, String> parameters = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("The arguments must be in the form --name=value: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            parameters.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return parameters;
+    }
+
+    static String take(Map<String, String> parameters, String name, String defaultValue) {
+        String value = parameters.remove(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,318 @@
+package org.jbomberman.net;
+
+import org.jbomberman.model.Action;
+import org.jbomberman.model.GameConfig;
+import org.jbomberman.model.GameEngine;
+import org.jbomberman.model.GameRandom;
+import org.jbomberman.model.MainModel;
+import org.jbomberman.utils.Coordinate;
+import org.jbomberman.utils.UpdateInfo;
+import org.jbomberman.utils.UpdateType;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Room is a match of the RoomServer, with its own model and engine.
+ * It isn't a thread: its ticks are run by the scheduler shared by all the rooms, never two at the same
+ * time, and the commands of the players (join, leave, actions) are queued and performed at the beginning
+ * of the next tick, so the state of the room is used by a single thread at a time without locks.
+ * The players receive a line of text when something of theirs changes, see RoomServer.
+ */
+public class Room {
+
+    // An empty room is closed after a minute
+    private static final long IDLE_SECONDS = 60;
+
+    private final int id;
+    private final RoomServer server;
+    private final int tickRate;
+    private final long tickNanos;
+
+    private final MainModel model;
+    private GameEngine engine;
+
+    // The commands of the players, performed by the next tick
+    private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+    // The session of every player, null if the player is free
+    private final RoomServer.Session[] members;
+
+    // The position and the lives of every player last sent to him, null and -1 if they must be sent again
+    private final Coordinate[] sentPositions;
+    private final int[] sentHealthPoints;
+
+    // How the level ended in the current tick
+    private boolean levelWon = false;
+    private boolean gameOver = false;
+
+    private long tick = 0;
+    private long idleTicks = 0;
+
+    private ScheduledFuture<?> future;
+    private long firstTickAt;
+    private long runs = 0;
+    private volatile boolean closed = false;
+
+    // Completed by close()
+    private final CompletableFuture<Void> closing = new CompletableFuture<>();
+
+    // The statistics, written only by the ticks of the room
+    private volatile int memberCount = 0;
+    private volatile long ticksPlayed = 0;
+    private volatile long tickNanosTotal = 0;
+    private volatile long tickNanosMax = 0;
+    private volatile long lateNanosTotal = 0;
+    private volatile long lateNanosMax = 0;
+
+    /**
+     * @param id the number of the room in the server
+     * @param config the configuration of the match, with the number of players
+     * @param server the server of the room, that writes the lines to the players
+     * @param tickRate the number of ticks in a second
+     * @param seed the seed of the model
+     */
+    Room(int id, GameConfig config, RoomServer server, int tickRate, long seed) {
+        this.id = id;
+        this.server = server;
+        this.tickRate = tickRate;
+        this.model = new MainModel(config, new GameRandom(seed));
+        this.members = new RoomServer.Session[config.getNumberOfPlayers()];
+        this.sentPositions = new Coordinate[members.length];
+        this.sentHealthPoints = new int[members.length];
+        startLevel();
+        this.tickNanos = engine.getTickNanos();
+    }
+
+    /**
+     * Starts playing the ticks of the room
+     * @param scheduler the scheduler shared by the rooms
+     */
+    void start(ScheduledExecutorService scheduler) {
+        firstTickAt = System.nanoTime() + tickNanos;
+        future = scheduler.scheduleAtFixedRate(this::run, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops the ticks; the players still in the room receive CLOSED. It's called only by a tick of the room,
+     * since it reads the members: the other threads use requestClose().
+     * The commands queued afterwards are never performed, the sessions check isClosed() before queueing them
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (future != null) {
+            future.cancel(false);
+        }
+        for (RoomServer.Session member : members) {
+            if (member != null) {
+                member.leftRoom(this);
+                server.send(member, "CLOSED " + id);
+            }
+        }
+        closing.complete(null);
+    }
+
+    /**
+     * Closes the room at its next tick, see close()
+     * @return a future completed when the room is closed
+     */
+    CompletableFuture<Void> requestClose() {
+        commands.add(() -> server.closeRoom(this));
+        return closing;
+    }
+
+    //################# COMMANDS #################//
+
+    void join(RoomServer.Session session) {
+        commands.add(() -> {
+            int player = Arrays.asList(members).indexOf(null);
+            if (player < 0) {
+                session.leftRoom(this);
+                server.send(session, "ERROR the room " + id + " is full");
+                return;
+            }
+            members[player] = session;
+            memberCount++;
+            // The player left by the previous member starts again from the spawn
+            engine.resetPlayer(player);
+            sentPositions[player] = null;
+            sentHealthPoints[player] = -1;
+            server.send(session, "JOINED " + id + " " + player);
+            server.send(session, "LEVEL " + model.getLevel());
+        });
+    }
+
+    void leave(RoomServer.Session session) {
+        commands.add(() -> {
+            int player = Arrays.asList(members).indexOf(session);
+            if (player >= 0) {
+                members[player] = null;
+                memberCount--;
+                server.send(session, "LEFT " + id);
+            }
+        });
+    }
+
+    void perform(RoomServer.Session session, Action action) {
+        commands.add(() -> {
+            int player = Arrays.asList(members).indexOf(session);
+            if (player >= 0) {
+                engine.perform(player, action);
+            }
+        });
+    }
+
+    //################# TICKS #################//
+
+    /**
+     * Plays a tick, and measures how late it started and how long it took
+     */
+    private void run() {
+        long start = System.nanoTime();
+        long late = Math.max(0, start - (firstTickAt + runs * tickNanos));
+        runs++;
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            // An exception would stop the ticks of the room without a trace
+            System.out.println("room " + id + " closed: " + e);
+            server.closeRoom(this);
+        }
+        long duration = System.nanoTime() - start;
+        ticksPlayed++;
+        tickNanosTotal += duration;
+        tickNanosMax = Math.max(tickNanosMax, duration);
+        lateNanosTotal += late;
+        lateNanosMax = Math.max(lateNanosMax, late);
+        server.tickPlayed();
+    }
+
+    private void tick() {
+        Runnable command;
+        while ((command = commands.poll()) != null) {
+            command.run();
+        }
+        // The match is paused while the room is empty
+        if (memberCount == 0) {
+            if (++idleTicks > IDLE_SECONDS * tickRate) {
+                server.closeRoom(this);
+            }
+            return;
+        }
+        idleTicks = 0;
+
+        tick++;
+        engine.step();
+        if (levelWon) {
+            model.reset();
+            model.nextLevel();
+            startLevel();
+        } else if (gameOver) {
+            broadcast("GAMEOVER " + model.getPoints());
+            model.reset();
+            model.resetGame();
+            startLevel();
+        }
+        sendStates();
+    }
+
+    private void startLevel() {
+        levelWon = false;
+        gameOver = false;
+        model.initialize();
+        engine = new GameEngine(model, tickRate);
+        model.subscribe(this::levelEnded, EnumSet.of(UpdateType.UPDATE_GAME_WIN, UpdateType.UPDATE_GAME_OVER));
+        Arrays.fill(sentPositions, null);
+        broadcast("LEVEL " + model.getLevel());
+    }
+
+    private void levelEnded(UpdateInfo updateInfo) {
+        if (updateInfo.getUpdateType() == UpdateType.UPDATE_GAME_WIN) {
+            levelWon = true;
+        } else {
+            gameOver = true;
+        }
+    }
+
+    /**
+     * Sends STATE to the players whose position or lives changed
+     */
+    private void sendStates() {
+        for (int player = 0; player < members.length; player++) {
+            if (members[player] == null) {
+                continue;
+            }
+            Coordinate position = model.getPlayerPosition(player);
+            int healthPoint = model.getPlayerHealthPoint(player);
+            if (!position.equals(sentPositions[player]) || healthPoint != sentHealthPoints[player]) {
+                sentPositions[player] = position;
+                sentHealthPoints[player] = healthPoint;
+                server.send(members[player], "STATE " + tick + " " + position.x() + " " + position.y() + " " + healthPoint);
+            }
+        }
+    }
+
+    private void broadcast(String line) {
+        for (RoomServer.Session member : members) {
+            if (member != null) {
+                server.send(member, line);
+            }
+        }
+    }
+
+    //############ Room GETTERS #############//
+
+    public int getId() {
+        return id;
+    }
+
+    public int getPlayers() {
+        return memberCount;
+    }
+
+    public int getMaxPlayers() {
+        return members.length;
+    }
+
+    public int getLevel() {
+        return model.getLevel();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return the ticks run by the scheduler, also the ones of the room empty
+     */
+    public long getTicksPlayed() {
+        return ticksPlayed;
+    }
+
+    public double getAverageTickNanos() {
+        return ticksPlayed == 0 ? 0 : (double) tickNanosTotal / ticksPlayed;
+    }
+
+    public long getMaxTickNanos() {
+        return tickNanosMax;
+    }
+
+    /**
+     * @return how late the ticks started on average, after the time they were scheduled at
+     */
+    public double getAverageLateNanos() {
+        return ticksPlayed == 0 ? 0 : (double) lateNanosTotal / ticksPlayed;
+    }
+
+    public long getMaxLateNanos() {
+        return lateNanosMax;
+    }
+}
@@ -0,0 +1,259 @@
+package org.jbomberman.net;
+
+import org.jbomberman.model.Action;
+import org.jbomberman.model.GameEngine;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.jbomberman.net.NetProtocol.parseArguments;
+import static org.jbomberman.net.NetProtocol.take;
+
+/**
+ * The RoomLoadTest fills a RoomServer with rooms of simulated players, each one a connection that
+ * moves at random every 200 ms (the duration of a step of the player) and sometimes releases a bomb,
+ * then prints the statistics of the server: how long the ticks of the rooms took, how late they started
+ * and the CPU used. The players are driven by a few threads, each one serving many connections.
+ * Without --host the server is started in the same process, on a free port.
+ *
+ * Usage: RoomLoadTest [--rooms=100] [--players=4] [--seconds=30] [--threads=4] [--host=name --port=N]
+ *                     [--tick-rate=60] [--server-threads=cores] [GameConfig parameters of the rooms]
+ */
+public class RoomLoadTest {
+
+    private static final Action[] ACTIONS = Action.values();
+
+    // The probability that a player releases a bomb instead of moving
+    private static final double BOMB_PROBABILITY = 0.05;
+
+    /**
+     * A simulated player and its connection
+     */
+    private static final class Bot {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+
+        // The line being read, not yet complete
+        private final StringBuilder line = new StringBuilder();
+
+        private long bytesReceived = 0;
+        private long states = 0;
+        private long actions = 0;
+
+        private Bot(String host, int port) throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedInputStream(socket.getInputStream());
+            out = socket.getOutputStream();
+        }
+
+        private void send(String command) throws IOException {
+            out.write((command + "\n").getBytes(StandardCharsets.US_ASCII));
+        }
+
+        /**
+         * Reads lines until one starts with the expected word, waiting for them
+         * @return the line
+         * @throws IOException if the server answers ERROR or closes the connection
+         */
+        private String expect(String word) throws IOException {
+            while (true) {
+                String received = readLine(true);
+                if (received.startsWith(word)) {
+                    return received;
+                }
+                if (received.startsWith("ERROR")) {
+                    throw new IOException(received);
+                }
+            }
+        }
+
+        /**
+         * Reads the lines already received, without waiting
+         */
+        private void drain() throws IOException {
+            while (readLine(false) != null) {
+                // The lines are only counted
+            }
+        }
+
+        /**
+         * @param wait true to wait for a complete line
+         * @return the next line, or null if it hasn't been received yet and wait is false
+         */
+        private String readLine(boolean wait) throws IOException {
+            while (wait || in.available() > 0) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new IOException("The server has closed the connection");
+                }
+                bytesReceived++;
+                if (b == '\n') {
+                    String complete = line.toString();
+                    line.setLength(0);
+                    if (complete.startsWith("STATE")) {
+                        states++;
+                    }
+                    return complete;
+                }
+                line.append((char) b);
+            }
+            return null;
+        }
+
+        private void close() {
+            try {
+                send("QUIT");
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> parameters = parseArguments(args);
+        int roomCount = Integer.parseInt(take(parameters, "rooms", "100"));
+        int players = Integer.parseInt(take(parameters, "players", "4"));
+        long seconds = Long.parseLong(take(parameters, "seconds", "30"));
+        int threads = Integer.parseInt(take(parameters, "threads", "4"));
+        String host = take(parameters, "host", null);
+        int port = Integer.parseInt(take(parameters, "port", Integer.toString(RoomServer.DEFAULT_PORT)));
+        int tickRate = Integer.parseInt(take(parameters, "tick-rate", Integer.toString(GameEngine.DEFAULT_TICK_RATE)));
+        int serverThreads = Integer.parseInt(take(parameters, "server-threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+
+        // The remaining parameters configure the rooms
+        StringBuilder create = new StringBuilder("CREATE players=" + players);
+        parameters.forEach((name, value) -> create.append(' ').append(name).append('=').append(value));
+
+        RoomServer server = null;
+        if (host == null) {
+            server = new RoomServer(0, tickRate, serverThreads, 0);
+            server.start();
+            host = "localhost";
+            port = server.getPort();
+        }
+
+        List<Bot> bots = new ArrayList<>();
+        long setupStart = System.nanoTime();
+        try {
+            // A JOIN is answered by the next tick of the room, so all of them are sent before waiting for the answers
+            for (int room = 0; room < roomCount; room++) {
+                Bot creator = new Bot(host, port);
+                creator.send(create.toString());
+                String id = creator.expect("CREATED").split(" ")[1];
+                for (int player = 0; player < players; player++) {
+                    Bot bot = player == 0 ? creator : new Bot(host, port);
+                    bot.send("JOIN " + id);
+                    bots.add(bot);
+                }
+            }
+            for (Bot bot : bots) {
+                bot.expect("JOINED");
+            }
+        } catch (IOException e) {
+            System.out.println("The rooms could not be filled after " + bots.size() + " players: " + e.getMessage());
+            bots.forEach(Bot::close);
+            if (server != null) {
+                server.close();
+            }
+            return;
+        }
+        System.out.printf("%d rooms of %d players created in %.1f s%n", roomCount, players, (System.nanoTime() - setupStart) / 1e9);
+
+        long cpuBefore = server != null ? server.getCpuNanos() : 0;
+        long ticksBefore = server != null ? server.getTicksPlayed() : 0;
+        long start = System.nanoTime();
+        long endsAt = start + seconds * 1_000_000_000L;
+        List<Thread> drivers = new ArrayList<>();
+        long[] overruns = new long[threads];
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            Thread driver = new Thread(() -> overruns[first] = drive(bots, first, threads, endsAt), "driver-" + t);
+            drivers.add(driver);
+            driver.start();
+        }
+        for (Thread driver : drivers) {
+            driver.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long bytes = 0;
+        long states = 0;
+        long actions = 0;
+        for (Bot bot : bots) {
+            bytes += bot.bytesReceived;
+            states += bot.states;
+            actions += bot.actions;
+        }
+        long late = 0;
+        for (long overrun : overruns) {
+            late += overrun;
+        }
+        System.out.printf("players: %d for %.1f s, %d actions, %d states received, %.2f KB/s per player%n",
+                bots.size(), elapsed, actions, states, bytes / elapsed / 1024 / bots.size());
+        if (late > 0) {
+            System.out.printf("the drivers fell behind %d times: the numbers are measured with fewer actions than expected%n", late);
+        }
+
+        // The statistics are asked to the server, so they are printed also for a remote one
+        Bot control = new Bot(host, port);
+        control.send("STATS");
+        System.out.println(control.expect("STATS"));
+        control.close();
+        if (server != null) {
+            double cores = (server.getCpuNanos() - cpuBefore) / 1e9 / elapsed;
+            System.out.printf("server: %.0f ticks/s, tick %.1f us on average (max %.1f us), late %.2f ms on average (max %.2f ms), CPU %.2f cores (%.1f us per tick)%n",
+                    (server.getTicksPlayed() - ticksBefore) / elapsed, server.getAverageTickNanos() / 1e3,
+                    server.getMaxTickNanos() / 1e3, server.getAverageLateNanos() / 1e6, server.getMaxLateNanos() / 1e6, cores,
+                    cores * 1e6 / Math.max(1, (server.getTicksPlayed() - ticksBefore) / elapsed));
+        }
+        bots.forEach(Bot::close);
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * Drives every threads-th player, starting from the first one, until endsAt
+     * @return the number of rounds that started late because the previous one took too long
+     */
+    private static long drive(List<Bot> bots, int first, int threads, long endsAt) {
+        Random random = new Random(first);
+        long period = GameEngine.PLAYER_STEP;
+        long next = System.nanoTime() + random.nextInt((int) (period / 1000)) * 1000L;
+        long overruns = 0;
+        while (System.nanoTime() < endsAt) {
+            long delay = next - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            } else if (delay < -period) {
+                overruns++;
+                next = System.nanoTime();
+            }
+            next += period;
+            for (int i = first; i < bots.size(); i += threads) {
+                Bot bot = bots.get(i);
+                try {
+                    bot.drain();
+                    Action action = random.nextDouble() < BOMB_PROBABILITY ? Action.BOMB : ACTIONS[random.nextInt(4)];
+                    bot.send("ACTION " + action);
+                    bot.actions++;
+                } catch (IOException e) {
+                    // The room has been closed or the server has gone away: the player stops
+                }
+            }
+        }
+        return overruns;
+    }
+}
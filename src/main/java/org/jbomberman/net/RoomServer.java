@@ -0,0 +1,622 @@
+package org.jbomberman.net;
+
+import org.jbomberman.model.Action;
+import org.jbomberman.model.GameConfig;
+import org.jbomberman.model.GameEngine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.jbomberman.net.NetProtocol.parseArguments;
+import static org.jbomberman.net.NetProtocol.take;
+
+/**
+ * The RoomServer hosts many independent matches, the rooms, in a single process without JavaFX.
+ * A room isn't a thread: the ticks of all the rooms are run by a scheduler with a thread per core,
+ * and all the connections are served by a single thread with non-blocking sockets, so a room costs
+ * only its model and the time of its ticks (a few microseconds).
+ * The protocol is made of lines of text, so it can be tried with netcat. The commands of a client:
+ * - CREATE [name=value ...]: creates a room with the given GameConfig parameters (4 players if not
+ *   given), the answer is CREATED room
+ * - JOIN room: takes the first free player of the room, the answer is JOINED room player
+ * - ACTION UP|DOWN|LEFT|RIGHT|BOMB: performs an action in the room at the next tick
+ * - LEAVE: leaves the room, the answer is LEFT room
+ * - STATS [room]: the statistics of the server or of a room, on a single line
+ * - QUIT: closes the connection
+ * A wrong command is answered with ERROR and the reason. The players of a room receive LEVEL level when
+ * a level starts, STATE tick x y lives when their position or their lives change, GAMEOVER points when
+ * they are all out of the game (and a new match starts) and CLOSED room if the room is closed.
+ * An empty room is paused, and closed after a minute.
+ *
+ * Usage: RoomServer [--port=7778] [--tick-rate=60] [--threads=cores] [--seed=N]
+ */
+public class RoomServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 7778;
+
+    private static final String DEFAULT_ROOM_PLAYERS = "4";
+
+    // The longest command accepted
+    private static final int MAX_LINE = 1024;
+
+    // A session whose unwritten output grows beyond this is disconnected, it doesn't read fast enough
+    private static final int MAX_PENDING_OUTPUT = 64 * 1024;
+
+    // How long close() waits for the rooms to be closed by their ticks
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    private final int tickRate;
+    private final long seed;
+
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Map<Integer, Room> rooms = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRoomId = new AtomicInteger(1);
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private Thread ioThread;
+    private volatile boolean running = false;
+
+    // The sessions whose output couldn't be written at once, waiting for the socket to be writable
+    private final ConcurrentLinkedQueue<Session> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    // The threads of the server, whose CPU time is measured
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+    private final LongAdder ticksPlayed = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final long startedAt = System.nanoTime();
+
+    /**
+     * A connection of a client. Its output is written at once by the thread that sends a line
+     * (a tick of a room or the thread of the connections); only what the socket doesn't accept
+     * is kept and written later by the thread of the connections
+     */
+    static final class Session {
+        private final SocketChannel channel;
+        private SelectionKey key;
+
+        // The bytes read and not yet split in lines, used only by the thread of the connections
+        private final ByteBuffer input = ByteBuffer.allocate(MAX_LINE);
+
+        // The bytes waiting to be written, null if there aren't any; guarded by the session
+        private ByteBuffer output;
+
+        // The room of the session, null if it isn't in a room
+        private volatile Room room;
+        private volatile boolean closed = false;
+
+        private Session(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Forgets the room, if the session hasn't already moved to another one
+         */
+        synchronized void leftRoom(Room room) {
+            if (this.room == room) {
+                this.room = null;
+            }
+        }
+    }
+
+    /**
+     * Opens the port of the server; the rooms are served after start()
+     * @param port the TCP port, 0 for any free port
+     * @param tickRate the number of ticks in a second of every room
+     * @param threads the number of threads that run the ticks of the rooms
+     * @param seed the seed of the first room, the next ones have the following seeds
+     * @throws IOException if the port can't be opened
+     */
+    public RoomServer(int port, int tickRate, int threads, long seed) throws IOException {
+        if (tickRate < 1 || tickRate > 1000) {
+            throw new IllegalArgumentException("The tick rate must be between 1 and 1000 Hz: " + tickRate);
+        }
+        this.tickRate = tickRate;
+        this.seed = seed;
+        AtomicInteger threadNumber = new AtomicInteger();
+        scheduler = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "room-ticks-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            this.threads.add(thread);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.prestartAllCoreThreads();
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Starts serving the connections
+     */
+    public void start() {
+        running = true;
+        ioThread = new Thread(this::serve, "room-connections");
+        threads.add(ioThread);
+        ioThread.start();
+    }
+
+    /**
+     * Closes all the rooms and the connections.
+     * The rooms are closed by their own ticks, that are the only ones using their members; a room whose
+     * tick doesn't come within CLOSE_TIMEOUT_MILLIS is stopped without sending CLOSED to its players
+     */
+    @Override
+    public void close() throws IOException {
+        CompletableFuture<?>[] closing = rooms.values().stream().map(Room::requestClose).toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(closing).get(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            System.out.println("the rooms didn't close in time: " + e);
+        }
+        running = false;
+        scheduler.shutdownNow();
+        selector.wakeup();
+        if (ioThread != null) {
+            try {
+                ioThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    //################# ROOMS #################//
+
+    /**
+     * @param parameters the GameConfig parameters of the room
+     * @return the room, already playing
+     * @throws IllegalArgumentException if the parameters aren't valid
+     */
+    public Room createRoom(Map<String, String> parameters) {
+        parameters.putIfAbsent("players", DEFAULT_ROOM_PLAYERS);
+        GameConfig config = GameConfig.fromParameters(parameters);
+        int id = nextRoomId.getAndIncrement();
+        Room room = new Room(id, config, this, tickRate, seed + id);
+        rooms.put(id, room);
+        room.start(scheduler);
+        return room;
+    }
+
+    /**
+     * Called by a tick of the room
+     */
+    void closeRoom(Room room) {
+        rooms.remove(room.getId());
+        room.close();
+    }
+
+    void tickPlayed() {
+        ticksPlayed.increment();
+    }
+
+    //################# CONNECTIONS #################//
+
+    private void serve() {
+        try {
+            while (running) {
+                selector.select();
+                Session pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    if (!pending.closed && pending.key.isValid()) {
+                        pending.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Session session = (Session) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(session);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(session);
+                        }
+                    } catch (RuntimeException e) {
+                        // A command that fails closes only its session, the others are still served
+                        System.out.println("Closing a connection after an error: " + e);
+                        closeSession(session);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                System.out.println("The server has stopped: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Session session = new Session(channel);
+            session.key = channel.register(selector, SelectionKey.OP_READ, session);
+        }
+    }
+
+    private void read(Session session) {
+        ByteBuffer input = session.input;
+        try {
+            if (session.channel.read(input) < 0) {
+                closeSession(session);
+                return;
+            }
+        } catch (IOException e) {
+            closeSession(session);
+            return;
+        }
+        int start = 0;
+        for (int i = 0; i < input.position(); i++) {
+            if (input.get(i) == '\n') {
+                String line = new String(input.array(), start, i - start, StandardCharsets.US_ASCII).trim();
+                start = i + 1;
+                if (!line.isEmpty()) {
+                    handle(session, line);
+                }
+                if (session.closed) {
+                    return;
+                }
+            }
+        }
+        if (start == 0 && !input.hasRemaining()) {
+            send(session, "ERROR the line is longer than " + MAX_LINE + " characters");
+            closeSession(session);
+            return;
+        }
+        input.limit(input.position()).position(start);
+        input.compact();
+    }
+
+    private void handle(Session session, String line) {
+        String[] words = line.split(" +");
+        try {
+            switch (words[0].toUpperCase()) {
+                case "CREATE" -> {
+                    Map<String, String> parameters = new HashMap<>();
+                    for (int i = 1; i < words.length; i++) {
+                        int separator = words[i].indexOf('=');
+                        if (separator < 0) {
+                            throw new IllegalArgumentException("the parameters must be in the form name=value: " + words[i]);
+                        }
+                        parameters.put(words[i].substring(0, separator), words[i].substring(separator + 1));
+                    }
+                    send(session, "CREATED " + createRoom(parameters).getId());
+                }
+                case "JOIN" -> {
+                    if (words.length != 2) {
+                        throw new IllegalArgumentException("JOIN room");
+                    }
+                    Room room = rooms.get(Integer.parseInt(words[1]));
+                    if (room == null || room.isClosed()) {
+                        throw new IllegalArgumentException("there isn't the room " + words[1]);
+                    }
+                    Room current = currentRoom(session);
+                    if (current != null) {
+                        throw new IllegalArgumentException("already in the room " + current.getId());
+                    }
+                    session.room = room;
+                    room.join(session);
+                }
+                case "ACTION" -> {
+                    if (words.length != 2) {
+                        throw new IllegalArgumentException("ACTION UP|DOWN|LEFT|RIGHT|BOMB");
+                    }
+                    Action action;
+                    try {
+                        action = Action.valueOf(words[1].toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("unknown action " + words[1]);
+                    }
+                    Room room = currentRoom(session);
+                    if (room == null) {
+                        throw new IllegalArgumentException("not in a room");
+                    }
+                    room.perform(session, action);
+                }
+                case "LEAVE" -> {
+                    Room room = currentRoom(session);
+                    if (room == null) {
+                        throw new IllegalArgumentException("not in a room");
+                    }
+                    session.leftRoom(room);
+                    room.leave(session);
+                }
+                case "STATS" -> send(session, words.length > 1 ? roomStats(Integer.parseInt(words[1])) : stats());
+                case "QUIT" -> closeSession(session);
+                default -> throw new IllegalArgumentException("unknown command " + words[0]);
+            }
+        } catch (IllegalArgumentException e) {
+            // Also the numbers and the actions that can't be parsed
+            send(session, "ERROR " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the room of the session, null if it isn't in a room or the room has been closed
+     */
+    private Room currentRoom(Session session) {
+        Room room = session.room;
+        if (room != null && room.isClosed()) {
+            session.leftRoom(room);
+            return null;
+        }
+        return room;
+    }
+
+    /**
+     * Writes a line to a session, from any thread
+     */
+    void send(Session session, String line) {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.US_ASCII);
+        boolean tooSlow = false;
+        synchronized (session) {
+            if (session.closed) {
+                return;
+            }
+            try {
+                if (session.output == null) {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                    session.channel.write(buffer);
+                    if (buffer.hasRemaining()) {
+                        session.output = ByteBuffer.allocate(Math.max(4096, buffer.remaining()));
+                        session.output.put(buffer);
+                        pendingWrites.add(session);
+                        selector.wakeup();
+                    }
+                } else if (session.output.position() + bytes.length > MAX_PENDING_OUTPUT) {
+                    tooSlow = true;
+                } else {
+                    if (session.output.remaining() < bytes.length) {
+                        ByteBuffer larger = ByteBuffer.allocate(Math.min(MAX_PENDING_OUTPUT, session.output.capacity() * 2 + bytes.length));
+                        session.output.flip();
+                        larger.put(session.output);
+                        session.output = larger;
+                    }
+                    session.output.put(bytes);
+                }
+            } catch (IOException e) {
+                tooSlow = true;
+            }
+        }
+        if (tooSlow) {
+            closeSession(session);
+            return;
+        }
+        bytesSent.add(bytes.length);
+    }
+
+    /**
+     * Writes the output left by send(), when the socket is writable again
+     */
+    private void flush(Session session) {
+        synchronized (session) {
+            if (session.output == null) {
+                session.key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+            try {
+                session.output.flip();
+                session.channel.write(session.output);
+                session.output.compact();
+            } catch (IOException e) {
+                session.output = null;
+            }
+            if (session.output != null && session.output.position() > 0) {
+                return;
+            }
+            session.output = null;
+            if (session.key.isValid()) {
+                session.key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    private void closeSession(Session session) {
+        Room room;
+        synchronized (session) {
+            if (session.closed) {
+                return;
+            }
+            session.closed = true;
+            session.output = null;
+            room = session.room;
+            session.room = null;
+        }
+        if (room != null) {
+            room.leave(session);
+        }
+        session.key.cancel();
+        try {
+            session.channel.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    //################# STATISTICS #################//
+
+    private String stats() {
+        return String.format("STATS rooms=%d players=%d ticks=%d tick-avg-us=%.1f tick-max-us=%.1f late-avg-ms=%.2f late-max-ms=%.2f cpu-ms=%d",
+                getRooms().size(), getPlayers(), getTicksPlayed(), getAverageTickNanos() / 1e3, getMaxTickNanos() / 1e3,
+                getAverageLateNanos() / 1e6, getMaxLateNanos() / 1e6, getCpuNanos() / 1_000_000);
+    }
+
+    private String roomStats(int id) {
+        Room room = rooms.get(id);
+        if (room == null) {
+            throw new IllegalArgumentException("there isn't the room " + id);
+        }
+        return String.format("STATS room=%d players=%d/%d level=%d ticks=%d tick-avg-us=%.1f tick-max-us=%.1f late-avg-us=%.1f late-max-us=%.1f",
+                id, room.getPlayers(), room.getMaxPlayers(), room.getLevel(), room.getTicksPlayed(),
+                room.getAverageTickNanos() / 1e3, room.getMaxTickNanos() / 1e3,
+                room.getAverageLateNanos() / 1e3, room.getMaxLateNanos() / 1e3);
+    }
+
+    //############ RoomServer GETTERS #############//
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public int getTickRate() {
+        return tickRate;
+    }
+
+    public Collection<Room> getRooms() {
+        return rooms.values();
+    }
+
+    /**
+     * @return the players in all the rooms
+     */
+    public int getPlayers() {
+        return rooms.values().stream().mapToInt(Room::getPlayers).sum();
+    }
+
+    /**
+     * @return the ticks run by all the rooms, also the ones closed
+     */
+    public long getTicksPlayed() {
+        return ticksPlayed.sum();
+    }
+
+    /**
+     * @return the average duration of a tick of the rooms open, weighted by their ticks
+     */
+    public double getAverageTickNanos() {
+        double total = 0;
+        long ticks = 0;
+        for (Room room : rooms.values()) {
+            total += room.getAverageTickNanos() * room.getTicksPlayed();
+            ticks += room.getTicksPlayed();
+        }
+        return ticks == 0 ? 0 : total / ticks;
+    }
+
+    public long getMaxTickNanos() {
+        return rooms.values().stream().mapToLong(Room::getMaxTickNanos).max().orElse(0);
+    }
+
+    /**
+     * @return how late the ticks of the rooms open started on average, weighted by their ticks
+     */
+    public double getAverageLateNanos() {
+        double total = 0;
+        long ticks = 0;
+        for (Room room : rooms.values()) {
+            total += room.getAverageLateNanos() * room.getTicksPlayed();
+            ticks += room.getTicksPlayed();
+        }
+        return ticks == 0 ? 0 : total / ticks;
+    }
+
+    /**
+     * @return how late a tick of a room open has started, at most
+     */
+    public long getMaxLateNanos() {
+        return rooms.values().stream().mapToLong(Room::getMaxLateNanos).max().orElse(0);
+    }
+
+    /**
+     * @return the CPU time used by the threads of the ticks and of the connections, -1 if the JVM can't measure it
+     */
+    public long getCpuNanos() {
+        if (!threadMXBean.isThreadCpuTimeSupported()) {
+            return -1;
+        }
+        long total = 0;
+        for (Thread thread : threads) {
+            total += Math.max(0, threadMXBean.getThreadCpuTime(thread.getId()));
+        }
+        return total;
+    }
+
+    /**
+     * @return the time since the server has been created
+     */
+    public long getUptimeNanos() {
+        return System.nanoTime() - startedAt;
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> parameters = parseArguments(args);
+        int port = Integer.parseInt(take(parameters, "port", Integer.toString(DEFAULT_PORT)));
+        int tickRate = Integer.parseInt(take(parameters, "tick-rate", Integer.toString(GameEngine.DEFAULT_TICK_RATE)));
+        int threads = Integer.parseInt(take(parameters, "threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        long seed = Long.parseLong(take(parameters, "seed", Long.toString(System.nanoTime())));
+        if (!parameters.isEmpty()) {
+            throw new IllegalArgumentException("Unknown arguments " + parameters.keySet() + ", the rooms are configured by CREATE");
+        }
+
+        RoomServer server = new RoomServer(port, tickRate, threads, seed);
+        server.start();
+        System.out.printf("room server: port %d, %d ticks/s, %d threads%n", server.getPort(), tickRate, threads);
+
+        long lastTicks = 0;
+        long lastCpu = 0;
+        while (true) {
+            Thread.sleep(10_000);
+            long ticks = server.getTicksPlayed();
+            long cpu = server.getCpuNanos();
+            System.out.printf("rooms: %d, players: %d, %.0f ticks/s, tick %.1f us on average (max %.1f us), late %.2f ms on average (max %.2f ms), CPU %.2f cores%n",
+                    server.getRooms().size(), server.getPlayers(), (ticks - lastTicks) / 10.0,
+                    server.getAverageTickNanos() / 1e3, server.getMaxTickNanos() / 1e3,
+                    server.getAverageLateNanos() / 1e6, server.getMaxLateNanos() / 1e6,
+                    (cpu - lastCpu) / 10e9);
+            lastTicks = ticks;
+            lastCpu = cpu;
+        }
+    }
+}
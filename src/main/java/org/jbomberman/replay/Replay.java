@@ -0,0 +1,283 @@
+package org.jbomberman.replay;
+
+import org.jbomberman.model.Action;
+import org.jbomberman.model.GameConfig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A recorded match: the seed of the model, the configuration, the tick rate of the engine and
+ * the actions of the players, each one with the tick in which the engine performed it.
+ * Since the model draws all its random numbers from the seed and the engine advances with a fixed
+ * timestep, these are enough to play the match again exactly as it was played.
+ * The replay ends with the state of the match when it was recorded, to check that the playback
+ * (e.g. after a change of the rules) still ends in the same way.
+ *
+ * The file is made of:
+ * - the header: the magic number "JBRP", the version, the seed, the tick rate and the parameters
+ *   of the GameConfig, every one as a pair of UTF strings
+ * - the events: their number, then for each one the ticks elapsed since the previous event of the
+ *   same level (a variable-length integer, usually a single byte) and the code of the event,
+ *   that is NEXT_LEVEL or the ordinal of the Action in the lowest 3 bits and the number of the player
+ *   in the others (so the actions of the first player are just their ordinal)
+ * - the end: the tick of the last level, the level, the points and the lives of the first player
+ * All the numbers are big endian.
+ */
+public class Replay {
+
+    private static final int MAGIC = 0x4A425250;
+    private static final int VERSION = 1;
+
+    // The code of the event that ends a level and starts the next one, from tick 0
+    public static final byte NEXT_LEVEL = -1;
+
+    // The bits of the code of an action that hold the ordinal of the Action
+    static final int ACTION_BITS = 3;
+
+    private static final Action[] ACTIONS = Action.values();
+
+    private final long seed;
+    private final int tickRate;
+    private final GameConfig config;
+
+    // The events: the tick of the level in which they happened and their code
+    private final long[] ticks;
+    private final byte[] codes;
+
+    // The state of the match at the end of the recording
+    private final long endTick;
+    private final int endLevel;
+    private final int endPoints;
+    private final int endHealthPoint;
+
+    Replay(long seed, int tickRate, GameConfig config, long[] ticks, byte[] codes,
+           long endTick, int endLevel, int endPoints, int endHealthPoint) {
+        this.seed = seed;
+        this.tickRate = tickRate;
+        this.config = config;
+        this.ticks = ticks;
+        this.codes = codes;
+        this.endTick = endTick;
+        this.endLevel = endLevel;
+        this.endPoints = endPoints;
+        this.endHealthPoint = endHealthPoint;
+    }
+
+    //################# READ AND WRITE #################//
+
+    /**
+     * Writes the replay in a file, creating its directory if it's needed
+     * @param path the path of the file
+     * @throws IOException if the file can't be written
+     */
+    public void write(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            write(out);
+        }
+    }
+
+    /**
+     * Writes the replay in a stream
+     * @param out the stream
+     * @throws IOException if the stream can't be written
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(seed);
+        out.writeInt(tickRate);
+
+        Map<String, String> parameters = config.toParameters();
+        out.writeShort(parameters.size());
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            out.writeUTF(parameter.getKey());
+            out.writeUTF(parameter.getValue());
+        }
+
+        out.writeInt(codes.length);
+        long previous = 0;
+        for (int i = 0; i < codes.length; i++) {
+            writeVarLong(out, ticks[i] - previous);
+            out.writeByte(codes[i]);
+            previous = codes[i] == NEXT_LEVEL ? 0 : ticks[i];
+        }
+
+        writeVarLong(out, endTick);
+        out.writeInt(endLevel);
+        out.writeInt(endPoints);
+        out.writeInt(endHealthPoint);
+    }
+
+    /**
+     * Reads a replay from a file
+     * @param path the path of the file
+     * @return the replay
+     * @throws IOException if the file can't be read or it's not a replay
+     */
+    public static Replay read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads a replay from a stream
+     * @param in the stream
+     * @return the replay
+     * @throws IOException if the stream can't be read or it doesn't contain a replay
+     */
+    public static Replay read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a replay");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version of the replay: " + version);
+        }
+        long seed = in.readLong();
+        int tickRate = in.readInt();
+
+        int parameterCount = in.readUnsignedShort();
+        Map<String, String> parameters = new LinkedHashMap<>();
+        for (int i = 0; i < parameterCount; i++) {
+            parameters.put(in.readUTF(), in.readUTF());
+        }
+        GameConfig config;
+        try {
+            config = GameConfig.fromParameters(parameters);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("The configuration of the replay is not valid: " + e.getMessage(), e);
+        }
+
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("The replay is corrupted: " + count + " events");
+        }
+        long[] ticks = new long[count];
+        byte[] codes = new byte[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            ticks[i] = previous + readVarLong(in);
+            codes[i] = in.readByte();
+            if (codes[i] != NEXT_LEVEL && (codes[i] < 0 || (codes[i] & ((1 << ACTION_BITS) - 1)) >= ACTIONS.length
+                    || codes[i] >> ACTION_BITS >= config.getNumberOfPlayers())) {
+                throw new IOException("The replay is corrupted: unknown event " + codes[i]);
+            }
+            previous = codes[i] == NEXT_LEVEL ? 0 : ticks[i];
+        }
+
+        long endTick = readVarLong(in);
+        int endLevel = in.readInt();
+        int endPoints = in.readInt();
+        int endHealthPoint = in.readInt();
+        return new Replay(seed, tickRate, config, ticks, codes, endTick, endLevel, endPoints, endHealthPoint);
+    }
+
+    /**
+     * Writes a non-negative number in groups of 7 bits, the lowest first; the highest bit of
+     * every byte tells if another one follows
+     */
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("The replay is corrupted: a number is too long");
+    }
+
+    //############ Replay GETTERS #############//
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getTickRate() {
+        return tickRate;
+    }
+
+    public GameConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return the number of events, actions and changes of level
+     */
+    public int size() {
+        return codes.length;
+    }
+
+    /**
+     * @param event the index of the event, from 0 to size() - 1
+     * @return the tick of the level in which the event happened
+     */
+    public long getTick(int event) {
+        return ticks[event];
+    }
+
+    /**
+     * @param event the index of the event, from 0 to size() - 1
+     * @return true if the event ends the level and starts the next one
+     */
+    public boolean isNextLevel(int event) {
+        return codes[event] == NEXT_LEVEL;
+    }
+
+    /**
+     * @param event the index of the event, from 0 to size() - 1
+     * @return the action performed, or null if the event is a change of level
+     */
+    public Action getAction(int event) {
+        return codes[event] == NEXT_LEVEL ? null : ACTIONS[codes[event] & ((1 << ACTION_BITS) - 1)];
+    }
+
+    /**
+     * @param event the index of the event, from 0 to size() - 1
+     * @return the number of the player who performed the action, 0 if the event is a change of level
+     */
+    public int getPlayer(int event) {
+        return codes[event] == NEXT_LEVEL ? 0 : codes[event] >> ACTION_BITS;
+    }
+
+    /**
+     * @return the tick of the last level at which the recording ended
+     */
+    public long getEndTick() {
+        return endTick;
+    }
+
+    public int getEndLevel() {
+        return endLevel;
+    }
+
+    public int getEndPoints() {
+        return endPoints;
+    }
+
+    public int getEndHealthPoint() {
+        return endHealthPoint;
+    }
+}
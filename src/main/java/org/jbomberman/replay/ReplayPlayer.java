@@ -0,0 +1,243 @@
+package org.jbomberman.replay;
+
+import org.jbomberman.model.GameEngine;
+import org.jbomberman.model.GameRandom;
+import org.jbomberman.model.MainModel;
+import org.jbomberman.model.ModelSnapshot;
+import org.jbomberman.utils.UpdateListener;
+import org.jbomberman.utils.UpdateType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * The ReplayPlayer plays a Replay again without JavaFX: it creates a model with the seed of the replay
+ * and performs the recorded actions at their ticks, as fast as possible or one tick at a time.
+ * A listener of the model (e.g. a view) can follow the playback; it's subscribed again, and the model
+ * notifies it as ready, at the beginning of every level.
+ * While the match is played a ModelSnapshot is kept every KEYFRAME_INTERVAL ticks, so seeking restores
+ * the nearest keyframe before the tick and plays only the ticks after it.
+ *
+ * Usage: ReplayPlayer replay.jbr|directory ...
+ * plays all the replays and checks that they still end as they were recorded, e.g. after a change of the rules
+ */
+public class ReplayPlayer {
+
+    // The ticks between two keyframes, 10 seconds at 60 Hz
+    public static final int KEYFRAME_INTERVAL = 600;
+
+    private final Replay replay;
+
+    /**
+     * The state of the playback at a multiple of KEYFRAME_INTERVAL, before the actions of that tick
+     */
+    private record Keyframe(ModelSnapshot snapshot, int next, int refusedActions) {
+    }
+
+    // The keyframe of the ticks 0, KEYFRAME_INTERVAL, 2 * KEYFRAME_INTERVAL... played so far
+    private final List<Keyframe> keyframes = new ArrayList<>();
+
+    // The listeners of the model, subscribed again at every level
+    private final Map<UpdateListener, Set<UpdateType>> listeners = new LinkedHashMap<>();
+
+    private MainModel model;
+    private GameEngine engine;
+
+    // The index of the next event of the replay
+    private int next;
+
+    // The ticks played since the beginning of the match, in all the levels
+    private long played;
+
+    // The recorded actions that the engine refused, because the playback is going differently
+    private int refusedActions;
+
+    /**
+     * @param replay the replay to play, from its beginning
+     */
+    public ReplayPlayer(Replay replay) {
+        this.replay = replay;
+        restart();
+    }
+
+    /**
+     * Goes back to the beginning of the match, with a new model
+     */
+    public void restart() {
+        model = new MainModel(replay.getConfig(), new GameRandom(replay.getSeed()));
+        next = 0;
+        played = 0;
+        refusedActions = 0;
+        startLevel();
+    }
+
+    private void startLevel() {
+        model.initialize();
+        engine = new GameEngine(model, replay.getTickRate());
+        if (!listeners.isEmpty()) {
+            listeners.forEach(model::subscribe);
+            model.notifyModelReady();
+        }
+    }
+
+    /**
+     * Performs the actions recorded in the current tick, then advances the engine by one tick
+     * @return false if the replay has ended, and nothing has been done
+     */
+    public boolean step() {
+        if (played == (long) keyframes.size() * KEYFRAME_INTERVAL) {
+            keyframes.add(new Keyframe(ModelSnapshot.capture(engine), next, refusedActions));
+        }
+        while (next < replay.size() && replay.getTick(next) == engine.getTick()) {
+            if (replay.isNextLevel(next)) {
+                model.reset();
+                model.nextLevel();
+                startLevel();
+            } else if (!engine.perform(replay.getPlayer(next), replay.getAction(next))) {
+                refusedActions++;
+            }
+            next++;
+        }
+        if (isFinished()) {
+            return false;
+        }
+        engine.step();
+        played++;
+        return true;
+    }
+
+    /**
+     * Plays the rest of the replay
+     */
+    public void run() {
+        while (step()) {
+            // The whole work is done by step()
+        }
+    }
+
+    /**
+     * Moves the playback to the given tick, starting from the nearest keyframe before it if the tick is
+     * in the past or if the keyframe is ahead of the playback
+     * @param tick the ticks played since the beginning of the match, in all the levels
+     */
+    public void seek(long tick) {
+        int index = (int) Math.min(Math.max(tick, 0) / KEYFRAME_INTERVAL, keyframes.size() - 1);
+        long keyframeTick = (long) index * KEYFRAME_INTERVAL;
+        if (tick < played || keyframeTick > played) {
+            Keyframe keyframe = keyframes.get(index);
+            keyframe.snapshot().restore(engine);
+            next = keyframe.next();
+            refusedActions = keyframe.refusedActions();
+            played = keyframeTick;
+            if (!listeners.isEmpty()) {
+                model.notifyModelReady();
+            }
+        }
+        while (played < tick && step()) {
+            // The whole work is done by step()
+        }
+    }
+
+    /**
+     * Subscribes a listener to the model of the playback, for the current and the following levels
+     * @param listener the listener
+     * @param updateTypes the types of update it receives
+     */
+    public void subscribe(UpdateListener listener, Set<UpdateType> updateTypes) {
+        listeners.put(listener, updateTypes);
+        model.subscribe(listener, updateTypes);
+    }
+
+    //############ ReplayPlayer GETTERS #############//
+
+    /**
+     * @return true if all the events have been played, up to the tick at which the recording ended
+     */
+    public boolean isFinished() {
+        return next == replay.size() && engine.getTick() >= replay.getEndTick();
+    }
+
+    /**
+     * @return true if the playback ended in the same state of the recording
+     */
+    public boolean matchesRecording() {
+        return isFinished() && refusedActions == 0
+                && model.getLevel() == replay.getEndLevel()
+                && model.getPoints() == replay.getEndPoints()
+                && model.getPlayerHealthPoint() == replay.getEndHealthPoint();
+    }
+
+    /**
+     * @return the model of the playback; it's replaced when the playback restarts
+     */
+    public MainModel getModel() {
+        return model;
+    }
+
+    /**
+     * @return the engine of the current level
+     */
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return the ticks played since the beginning of the match, in all the levels
+     */
+    public long getPlayed() {
+        return played;
+    }
+
+    public int getRefusedActions() {
+        return refusedActions;
+    }
+
+    //################# VERIFICATION #################//
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: ReplayPlayer <replay.jbr|directory> ...");
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Path.of(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> replays = Files.list(path)) {
+                    replays.filter(file -> file.toString().endsWith(".jbr")).sorted().forEach(files::add);
+                }
+            } else {
+                files.add(path);
+            }
+        }
+
+        long start = System.nanoTime();
+        long ticks = 0;
+        int diverged = 0;
+        for (Path file : files) {
+            Replay replay = Replay.read(file);
+            ReplayPlayer player = new ReplayPlayer(replay);
+            player.run();
+            ticks += player.getPlayed();
+            if (!player.matchesRecording()) {
+                diverged++;
+                MainModel model = player.getModel();
+                System.out.printf("%s: recorded level %d, %d points, %d lives; played level %d, %d points, %d lives, %d actions refused%n",
+                        file, replay.getEndLevel(), replay.getEndPoints(), replay.getEndHealthPoint(),
+                        model.getLevel(), model.getPoints(), model.getPlayerHealthPoint(), player.getRefusedActions());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("replays: %d in %.2f s, %.0f ticks/s; %d diverged%n", files.size(), seconds, ticks / seconds, diverged);
+        if (diverged > 0) {
+            System.exit(1);
+        }
+    }
+}
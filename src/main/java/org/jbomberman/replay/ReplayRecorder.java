@@ -0,0 +1,91 @@
+package org.jbomberman.replay;
+
+import org.jbomberman.model.Action;
+import org.jbomberman.model.GameConfig;
+import org.jbomberman.model.GameEngine;
+import org.jbomberman.model.MainModel;
+
+import java.util.Arrays;
+
+/**
+ * The ReplayRecorder records a match while it's played: it listens to the actions performed by the
+ * engine of every level (see GameEngine.setActionListener) and it's told when the players go to the
+ * next level. Recording an action only appends a tick and a byte to two arrays.
+ */
+public class ReplayRecorder implements GameEngine.ActionListener {
+
+    // The number of events the arrays can hold before growing
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final long seed;
+    private final int tickRate;
+    private final GameConfig config;
+
+    // The events recorded: the tick of the level in which they happened and their code
+    private long[] ticks = new long[INITIAL_CAPACITY];
+    private byte[] codes = new byte[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * @param seed the seed given to the model at the beginning of the match
+     * @param config the configuration of the model
+     * @param tickRate the tick rate of the engines of the match
+     */
+    public ReplayRecorder(long seed, GameConfig config, int tickRate) {
+        this.seed = seed;
+        this.config = config;
+        this.tickRate = tickRate;
+    }
+
+    @Override
+    public void actionPerformed(long tick, int player, Action action) {
+        add(tick, (byte) (player << Replay.ACTION_BITS | action.ordinal()));
+    }
+
+    /**
+     * Records the end of a level: the events that follow belong to the next level, whose ticks start from 0
+     * @param tick the tick of the level when the player went to the next one
+     */
+    public void nextLevel(long tick) {
+        add(tick, Replay.NEXT_LEVEL);
+    }
+
+    /**
+     * Forgets the events of the current level from the given tick on, e.g. when the level goes back in time:
+     * since the engine is deterministic, the replay still plays back the match that goes on from that tick
+     * @param tick the first tick of the current level that is forgotten
+     */
+    public void truncate(long tick) {
+        while (size > 0 && codes[size - 1] != Replay.NEXT_LEVEL && ticks[size - 1] >= tick) {
+            size--;
+        }
+    }
+
+    private void add(long tick, byte code) {
+        if (size == codes.length) {
+            ticks = Arrays.copyOf(ticks, size * 2);
+            codes = Arrays.copyOf(codes, size * 2);
+        }
+        ticks[size] = tick;
+        codes[size] = code;
+        size++;
+    }
+
+    /**
+     * Ends the recording; the recorder can still be used, e.g. to save the replay again later
+     * @param tick the tick of the current level
+     * @param model the model of the match, whose state is stored to check the playback
+     * @return the replay of the match until now
+     */
+    public Replay finish(long tick, MainModel model) {
+        return new Replay(seed, tickRate, config, Arrays.copyOf(ticks, size), Arrays.copyOf(codes, size),
+                tick, model.getLevel(), model.getPoints(), model.getPlayerHealthPoint());
+    }
+
+    /**
+     * @return the number of events recorded
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,16 @@
+package org.jbomberman.simulation;
+
+/**
+ * The result of a simulated match
+ * @param outcome how the match ended
+ * @param points the points earned by the player
+ * @param ticks the number of ticks simulated
+ */
+public record MatchResult(Outcome outcome, int points, long ticks) {
+
+    public enum Outcome {
+        WIN,
+        DEATH,
+        TIMEOUT
+    }
+}
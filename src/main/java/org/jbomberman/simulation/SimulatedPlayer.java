@@ -0,0 +1,141 @@
+package org.jbomberman.simulation;
+
+import org.jbomberman.model.Action;
+import org.jbomberman.model.BombTable;
+import org.jbomberman.model.DangerMap;
+import org.jbomberman.model.MainModel;
+import org.jbomberman.model.TileGrid;
+import org.jbomberman.utils.Coordinate;
+
+import java.util.Random;
+
+/**
+ * A simple automated player used by the simulations.
+ * It releases a bomb next to the random blocks and the enemies, runs away from the tiles that will be
+ * reached by a blast (looking at the DangerMap of the model) and walks to the exit door once it's open;
+ * otherwise it wanders randomly, never entering the tiles that will be reached by a blast.
+ */
+public class SimulatedPlayer {
+
+    private static final Action[] MOVEMENTS = {Action.UP, Action.DOWN, Action.LEFT, Action.RIGHT};
+
+    private final MainModel model;
+    private final Random random;
+
+    /**
+     * @param model the model of the match
+     * @param random the generator used for the choices of the player
+     */
+    public SimulatedPlayer(MainModel model, Random random) {
+        this.model = model;
+        this.random = random;
+    }
+
+    /**
+     * @return the action that the player wants to perform now, or null if he wants to stay still
+     */
+    public Action nextAction() {
+        TileGrid grid = model.getGrid();
+        DangerMap danger = model.getDangerMap();
+        Coordinate player = model.getPlayerPosition();
+        BombTable bombs = model.getBombs();
+
+        if (danger.isDangerous(player.x(), player.y())) {
+            return runAway(grid, danger, player, nearest(bombs, player));
+        }
+
+        Coordinate door = model.getExitDoor();
+        if (model.isDoorOpen() && !grid.has(door.x(), door.y(), TileGrid.RANDOM_BLOCK)) {
+            return walkTowards(grid, danger, player, door);
+        }
+
+        if (bombs.isEmpty() && player.x() + player.y() > 2 && isNextTo(grid, player, TileGrid.RANDOM_BLOCK | TileGrid.ENEMY)) {
+            return Action.BOMB;
+        }
+
+        return randomMovement(grid, danger, player);
+    }
+
+    private Coordinate nearest(BombTable bombs, Coordinate player) {
+        Coordinate nearest = bombs.getCoordinate(0);
+        for (int slot = 1; slot < bombs.size(); slot++) {
+            Coordinate bomb = bombs.getCoordinate(slot);
+            if (Math.abs(bomb.x() - player.x()) + Math.abs(bomb.y() - player.y()) < Math.abs(nearest.x() - player.x()) + Math.abs(nearest.y() - player.y())) {
+                nearest = bomb;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Chooses a movement that leads out of the blasts, or at least farther from the nearest bomb
+     */
+    private Action runAway(TileGrid grid, DangerMap danger, Coordinate player, Coordinate bomb) {
+        Action best = null;
+        int bestScore = Integer.MIN_VALUE;
+        int offset = random.nextInt(MOVEMENTS.length);
+        for (int i = 0; i < MOVEMENTS.length; i++) {
+            Action action = MOVEMENTS[(offset + i) % MOVEMENTS.length];
+            int x = player.x() + action.getDirection().getDx();
+            int y = player.y() + action.getDirection().getDy();
+            if (!isWalkable(grid, x, y)) {
+                continue;
+            }
+            int score = Math.abs(x - bomb.x()) + Math.abs(y - bomb.y());
+            if (!danger.isDangerous(x, y)) {
+                score += 100;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = action;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Chooses the movement that reduces the distance from the target, if there is one
+     */
+    private Action walkTowards(TileGrid grid, DangerMap danger, Coordinate player, Coordinate target) {
+        int distance = Math.abs(player.x() - target.x()) + Math.abs(player.y() - target.y());
+        int offset = random.nextInt(MOVEMENTS.length);
+        for (int i = 0; i < MOVEMENTS.length; i++) {
+            Action action = MOVEMENTS[(offset + i) % MOVEMENTS.length];
+            int x = player.x() + action.getDirection().getDx();
+            int y = player.y() + action.getDirection().getDy();
+            if (isWalkable(grid, x, y) && !danger.isDangerous(x, y) && Math.abs(x - target.x()) + Math.abs(y - target.y()) < distance) {
+                return action;
+            }
+        }
+        return randomMovement(grid, danger, player);
+    }
+
+    /**
+     * @return a random movement to a tile that won't be reached by a blast, or null if there isn't one
+     */
+    private Action randomMovement(TileGrid grid, DangerMap danger, Coordinate player) {
+        int offset = random.nextInt(MOVEMENTS.length);
+        for (int i = 0; i < MOVEMENTS.length; i++) {
+            Action action = MOVEMENTS[(offset + i) % MOVEMENTS.length];
+            int x = player.x() + action.getDirection().getDx();
+            int y = player.y() + action.getDirection().getDy();
+            if (isWalkable(grid, x, y) && !danger.isDangerous(x, y)) {
+                return action;
+            }
+        }
+        return null;
+    }
+
+    private boolean isNextTo(TileGrid grid, Coordinate player, int flags) {
+        for (Action action : MOVEMENTS) {
+            if (grid.has(player.x() + action.getDirection().getDx(), player.y() + action.getDirection().getDy(), flags)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isWalkable(TileGrid grid, int x, int y) {
+        return !grid.isObstacle(x, y) && !grid.has(x, y, TileGrid.ENEMY);
+    }
+}
@@ -0,0 +1,181 @@
+package org.jbomberman.simulation;
+
+import org.jbomberman.model.Action;
+import org.jbomberman.model.GameConfig;
+import org.jbomberman.model.GameEngine;
+import org.jbomberman.model.GameRandom;
+import org.jbomberman.model.MainModel;
+import org.jbomberman.replay.ReplayRecorder;
+import org.jbomberman.utils.UpdateType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * The SimulationRunner plays many independent matches without JavaFX, in parallel on all the cores,
+ * and prints how they ended. It's used to balance the GameConfig.
+ * Every match has its own model, engine and generators (seeded with the base seed plus the number of the match),
+ * so the results don't depend on the number of threads.
+ * The simulated player has a generator separated from the one of the model, so that every match can be
+ * recorded in a Replay (--record=directory) and played again with the ReplayPlayer.
+ *
+ * Usage: SimulationRunner [--matches=N] [--threads=N] [--seed=N] [--max-seconds=N] [--record=directory] [GameConfig parameters]
+ */
+public class SimulationRunner {
+
+    // The simulated player acts every 200 ms, like the duration of the movement of the player in the game
+    private static final int TICKS_PER_ACTION = (int) (GameEngine.PLAYER_STEP * GameEngine.DEFAULT_TICK_RATE / 1_000_000_000L);
+
+    private final GameConfig config;
+    private final long maxTicks;
+
+    // The directory where a replay of every match is written, null if they aren't recorded
+    private Path recordDirectory;
+
+    /**
+     * @param config the configuration of the matches
+     * @param maxSeconds the simulated time after which a match is stopped
+     */
+    public SimulationRunner(GameConfig config, long maxSeconds) {
+        this.config = config;
+        this.maxTicks = maxSeconds * GameEngine.DEFAULT_TICK_RATE;
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        Map<String, String> parameters = parseArguments(args);
+        int matches = Integer.parseInt(take(parameters, "matches", "1000"));
+        int threads = Integer.parseInt(take(parameters, "threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        long seed = Long.parseLong(take(parameters, "seed", "0"));
+        long maxSeconds = Long.parseLong(take(parameters, "max-seconds", "180"));
+        String record = take(parameters, "record", null);
+
+        SimulationRunner runner = new SimulationRunner(GameConfig.fromParameters(parameters), maxSeconds);
+        if (record != null) {
+            runner.setRecordDirectory(Path.of(record));
+        }
+
+        long start = System.nanoTime();
+        List<MatchResult> results = runner.run(matches, threads, seed);
+        long wallTime = System.nanoTime() - start;
+
+        printSummary(results, threads, wallTime);
+    }
+
+    /**
+     * @param recordDirectory the directory where a replay of every match is written, named after its seed;
+     *                        null to stop recording
+     */
+    public void setRecordDirectory(Path recordDirectory) {
+        this.recordDirectory = recordDirectory;
+    }
+
+    /**
+     * Plays the matches on a dedicated pool
+     * @param matches the number of matches
+     * @param threads the parallelism of the pool
+     * @param seed the base seed, the match i uses seed + i
+     * @return the results, in the order of the seeds
+     */
+    public List<MatchResult> run(int matches, int threads, long seed) throws InterruptedException, ExecutionException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> LongStream.range(seed, seed + matches)
+                    .parallel()
+                    .mapToObj(this::play)
+                    .collect(Collectors.toList())).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Plays a single match until the player wins, dies or the time runs out
+     * @param seed the seed of the match
+     * @return how the match ended
+     */
+    public MatchResult play(long seed) {
+        MainModel model = new MainModel(config, new GameRandom(seed));
+        model.initialize();
+
+        MatchResult.Outcome[] outcome = {MatchResult.Outcome.TIMEOUT};
+        model.subscribe(updateInfo -> {
+            if (updateInfo.getUpdateType() == UpdateType.UPDATE_GAME_WIN) {
+                outcome[0] = MatchResult.Outcome.WIN;
+            } else {
+                outcome[0] = MatchResult.Outcome.DEATH;
+            }
+        }, EnumSet.of(UpdateType.UPDATE_GAME_WIN, UpdateType.UPDATE_GAME_OVER));
+
+        GameEngine engine = new GameEngine(model);
+        ReplayRecorder recorder = recordDirectory != null ? new ReplayRecorder(seed, config, engine.getTickRate()) : null;
+        engine.setActionListener(recorder);
+        SimulatedPlayer player = new SimulatedPlayer(model, new Random(~seed));
+
+        long ticks = 0;
+        while (outcome[0] == MatchResult.Outcome.TIMEOUT && ticks < maxTicks) {
+            if (ticks % TICKS_PER_ACTION == 0) {
+                Action action = player.nextAction();
+                if (action != null) {
+                    engine.perform(action);
+                }
+            }
+            engine.step();
+            ticks++;
+        }
+
+        if (recorder != null) {
+            try {
+                recorder.finish(engine.getTick(), model).write(recordDirectory.resolve("match-" + seed + ".jbr"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return new MatchResult(outcome[0], model.getPoints(), ticks);
+    }
+
+    private static void printSummary(List<MatchResult> results, int threads, long wallTime) {
+        Map<MatchResult.Outcome, Long> outcomes = results.stream()
+                .collect(Collectors.groupingBy(MatchResult::outcome, Collectors.counting()));
+        long totalTicks = results.stream().mapToLong(MatchResult::ticks).sum();
+        double seconds = wallTime / 1e9;
+
+        System.out.printf("matches: %d on %d threads in %.2f s%n", results.size(), threads, seconds);
+        for (MatchResult.Outcome outcome : MatchResult.Outcome.values()) {
+            long count = outcomes.getOrDefault(outcome, 0L);
+            System.out.printf("%-8s %d (%.1f%%)%n", outcome.name().toLowerCase() + ":", count, 100.0 * count / results.size());
+        }
+        System.out.printf("points:  %.1f on average%n", results.stream().mapToInt(MatchResult::points).average().orElse(0));
+        System.out.printf("ticks:   %.1f on average, %.0f ticks/s, %.0f matches/s%n",
+                (double) totalTicks / results.size(), totalTicks / seconds, results.size() / seconds);
+    }
+
+    /**
+     * @return the arguments in the form --name=value as a modifiable map
+     */
+    private static Map<String, String> parseArguments(String[] args) {
+        Map<String, String> parameters = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("The arguments must be in the form --name=value: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            parameters.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return parameters;
+    }
+
+    private static String take(Map<String, String> parameters, String name, String defaultValue) {
+        String value = parameters.remove(name);
+        return value != null ? value : defaultValue;
+    }
+}
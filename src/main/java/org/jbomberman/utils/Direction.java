@@ -1,23 +1,28 @@
 package org.jbomberman.utils;
 
-import javafx.scene.input.KeyCode;
-
 public enum Direction {
-    UP(KeyCode.UP),
-    DOWN(KeyCode.DOWN),
-    LEFT(KeyCode.LEFT),
-    RIGHT(KeyCode.RIGHT),
-    CENTER(null);
+    UP(0, -1),
+    DOWN(0, 1),
+    LEFT(-1, 0),
+    RIGHT(1, 0),
+    CENTER(0, 0);
 
-    private final KeyCode keyCode;
+    // The movement along the two axes of one step in this direction
+    private final int dx;
+    private final int dy;
 
-    Direction(KeyCode keyCode) {
-        this.keyCode = keyCode;
+    Direction(int dx, int dy) {
+        this.dx = dx;
+        this.dy = dy;
     }
 
 
-    public KeyCode getKeyCode() {
-        return keyCode;
+    public int getDx() {
+        return dx;
+    }
+
+    public int getDy() {
+        return dy;
     }
 }
 
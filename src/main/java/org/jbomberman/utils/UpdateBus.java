@@ -0,0 +1,67 @@
+package org.jbomberman.utils;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The UpdateBus delivers the updates of the model to the listeners subscribed to their UpdateType.
+ * It keeps a single reusable UpdateInfo for every type, so that publishing an update doesn't allocate:
+ * the publisher acquires the UpdateInfo of the type, fills it and publishes it.
+ */
+public class UpdateBus {
+
+    private static final UpdateListener[] NO_LISTENERS = new UpdateListener[0];
+
+    // The listeners of every type, indexed by the ordinal of the type
+    private final UpdateListener[][] listeners = new UpdateListener[UpdateType.values().length][];
+
+    // The reusable UpdateInfo of every type, indexed by the ordinal of the type
+    private final UpdateInfo[] updates = new UpdateInfo[UpdateType.values().length];
+
+    public UpdateBus() {
+        Arrays.fill(listeners, NO_LISTENERS);
+        for (UpdateType updateType : UpdateType.values()) {
+            updates[updateType.ordinal()] = new UpdateInfo(updateType);
+        }
+    }
+
+    /**
+     * Subscribes the listener to the given types
+     * @param listener the listener
+     * @param updateTypes the types the listener wants to receive
+     */
+    public void subscribe(UpdateListener listener, Set<UpdateType> updateTypes) {
+        for (UpdateType updateType : updateTypes) {
+            UpdateListener[] current = listeners[updateType.ordinal()];
+            UpdateListener[] extended = Arrays.copyOf(current, current.length + 1);
+            extended[current.length] = listener;
+            listeners[updateType.ordinal()] = extended;
+        }
+    }
+
+    /**
+     * Removes all the listeners
+     */
+    public void unsubscribeAll() {
+        Arrays.fill(listeners, NO_LISTENERS);
+    }
+
+    /**
+     * @return the UpdateInfo of the given type, cleared of the values of the previous update
+     */
+    public UpdateInfo acquire(UpdateType updateType) {
+        UpdateInfo updateInfo = updates[updateType.ordinal()];
+        updateInfo.clear();
+        return updateInfo;
+    }
+
+    /**
+     * Delivers the update to the listeners of its type, in the order of subscription
+     * @param updateInfo the update, acquired from this bus
+     */
+    public void publish(UpdateInfo updateInfo) {
+        for (UpdateListener listener : listeners[updateInfo.getUpdateType().ordinal()]) {
+            listener.update(updateInfo);
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package org.jbomberman.utils;
 
-import javafx.scene.input.KeyCode;
-
 import java.util.List;
 
+/**
+ * The UpdateInfo contains the data of an update of the model.
+ * Only the attributes related to its UpdateType are meaningful.
+ */
 public class UpdateInfo {
     private final UpdateType updateType;
-    private KeyCode keyCode;
+    private Direction direction;
     private boolean enemyLastLife;
     private boolean isPlayerInvincible;
     private Coordinate oldPosition;
@@ -14,6 +16,7 @@ public class UpdateInfo {
     private Coordinate coordinate;
     private List<Coordinate> blocks;
     private List<Coordinate> entities;
+    private List<Integer> ids;
     private List<Triad> triadList;
     private int index;
     private int points;
@@ -23,13 +26,36 @@ public class UpdateInfo {
     private int level;
 
     /**
-     * The private constructor with the only mandatory attribute
+     * The constructor with the only mandatory attribute, the instances are created
+     * only by the UpdateBus and reused for every update of the same type
      * @param updateType
      */
-    private UpdateInfo(UpdateType updateType) {
+    UpdateInfo(UpdateType updateType) {
         this.updateType = updateType;
     }
 
+    /**
+     * Resets all the attributes except the type, before the instance is reused
+     */
+    void clear() {
+        direction = null;
+        enemyLastLife = false;
+        isPlayerInvincible = false;
+        oldPosition = null;
+        newPosition = null;
+        coordinate = null;
+        blocks = null;
+        entities = null;
+        ids = null;
+        triadList = null;
+        index = 0;
+        points = 0;
+        earnedPoints = 0;
+        blockType = null;
+        healthPoint = 0;
+        level = 0;
+    }
+
     //############ UpdateInfo GETTERS #############//
     public UpdateType getUpdateType() {
         return updateType;
@@ -51,6 +77,13 @@ public class UpdateInfo {
         return entities;
     }
 
+    /**
+     * @return the ids of the loaded entities or blocks, in the same order of their coordinates
+     */
+    public List<Integer> getIds() {
+        return ids;
+    }
+
     public List<Coordinate> getBlocks() {
         return blocks;
     }
@@ -87,138 +120,92 @@ public class UpdateInfo {
         return healthPoint;
     }
 
-    public KeyCode getKeyCode() {
-        return keyCode;
+    public Direction getDirection() {
+        return direction;
     }
 
     public boolean isInvincible() {
         return isPlayerInvincible;
     }
 
-    /**
-     * The Builder class to implement the builder pattern
-     */
-    public static class Builder {
-        private final UpdateType updateType;
-        private KeyCode keyCode;
-        private boolean enemyLastLife;
-        private boolean isPlayerInvincible;
-        private Coordinate oldPosition;
-        private Coordinate newPosition;
-        private Coordinate coordinate;
-        private List<Coordinate> blocks;
-        private List<Coordinate> entities;
-        private List<Triad> triadList;
-        private int index;
-        private int points;
-        private int earnedPoints;
-        private BlockType blockType;
-        private int healthPoint;
-        private int level;
-
-        public Builder(UpdateType updateType) {
-            this.updateType = updateType;
-        }
-
-        //############### BUILDER SETTER METHODS ##############//
-        public Builder setKeyCode(KeyCode keyCode) {
-            this.keyCode = keyCode;
-            return this;
-        }
-
-        public Builder setEnemyLastLife(boolean enemyLastLife) {
-            this.enemyLastLife = enemyLastLife;
-            return this;
-        }
-
-        public Builder setPlayerInvincible(boolean isPlayerInvincible) {
-            this.isPlayerInvincible = isPlayerInvincible;
-            return this;
-        }
-
-        public Builder setOldPosition(Coordinate oldPosition) {
-            this.oldPosition = oldPosition;
-            return this;
-        }
-
-        public Builder setNewPosition(Coordinate newPosition) {
-            this.newPosition = newPosition;
-            return this;
-        }
-
-        public Builder setCoordinate(Coordinate coordinate) {
-            this.coordinate = coordinate;
-            return this;
-        }
-
-        public Builder setBlocks(List<Coordinate> blocks) {
-            this.blocks = blocks;
-            return this;
-        }
-
-        public Builder setEntities(List<Coordinate> entities) {
-            this.entities = entities;
-            return this;
-        }
-
-        public Builder setTriadList(List<Triad> triadList) {
-            this.triadList = triadList;
-            return this;
-        }
-
-        public Builder setIndex(int index) {
-            this.index = index;
-            return this;
-        }
-
-        public Builder setLevel(int level) {
-            this.level = level;
-            return this;
-        }
-
-        public Builder setHealthPoint(int healthPoint) {
-            this.healthPoint = healthPoint;
-            return this;
-        }
-
-        public Builder setPoints(int points) {
-            this.points = points;
-            return this;
-        }
-
-        public Builder setEarnedPoints(int earnedPoints) {
-            this.earnedPoints = earnedPoints;
-            return this;
-        }
-
-        public Builder setSubBlock(BlockType block) {
-            this.blockType = block;
-            return this;
-        }
-
-        /**
-         * This method creates the UpdateInfo instance
-         *
-         * @return
-         */
-        public UpdateInfo build() {
-            UpdateInfo updateInfo = new UpdateInfo(updateType);
-            updateInfo.keyCode = this.keyCode;
-            updateInfo.enemyLastLife = this.enemyLastLife;
-            updateInfo.isPlayerInvincible = this.isPlayerInvincible;
-            updateInfo.oldPosition = this.oldPosition;
-            updateInfo.newPosition = this.newPosition;
-            updateInfo.coordinate = this.coordinate;
-            updateInfo.blocks = this.blocks;
-            updateInfo.entities = this.entities;
-            updateInfo.triadList = this.triadList;
-            updateInfo.index = this.index;
-            updateInfo.points = this.points;
-            updateInfo.earnedPoints = this.earnedPoints;
-            updateInfo.blockType = this.blockType;
-            updateInfo.healthPoint = this.healthPoint;
-            updateInfo.level = this.level;
-            return updateInfo;
-        }
-    }
-}
\ No newline at end of file
+    //############ UpdateInfo SETTERS #############//
+    public UpdateInfo setDirection(Direction direction) {
+        this.direction = direction;
+        return this;
+    }
+
+    public UpdateInfo setEnemyLastLife(boolean enemyLastLife) {
+        this.enemyLastLife = enemyLastLife;
+        return this;
+    }
+
+    public UpdateInfo setPlayerInvincible(boolean isPlayerInvincible) {
+        this.isPlayerInvincible = isPlayerInvincible;
+        return this;
+    }
+
+    public UpdateInfo setOldPosition(Coordinate oldPosition) {
+        this.oldPosition = oldPosition;
+        return this;
+    }
+
+    public UpdateInfo setNewPosition(Coordinate newPosition) {
+        this.newPosition = newPosition;
+        return this;
+    }
+
+    public UpdateInfo setCoordinate(Coordinate coordinate) {
+        this.coordinate = coordinate;
+        return this;
+    }
+
+    public UpdateInfo setBlocks(List<Coordinate> blocks) {
+        this.blocks = blocks;
+        return this;
+    }
+
+    public UpdateInfo setEntities(List<Coordinate> entities) {
+        this.entities = entities;
+        return this;
+    }
+
+    public UpdateInfo setIds(List<Integer> ids) {
+        this.ids = ids;
+        return this;
+    }
+
+    public UpdateInfo setTriadList(List<Triad> triadList) {
+        this.triadList = triadList;
+        return this;
+    }
+
+    public UpdateInfo setIndex(int index) {
+        this.index = index;
+        return this;
+    }
+
+    public UpdateInfo setLevel(int level) {
+        this.level = level;
+        return this;
+    }
+
+    public UpdateInfo setHealthPoint(int healthPoint) {
+        this.healthPoint = healthPoint;
+        return this;
+    }
+
+    public UpdateInfo setPoints(int points) {
+        this.points = points;
+        return this;
+    }
+
+    public UpdateInfo setEarnedPoints(int earnedPoints) {
+        this.earnedPoints = earnedPoints;
+        return this;
+    }
+
+    public UpdateInfo setSubBlock(BlockType block) {
+        this.blockType = block;
+        return this;
+    }
+}
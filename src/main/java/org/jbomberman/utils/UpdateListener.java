@@ -0,0 +1,16 @@
+package org.jbomberman.utils;
+
+/**
+ * The listener of the updates published by the model on the UpdateBus
+ */
+@FunctionalInterface
+public interface UpdateListener {
+
+    /**
+     * Receives an update of one of the types the listener has subscribed to.
+     * The UpdateInfo is reused by the bus for the next update of the same type,
+     * so it must not be stored: the values needed later must be copied
+     * @param updateInfo the update
+     */
+    void update(UpdateInfo updateInfo);
+}
@@ -5,6 +5,7 @@ public enum UpdateType {
     UPDATE_POSITION,
     UPDATE_GAME_WIN,
     UPDATE_PU_BOMB,
+    UPDATE_PU_CAPACITY,
     UPDATE_ENEMY_DEAD,
     UPDATE_BOMB_RELEASED,
     LOAD_ENEMIES,
@@ -14,6 +15,7 @@ public enum UpdateType {
     UPDATE_PU_LIFE,
     LOAD_POWER_UP_LIFE,
     LOAD_POWER_UP_BOMB,
+    LOAD_POWER_UP_CAPACITY,
     LOAD_EXIT,
     LOAD_POWER_UP_INVINCIBLE,
     UPDATE_PU_INVINCIBLE,
@@ -26,5 +28,6 @@ public enum UpdateType {
     UPDATE_DOOR,
     LOAD_POINTS,
     LOAD_LIFE,
+    LOAD_BOMBS,
     UPDATE_GAME_OVER
 }
\ No newline at end of file
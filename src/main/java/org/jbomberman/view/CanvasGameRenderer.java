@@ -0,0 +1,322 @@
+package org.jbomberman.view;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.layout.Pane;
+import org.jbomberman.utils.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.jbomberman.view.ViewUtilities.SCALE_FACTOR;
+
+/**
+ * This renderer draws the map on three canvases of the size of the viewport, so that the number of nodes
+ * of the scene graph depends neither on the size of the map nor on the number of entities:
+ * - the background canvas, with the ground and the fixed blocks
+ * - the blocks canvas, transparent, with the random blocks; when a block is destroyed only its tile is redrawn,
+ *   once for every frame of the destruction animation
+ * - the sprites canvas, transparent, redrawn in the frames where a sprite changed
+ * The images of the tiles are kept in arrays as big as the map, so when the viewport moves only the
+ * visible tiles are redrawn.
+ */
+public class CanvasGameRenderer implements GameRenderer {
+
+    // The duration of a frame of the destruction animation, the same of the NodeGameRenderer
+    private static final long FRAME_DURATION = 160_000_000L;
+
+    // The size of the map, in tiles
+    private final int width;
+    private final int height;
+
+    private final Canvas background;
+    private final Canvas blocks;
+    private final Canvas sprites;
+
+    // The images of the tiles that don't change, indexed by y * width + x, one array for every drawBackground()
+    private final List<Image[]> backgroundLayers = new ArrayList<>();
+
+    // The current image of the random block of every tile, indexed like the background (null if there isn't one)
+    private final Image[] blockTiles;
+
+    // The coordinates of the random blocks, indexed by their id (null once destroyed)
+    private final List<Coordinate> randomBlocks = new ArrayList<>();
+
+    // The destruction animations that are running
+    private final List<BlockAnimation> animations = new ArrayList<>();
+
+    private final AnimationTimer animationTimer;
+
+    // The sprites of every layer, in the order they are drawn
+    private final List<List<CanvasSprite>> layers = new ArrayList<>();
+
+    // The top left corner of the viewport, in pixels
+    private double viewportX = 0;
+    private double viewportY = 0;
+
+    // What has to be redrawn at the next frame
+    private boolean tilesChanged = true;
+    private boolean spritesChanged = true;
+
+    /**
+     * The state of the destruction animation of a block
+     */
+    private static class BlockAnimation {
+        private final Coordinate coordinate;
+        private int frame = 1;
+        private long frameStart = 0;
+
+        private BlockAnimation(Coordinate coordinate) {
+            this.coordinate = coordinate;
+        }
+    }
+
+    /**
+     * A sprite drawn on the sprites canvas. When a sprite is removed the last one of its layer takes its
+     * place, so the removal doesn't shift the others
+     */
+    private final class CanvasSprite implements Sprite {
+        private final List<CanvasSprite> layer;
+        private int index;
+        private Image image;
+        private double x;
+        private double y;
+        private double opacity = 1;
+
+        private CanvasSprite(List<CanvasSprite> layer, Image image, double x, double y) {
+            this.layer = layer;
+            this.image = image;
+            this.x = x;
+            this.y = y;
+            index = layer.size();
+            layer.add(this);
+        }
+
+        @Override
+        public void setImage(Image image) {
+            this.image = image;
+            spritesChanged = true;
+        }
+
+        @Override
+        public void relocate(double x, double y) {
+            if (x != this.x || y != this.y) {
+                this.x = x;
+                this.y = y;
+                spritesChanged = true;
+            }
+        }
+
+        @Override
+        public void setOpacity(double opacity) {
+            this.opacity = opacity;
+            spritesChanged = true;
+        }
+
+        @Override
+        public void remove() {
+            if (index < 0) {
+                return;
+            }
+            CanvasSprite last = layer.remove(layer.size() - 1);
+            if (last != this) {
+                layer.set(index, last);
+                last.index = index;
+            }
+            index = -1;
+            spritesChanged = true;
+        }
+    }
+
+    /**
+     * @param map the pane where the canvases are added
+     * @param width the width of the map, in tiles
+     * @param height the height of the map, in tiles
+     * @param viewportWidth the width of the visible part of the map, in pixels
+     * @param viewportHeight the height of the visible part of the map, in pixels
+     */
+    public CanvasGameRenderer(Pane map, int width, int height, double viewportWidth, double viewportHeight) {
+        this.width = width;
+        this.height = height;
+        blockTiles = new Image[width * height];
+        background = new Canvas(viewportWidth, viewportHeight);
+        blocks = new Canvas(viewportWidth, viewportHeight);
+        sprites = new Canvas(viewportWidth, viewportHeight);
+        map.getChildren().addAll(background, blocks, sprites);
+        for (int i = 0; i < Layer.values().length; i++) {
+            layers.add(new ArrayList<>());
+        }
+
+        animationTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                advanceAnimations(now);
+            }
+        };
+    }
+
+    @Override
+    public void drawBackground(List<Coordinate> tiles, Image image) {
+        Image[] layer = new Image[width * height];
+        tiles.forEach(coordinate -> layer[indexOf(coordinate)] = image);
+        backgroundLayers.add(layer);
+        tilesChanged = true;
+    }
+
+    @Override
+    public void drawRandomBlocks(List<Coordinate> blocks, List<Integer> ids, Image image) {
+        for (int i = 0; i < blocks.size(); i++) {
+            ViewUtilities.putById(randomBlocks, ids.get(i), blocks.get(i));
+            blockTiles[indexOf(blocks.get(i))] = image;
+        }
+        tilesChanged = true;
+    }
+
+    @Override
+    public void destroyRandomBlock(int id) {
+        Coordinate coordinate = randomBlocks.set(id, null);
+        setBlock(coordinate, ImageCache.randomBlock(1));
+        animations.add(new BlockAnimation(coordinate));
+        animationTimer.start();
+    }
+
+    @Override
+    public Sprite addSprite(Coordinate coordinate, Image image, Layer layer) {
+        spritesChanged = true;
+        return new CanvasSprite(layers.get(layer.ordinal()), image, (double) coordinate.x() * SCALE_FACTOR, (double) coordinate.y() * SCALE_FACTOR);
+    }
+
+    @Override
+    public void setViewport(double x, double y) {
+        // Whole pixels, so that the edges of the tiles don't blur
+        x = Math.round(x);
+        y = Math.round(y);
+        if (x != viewportX || y != viewportY) {
+            viewportX = x;
+            viewportY = y;
+            tilesChanged = true;
+            spritesChanged = true;
+        }
+    }
+
+    @Override
+    public void render() {
+        if (tilesChanged) {
+            tilesChanged = false;
+            drawTiles();
+        }
+        if (spritesChanged) {
+            spritesChanged = false;
+            drawSprites();
+        }
+    }
+
+    /**
+     * Redraws the visible tiles of the background and of the random blocks
+     */
+    private void drawTiles() {
+        GraphicsContext backgroundGraphics = background.getGraphicsContext2D();
+        GraphicsContext blocksGraphics = blocks.getGraphicsContext2D();
+        backgroundGraphics.clearRect(0, 0, background.getWidth(), background.getHeight());
+        blocksGraphics.clearRect(0, 0, blocks.getWidth(), blocks.getHeight());
+        int firstColumn = Math.max(0, (int) (viewportX / SCALE_FACTOR));
+        int firstRow = Math.max(0, (int) (viewportY / SCALE_FACTOR));
+        int lastColumn = Math.min(width - 1, (int) ((viewportX + background.getWidth()) / SCALE_FACTOR));
+        int lastRow = Math.min(height - 1, (int) ((viewportY + background.getHeight()) / SCALE_FACTOR));
+        for (int y = firstRow; y <= lastRow; y++) {
+            for (int x = firstColumn; x <= lastColumn; x++) {
+                int index = y * width + x;
+                for (Image[] layer : backgroundLayers) {
+                    if (layer[index] != null) {
+                        drawImage(backgroundGraphics, layer[index], (double) x * SCALE_FACTOR, (double) y * SCALE_FACTOR);
+                    }
+                }
+                if (blockTiles[index] != null) {
+                    drawImage(blocksGraphics, blockTiles[index], (double) x * SCALE_FACTOR, (double) y * SCALE_FACTOR);
+                }
+            }
+        }
+    }
+
+    /**
+     * Redraws the visible sprites, layer by layer
+     */
+    private void drawSprites() {
+        GraphicsContext graphics = sprites.getGraphicsContext2D();
+        graphics.clearRect(0, 0, sprites.getWidth(), sprites.getHeight());
+        for (List<CanvasSprite> layer : layers) {
+            for (CanvasSprite sprite : layer) {
+                if (isVisible(sprite.x, sprite.y)) {
+                    graphics.setGlobalAlpha(sprite.opacity);
+                    drawImage(graphics, sprite.image, sprite.x, sprite.y);
+                }
+            }
+        }
+        graphics.setGlobalAlpha(1);
+    }
+
+    /**
+     * Redraws only the tiles whose animation changes frame in this pulse
+     * @param now the time of the pulse
+     */
+    private void advanceAnimations(long now) {
+        Iterator<BlockAnimation> iterator = animations.iterator();
+        while (iterator.hasNext()) {
+            BlockAnimation animation = iterator.next();
+            if (animation.frameStart == 0) {
+                animation.frameStart = now;
+            } else if (now - animation.frameStart >= FRAME_DURATION) {
+                animation.frameStart = now;
+                animation.frame++;
+                if (animation.frame > ImageCache.BLOCK_FRAMES) {
+                    setBlock(animation.coordinate, null);
+                    iterator.remove();
+                } else {
+                    setBlock(animation.coordinate, ImageCache.randomBlock(animation.frame));
+                }
+            }
+        }
+        if (animations.isEmpty()) {
+            animationTimer.stop();
+        }
+    }
+
+    /**
+     * Changes the image of a random block, redrawing its tile if it's visible
+     * @param image the new image, null if the block has disappeared
+     */
+    private void setBlock(Coordinate coordinate, Image image) {
+        blockTiles[indexOf(coordinate)] = image;
+        double x = (double) coordinate.x() * SCALE_FACTOR;
+        double y = (double) coordinate.y() * SCALE_FACTOR;
+        if (!tilesChanged && isVisible(x, y)) {
+            GraphicsContext graphics = blocks.getGraphicsContext2D();
+            graphics.clearRect(x - viewportX, y - viewportY, SCALE_FACTOR, SCALE_FACTOR);
+            if (image != null) {
+                drawImage(graphics, image, x, y);
+            }
+        }
+    }
+
+    private int indexOf(Coordinate coordinate) {
+        return coordinate.y() * width + coordinate.x();
+    }
+
+    /**
+     * @return true if a tile whose top left corner is in the given point of the map is at least partly in the viewport
+     */
+    private boolean isVisible(double x, double y) {
+        return x + SCALE_FACTOR > viewportX && x < viewportX + sprites.getWidth()
+                && y + SCALE_FACTOR > viewportY && y < viewportY + sprites.getHeight();
+    }
+
+    /**
+     * Draws an image of the size of a tile in the given point of the map
+     */
+    private void drawImage(GraphicsContext graphics, Image image, double x, double y) {
+        graphics.drawImage(image, x - viewportX, y - viewportY, SCALE_FACTOR, SCALE_FACTOR);
+    }
+}
@@ -0,0 +1,101 @@
+package org.jbomberman.view;
+
+import javafx.scene.image.Image;
+import org.jbomberman.utils.Coordinate;
+
+import java.util.List;
+
+/**
+ * The GameRenderer draws the map on the game board: the tiles (the ground, the fixed blocks
+ * and the random blocks with their destruction animation) and the sprites over them (the items,
+ * the bombs, the characters and the explosions).
+ * Only a viewport of the map is visible, whose top left corner is moved by setViewport() to follow
+ * the player when the map is bigger than the window. The positions are in pixels of the whole map.
+ */
+public interface GameRenderer {
+
+    /**
+     * The available implementations
+     */
+    enum Type {
+        // One ImageView for every tile and sprite
+        NODES,
+        // A canvas for the tiles that don't change, one for the random blocks and one for the sprites
+        CANVAS
+    }
+
+    /**
+     * The layers of the sprites, from the bottom to the top
+     */
+    enum Layer {
+        // The exit, the power ups and the coins
+        ITEMS,
+        BOMBS,
+        // The enemies and the players
+        CHARACTERS,
+        EXPLOSIONS
+    }
+
+    /**
+     * An image of the size of a tile drawn over the map, that can move and change
+     */
+    interface Sprite {
+
+        void setImage(Image image);
+
+        /**
+         * @param x the position of the left side, in pixels
+         * @param y the position of the top side, in pixels
+         */
+        void relocate(double x, double y);
+
+        void setOpacity(double opacity);
+
+        /**
+         * Removes the sprite from the map, it can't be used anymore
+         */
+        void remove();
+    }
+
+    /**
+     * Draws tiles that never change during the level (the ground and the fixed blocks)
+     * @param tiles the coordinates of the tiles
+     * @param image the image of the tiles
+     */
+    void drawBackground(List<Coordinate> tiles, Image image);
+
+    /**
+     * Draws the random blocks, that are then identified by their id
+     * @param blocks the coordinates of the blocks
+     * @param ids the ids of the blocks, in the same order of the coordinates
+     * @param image the image of the blocks
+     */
+    void drawRandomBlocks(List<Coordinate> blocks, List<Integer> ids, Image image);
+
+    /**
+     * Removes a random block, running its destruction animation
+     * @param id the id of the block
+     */
+    void destroyRandomBlock(int id);
+
+    /**
+     * Adds a sprite over the map, above the sprites of the lower layers
+     * @param coordinate the tile where the sprite is placed
+     * @param image the image of the sprite
+     * @param layer the layer of the sprite
+     * @return the sprite
+     */
+    Sprite addSprite(Coordinate coordinate, Image image, Layer layer);
+
+    /**
+     * Moves the visible part of the map
+     * @param x the left side of the viewport in the map, in pixels
+     * @param y the top side of the viewport in the map, in pixels
+     */
+    void setViewport(double x, double y);
+
+    /**
+     * Draws what changed since the previous frame, it's called at every frame after the sprites have been moved
+     */
+    void render();
+}
@@ -5,13 +5,17 @@ import javafx.geometry.Insets;
 import javafx.scene.control.*;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.*;
+import javafx.scene.Node;
+import javafx.scene.Parent;
 import org.jbomberman.controller.MainController;
+import org.jbomberman.metrics.GameMetrics;
 import org.jbomberman.utils.*;
 import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCode;
 import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
 import javafx.util.Duration;
 
 import java.util.*;
@@ -20,14 +24,36 @@ import static org.jbomberman.view.ViewUtilities.*;
 
 /**
  * The GameView is the class that creates the view of the game
- * It is the View of the MVC pattern and is the Observer in the Observer/Observable pattern
+ * It is the View of the MVC pattern and is subscribed to all the updates published by the model,
+ * or to the ones received from a GameServer by a GameClient.
+ * Every player has his sprite; the viewport follows the local player, whose lives and power ups are in the bottom bar
  */
-public class GameView implements Observer {
+public class GameView implements UpdateListener {
 
     private final MainController controller;
 
+    // Measures the time spent in the updates of the model
+    private final GameMetrics metrics;
+
+    // The duration of the movement of an enemy and of a frame of the explosion
+    private static final long ENEMY_MOVEMENT = 600_000_000L;
+    private static final long EXPLOSION_FRAME = 150_000_000L;
+
+    // The corner where the players come back after losing a life
+    private static final Coordinate SPAWN = new Coordinate(1, 1);
+
     private final AnchorPane gameBoard; // The master pane, where the all the game components are placed
 
+    // The visible part of the map, where the renderer draws, and the floating points over it
+    private final Pane map = new Pane();
+    private final Pane labels = new Pane();
+
+    // The size of the map and of the viewport, in pixels: the viewport is the map, or the window if the map is bigger
+    private final double mapWidth;
+    private final double mapHeight;
+    private final double viewportWidth;
+    private final double viewportHeight;
+
     //END GAME PANES
     Pane gameContinue; // This Pane is shown when saving the player name (both death and win)
     Pane gameOver;
@@ -37,22 +63,34 @@ public class GameView implements Observer {
     Pane pause;
     Pane options;
 
-    //IMAGE VIEWS
-    ImageView player;
-    ImageView puBomb; // The larger explosion power up
-    ImageView puLife; // The 1-up power up
-    ImageView puInvincible; // The 10 seconds invincibility power up
-    ImageView exit;
-    ImageView currentTntImage = null;
+    //SPRITES
+    GameRenderer.Sprite puBomb; // The larger explosion power up
+    GameRenderer.Sprite puCapacity; // The extra bomb power up
+    GameRenderer.Sprite puLife; // The 1-up power up
+    GameRenderer.Sprite puInvincible; // The 10 seconds invincibility power up
+    GameRenderer.Sprite exit;
+
+    // The bombs on the map, by position
+    private final Map<Coordinate, GameRenderer.Sprite> bombs = new HashMap<>();
+
+    // The renderer of the map, of its tiles and of the sprites over them
+    private final GameRenderer renderer;
+
+    // List of sprites
+    /// Each list is indexed by the ids that the model gives to its entities (null once removed)
+    private final List<GameRenderer.Sprite> enemies;
+    private final List<Motion> enemyMotions; // The movements of the enemies, indexed like the sprites
+    private final List<GameRenderer.Sprite> coins;
+
+    // The sprites of the players and their movements, indexed by the number of the player
+    private final List<GameRenderer.Sprite> players = new ArrayList<>();
+    private final List<Motion> playerMotions = new ArrayList<>();
 
-    // List of ImageViews
-    /// Each list has a correspondent List of Coordinates in the model
-    private final List<ImageView> randomBlocks;
-    private final List<ImageView> enemies;
-    private final List<ImageView> coins;
+    // The number of the player of this window, 0 in a local match
+    private int localPlayer = 0;
 
-    /// This List is for the ImageViews of the explosion (to easily remove them after the explosion)
-    private final List<ImageView> bombExplosion;
+    // The metrics of the game drawn over the map, toggled by F3
+    private final Label metricsOverlay = new Label();
 
     //BOTTOM BAR
     private final HBox bottomBar = new HBox();
@@ -63,6 +101,13 @@ public class GameView implements Observer {
     Label deathPointsLabel;
     Label victoryPointsLabel;
 
+    // The explosions that are being animated
+    private final List<Explosion> explosions;
+
+    // The duration of a tick of the engine and of the movement of the player, in nanoseconds
+    private long tickNanos = 1_000_000_000L / 60;
+    private long playerStepNanos = 200_000_000L;
+
     private int level;
     private String nickname;
 
@@ -91,6 +136,7 @@ public class GameView implements Observer {
         ENEMY_2_DOWN("definitive/angryEnemyDown.png"),
         ENEMY_2_UP("definitive/angryEnemyUp.png"),
         FIRE("power_up/bomb.png"),
+        EXTRA_BOMB("power_up/rice.png"),
         LIFE("power_up/oneup.png"),
         INVINCIBLE("power_up/resistance.png"),
         COIN("power_up/coin.gif")
@@ -107,6 +153,83 @@ public class GameView implements Observer {
         }
     }
 
+    /**
+     * The movement of a sprite from a tile to the next one.
+     * It advances with the ticks of the engine and it's drawn interpolating between the two tiles
+     */
+    private static class Motion {
+        private final GameRenderer.Sprite sprite;
+        // Where the sprite is drawn, in pixels
+        private double x;
+        private double y;
+        private double fromX;
+        private double fromY;
+        private double toX;
+        private double toY;
+        private long elapsed;
+        private long duration;
+        private boolean active = false;
+
+        private Motion(GameRenderer.Sprite sprite, Coordinate coordinate) {
+            this.sprite = sprite;
+            x = (double) coordinate.x() * SCALE_FACTOR;
+            y = (double) coordinate.y() * SCALE_FACTOR;
+        }
+
+        private void start(Coordinate from, Coordinate to, long duration) {
+            fromX = (double) from.x() * SCALE_FACTOR;
+            fromY = (double) from.y() * SCALE_FACTOR;
+            toX = (double) to.x() * SCALE_FACTOR;
+            toY = (double) to.y() * SCALE_FACTOR;
+            elapsed = 0;
+            this.duration = duration;
+            active = true;
+        }
+
+        /**
+         * Interrupts the movement, placing the sprite on the given tile
+         */
+        private void stop(Coordinate coordinate) {
+            active = false;
+            x = (double) coordinate.x() * SCALE_FACTOR;
+            y = (double) coordinate.y() * SCALE_FACTOR;
+            sprite.relocate(x, y);
+        }
+
+        private void advance(long nanos) {
+            if (active) {
+                elapsed += nanos;
+            }
+        }
+
+        /**
+         * @param extra the time elapsed after the last tick, in nanoseconds
+         */
+        private void render(long extra) {
+            if (active) {
+                double progress = Math.min(1, (double) (elapsed + extra) / duration);
+                x = fromX + (toX - fromX) * progress;
+                y = fromY + (toY - fromY) * progress;
+                sprite.relocate(x, y);
+                active = elapsed < duration;
+            }
+        }
+    }
+
+    /**
+     * The sprites of an explosion, whose frames change with the ticks of the engine
+     */
+    private static class Explosion {
+        private final List<Triad> triads;
+        private final List<GameRenderer.Sprite> tiles;
+        private long elapsed = 0;
+
+        private Explosion(List<Triad> triads, List<GameRenderer.Sprite> tiles) {
+            this.triads = triads;
+            this.tiles = tiles;
+        }
+    }
+
     //############### CONSTRUCTOR AND INITIALIZE ################//
 
     /**
@@ -114,19 +237,41 @@ public class GameView implements Observer {
      */
     public GameView() {
         controller = MainController.getInstance();
+        metrics = controller.getMetrics();
         gameBoard = new AnchorPane();
-        randomBlocks = new ArrayList<>();
+        mapWidth = (double) controller.getConfig().getWidth() * SCALE_FACTOR;
+        mapHeight = (double) controller.getConfig().getHeight() * SCALE_FACTOR;
+        // The bottom bar takes the last row of the window
+        viewportWidth = Math.min(mapWidth, ViewUtilities.WIDTH);
+        viewportHeight = Math.min(mapHeight, (double) ViewUtilities.HEIGHT - SCALE_FACTOR);
+        map.setClip(new Rectangle(viewportWidth, viewportHeight));
+        gameBoard.getChildren().add(map);
+        renderer = createRenderer();
+        map.getChildren().add(labels);
         enemies = new ArrayList<>();
+        enemyMotions = new ArrayList<>();
+        explosions = new ArrayList<>();
         coins = new ArrayList<>();
-        bombExplosion = new ArrayList<>();
         addBottomBar();
+        addMetricsOverlay();
         createGamePanes();
         initializeKeyPressed();
     }
 
+    /**
+     * @return the renderer of the map chosen in the controller
+     */
+    private GameRenderer createRenderer() {
+        return switch (controller.getRendererType()) {
+            case NODES -> new NodeGameRenderer(map);
+            case CANVAS -> new CanvasGameRenderer(map, controller.getConfig().getWidth(), controller.getConfig().getHeight(), viewportWidth, viewportHeight);
+        };
+    }
+
     public void initializeKeyPressed() {
-        // The event handler for the pressed keys
+        // The event handlers for the pressed and released keys
         gameBoard.setOnKeyPressed(controller::handleGameKeyEvent);
+        gameBoard.setOnKeyReleased(controller::handleGameKeyReleased);
     }
 
     //####################### PANELS #######################//
@@ -282,7 +427,8 @@ public class GameView implements Observer {
      */
     private void addBottomBar() {
         bottomBar.setLayoutX(0);
-        bottomBar.setLayoutY((double)SCALE_FACTOR * (MainController.DY-1));
+        // The bottom bar is under the viewport of the map
+        bottomBar.setLayoutY(viewportHeight);
         bottomBar.setPrefHeight(SCALE_FACTOR);
         bottomBar.setPrefWidth(ViewUtilities.WIDTH);
         bottomBar.setStyle("-fx-background-color: grey");
@@ -333,7 +479,7 @@ public class GameView implements Observer {
         deathPointsLabel.setText(points);
 
         Label text = ViewUtilities.getFloatingLabel(Integer.toString(currentPoints), coordinate);
-        gameBoard.getChildren().add(text);
+        labels.getChildren().add(text);
         text.setVisible(true);
         text.toFront();
 
@@ -343,12 +489,68 @@ public class GameView implements Observer {
         FadeTransition fadeOutTransition = new FadeTransition(Duration.millis(900), text);
         fadeOutTransition.setFromValue(1);
         fadeOutTransition.setToValue(0);
-        fadeOutTransition.setOnFinished(actionEvent -> gameBoard.getChildren().remove(text));
+        fadeOutTransition.setOnFinished(actionEvent -> labels.getChildren().remove(text));
 
         ParallelTransition parallelTransition  = new ParallelTransition(transition, fadeOutTransition);
         parallelTransition.play();
     }
 
+    //#################### METRICS OVERLAY ###################//
+
+    /**
+     * Creates the overlay of the metrics in the top left corner, hidden until F3 is pressed
+     */
+    private void addMetricsOverlay() {
+        metricsOverlay.setStyle("-fx-background-color: rgba(0, 0, 0, 0.7); -fx-text-fill: white; -fx-font-family: monospace; -fx-font-size: 11px");
+        metricsOverlay.setPadding(new Insets(4));
+        metricsOverlay.setMouseTransparent(true);
+        metricsOverlay.setVisible(false);
+        gameBoard.getChildren().add(metricsOverlay);
+    }
+
+    public void setMetricsOverlayVisible(boolean visible) {
+        metricsOverlay.setVisible(visible);
+        if (visible) {
+            showMetrics();
+        }
+    }
+
+    public boolean isMetricsOverlayVisible() {
+        return metricsOverlay.isVisible();
+    }
+
+    /**
+     * Draws the current metrics in the overlay, over the nodes added after it
+     */
+    public void showMetrics() {
+        metricsOverlay.setText(metrics.format());
+        metricsOverlay.toFront();
+    }
+
+    /**
+     * @return the nodes of the scene graph of the game, the panes of the menus included
+     */
+    public int countNodes() {
+        return countNodes(gameBoard);
+    }
+
+    private static int countNodes(Node node) {
+        int count = 1;
+        if (node instanceof Parent parent) {
+            for (Node child : parent.getChildrenUnmodifiable()) {
+                count += countNodes(child);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param localPlayer the number of the player of this window, e.g. the one given by a GameServer
+     */
+    public void setLocalPlayer(int localPlayer) {
+        this.localPlayer = localPlayer;
+    }
+
     //#################### PUBLIC GETTERS #####################//
     public AnchorPane getGame() {
         return gameBoard;
@@ -363,110 +565,140 @@ public class GameView implements Observer {
 
     /**
      * This method receives the notification from the model about the changes in its status
-     * and acts accordingly
+     * and acts accordingly, measuring the time it takes
      */
     @Override
-    public void update(Observable ignored, Object arg) {
-        if (arg instanceof UpdateInfo updateInfo) {
-            UpdateType updateType = updateInfo.getUpdateType();
-
-            switch (updateType) {
-                case LEVEL -> level = updateInfo.getLevel();
-
-                case LOAD_MAP -> {
-                    switch (updateInfo.getBlockType()) {
-                        case GROUND_BLOCKS -> {
-                            if (level == 1)
-                                loader(updateInfo.getBlocks(), BlockImage.GRASS.getImage());
-                            else
-                                loader(updateInfo.getBlocks(), BlockImage.GRASS2.getImage());
-                        }
-
-                        case STATIC_BLOCKS -> {
-                            if (level == 1)
-                                loader(updateInfo.getBlocks(), BlockImage.BEDROCK.getImage());
-                            else
-                                loader(updateInfo.getBlocks(), BlockImage.BEDROCK2.getImage());
-                        }
-
-                        case RANDOM_BLOCKS -> {
-                            if (level == 1)
-                                updateInfo.getBlocks().forEach(coordinate -> drawEntities(coordinate, BlockImage.STONE.getImage(), randomBlocks));
-                            else
-                                updateInfo.getBlocks().forEach(coordinate -> drawEntities(coordinate, BlockImage.STONE2.getImage(), randomBlocks));
-                        }
-                        default -> throw new IllegalStateException("Unexpected value: " + updateInfo.getIndex());
+    public void update(UpdateInfo updateInfo) {
+        long start = System.nanoTime();
+        handleUpdate(updateInfo);
+        metrics.updateHandled(updateInfo.getUpdateType(), System.nanoTime() - start);
+    }
+
+    private void handleUpdate(UpdateInfo updateInfo) {
+        UpdateType updateType = updateInfo.getUpdateType();
+
+        switch (updateType) {
+            case LEVEL -> level = updateInfo.getLevel();
+
+            case LOAD_MAP -> {
+                switch (updateInfo.getBlockType()) {
+                    case GROUND_BLOCKS -> {
+                        if (level == 1)
+                            renderer.drawBackground(updateInfo.getBlocks(), BlockImage.GRASS.getImage());
+                        else
+                            renderer.drawBackground(updateInfo.getBlocks(), BlockImage.GRASS2.getImage());
                     }
+
+                    case STATIC_BLOCKS -> {
+                        if (level == 1)
+                            renderer.drawBackground(updateInfo.getBlocks(), BlockImage.BEDROCK.getImage());
+                        else
+                            renderer.drawBackground(updateInfo.getBlocks(), BlockImage.BEDROCK2.getImage());
+                    }
+
+                    case RANDOM_BLOCKS -> {
+                        if (level == 1)
+                            renderer.drawRandomBlocks(updateInfo.getBlocks(), updateInfo.getIds(), BlockImage.STONE.getImage());
+                        else
+                            renderer.drawRandomBlocks(updateInfo.getBlocks(), updateInfo.getIds(), BlockImage.STONE2.getImage());
+                    }
+                    default -> throw new IllegalStateException("Unexpected value: " + updateInfo.getIndex());
                 }
-                case LOAD_POINTS -> {
-                    pointsLabel.setText("Points: "+updateInfo.getIndex());
-                    deathPointsLabel.setText("Points: "+updateInfo.getIndex());
-                }
+            }
+            case LOAD_POINTS -> {
+                pointsLabel.setText("Points: "+updateInfo.getPoints());
+                deathPointsLabel.setText("Points: "+updateInfo.getPoints());
+            }
 
-                case LOAD_LIFE -> livesLabel.setText("Lives: " + updateInfo.getHealthPoint());
+            case LOAD_LIFE -> {
+                if (updateInfo.getIndex() == localPlayer) {
+                    updateLife(updateInfo.getHealthPoint());
+                }
+            }
 
-                case LOAD_ENEMIES -> updateInfo.getEntities().forEach(coordinate -> drawEntities(coordinate, BlockImage.ENEMY_DOWN.getImage(), enemies));
+            case LOAD_ENEMIES -> {
+                List<Integer> ids = updateInfo.getIds();
+                for (int i = 0; i < ids.size(); i++) {
+                    Coordinate coordinate = updateInfo.getEntities().get(i);
+                    GameRenderer.Sprite enemy = drawEntities(coordinate, BlockImage.ENEMY_DOWN.getImage(), GameRenderer.Layer.CHARACTERS, enemies, ids.get(i));
+                    ViewUtilities.putById(enemyMotions, ids.get(i), new Motion(enemy, coordinate));
+                }
+            }
 
-                case LOAD_COINS -> updateInfo.getEntities().forEach(coordinate -> drawEntities(coordinate, BlockImage.COIN.getImage(), coins));
+            case LOAD_COINS -> {
+                List<Integer> ids = updateInfo.getIds();
+                for (int i = 0; i < ids.size(); i++) {
+                    drawEntities(updateInfo.getEntities().get(i), BlockImage.COIN.getImage(), GameRenderer.Layer.ITEMS, coins, ids.get(i));
+                }
+            }
 
 
-                case LOAD_PLAYER -> player = drawItems(updateInfo.getCoordinate(), BlockImage.BOMBERMAN.getImage());
+            case LOAD_PLAYER -> {
+                GameRenderer.Sprite player = drawEntities(updateInfo.getCoordinate(), BlockImage.BOMBERMAN.getImage(), GameRenderer.Layer.CHARACTERS, players, updateInfo.getIndex());
+                ViewUtilities.putById(playerMotions, updateInfo.getIndex(), new Motion(player, updateInfo.getCoordinate()));
+            }
 
-                case LOAD_EXIT -> exit = drawItems(updateInfo.getCoordinate(), BlockImage.DOOR.getImage());
+            case LOAD_EXIT -> exit = drawItems(updateInfo.getCoordinate(), BlockImage.DOOR.getImage());
 
-                case LOAD_POWER_UP_LIFE -> puLife = drawItems(updateInfo.getCoordinate(), BlockImage.LIFE.getImage());
+            case LOAD_POWER_UP_LIFE -> puLife = drawItems(updateInfo.getCoordinate(), BlockImage.LIFE.getImage());
 
-                case LOAD_POWER_UP_BOMB -> puBomb = drawItems(updateInfo.getCoordinate(), BlockImage.FIRE.getImage());
+            case LOAD_POWER_UP_BOMB -> puBomb = drawItems(updateInfo.getCoordinate(), BlockImage.FIRE.getImage());
 
-                case LOAD_POWER_UP_INVINCIBLE -> puInvincible = drawItems(updateInfo.getCoordinate(), BlockImage.INVINCIBLE.getImage());
+            case LOAD_POWER_UP_CAPACITY -> puCapacity = drawItems(updateInfo.getCoordinate(), BlockImage.EXTRA_BOMB.getImage());
 
-                case UPDATE_BLOCK_DESTROYED -> runBlockDestructionAnimation(removeImageView(randomBlocks, updateInfo.getIndex()));
+            case LOAD_POWER_UP_INVINCIBLE -> puInvincible = drawItems(updateInfo.getCoordinate(), BlockImage.INVINCIBLE.getImage());
 
-                case UPDATE_ENEMY_DEAD -> {
-                    removeImageView(enemies, updateInfo.getIndex());
-                    BackgroundMusic.playEnemyDeath();
-                }
+            case UPDATE_BLOCK_DESTROYED -> renderer.destroyRandomBlock(updateInfo.getIndex());
 
-                case UPDATE_COINS -> {
-                    removeImageView(coins, updateInfo.getIndex());
-                    BackgroundMusic.playCoin();
-                }
+            case UPDATE_ENEMY_DEAD -> {
+                removeSprite(enemies, updateInfo.getIndex());
+                enemyMotions.set(updateInfo.getIndex(), null);
+                BackgroundMusic.playEnemyDeath();
+            }
 
-                case UPDATE_DOOR -> {
-                    BackgroundMusic.playDoor();
-                    runOpeningDoorAnimation();
-                }
+            case UPDATE_COINS -> {
+                removeSprite(coins, updateInfo.getIndex());
+                BackgroundMusic.playCoin();
+            }
 
-                case UPDATE_POSITION -> position(updateInfo.getNewCoord(), updateInfo.getOldCoord(), updateInfo.getIndex(), updateInfo.getKeyCode(), updateInfo.isEnemyLastLife());
+            case UPDATE_DOOR -> {
+                BackgroundMusic.playDoor();
+                runOpeningDoorAnimation();
+            }
 
-                case UPDATE_RESPAWN -> respawn(updateInfo.getHealthPoint());
+            case UPDATE_POSITION -> position(updateInfo.getNewCoord(), updateInfo.getOldCoord(), updateInfo.getIndex(), updateInfo.getDirection(), updateInfo.isEnemyLastLife());
 
-                case UPDATE_POINTS -> updatePoints(updateInfo.getPoints(), updateInfo.getEarnedPoints(), updateInfo.getCoordinate());
+            case UPDATE_RESPAWN -> respawn(updateInfo.getIndex(), updateInfo.getHealthPoint());
 
-                case UPDATE_PU_LIFE -> doLifePowerUp(updateInfo.getHealthPoint());
+            case UPDATE_POINTS -> updatePoints(updateInfo.getPoints(), updateInfo.getEarnedPoints(), updateInfo.getCoordinate());
 
-                case UPDATE_PU_BOMB -> doBombPowerUp();
+            case UPDATE_PU_LIFE -> doLifePowerUp(updateInfo.getIndex(), updateInfo.getHealthPoint());
 
-                case UPDATE_PU_INVINCIBLE -> doInvinciblePowerUp(updateInfo.isInvincible());
+            case UPDATE_PU_BOMB -> doBombPowerUp(updateInfo.getIndex());
 
-                case UPDATE_BOMB_RELEASED -> {
-                    BackgroundMusic.playBomb();
-                    drawBomb(updateInfo.getCoordinate());
-                }
+            case UPDATE_PU_CAPACITY -> doCapacityPowerUp(updateInfo.getIndex());
 
-                case UPDATE_EXPLOSION -> playExplosionAnimation(updateInfo.getTriadList());
+            case UPDATE_PU_INVINCIBLE -> doInvinciblePowerUp(updateInfo.getIndex(), updateInfo.isInvincible());
 
-                case UPDATE_ENEMY_LIFE -> {
-                    ImageView woundedEnemy = enemies.get(updateInfo.getIndex());
-                    woundedEnemy.setImage(BlockImage.ENEMY_2_LEFT.getImage());
-                }
+            case LOAD_BOMBS -> updateInfo.getEntities().forEach(this::drawBomb);
 
-                case UPDATE_GAME_WIN -> gameWin();
+            case UPDATE_BOMB_RELEASED -> {
+                BackgroundMusic.playBomb();
+                drawBomb(updateInfo.getCoordinate());
+            }
 
-                case UPDATE_GAME_OVER -> gameLost();
+            case UPDATE_EXPLOSION -> playExplosionAnimation(updateInfo.getTriadList());
 
-                default -> throw new IllegalStateException("Unexpected value: " + updateType);
+            case UPDATE_ENEMY_LIFE -> {
+                GameRenderer.Sprite woundedEnemy = enemies.get(updateInfo.getIndex());
+                woundedEnemy.setImage(BlockImage.ENEMY_2_LEFT.getImage());
             }
+
+            case UPDATE_GAME_WIN -> gameWin();
+
+            case UPDATE_GAME_OVER -> gameLost();
+
+            default -> throw new IllegalStateException("Unexpected value: " + updateType);
         }
     }
 
@@ -544,136 +776,154 @@ public class GameView implements Observer {
     //#################### ANIMATION AND MOVEMENT ##################//
 
     /**
-     * This method moves both the player (entity = -1) and the enemies (entity >= 0)
+     * This method starts the movement of both the players (entity = -1 for the first one, -2 for the second one...)
+     * and the enemies (entity >= 0), that is drawn by render() at every frame
      * @param newPosition
      * @param oldPosition
      * @param entity
      *
      * //ENEMY ONLY
-     * @param keyCode in which direction is the enemy moving
+     * @param direction in which direction is the enemy moving
      * @param lastLife if it's the last life of the enemy
      */
-    private void position(Coordinate newPosition, Coordinate oldPosition, int entity, KeyCode keyCode, boolean lastLife) {
-        int oldX = oldPosition.x() * SCALE_FACTOR;
-        int oldY = oldPosition.y() * SCALE_FACTOR;
-        int newX = newPosition.x() * SCALE_FACTOR;
-        int newY = newPosition.y() * SCALE_FACTOR;
-
-        TranslateTransition transition = new TranslateTransition();
-        if (oldX != newX){
-            transition.setByX((double)newX-oldX);
-        }else{
-            transition.setByY((double)newY-oldY);
-        }
-
+    private void position(Coordinate newPosition, Coordinate oldPosition, int entity, Direction direction, boolean lastLife) {
         if (entity < 0) {
-            controller.setMoving(true);
-            transition.setDuration(Duration.millis(200));
-            transition.setOnFinished(event ->
-                    controller.setMoving(false)
-            );
-            transition.setNode(player);
+            playerMotions.get(-1 - entity).start(oldPosition, newPosition, playerStepNanos);
         } else {
             if (level == 1 || !lastLife) {
-                switch (keyCode) {
+                switch (direction) {
                     case LEFT -> enemies.get(entity).setImage(BlockImage.ENEMY_LEFT.getImage());
                     case RIGHT -> enemies.get(entity).setImage(BlockImage.ENEMY_RIGHT.getImage());
                     case DOWN -> enemies.get(entity).setImage(BlockImage.ENEMY_DOWN.getImage());
                     case UP -> enemies.get(entity).setImage(BlockImage.ENEMY_UP.getImage());
                 }
             } else {
-                switch (keyCode) {
+                switch (direction) {
                     case LEFT -> enemies.get(entity).setImage(BlockImage.ENEMY_2_LEFT.getImage());
                     case RIGHT -> enemies.get(entity).setImage(BlockImage.ENEMY_2_RIGHT.getImage());
                     case DOWN -> enemies.get(entity).setImage(BlockImage.ENEMY_2_DOWN.getImage());
                     case UP -> enemies.get(entity).setImage(BlockImage.ENEMY_2_UP.getImage());
                 }
             }
-            transition.setDuration(Duration.millis(600));
-            transition.setNode(enemies.get(entity));
+            enemyMotions.get(entity).start(oldPosition, newPosition, ENEMY_MOVEMENT);
         }
-        transition.play();
     }
 
     /**
-     * This method set the player position to the spawn and update his life label
+     * This method set the player position to the spawn and, for the local player, update his life label.
+     * A player without lives is out of the game and isn't drawn, until he gets new lives
+     * @param player the number of the player
      * @param index the current life
      */
-    private void respawn(int index) {
-        BackgroundMusic.playDeath();
-        controller.setMoving(true);
-        controller.setPause(false);
-        PauseTransition pauseRespawn = new PauseTransition(Duration.millis(200));
-        pauseRespawn.setOnFinished(event -> {
-            player.setTranslateX(0);
-            player.setTranslateY(0);
-            controller.setMoving(false);
-            controller.setPause(false);
-        });
-        updateLife(index);
-        pauseRespawn.play();
+    private void respawn(int player, int index) {
+        playerMotions.get(player).stop(SPAWN);
+        players.get(player).setOpacity(index > 0 ? 1 : 0);
+        if (player == localPlayer) {
+            BackgroundMusic.playDeath();
+            updateLife(index);
+        }
     }
 
     private void runOpeningDoorAnimation(){
-        runAnimation(exit, 1,14, "doors", false);
+        runAnimation(exit::setImage, 1, ImageCache.DOOR_FRAMES, ImageCache::door, () -> {});
     }
 
-    private void runBlockDestructionAnimation(ImageView imageView){
-        gameBoard.getChildren().add(imageView);
-        runAnimation(imageView, 1, 6, "random_blocks", true);
+    /**
+     * This method creates the sprites of the explosion with its first frame,
+     * the next frames are shown by onTick(). The explosion contains the blasts of all the bombs
+     * exploded in the same tick, whose positions are the CENTER tiles
+     * @param triadArrayList the list with the path of the explosion
+     */
+    private void playExplosionAnimation(List<Triad> triadArrayList) {
+        List<GameRenderer.Sprite> explosion = new ArrayList<>(triadArrayList.size());
+        triadArrayList.forEach(triad -> {
+            if (triad.direction() == Direction.CENTER) {
+                removeBomb(triad.coordinate());
+            }
+            explosion.add(renderer.addSprite(triad.coordinate(), ImageCache.explosion(1, triad.direction(), triad.isLast()), GameRenderer.Layer.EXPLOSIONS));
+        });
+        explosions.add(new Explosion(triadArrayList, explosion));
     }
 
     /**
-     * This method runs the door and blocks animations
-     * @param imageView the image to animate
-     * @param index the index used with the path
-     * @param end when the animation ends
-     * @param path the path of the image
+     * This method runs the explosion animations, swapping the images of the same sprites
+     * when a frame ends and removing them after the last frame
+     * @param nanos the duration of the tick
      */
-    private void runAnimation(ImageView imageView, int index, int end, String path, boolean remove) {
-        imageView.setImage(new Image(Objects.requireNonNull(GameView.class.getResourceAsStream( path + "/" + index + ".png"))));
-        PauseTransition pauseTransition = new PauseTransition(Duration.millis(160));
-        pauseTransition.setOnFinished(event -> {
-            if (index < end) runAnimation(imageView, index + 1, end, path, remove);
-            else if (remove) {
-                gameBoard.getChildren().remove(imageView);
+    private void advanceExplosions(long nanos) {
+        Iterator<Explosion> iterator = explosions.iterator();
+        while (iterator.hasNext()) {
+            Explosion explosion = iterator.next();
+            int frame = (int) (explosion.elapsed / EXPLOSION_FRAME) + 1;
+            explosion.elapsed += nanos;
+            int nextFrame = (int) (explosion.elapsed / EXPLOSION_FRAME) + 1;
+            if (nextFrame > ImageCache.EXPLOSION_FRAMES) {
+                explosion.tiles.forEach(GameRenderer.Sprite::remove);
+                iterator.remove();
+            } else if (nextFrame != frame) {
+                for (int k = 0; k < explosion.tiles.size(); k++) {
+                    Triad triad = explosion.triads.get(k);
+                    explosion.tiles.get(k).setImage(ImageCache.explosion(nextFrame, triad.direction(), triad.isLast()));
+                }
             }
-        });
-        pauseTransition.play();
+        }
     }
 
-    private void playExplosionAnimation(List<Triad> triadArrayList) {
-        removeBomb();
-        playExplosionAnimation(triadArrayList, 1);
+    //################## GAME LOOP ###################//
+
+    /**
+     * @param tickNanos the duration of a tick of the engine
+     * @param playerStepNanos the duration of the movement of the player
+     */
+    public void setTickDurations(long tickNanos, long playerStepNanos) {
+        this.tickNanos = tickNanos;
+        this.playerStepNanos = playerStepNanos;
     }
 
     /**
-     * This method runs the explosion animation
-     * @param triadArrayList the list with the path of the explosion
-     * @param i the index used to get the images
+     * Advances the animations by a tick, it's called by the GameLoop before every tick of the engine
+     * @param nanos the duration of the tick
      */
-    private void playExplosionAnimation(List<Triad> triadArrayList, int i) {
-        String path = "explosion/" + i;
-        triadArrayList.forEach(triad -> {
-            ImageView imageView;
-            if (triad.direction().equals(Direction.CENTER)) {
-                imageView = createImageView(triad.coordinate(), new Image(Objects.requireNonNull(GameView.class.getResourceAsStream( path + "/center.png"))));
-            } else if (triad.isLast()) {
-                imageView = createImageView(triad.coordinate(), new Image(Objects.requireNonNull(GameView.class.getResourceAsStream(path +"/" + triad.direction().getKeyCode() + "_external.png"))));
-            } else {
-                imageView = createImageView(triad.coordinate(), new Image(Objects.requireNonNull(GameView.class.getResourceAsStream(path +"/" + triad.direction().getKeyCode() + ".png"))));
-            }
-            bombExplosion.add(imageView);
-            gameBoard.getChildren().add(imageView);
+    public void onTick(long nanos) {
+        playerMotions.forEach(motion -> {
+            if (motion != null) motion.advance(nanos);
         });
+        enemyMotions.forEach(motion -> {
+            if (motion != null) motion.advance(nanos);
+        });
+        advanceExplosions(nanos);
+    }
 
-        int j = i + 1;
-        PauseTransition pauseTransition = new PauseTransition(Duration.millis(150));
-        pauseTransition.setOnFinished(event -> {
-            removeExplosion();
-            if (j < 4) playExplosionAnimation(triadArrayList, j);
+    /**
+     * Draws the moving entities between their last two positions, with the viewport centred on the player,
+     * it's called by the GameLoop at every frame
+     * @param alpha the fraction of the next tick already elapsed
+     */
+    public void render(double alpha) {
+        long extra = (long) (alpha * tickNanos);
+        playerMotions.forEach(motion -> {
+            if (motion != null) motion.render(extra);
+        });
+        enemyMotions.forEach(motion -> {
+            if (motion != null) motion.render(extra);
         });
-        pauseTransition.play();
+        followPlayer();
+        renderer.render();
+    }
+
+    /**
+     * Moves the viewport so that the local player is in its centre, without going beyond the edges of the map
+     */
+    private void followPlayer() {
+        Motion playerMotion = localPlayer < playerMotions.size() ? playerMotions.get(localPlayer) : null;
+        if (playerMotion == null) {
+            return;
+        }
+        double x = Math.max(0, Math.min(playerMotion.x + SCALE_FACTOR / 2.0 - viewportWidth / 2, mapWidth - viewportWidth));
+        double y = Math.max(0, Math.min(playerMotion.y + SCALE_FACTOR / 2.0 - viewportHeight / 2, mapHeight - viewportHeight));
+        renderer.setViewport(x, y);
+        labels.setTranslateX(-x);
+        labels.setTranslateY(-y);
     }
 
 
@@ -691,115 +941,131 @@ public class GameView implements Observer {
     //########################## POWER UPS ########################//
 
     /**
-     * This method apply the life power up, updating the life label
+     * This method apply the life power up, updating the life label of the local player
+     * @param player the number of the player who took it
      * @param index the life of the player
      */
-    private void doLifePowerUp(int index) {
+    private void doLifePowerUp(int player, int index) {
         BackgroundMusic.playOneUp();
-        updateLife(index);
-        removePowerUPs(puLife);
+        if (player == localPlayer) {
+            updateLife(index);
+        }
+        removePowerUPs(puLife, BlockImage.LIFE, player);
     }
 
     /**
      * This method apply the larger explosion power up
+     * @param player the number of the player who took it
      */
-    private void doBombPowerUp(){
+    private void doBombPowerUp(int player){
         BackgroundMusic.playBigBomb();
-        removePowerUPs(puBomb);
+        removePowerUPs(puBomb, BlockImage.FIRE, player);
     }
 
     /**
-     * This method apply the invincibility power up
+     * This method apply the extra bomb power up
+     * @param player the number of the player who took it
+     */
+    private void doCapacityPowerUp(int player){
+        BackgroundMusic.playBigBomb();
+        removePowerUPs(puCapacity, BlockImage.EXTRA_BOMB, player);
+    }
+
+    /**
+     * This method apply the invincibility power up; the music changes only for the local player
+     * @param player the number of the player
      * @param boo if the player is invincible
      */
-    private void doInvinciblePowerUp(boolean boo) {
+    private void doInvinciblePowerUp(int player, boolean boo) {
         if (boo) {
-            BackgroundMusic.playInvincible();
-            player.setOpacity(0.5);
-            removePowerUPs(puInvincible);
+            if (player == localPlayer) {
+                BackgroundMusic.playInvincible();
+            }
+            players.get(player).setOpacity(0.5);
+            // The power up isn't on the map when the level is restored with the player already invincible
+            if (puInvincible != null) {
+                removePowerUPs(puInvincible, BlockImage.INVINCIBLE, player);
+                puInvincible = null;
+            }
         }else {
-            BackgroundMusic.stopInvincible();
-            player.setOpacity(1);
+            if (player == localPlayer) {
+                BackgroundMusic.stopInvincible();
+            }
+            players.get(player).setOpacity(1);
         }
     }
 
     /**
-     * This method remove the image view of the power up from the map, and add it to the bottom bar
-     * @param imageView the image view of the power up
+     * This method remove the sprite of the power up from the map and, if the local player took it,
+     * add its image to the bottom bar
+     * @param powerUp the sprite of the power up
+     * @param image the image of the power up
+     * @param player the number of the player who took it
      */
-    private void removePowerUPs(ImageView imageView) {
+    private void removePowerUPs(GameRenderer.Sprite powerUp, BlockImage image, int player) {
         PauseTransition removePU = new PauseTransition(Duration.millis(200));
-        removePU.setOnFinished(event -> gameBoard.getChildren().remove(imageView));
+        removePU.setOnFinished(event -> powerUp.remove());
         removePU.play();
+        if (player != localPlayer) {
+            return;
+        }
 
+        ImageView imageView = new ImageView(image.getImage());
         imageView.setFitHeight(25);
         imageView.setFitWidth(25);
         HBox.setMargin(imageView, new Insets(5, 0, 0, 10));
         bottomBar.getChildren().add(imageView);
     }
 
-    //###################### IMAGEVIEW METHODS ######################//
+    //###################### SPRITE METHODS ######################//
 
     /**
-     * This method is used to draw a block that does not need to be stored in a variable
-     * @param array the List of blocks to draw
-     * @param image the image used to draw the blocks
-     */
-    private void loader(List<Coordinate> array, Image image) {
-        array.forEach(coordinate -> gameBoard.getChildren().add(createImageView(coordinate, image)));
-    }
-
-    /**
-     * This method is used to draw an item on the game board that needs to stored in a variable
+     * This method is used to draw an item on the map that needs to stored in a variable
      * @param coordinate where the item is going to be drawn
      * @param image the image to draw
-     * @return the same image to store it
+     * @return the sprite to store it
      */
-    private ImageView drawItems(Coordinate coordinate, Image image) {
-        ImageView item = createImageView(coordinate, image);
-        gameBoard.getChildren().add(item);
-        return item;
+    private GameRenderer.Sprite drawItems(Coordinate coordinate, Image image) {
+        return renderer.addSprite(coordinate, image, GameRenderer.Layer.ITEMS);
     }
 
     /**
-     * This method is used to draw an entity on the game board that needs to be stored in a List
+     * This method is used to draw an entity on the map that needs to be stored in a List
      * @param coordinate  where the entity is going to be drawn
      * @param image the image to draw
-     * @param entities the list where the image needs to be put into
+     * @param layer the layer of the sprite
+     * @param entities the list where the sprite needs to be put into, indexed by id
+     * @param id the id of the entity in the model
+     * @return the sprite drawn
      */
-    private void drawEntities(Coordinate coordinate, Image image, List<ImageView> entities) {
-        ImageView entity = createImageView(coordinate, image);
-        entities.add(entity);
-        gameBoard.getChildren().add(entity);
+    private GameRenderer.Sprite drawEntities(Coordinate coordinate, Image image, GameRenderer.Layer layer, List<GameRenderer.Sprite> entities, int id) {
+        GameRenderer.Sprite entity = renderer.addSprite(coordinate, image, layer);
+        ViewUtilities.putById(entities, id, entity);
+        return entity;
     }
 
     /**
-     * This method is used to first remove the image from the corresponding array, to remove
-     * it from the game board and then return it to run the associated animation
-     * @param entities the list where the image needs to be removed from
-     * @param index the index of the image in the list
-     * @return the image to animate
+     * This method is used to remove the sprite of an entity from the corresponding list and from the map
+     * @param entities the list where the sprite needs to be removed from
+     * @param id the id of the entity in the model
      */
-    private ImageView removeImageView(List<ImageView> entities, int index) {
-        ImageView imgView = entities.remove(index);
-        gameBoard.getChildren().remove(imgView);
-        return imgView;
+    private void removeSprite(List<GameRenderer.Sprite> entities, int id) {
+        GameRenderer.Sprite entity = entities.set(id, null);
+        if (entity != null) {
+            entity.remove();
+        }
     }
 
 
     //################### BOMB ####################//
     private void drawBomb(Coordinate coordinate) {
-        currentTntImage = createImageView(coordinate, BlockImage.BOMB.getImage());
-        gameBoard.getChildren().add(currentTntImage);
-        player.toFront();
-    }
-
-    public void removeBomb() {
-        gameBoard.getChildren().remove(currentTntImage);
-        currentTntImage = null;
+        bombs.put(coordinate, renderer.addSprite(coordinate, BlockImage.BOMB.getImage(), GameRenderer.Layer.BOMBS));
     }
 
-    private void removeExplosion() {
-        bombExplosion.forEach(imageView -> gameBoard.getChildren().remove(imageView));
+    private void removeBomb(Coordinate coordinate) {
+        GameRenderer.Sprite bomb = bombs.remove(coordinate);
+        if (bomb != null) {
+            bomb.remove();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package org.jbomberman.view;
+
+import javafx.scene.image.Image;
+import org.jbomberman.utils.Direction;
+
+import java.util.Objects;
+
+import static org.jbomberman.view.ViewUtilities.SCALE_FACTOR;
+
+/**
+ * This class decodes once all the frames of the animations of the game (explosion, door and
+ * block destruction), so that the animations only need to swap the image of their ImageViews.
+ * The frames are decoded at the size of a tile, so the memory used is bounded by
+ * the number of frames * SCALE_FACTOR * SCALE_FACTOR * 4 bytes.
+ */
+public class ImageCache {
+
+    public static final int EXPLOSION_FRAMES = 3;
+    public static final int DOOR_FRAMES = 14;
+    public static final int BLOCK_FRAMES = 6;
+
+    // The memory used by the decoded frames, updated while they are loaded
+    private static long decodedBytes = 0;
+
+    // The explosion frames, indexed by frame, direction and if it's the last tile of the direction
+    private static final Image[][][] EXPLOSION = new Image[EXPLOSION_FRAMES][Direction.values().length][2];
+
+    private static final Image[] DOOR = loadFrames("doors", DOOR_FRAMES);
+    private static final Image[] RANDOM_BLOCK = loadFrames("random_blocks", BLOCK_FRAMES);
+
+    static {
+        for (int frame = 0; frame < EXPLOSION_FRAMES; frame++) {
+            String path = "explosion/" + (frame + 1) + "/";
+            for (Direction direction : Direction.values()) {
+                if (direction == Direction.CENTER) {
+                    Image center = load(path + "center.png");
+                    EXPLOSION[frame][direction.ordinal()][0] = center;
+                    EXPLOSION[frame][direction.ordinal()][1] = center;
+                } else {
+                    EXPLOSION[frame][direction.ordinal()][0] = load(path + direction + ".png");
+                    EXPLOSION[frame][direction.ordinal()][1] = load(path + direction + "_external.png");
+                }
+            }
+        }
+    }
+
+    private ImageCache() {
+    }
+
+    /**
+     * @param frame the frame of the animation, starting from 1
+     * @param direction the direction of the tile from the bomb
+     * @param isLast if it's the last tile in that direction
+     * @return the image of the tile of the explosion
+     */
+    public static Image explosion(int frame, Direction direction, boolean isLast) {
+        return EXPLOSION[frame - 1][direction.ordinal()][isLast ? 1 : 0];
+    }
+
+    /**
+     * @param frame the frame of the animation, starting from 1
+     * @return the image of the opening door
+     */
+    public static Image door(int frame) {
+        return DOOR[frame - 1];
+    }
+
+    /**
+     * @param frame the frame of the animation, starting from 1
+     * @return the image of the block being destroyed
+     */
+    public static Image randomBlock(int frame) {
+        return RANDOM_BLOCK[frame - 1];
+    }
+
+    /**
+     * @return the memory used by the decoded frames, in bytes
+     */
+    public static long getDecodedBytes() {
+        return decodedBytes;
+    }
+
+    private static Image[] loadFrames(String path, int frames) {
+        Image[] images = new Image[frames];
+        for (int i = 0; i < frames; i++) {
+            images[i] = load(path + "/" + (i + 1) + ".png");
+        }
+        return images;
+    }
+
+    private static Image load(String path) {
+        Image image = new Image(Objects.requireNonNull(ImageCache.class.getResourceAsStream(path)), SCALE_FACTOR, SCALE_FACTOR, false, true);
+        decodedBytes += (long) image.getWidth() * (long) image.getHeight() * 4;
+        return image;
+    }
+}
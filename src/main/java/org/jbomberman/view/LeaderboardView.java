@@ -1,70 +1,126 @@
 package org.jbomberman.view;
 
-import javafx.geometry.Pos;
+import javafx.collections.FXCollections;
 import javafx.scene.control.Label;
-import javafx.scene.control.ScrollPane;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.layout.Pane;
-import javafx.scene.layout.VBox;
 import org.jbomberman.controller.MainController;
 import org.jbomberman.model.User;
 
-import java.util.Comparator;
+import java.util.AbstractList;
 import java.util.List;
 
 /**
- * This class is used to represent the leaderboard in the MainView
+ * This class is used to represent the leaderboard in the MainView.
+ * The leaderboard is shown in a ListView, that creates only the cells of the visible rows;
+ * the rows are read from the model one page at a time, when they are shown
  */
 public class LeaderboardView {
 
+    // The number of users read from the model at once
+    private static final int PAGE_SIZE = 50;
+
     private final MainController controller = MainController.getInstance();
     private final Pane leaderboardPane = ViewUtilities.createPane("Leaderboard", false, false);
-    private final ScrollPane scrollPane = new ScrollPane();
-    private final VBox contentPane = new VBox(2);
+    private final ListView<User> listView = new ListView<>();
+
+    /**
+     * A read-only list of the users of the leaderboard, that keeps in memory only the last page read
+     */
+    private class LeaderboardPages extends AbstractList<User> {
+        private final int size;
+        private int pageOffset = -1;
+        private List<User> page = List.of();
+
+        private LeaderboardPages(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public User get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            if (index < pageOffset || index >= pageOffset + page.size()) {
+                pageOffset = index - index % PAGE_SIZE;
+                page = controller.getLeaderboardPage(pageOffset, PAGE_SIZE);
+            }
+            return page.get(index - pageOffset);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * The cell of a row of the leaderboard, reused by the ListView while scrolling
+     */
+    private static class UserCell extends ListCell<User> {
+        private UserCell() {
+            setFont(ViewUtilities.CUSTOM_FONT_SMALL);
+            setStyle("-fx-text-fill: white;");
+        }
+
+        @Override
+        protected void updateItem(User user, boolean empty) {
+            super.updateItem(user, empty);
+            if (empty || user == null) {
+                setText(null);
+            } else {
+                String playerName = user.name();
+                int paddingLength = Math.max(0, ViewUtilities.MAX_NAME_LETTERS - playerName.length());
+                String username = playerName + " ".repeat(paddingLength);
+                setText((getIndex() + 1) + ". " + username + ": " + user.score() + " - " + user.level());
+            }
+        }
+    }
 
     public LeaderboardView() {
-        genScrollPane();
+        genListView();
 
-        leaderboardPane.getChildren().add(scrollPane);
+        leaderboardPane.getChildren().add(listView);
     }
 
     /**
      * This method generates the view of the leaderboard
      */
-    private void genScrollPane() {
-        scrollPane.setPrefSize(400, 200);
-        contentPane.setAlignment(Pos.CENTER);
-        scrollPane.setTranslateY(20);
-        scrollPane.setStyle("-fx-control-inner-background: transparent;");
-        contentPane.setStyle("-fx-background-color: black;");
-        scrollPane.setId("mainScrollPane");
-        scrollPane.getStylesheets().add("org/jbomberman/view/scrollPane.css");
-        scrollPane.setContent(contentPane);
-
-        ViewUtilities.setCentred(scrollPane);
+    private void genListView() {
+        listView.setPrefSize(400, 200);
+        listView.setTranslateY(20);
+        listView.setFocusTraversable(false);
+        listView.setId("leaderboardList");
+        listView.getStylesheets().add("org/jbomberman/view/scrollPane.css");
+        listView.setCellFactory(list -> new UserCell());
+        listView.setPlaceholder(placeholder("loading..."));
+
+        ViewUtilities.setCentred(listView);
     }
 
     /**
-     * This method updates the view of the leaderboard
+     * This method updates the view of the leaderboard; only the size is read now,
+     * the users are read when their rows become visible
      */
     public void updateScrollPane() {
-        contentPane.getChildren().clear();
-        contentPane.setAlignment(Pos.CENTER_LEFT);
-
-        List<User> leaderboard = controller.loadLeaderboard();
-        leaderboard.sort(Comparator.comparingInt(User::score).reversed().thenComparing(User::level).thenComparing(User::name));
-
+        listView.setItems(FXCollections.observableList(new LeaderboardPages(controller.getLeaderboardSize())));
+        listView.scrollTo(0);
+    }
 
-        leaderboard.forEach(user -> {
-            String playerName = user.name();
-            int nameLength = playerName.length();
-            int paddingLength = ViewUtilities.MAX_NAME_LETTERS - nameLength;
-            String username = playerName + " ".repeat(paddingLength);
+    /**
+     * This method is called when the leaderboard has been read from its files
+     */
+    public void leaderboardLoaded() {
+        listView.setPlaceholder(placeholder(""));
+        updateScrollPane();
+    }
 
-            Label player = new Label(username + ": " + user.score() + " - " + user.level());
-            player.setFont(ViewUtilities.CUSTOM_FONT_SMALL);
-            player.setStyle("-fx-text-fill: white;");
-            contentPane.getChildren().add(player);
-        });
+    private static Label placeholder(String text) {
+        Label label = new Label(text);
+        label.setFont(ViewUtilities.CUSTOM_FONT_SMALL);
+        label.setStyle("-fx-text-fill: white;");
+        return label;
     }
 
     public Pane getLeaderboardPane() {
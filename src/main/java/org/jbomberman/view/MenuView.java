@@ -32,6 +32,13 @@ public class MenuView {
         paneAndButtons();
     }
 
+    /**
+     * Fills in the leaderboard, it's called when it has been read from its files
+     */
+    public void leaderboardLoaded() {
+        leader.leaderboardLoaded();
+    }
+
     /**
      * This method creates all the panes and the buttons in the MenuView
      */
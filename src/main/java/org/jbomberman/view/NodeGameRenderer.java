@@ -0,0 +1,139 @@
+package org.jbomberman.view;
+
+import javafx.scene.Group;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Pane;
+import org.jbomberman.utils.Coordinate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.jbomberman.view.ViewUtilities.createImageView;
+
+/**
+ * This renderer adds an ImageView for every tile of the map and for every sprite.
+ * They are all in a group that is moved to show the viewport, with a group for the tiles
+ * and one for every layer of the sprites.
+ * Nothing is removed from the groups, since that scans their children: a destroyed block is hidden,
+ * and the ImageView of a removed sprite is hidden and reused by the next sprite of its layer
+ */
+public class NodeGameRenderer implements GameRenderer {
+
+    // The whole map, translated by the position of the viewport
+    private final Group world = new Group();
+    private final Group tiles = new Group();
+    private final Map<Layer, Group> layers = new EnumMap<>(Layer.class);
+
+    // The hidden ImageViews of every layer, waiting to be reused
+    private final Map<Layer, Deque<ImageView>> pools = new EnumMap<>(Layer.class);
+
+    /// The ImageViews of the random blocks, indexed by their id (null once destroyed)
+    private final List<ImageView> randomBlocks = new ArrayList<>();
+
+    /**
+     * A sprite drawn by an ImageView
+     */
+    private static final class NodeSprite implements Sprite {
+        private final ImageView view;
+        private final Deque<ImageView> pool;
+        private boolean removed = false;
+
+        private NodeSprite(ImageView view, Deque<ImageView> pool) {
+            this.view = view;
+            this.pool = pool;
+        }
+
+        @Override
+        public void setImage(Image image) {
+            view.setImage(image);
+        }
+
+        @Override
+        public void relocate(double x, double y) {
+            view.setLayoutX(x);
+            view.setLayoutY(y);
+        }
+
+        @Override
+        public void setOpacity(double opacity) {
+            view.setOpacity(opacity);
+        }
+
+        @Override
+        public void remove() {
+            if (!removed) {
+                removed = true;
+                view.setVisible(false);
+                pool.push(view);
+            }
+        }
+    }
+
+    /**
+     * @param map the pane where the map is drawn
+     */
+    public NodeGameRenderer(Pane map) {
+        world.getChildren().add(tiles);
+        for (Layer layer : Layer.values()) {
+            Group group = new Group();
+            layers.put(layer, group);
+            pools.put(layer, new ArrayDeque<>());
+            world.getChildren().add(group);
+        }
+        map.getChildren().add(world);
+    }
+
+    @Override
+    public void drawBackground(List<Coordinate> tiles, Image image) {
+        tiles.forEach(coordinate -> this.tiles.getChildren().add(createImageView(coordinate, image)));
+    }
+
+    @Override
+    public void drawRandomBlocks(List<Coordinate> blocks, List<Integer> ids, Image image) {
+        for (int i = 0; i < blocks.size(); i++) {
+            ImageView block = createImageView(blocks.get(i), image);
+            ViewUtilities.putById(randomBlocks, ids.get(i), block);
+            tiles.getChildren().add(block);
+        }
+    }
+
+    @Override
+    public void destroyRandomBlock(int id) {
+        ImageView block = randomBlocks.set(id, null);
+        ViewUtilities.runAnimation(block::setImage, 1, ImageCache.BLOCK_FRAMES, ImageCache::randomBlock,
+                () -> block.setVisible(false));
+    }
+
+    @Override
+    public Sprite addSprite(Coordinate coordinate, Image image, Layer layer) {
+        Deque<ImageView> pool = pools.get(layer);
+        ImageView view = pool.poll();
+        if (view == null) {
+            view = createImageView(coordinate, image);
+            layers.get(layer).getChildren().add(view);
+        } else {
+            view.setImage(image);
+            view.setLayoutX((double) coordinate.x() * ViewUtilities.SCALE_FACTOR);
+            view.setLayoutY((double) coordinate.y() * ViewUtilities.SCALE_FACTOR);
+            view.setOpacity(1);
+            view.setVisible(true);
+        }
+        return new NodeSprite(view, pool);
+    }
+
+    @Override
+    public void setViewport(double x, double y) {
+        world.setTranslateX(-x);
+        world.setTranslateY(-y);
+    }
+
+    @Override
+    public void render() {
+        // The nodes are drawn by JavaFX
+    }
+}
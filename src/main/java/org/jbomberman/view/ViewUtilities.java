@@ -1,5 +1,6 @@
 package org.jbomberman.view;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.scene.Node;
 import javafx.scene.control.Label;
@@ -9,9 +10,14 @@ import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
+import javafx.util.Duration;
 import org.jbomberman.controller.MainController;
 import org.jbomberman.utils.Coordinate;
 
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
 /**
  * This class contains some utilities for the views
  */
@@ -159,6 +165,38 @@ public class ViewUtilities {
         return imageView;
     }
 
+    /**
+     * This method puts an element in a list used as a map from the ids of the model to the views,
+     * filling with null the ids that are missing
+     * @param byId the list, indexed by id
+     * @param id the id of the element
+     * @param element the element
+     */
+    public static <T> void putById(List<T> byId, int id, T element) {
+        while (byId.size() <= id) {
+            byId.add(null);
+        }
+        byId.set(id, element);
+    }
+
+    /**
+     * This method runs the door and blocks animations
+     * @param target where the frames are shown, e.g. the setImage() of an ImageView or of a sprite
+     * @param index the index of the current frame
+     * @param end when the animation ends
+     * @param frames the cached frames of the animation
+     * @param onFinished what to do after the last frame
+     */
+    public static void runAnimation(Consumer<Image> target, int index, int end, IntFunction<Image> frames, Runnable onFinished) {
+        target.accept(frames.apply(index));
+        PauseTransition pauseTransition = new PauseTransition(Duration.millis(160));
+        pauseTransition.setOnFinished(event -> {
+            if (index < end) runAnimation(target, index + 1, end, frames, onFinished);
+            else onFinished.run();
+        });
+        pauseTransition.play();
+    }
+
     /**
      * This method centers the given node
      * @param node the node to center
@@ -0,0 +1,72 @@
+package org.jbomberman.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ModelSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * @return the engine of a level played for the given ticks with random actions
+     */
+    private static GameEngine play(long seed, int ticks) {
+        MainModel model = new MainModel(new GameConfig.Builder().build(), new GameRandom(seed));
+        model.initialize();
+        GameEngine engine = new GameEngine(model);
+        Random random = new Random(seed);
+        for (int i = 0; i < ticks; i++) {
+            if (random.nextInt(4) == 0) {
+                engine.perform(Action.values()[random.nextInt(Action.values().length)]);
+            }
+            engine.step();
+        }
+        return engine;
+    }
+
+    @Test
+    void writeReadAndRestoreGiveTheSameLevel() throws Exception {
+        GameEngine engine = play(1, 300);
+        ModelSnapshot snapshot = ModelSnapshot.capture(engine);
+        Path path = directory.resolve("level.jbs");
+        snapshot.write(path);
+
+        ModelSnapshot read = ModelSnapshot.read(path);
+        assertArrayEquals(snapshot.toByteArray(), read.toByteArray());
+        assertEquals(300, read.getTick());
+
+        // Restored in the engine of another level, that then plays exactly like the original one
+        GameEngine other = play(2, 100);
+        read.restore(other);
+        assertArrayEquals(snapshot.toByteArray(), ModelSnapshot.capture(other).toByteArray());
+        for (int i = 0; i < 120; i++) {
+            engine.step();
+            other.step();
+        }
+        assertArrayEquals(ModelSnapshot.capture(engine).toByteArray(), ModelSnapshot.capture(other).toByteArray());
+    }
+
+    @Test
+    void applyDeltaGivesTheSnapshotBack() throws Exception {
+        GameEngine engine = play(3, 200);
+        ModelSnapshot keyframe = ModelSnapshot.capture(engine);
+        for (int tick = 0; tick < 300; tick += 60) {
+            for (int i = 0; i < 60; i++) {
+                engine.perform(Action.BOMB);
+                engine.step();
+            }
+            ModelSnapshot snapshot = ModelSnapshot.capture(engine);
+            ModelSnapshot applied = ModelSnapshot.applyDelta(keyframe, snapshot.delta(keyframe));
+            assertArrayEquals(snapshot.toByteArray(), applied.toByteArray());
+        }
+        assertArrayEquals(keyframe.toByteArray(), ModelSnapshot.applyDelta(keyframe, keyframe.delta(keyframe)).toByteArray());
+        assertArrayEquals(keyframe.toByteArray(), ModelSnapshot.fromByteArray(keyframe.toByteArray()).toByteArray());
+    }
+}
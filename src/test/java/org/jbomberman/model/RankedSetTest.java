@@ -0,0 +1,64 @@
+package org.jbomberman.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RankedSetTest {
+
+    @Test
+    void randomOperationsMatchATreeSet() {
+        RankedSet<Integer> set = new RankedSet<>(Comparator.naturalOrder());
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(12);
+        for (int i = 0; i < 20000; i++) {
+            // Few values, so that the elements are often already in the set or missing
+            Integer value = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+            assertEquals(expected.size(), set.size());
+
+            Integer query = random.nextInt(500);
+            assertEquals(expected.contains(query) ? expected.headSet(query).size() : -1, set.indexOf(query));
+            if (!expected.isEmpty()) {
+                int rank = random.nextInt(expected.size());
+                assertEquals(new ArrayList<>(expected).get(rank), set.get(rank));
+            }
+            if (i % 100 == 0) {
+                assertRanges(expected, set, random);
+            }
+        }
+    }
+
+    private static void assertRanges(TreeSet<Integer> expected, RankedSet<Integer> set, Random random) {
+        List<Integer> sorted = new ArrayList<>(expected);
+        assertEquals(sorted, set.range(0, Integer.MAX_VALUE));
+        for (int i = 0; i < 10; i++) {
+            int from = random.nextInt(sorted.size() + 2);
+            int to = from + random.nextInt(50);
+            List<Integer> range = from >= sorted.size() ? List.of() : sorted.subList(from, Math.min(to, sorted.size()));
+            assertEquals(range, set.range(from, to), "range " + from + ", " + to);
+        }
+    }
+
+    @Test
+    void getOutOfTheSetThrows() {
+        RankedSet<Integer> set = new RankedSet<>(Comparator.naturalOrder());
+        set.add(1);
+        assertThrows(IndexOutOfBoundsException.class, () -> set.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> set.get(-1));
+        set.clear();
+        assertEquals(0, set.size());
+        assertEquals(List.of(), set.range(0, 10));
+    }
+}
@@ -0,0 +1,46 @@
+package org.jbomberman.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class RewindBufferTest {
+
+    @Test
+    void rewindGoesBackToTheSameLevel() {
+        MainModel model = new MainModel(new GameConfig.Builder().build(), new GameRandom(4));
+        model.initialize();
+        GameEngine engine = new GameEngine(model);
+        RewindBuffer buffer = new RewindBuffer(600, 60);
+        engine.setActionListener(buffer);
+        assertFalse(buffer.rewind(engine, 10));
+
+        // The state of the level after every tick, indexed by the tick
+        List<byte[]> states = new ArrayList<>();
+        states.add(ModelSnapshot.capture(engine).toByteArray());
+        Random random = new Random(4);
+        for (int i = 0; i < 1000; i++) {
+            if (random.nextInt(4) == 0) {
+                engine.perform(Action.values()[random.nextInt(Action.values().length)]);
+            }
+            engine.step();
+            buffer.capture(engine);
+            states.add(ModelSnapshot.capture(engine).toByteArray());
+        }
+
+        buffer.rewind(engine, 250);
+        assertEquals(750, engine.getTick());
+        assertArrayEquals(states.get(750), ModelSnapshot.capture(engine).toByteArray());
+
+        // Further back than the capacity, it stops at the oldest keyframe
+        buffer.rewind(engine, 1000);
+        assertArrayEquals(states.get((int) engine.getTick()), ModelSnapshot.capture(engine).toByteArray());
+        assertEquals(0, buffer.size());
+    }
+}
@@ -0,0 +1,95 @@
+package org.jbomberman.replay;
+
+import org.jbomberman.model.Action;
+import org.jbomberman.model.GameConfig;
+import org.jbomberman.model.GameEngine;
+import org.jbomberman.model.GameRandom;
+import org.jbomberman.model.MainModel;
+import org.jbomberman.model.ModelSnapshot;
+import org.jbomberman.model.RewindBuffer;
+import org.jbomberman.simulation.SimulationRunner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayPlayerTest {
+
+    @TempDir
+    Path directory;
+
+    private Replay record(long seed) throws Exception {
+        SimulationRunner runner = new SimulationRunner(new GameConfig.Builder().build(), 60);
+        runner.setRecordDirectory(directory);
+        runner.play(seed);
+        return Replay.read(directory.resolve("match-" + seed + ".jbr"));
+    }
+
+    @Test
+    void playbackMatchesTheRecording() throws Exception {
+        for (long seed = 0; seed < 20; seed++) {
+            ReplayPlayer player = new ReplayPlayer(record(seed));
+            player.run();
+            assertTrue(player.matchesRecording(), "match " + seed);
+        }
+    }
+
+    @Test
+    void seekGivesTheStateOfTheLinearPlayback() throws Exception {
+        Replay replay = record(7);
+        ReplayPlayer linear = new ReplayPlayer(replay);
+        long middle = 3L * ReplayPlayer.KEYFRAME_INTERVAL / 2;
+        linear.seek(middle);
+        byte[] expected = ModelSnapshot.capture(linear.getEngine()).toByteArray();
+
+        ReplayPlayer player = new ReplayPlayer(replay);
+        player.run();
+        player.seek(middle);
+        assertEquals(middle, player.getPlayed());
+        assertArrayEquals(expected, ModelSnapshot.capture(player.getEngine()).toByteArray());
+        player.run();
+        assertTrue(player.matchesRecording());
+    }
+
+    @Test
+    void playbackMatchesTheRecordingAfterARewind() {
+        GameConfig config = new GameConfig.Builder().build();
+        MainModel model = new MainModel(config, new GameRandom(3));
+        model.initialize();
+        GameEngine engine = new GameEngine(model, 60);
+        RewindBuffer buffer = new RewindBuffer(600, 60);
+        ReplayRecorder recorder = new ReplayRecorder(3, config, 60);
+        GameEngine.ActionListener listener = (tick, player, action) -> {
+            buffer.actionPerformed(tick, player, action);
+            recorder.actionPerformed(tick, player, action);
+        };
+        engine.setActionListener(listener);
+
+        // Like MainController.rewind(): the ticks played again aren't recorded twice
+        Random random = new Random(3);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 400; i++) {
+                if (random.nextInt(4) == 0) {
+                    engine.perform(Action.values()[random.nextInt(Action.values().length)]);
+                }
+                engine.step();
+                buffer.capture(engine);
+            }
+            engine.setActionListener(null);
+            assertTrue(buffer.rewind(engine, 180));
+            recorder.truncate(engine.getTick());
+            engine.setActionListener(listener);
+        }
+
+        ReplayPlayer player = new ReplayPlayer(recorder.finish(engine.getTick(), model));
+        player.run();
+        assertEquals(engine.getTick(), player.getPlayed());
+        assertArrayEquals(ModelSnapshot.capture(engine).toByteArray(), ModelSnapshot.capture(player.getEngine()).toByteArray());
+        assertTrue(player.matchesRecording());
+    }
+}